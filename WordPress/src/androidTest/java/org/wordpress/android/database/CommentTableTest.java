@@ -37,6 +37,38 @@ public class CommentTableTest extends InstrumentationTestCase {
         createAndGetComment(1024 * 1024 * 2);
     }
 
+    public void testUnmoderatedCommentCount() {
+        TestUtils.loadDBFromDump(mTargetContext, mTestContext, "taliwutt-blogs-sample.sql");
+        int count = CommentTable.getUnmoderatedCommentCount(0);
+
+        CommentTable.addComment(0, createComment(1, "hold"));
+        CommentTable.addComment(0, createComment(2, "hold"));
+        assertEquals(count + 2, CommentTable.getUnmoderatedCommentCount(0));
+
+        // replacing an unmoderated comment must not count it twice
+        CommentTable.addComment(0, createComment(1, "hold"));
+        assertEquals(count + 2, CommentTable.getUnmoderatedCommentCount(0));
+
+        CommentTable.updateCommentStatus(0, 1, "approve");
+        assertEquals(count + 1, CommentTable.getUnmoderatedCommentCount(0));
+
+        CommentTable.deleteComment(0, 2);
+        assertEquals(count, CommentTable.getUnmoderatedCommentCount(0));
+    }
+
+    private Comment createComment(long commentId, String status) {
+        return new Comment(0,
+                commentId,
+                "author",
+                "0",
+                "comment",
+                status,
+                "arst",
+                "http://mop.com",
+                "mop@mop.com",
+                "");
+    }
+
     private void createAndGetComment(int commentLength) {
         // Load a sample DB and inject it into WordPress.wpdb
         TestUtils.loadDBFromDump(mTargetContext, mTestContext, "taliwutt-blogs-sample.sql");
@@ -1,10 +1,34 @@
 package org.wordpress.android.database;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.test.InstrumentationTestCase;
 import android.test.RenamingDelegatingContext;
 
+import org.wordpress.android.TestUtils;
+import org.wordpress.android.WordPress;
+import org.wordpress.android.WordPressDB;
+import org.wordpress.android.models.PostsListPostList;
+import org.wordpress.android.models.Theme;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.helpers.MediaFile;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 public class WordPressDBTest extends InstrumentationTestCase {
+    private static final int BENCHMARK_POST_COUNT = 50000;
+    private static final int BENCHMARK_THEME_COUNT = 500;
+    private static final String[] BENCHMARK_WORDS = {"android", "blogging", "coffee", "travel", "recipe",
+            "garden", "photo", "music", "review", "weekend", "holiday", "project", "update", "family"};
+
     protected Context testContext;
     protected Context targetContext;
 
@@ -14,4 +38,208 @@ public class WordPressDBTest extends InstrumentationTestCase {
         targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
         testContext = getInstrumentation().getContext();
     }
+
+    public void testMediaSearch() {
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        WordPress.wpDB.saveMediaFiles(Arrays.asList(
+                createMediaFile("1", "Sunset at the beach", ""),
+                createMediaFile("2", "Mountains", "Hiking trip"),
+                createMediaFile("3", "Sunrise", "")));
+
+        assertEquals(2, getCount(WordPress.wpDB.getMediaFilesForBlog("1", "sun")));
+        assertEquals(1, getCount(WordPress.wpDB.getMediaFilesForBlog("1", "beach sun")));
+        assertEquals(1, getCount(WordPress.wpDB.getMediaFilesForBlog("1", "HIKING")));
+
+        // the index must follow edits made to the media
+        WordPress.wpDB.updateMediaFile("1", "3", "Moonrise", "", "");
+        assertEquals(1, getCount(WordPress.wpDB.getMediaFilesForBlog("1", "sun")));
+    }
+
+    public void testDeleteMediaFilesNotInSet() {
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        WordPress.wpDB.saveMediaFiles(Arrays.asList(
+                createMediaFile("1", "one", ""),
+                createMediaFile("2", "two", ""),
+                createMediaFile("3", "three", ""),
+                createMediaFile("4", "four", ""),
+                createMediaFile("5", "five", "")));
+        // left behind by a failed server delete
+        WordPress.wpDB.updateMediaUploadState("1", "4", "deleted");
+        // still queued for deletion
+        WordPress.wpDB.updateMediaUploadState("1", "5", "delete");
+
+        int numDeleted = WordPress.wpDB.deleteMediaFilesNotInSet("1", new HashSet<>(Arrays.asList("1", "3")));
+        assertEquals(2, numDeleted);
+        assertFalse(WordPress.wpDB.mediaFileExists("1", "2"));
+        assertTrue(WordPress.wpDB.mediaFileExists("1", "3"));
+        assertFalse(WordPress.wpDB.mediaFileExists("1", "4"));
+        assertTrue(WordPress.wpDB.mediaFileExists("1", "5"));
+        assertEquals(0, getCount(WordPress.wpDB.getMediaFilesForBlog("1", "two")));
+    }
+
+    public void testPostSearch() {
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        List<Map<String, Object>> posts = new ArrayList<>();
+        posts.add(createPostMap(1, "Coffee review", "<p>A <b>cup</b> of something</p>", ""));
+        posts.add(createPostMap(2, "Weekend", "<p>We had coffee and cake</p>", ""));
+        posts.add(createPostMap(3, "Travel", "<p>Trains</p>", "coffee"));
+        posts.add(createPostMap(4, "Garden", "<p>Roses</p>", ""));
+        WordPress.wpDB.savePosts(posts, 1, false, true);
+
+        // title matches rank above tag matches, which rank above matches in the text
+        PostsListPostList results = WordPress.wpDB.searchPostsListPosts(1, false, "coff", 0, 10);
+        assertEquals(3, results.size());
+        assertEquals("Coffee review", results.get(0).getTitle());
+        assertEquals("Travel", results.get(1).getTitle());
+        assertEquals("Weekend", results.get(2).getTitle());
+
+        // html isn't indexed
+        assertEquals(0, WordPress.wpDB.searchPostsListPosts(1, false, "b", 0, 10).size());
+        assertEquals(1, WordPress.wpDB.searchPostsListPosts(1, false, "cup", 0, 10).size());
+
+        // paging
+        assertEquals(1, WordPress.wpDB.searchPostsListPosts(1, false, "coffee", 2, 10).size());
+
+        // the index follows updates and deletions
+        posts.clear();
+        posts.add(createPostMap(4, "Garden coffee", "<p>Roses</p>", ""));
+        WordPress.wpDB.savePosts(posts, 1, false, true);
+        assertEquals(4, WordPress.wpDB.searchPostsListPosts(1, false, "coffee", 0, 10).size());
+        WordPress.wpDB.deleteUploadedPosts(1, false);
+        assertEquals(0, WordPress.wpDB.searchPostsListPosts(1, false, "coffee", 0, 10).size());
+    }
+
+    public void testPostSearchBenchmark() throws Exception {
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+
+        long start = System.nanoTime();
+        List<Map<String, Object>> posts = new ArrayList<>();
+        for (int i = 1; i <= BENCHMARK_POST_COUNT; i++) {
+            posts.add(createPostMap(i, getBenchmarkText(i, 4), "<p>" + getBenchmarkText(i * 7, 200) + "</p>",
+                    getBenchmarkText(i * 13, 3)));
+            if (posts.size() == 1000) {
+                WordPress.wpDB.savePosts(posts, 1, false, true);
+                posts.clear();
+            }
+        }
+        long saveMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        PostsListPostList results = WordPress.wpDB.searchPostsListPosts(1, false, "coffee trav", 0, 20);
+        long ftsMs = (System.nanoTime() - start) / 1000000;
+        assertEquals(20, results.size());
+
+        // what a search would cost without the index
+        Field dbField = WordPressDB.class.getDeclaredField("db");
+        dbField.setAccessible(true);
+        SQLiteDatabase db = (SQLiteDatabase) dbField.get(WordPress.wpDB);
+        start = System.nanoTime();
+        Cursor c = db.rawQuery("SELECT id FROM posts WHERE blogID=1 AND isPage=0 AND (title LIKE ? OR description"
+                + " LIKE ?) AND (title LIKE ? OR description LIKE ?) LIMIT 20",
+                new String[]{"%coffee%", "%coffee%", "%trav%", "%trav%"});
+        int likeCount = getCount(c);
+        long likeMs = (System.nanoTime() - start) / 1000000;
+
+        AppLog.i(T.DB, BENCHMARK_POST_COUNT + " posts saved in " + saveMs + "ms, ranked search " + ftsMs
+                + "ms, like scan " + likeMs + "ms (" + likeCount + " rows)");
+    }
+
+    public void testThemeSearch() {
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        List<Theme> themes = new ArrayList<>();
+        themes.add(createTheme("twentyfifteen", "Twenty Fifteen", "1"));
+        themes.add(createTheme("twentysixteen", "Twenty Sixteen", "1"));
+        themes.add(createTheme("twentyfifteen", "Twenty Fifteen", "2"));
+        WordPress.wpDB.saveThemes(themes);
+
+        assertEquals(2, getCount(WordPress.wpDB.getThemes("1", "twen")));
+        assertEquals(1, getCount(WordPress.wpDB.getThemes("1", "twenty fif")));
+        assertEquals(0, getCount(WordPress.wpDB.getThemes("1", "wenty")));
+
+        // saving again updates the existing themes, and keeps each blog's copy separate
+        themes.clear();
+        themes.add(createTheme("twentyfifteen", "Fifteen Renamed", "1"));
+        WordPress.wpDB.saveThemes(themes);
+        assertEquals(2, WordPress.wpDB.getThemeCount("1"));
+        assertEquals(1, getCount(WordPress.wpDB.getThemes("1", "renamed")));
+        assertEquals("Twenty Fifteen", WordPress.wpDB.getTheme("2", "twentyfifteen").getName());
+    }
+
+    public void testThemeSaveBenchmark() {
+        List<Theme> themes = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_THEME_COUNT; i++) {
+            themes.add(createTheme("theme" + i, getBenchmarkText(i, 2), "1"));
+        }
+
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        long start = System.nanoTime();
+        for (Theme theme : themes) {
+            theme.save();
+        }
+        long singleMs = (System.nanoTime() - start) / 1000000;
+
+        TestUtils.dropDB(targetContext);
+        WordPress.wpDB = new WordPressDB(targetContext);
+        start = System.nanoTime();
+        WordPress.wpDB.saveThemes(themes);
+        long bulkMs = (System.nanoTime() - start) / 1000000;
+
+        // a second sync updates every theme
+        start = System.nanoTime();
+        WordPress.wpDB.saveThemes(themes);
+        long bulkUpdateMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(BENCHMARK_THEME_COUNT, WordPress.wpDB.getThemeCount("1"));
+        AppLog.i(T.DB, BENCHMARK_THEME_COUNT + " themes saved one at a time in " + singleMs + "ms, in bulk "
+                + bulkMs + "ms, updated in bulk " + bulkUpdateMs + "ms");
+    }
+
+    private static Theme createTheme(String id, String name, String blogId) {
+        return new Theme(id, "Automattic", "", "", "", name, "", "", blogId, false);
+    }
+
+    private static String getBenchmarkText(int seed, int numWords) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(BENCHMARK_WORDS[(seed + i * 31 + (seed >> 3)) % BENCHMARK_WORDS.length]);
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, Object> createPostMap(int postId, String title, String description, String tags) {
+        Map<String, Object> post = new HashMap<>();
+        post.put("postid", Integer.toString(postId));
+        post.put("title", title);
+        post.put("description", description);
+        post.put("mt_keywords", tags);
+        post.put("post_status", "publish");
+        return post;
+    }
+
+    private MediaFile createMediaFile(String mediaId, String title, String caption) {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setBlogId("1");
+        mediaFile.setMediaId(mediaId);
+        mediaFile.setTitle(title);
+        mediaFile.setCaption(caption);
+        mediaFile.setFilePath("/media/" + mediaId);
+        return mediaFile;
+    }
+
+    private static int getCount(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
 }
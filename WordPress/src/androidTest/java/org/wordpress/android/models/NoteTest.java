@@ -0,0 +1,98 @@
+package org.wordpress.android.models;
+
+import android.test.InstrumentationTestCase;
+
+import org.json.JSONObject;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NoteTest extends InstrumentationTestCase {
+    private static final int NOTE_COUNT = 1000;
+
+    // a comment notification as recorded from the note20 bucket
+    private static final String COMMENT_NOTE_JSON = "{"
+            + "\"id\":%d,"
+            + "\"type\":\"comment\","
+            + "\"read\":0,"
+            + "\"noticon\":\"\\uf300\","
+            + "\"timestamp\":\"2015-06-22T12:46:00+00:00\","
+            + "\"icon\":\"https://0.gravatar.com/avatar/?s=256&d=identicon\","
+            + "\"url\":\"http://taliwutblog.wordpress.com/2015/06/22/post/#comment-%d\","
+            + "\"title\":\"Comment\","
+            + "\"subject\":["
+            + "  {\"text\":\"Renardo commented on The End of Unrecorded Life\","
+            + "   \"ranges\":[{\"type\":\"user\",\"indices\":[0,7],\"id\":12},"
+            + "               {\"type\":\"noticon\",\"indices\":[0,0],\"value\":\"\\uf467\"}]},"
+            + "  {\"text\":\"Cool, thanks for sharing!\"}"
+            + "],"
+            + "\"body\":["
+            + "  {\"type\":\"user\",\"text\":\"Renardo\",\"meta\":{\"links\":{\"home\":\"http://google.com\"}}},"
+            + "  {\"type\":\"comment\",\"text\":\"Cool, thanks for sharing!\","
+            + "   \"meta\":{\"ids\":{\"comment\":%d,\"site\":57991476,\"post\":33}},"
+            + "   \"actions\":{\"replyto-comment\":true,\"approve-comment\":false,\"spam-comment\":false}}"
+            + "],"
+            + "\"meta\":{\"ids\":{\"site\":57991476,\"post\":33,\"comment\":%d,\"parent_comment\":0}}"
+            + "}";
+
+    private List<Note> buildNotes() throws Exception {
+        Note.Schema schema = new Note.Schema();
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 1; i <= NOTE_COUNT; i++) {
+            String json = String.format(COMMENT_NOTE_JSON, i, i, i, i);
+            notes.add(schema.build(String.valueOf(i), new JSONObject(json)));
+        }
+        return notes;
+    }
+
+    public void testCommentNoteProperties() throws Exception {
+        Note note = buildNotes().get(0);
+
+        assertEquals(Note.NOTE_COMMENT_TYPE, note.getType());
+        assertTrue(note.isCommentType());
+        assertTrue(note.isUnread());
+        assertTrue(note.isCommentWithUserReply());
+        assertEquals(57991476, note.getSiteId());
+        assertEquals(33, note.getPostId());
+        assertEquals(1, note.getCommentId());
+        assertEquals(CommentStatus.UNAPPROVED, note.getCommentStatus());
+        assertEquals("Renardo", note.getCommentAuthorName());
+        assertTrue(note.getTimestamp() > 0);
+    }
+
+    public void testUpdateResetsDerivedFields() throws Exception {
+        Note.Schema schema = new Note.Schema();
+        Note note = buildNotes().get(0);
+        assertEquals(Note.NOTE_COMMENT_TYPE, note.getType());
+
+        JSONObject json = note.getDiffableValue();
+        json.put("type", Note.NOTE_LIKE_TYPE);
+        schema.update(note, json);
+
+        assertEquals(Note.NOTE_LIKE_TYPE, note.getType());
+        assertFalse(note.isCommentType());
+    }
+
+    /*
+     * binds the same properties NotesAdapter and the note indexer read, twice per note
+     */
+    public void testBindNotesBenchmark() throws Exception {
+        List<Note> notes = buildNotes();
+        long start = System.nanoTime();
+        for (int pass = 0; pass < 2; pass++) {
+            for (Note note : notes) {
+                note.getTimestamp();
+                note.getType();
+                note.isUnread();
+                note.isCommentType();
+                note.isCommentWithUserReply();
+                note.getCommentStatus();
+                note.getUrl();
+            }
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        AppLog.i(T.NOTIFS, "bound " + NOTE_COUNT + " notes twice in " + elapsedMs + "ms");
+    }
+}
@@ -0,0 +1,24 @@
+package org.wordpress.android.ui.accounts.helpers;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.ui.prefs.AppPrefs;
+
+public class FetchBlogListWPOrgTest extends InstrumentationTestCase {
+    // nothing listens on the discard port of the loopback address, so connections to it fail right away
+    private static final String SITE_URL = "http://127.0.0.1:9";
+
+    public void testFailedCachedEndpointIsRemoved() {
+        String siteKey = XmlrpcEndpointDiscovery.getSiteKey(SITE_URL);
+        AppPrefs.setXmlrpcEndpoint(siteKey, SITE_URL + "/old/xmlrpc.php");
+        try {
+            FetchBlogListWPOrg fetchBlogList = new FetchBlogListWPOrg("username", "password", SITE_URL);
+            assertNull(fetchBlogList.new FetchBlogListTask(null).doInBackground());
+
+            // the cached endpoint failed so it was dropped, and rediscovery found nothing to replace it with
+            assertNull(AppPrefs.getXmlrpcEndpoint(siteKey));
+        } finally {
+            AppPrefs.setXmlrpcEndpoint(siteKey, null);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.wordpress.android.ui.accounts.helpers;
+
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.ui.prefs.AppPrefs;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+public class XmlrpcEndpointDiscoveryTest extends InstrumentationTestCase {
+    private static final String RSD_LINK =
+            "<link rel=\"EditURI\" type=\"application/rsd+xml\" title=\"RSD\" href=\"http://a.com/xmlrpc.php?rsd\" />";
+    private static final long RACE_TIMEOUT_MS = 10000;
+
+    /*
+     * returns a single char per read, so every tag is split across reads
+     */
+    private static class TrickleReader extends Reader {
+        private final String mText;
+        private int mPosition;
+
+        TrickleReader(String text) {
+            mText = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int count) throws IOException {
+            if (mPosition == mText.length()) {
+                return -1;
+            }
+            buffer[offset] = mText.charAt(mPosition++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /*
+     * fails if it's read past the passed text, to check the rest of the page isn't downloaded
+     */
+    private static class TruncatedReader extends StringReader {
+        TruncatedReader(String text) {
+            super(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int count) throws IOException {
+            int numRead = super.read(buffer, offset, count);
+            if (numRead == -1) {
+                throw new IOException("read past the end");
+            }
+            return numRead;
+        }
+    }
+
+    /*
+     * probe which returns the passed result after the passed delay
+     */
+    private static Callable<String> createProbe(final String result, final long delayMs) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                Thread.sleep(delayMs);
+                return result;
+            }
+        };
+    }
+
+    /*
+     * probe which doesn't return until the passed latch is released, like one stuck on the network
+     */
+    private static Callable<String> createBlockedProbe(final CountDownLatch latch, final String result) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                latch.await();
+                return result;
+            }
+        };
+    }
+
+    public void testRaceFirstValidProbeWins() {
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            List<Callable<String>> probes = new ArrayList<>();
+            probes.add(createProbe(null, 0));
+            probes.add(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    throw new IOException("probe failed");
+                }
+            });
+            probes.add(createProbe("http://a.com/xmlrpc.php", 100));
+            probes.add(createProbe("http://b.com/xmlrpc.php", 2000));
+            probes.add(createBlockedProbe(latch, "http://c.com/xmlrpc.php"));
+
+            // probes which found nothing or failed don't end the race, and it doesn't wait for the slower ones
+            long start = SystemClock.elapsedRealtime();
+            assertEquals("http://a.com/xmlrpc.php", XmlrpcEndpointDiscovery.race(probes, RACE_TIMEOUT_MS));
+            assertTrue(SystemClock.elapsedRealtime() - start < 2000);
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    public void testRaceNoValidProbe() {
+        List<Callable<String>> probes = new ArrayList<>();
+        probes.add(createProbe(null, 0));
+        probes.add(createProbe(null, 100));
+
+        // returns as soon as every probe is done rather than waiting for the deadline
+        long start = SystemClock.elapsedRealtime();
+        assertNull(XmlrpcEndpointDiscovery.race(probes, RACE_TIMEOUT_MS));
+        assertTrue(SystemClock.elapsedRealtime() - start < RACE_TIMEOUT_MS);
+    }
+
+    public void testRaceDeadline() {
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            List<Callable<String>> probes = new ArrayList<>();
+            probes.add(createProbe(null, 0));
+            probes.add(createBlockedProbe(latch, "http://a.com/xmlrpc.php"));
+
+            long start = SystemClock.elapsedRealtime();
+            assertNull(XmlrpcEndpointDiscovery.race(probes, 200));
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            assertTrue(elapsed >= 200);
+            assertTrue(elapsed < RACE_TIMEOUT_MS);
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    public void testCachedEndpoint() {
+        String siteKey = XmlrpcEndpointDiscovery.getSiteKey("http://example.com/blog");
+        AppPrefs.setXmlrpcEndpoint(siteKey, "http://example.com/blog/xmlrpc.php");
+        try {
+            // a trailing slash and the default port don't matter
+            XmlrpcEndpointDiscovery discovery = new XmlrpcEndpointDiscovery(null, null);
+            assertEquals("http://example.com/blog/xmlrpc.php", discovery.discover("http://example.com:80/blog/", true));
+            assertTrue(discovery.isFromCache());
+
+            XmlrpcEndpointDiscovery.removeCachedEndpoint("example.com/blog");
+            assertNull(AppPrefs.getXmlrpcEndpoint(siteKey));
+        } finally {
+            AppPrefs.setXmlrpcEndpoint(siteKey, null);
+        }
+    }
+
+    public void testSiteKey() {
+        assertEquals(XmlrpcEndpointDiscovery.getSiteKey("http://example.com/blog"),
+                XmlrpcEndpointDiscovery.getSiteKey("HTTP://Example.com:80/blog/"));
+        assertEquals(XmlrpcEndpointDiscovery.getSiteKey("https://example.com/blog"),
+                XmlrpcEndpointDiscovery.getSiteKey("https://example.com:443/blog"));
+
+        // an https site must never get an endpoint cached for its http version, nor another port's
+        assertFalse(XmlrpcEndpointDiscovery.getSiteKey("http://example.com/blog").equals(
+                XmlrpcEndpointDiscovery.getSiteKey("https://example.com/blog")));
+        assertFalse(XmlrpcEndpointDiscovery.getSiteKey("http://example.com/blog").equals(
+                XmlrpcEndpointDiscovery.getSiteKey("http://example.com:8080/blog")));
+    }
+
+    public void testFindRsdHref() throws IOException {
+        String html = "<html><head><title>a</title>" + RSD_LINK + "</head><body></body></html>";
+        assertEquals("http://a.com/xmlrpc.php?rsd", XmlrpcEndpointDiscovery.findRsdHref(new StringReader(html)));
+        assertEquals("http://a.com/xmlrpc.php?rsd", XmlrpcEndpointDiscovery.findRsdHref(new TrickleReader(html)));
+    }
+
+    public void testFindRsdHrefAttributeOrder() throws IOException {
+        String html = "<HEAD><LINK href='//a.com/xmlrpc.php?rsd' REL='EditURI'></HEAD>";
+        assertEquals("//a.com/xmlrpc.php?rsd", XmlrpcEndpointDiscovery.findRsdHref(new StringReader(html)));
+    }
+
+    public void testFindRsdHrefStopsReading() throws IOException {
+        assertEquals("http://a.com/xmlrpc.php?rsd",
+                XmlrpcEndpointDiscovery.findRsdHref(new TruncatedReader("<html><head>" + RSD_LINK)));
+        assertNull(XmlrpcEndpointDiscovery.findRsdHref(new TruncatedReader(
+                "<html><head><link rel=\"stylesheet\" href=\"a.css\"></head>")));
+    }
+
+    public void testFindRsdHrefMissing() throws IOException {
+        assertNull(XmlrpcEndpointDiscovery.findRsdHref(new StringReader("<html><head></head><body>"
+                + RSD_LINK + "</body></html>")));
+        assertNull(XmlrpcEndpointDiscovery.findRsdHref(new StringReader("not html")));
+    }
+}
@@ -0,0 +1,37 @@
+package org.wordpress.android.ui.reader.services;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.ui.reader.services.ReaderUpdateService.UpdateTask;
+
+import java.util.concurrent.TimeUnit;
+
+public class ReaderUpdateServiceTest extends InstrumentationTestCase {
+    public void testUpdateIsDueAfterInterval() {
+        UpdateTask task = UpdateTask.FOLLOWED_BLOGS;
+        long interval = task.getMinUpdateIntervalMillis();
+        long now = System.currentTimeMillis();
+
+        assertTrue(task.isUpdateDue(0, now));
+        assertTrue(task.isUpdateDue(now - interval, now));
+        assertFalse(task.isUpdateDue(now - interval + 1, now));
+
+        // a last update in the future means the clock changed
+        assertTrue(task.isUpdateDue(now + 1, now));
+    }
+
+    public void testConfiguredInterval() {
+        UpdateTask task = UpdateTask.TAGS;
+        long defaultInterval = task.getMinUpdateIntervalMillis();
+        long now = System.currentTimeMillis();
+        try {
+            task.setMinUpdateInterval(1, TimeUnit.HOURS);
+            assertFalse(task.isUpdateDue(now - TimeUnit.MINUTES.toMillis(30), now));
+
+            task.setMinUpdateInterval(0, TimeUnit.MINUTES);
+            assertTrue(task.isUpdateDue(now, now));
+        } finally {
+            task.setMinUpdateInterval(defaultInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+}
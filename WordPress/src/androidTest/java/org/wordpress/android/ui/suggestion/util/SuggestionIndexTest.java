@@ -0,0 +1,134 @@
+package org.wordpress.android.ui.suggestion.util;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.models.Suggestion;
+import org.wordpress.android.models.Tag;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class SuggestionIndexTest extends InstrumentationTestCase {
+    private static final int BENCHMARK_SUGGESTION_COUNT = 5000;
+
+    private static Suggestion createSuggestion(String userLogin, String displayName) {
+        return new Suggestion(1, userLogin, displayName, "", "");
+    }
+
+    private static List<String> getUserLogins(List<Suggestion> suggestions) {
+        List<String> userLogins = new ArrayList<>();
+        for (Suggestion suggestion : suggestions) {
+            userLogins.add(suggestion.getUserLogin());
+        }
+        return userLogins;
+    }
+
+    private SuggestionIndex<Suggestion> createSuggestionIndex() {
+        return SuggestionIndex.forSuggestions(Arrays.asList(
+                createSuggestion("jsmith", "John Smith"),
+                createSuggestion("mary", "Mary Jane Watson"),
+                createSuggestion("strasse", "Hans Straße"),
+                createSuggestion("irmak", "İrem Yılmaz"),
+                createSuggestion("odysseus", "ΟΔΥΣΣΕΥΣ"),
+                createSuggestion("jose", "José Álvarez"),
+                // decomposed, as some keyboards and servers send it
+                createSuggestion("zoe", "Zoe\u0308 Lambert")));
+    }
+
+    public void testMatchesLoginAndNames() {
+        SuggestionIndex<Suggestion> index = createSuggestionIndex();
+        assertEquals(Arrays.asList("jsmith"), getUserLogins(index.find("js", 10)));
+        assertEquals(Arrays.asList("jsmith", "mary", "jose"), getUserLogins(index.find("J", 10)));
+        assertEquals(Arrays.asList("mary"), getUserLogins(index.find("jane wat", 10)));
+        assertEquals(Arrays.asList("mary"), getUserLogins(index.find("WATSON", 10)));
+        assertTrue(index.find("ane", 10).isEmpty());
+        assertTrue(index.find("", 10).isEmpty());
+    }
+
+    public void testMaxResults() {
+        SuggestionIndex<Suggestion> index = createSuggestionIndex();
+        assertEquals(Arrays.asList("jsmith", "mary"), getUserLogins(index.find("j", 2)));
+    }
+
+    public void testCaseFolding() {
+        SuggestionIndex<Suggestion> index = createSuggestionIndex();
+
+        // ß folds to ss in both directions
+        assertEquals(Arrays.asList("strasse"), getUserLogins(index.find("STRASS", 10)));
+        assertEquals(Arrays.asList("strasse"), getUserLogins(index.find("straß", 10)));
+
+        // Greek capitals match lower case, including a sigma typed at the end of a partial word
+        assertEquals(Arrays.asList("odysseus"), getUserLogins(index.find("οδυσ", 10)));
+        assertEquals(Arrays.asList("odysseus"), getUserLogins(index.find("οδυσσευς", 10)));
+
+        // decomposed and composed accents are the same, in the query and in the indexed names
+        assertEquals(Arrays.asList("jose"), getUserLogins(index.find("JOSÉ", 10)));
+        assertEquals(Arrays.asList("jose"), getUserLogins(index.find("álv", 10)));
+        assertEquals(Arrays.asList("jose"), getUserLogins(index.find("JOSE\u0301", 10)));
+        assertEquals(Arrays.asList("jose"), getUserLogins(index.find("A\u0301lv", 10)));
+        assertEquals(Arrays.asList("zoe"), getUserLogins(index.find("zoë", 10)));
+        assertEquals(Arrays.asList("zoe"), getUserLogins(index.find("ZOE\u0308", 10)));
+        assertTrue(index.find("zoe ", 10).isEmpty());
+
+        // the dotted capital I matches both what it was typed as and a plain i
+        assertEquals(Arrays.asList("irmak"), getUserLogins(index.find("İrem", 10)));
+        assertEquals(Arrays.asList("irmak"), getUserLogins(index.find("irem", 10)));
+        assertEquals(Arrays.asList("irmak"), getUserLogins(index.find("IREM", 10)));
+    }
+
+    public void testCaseFoldingIgnoresDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            // in Turkish, I lower-cases to a dotless ı
+            Locale.setDefault(new Locale("tr", "TR"));
+            SuggestionIndex<Tag> index = SuggestionIndex.forTags(Arrays.asList(
+                    new Tag(1, "ISTANBUL"), new Tag(1, "Izmir Travel")));
+            assertEquals(1, index.find("istanbul", 10).size());
+            assertEquals(1, index.find("iz", 10).size());
+            assertEquals(1, index.find("trav", 10).size());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    public void testFindBenchmark() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_SUGGESTION_COUNT; i++) {
+            suggestions.add(createSuggestion("user" + i, "First" + (i % 100) + " Last" + i));
+        }
+
+        long start = System.nanoTime();
+        SuggestionIndex<Suggestion> index = SuggestionIndex.forSuggestions(suggestions);
+        long buildNanos = System.nanoTime() - start;
+
+        String[] queries = {"u", "user123", "first4", "last49", "nomatch"};
+        start = System.nanoTime();
+        for (String query : queries) {
+            index.find(query, 50);
+        }
+        long findNanos = (System.nanoTime() - start) / queries.length;
+
+        start = System.nanoTime();
+        for (String query : queries) {
+            List<Suggestion> matches = new ArrayList<>();
+            for (Suggestion suggestion : suggestions) {
+                if (suggestion.getUserLogin().toLowerCase().startsWith(query)
+                        || suggestion.getDisplayName().toLowerCase().startsWith(query)
+                        || suggestion.getDisplayName().toLowerCase().contains(" " + query)) {
+                    matches.add(suggestion);
+                }
+            }
+        }
+        long scanNanos = (System.nanoTime() - start) / queries.length;
+
+        assertEquals(50, index.find("u", 50).size());
+        assertEquals(11, index.find("user123", 50).size());
+        AppLog.i(T.TESTS, "suggestion index of " + BENCHMARK_SUGGESTION_COUNT + " built in "
+                + (buildNanos / 1000000) + "ms, find: " + (findNanos / 1000) + "us, scan: "
+                + (scanNanos / 1000) + "us");
+    }
+}
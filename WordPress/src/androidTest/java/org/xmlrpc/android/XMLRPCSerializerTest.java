@@ -0,0 +1,103 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+import android.util.Xml;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.StringUtils;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class XMLRPCSerializerTest extends InstrumentationTestCase {
+    private static final int BENCHMARK_PASSES = 50;
+
+    private static final String PARAGRAPH = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do "
+            + "eiusmod tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam.</p>\n";
+    private static final String EMOJI_PARAGRAPH = "<p>Best trip ever \uD83D\uDE0A\uD83C\uDF0A\uD83C\uDFC4 "
+            + "sunset \uD83C\uDF05 and tacos \uD83C\uDF2E\uD83C\uDF2E \uD83D\uDE03</p>\n";
+
+    public void testPlainStringIsReturnedAsIs() {
+        String text = "Plain text with <b>tags</b>, tabs\tand\r\nline breaks";
+        assertSame(text, XMLRPCSerializer.makeValidInputString(text));
+        assertEquals("", XMLRPCSerializer.makeValidInputString(null));
+    }
+
+    public void testSupplementaryCharacters() {
+        // U+1F60A has a smiley, U+1F30A doesn't
+        assertEquals("smile :) wave &#x1f30a;",
+                XMLRPCSerializer.makeValidInputString("smile \uD83D\uDE0A wave \uD83C\uDF0A"));
+    }
+
+    public void testInvalidCharactersAreDropped() {
+        assertEquals("abcde", XMLRPCSerializer.makeValidInputString("a\u0000b\u0008c\uFFFEd\uD83De"));
+        assertEquals("end", XMLRPCSerializer.makeValidInputString("end\uDE0A"));
+    }
+
+    public void testSerializedOutputIsValid() throws IOException {
+        XmlSerializer serializer = Xml.newSerializer();
+        StringWriter writer = new StringWriter();
+        serializer.setOutput(writer);
+        XMLRPCSerializer.serialize(serializer, "\u0001 emoji \uD83C\uDF2E and \uD83D\uDE03");
+        serializer.flush();
+
+        assertEquals("<string> emoji &amp;#x1f32e; and :D</string>", writer.toString());
+    }
+
+    public void testPlainPostBenchmark() throws IOException {
+        benchmark("plain", buildPost(PARAGRAPH));
+    }
+
+    public void testEmojiPostBenchmark() throws IOException {
+        benchmark("emoji", buildPost(EMOJI_PARAGRAPH));
+    }
+
+    private void benchmark(String name, String post) throws IOException {
+        XmlSerializer tester = Xml.newSerializer();
+        tester.setOutput(new NullOutputStream(), "UTF-8");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_PASSES; i++) {
+            legacyMakeValidInputString(tester, post);
+        }
+        long legacyMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_PASSES; i++) {
+            XMLRPCSerializer.makeValidInputString(post);
+        }
+        long sanitizerMs = (System.nanoTime() - start) / 1000000;
+
+        AppLog.i(T.API, name + " post (" + post.length() + " chars): serializer test " + legacyMs
+                + "ms, single pass " + sanitizerMs + "ms");
+    }
+
+    private static String buildPost(String paragraph) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20 * 1024) {
+            sb.append(paragraph);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * the previous implementation: serialize into a test serializer, and escape then strip on failure
+     */
+    private static String legacyMakeValidInputString(XmlSerializer tester, String input) throws IOException {
+        try {
+            tester.text(input);
+            return input;
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        String noEmojiString = StringUtils.replaceUnicodeSurrogateBlocksWithHTMLEntities(input);
+        try {
+            tester.text(noEmojiString);
+            return noEmojiString;
+        } catch (IllegalArgumentException e) {
+            return StringUtils.stripNonValidXMLCharacters(noEmojiString);
+        }
+    }
+}
@@ -181,7 +181,7 @@ public class GCMMessageService extends GcmListenerService {
             }
 
             bumpPushNotificationsAnalytics(Stat.PUSH_NOTIFICATION_RECEIVED, data, properties);
-            AnalyticsTracker.flush();
+            AnalyticsTracker.flushAndWait();
         }
 
         NotificationCompat.Builder builder;
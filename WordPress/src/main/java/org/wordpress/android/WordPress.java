@@ -11,6 +11,7 @@ import android.net.http.HttpResponseCache;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.StrictMode;
 import android.os.SystemClock;
 import android.text.TextUtils;
@@ -34,6 +35,7 @@ import org.wordpress.android.analytics.AnalyticsTracker;
 import org.wordpress.android.analytics.AnalyticsTracker.Stat;
 import org.wordpress.android.analytics.AnalyticsTrackerMixpanel;
 import org.wordpress.android.analytics.AnalyticsTrackerNosara;
+import org.wordpress.android.datasets.CommentTable;
 import org.wordpress.android.datasets.ReaderDatabase;
 import org.wordpress.android.models.AccountHelper;
 import org.wordpress.android.models.Blog;
@@ -44,8 +46,10 @@ import org.wordpress.android.networking.RestClientUtils;
 import org.wordpress.android.networking.SelfSignedSSLCertsManager;
 import org.wordpress.android.ui.ActivityId;
 import org.wordpress.android.ui.accounts.helpers.UpdateBlogListTask.GenericUpdateBlogListTask;
+import org.wordpress.android.ui.media.MediaImageLoader;
 import org.wordpress.android.ui.notifications.utils.NotificationsUtils;
 import org.wordpress.android.ui.notifications.utils.SimperiumUtils;
+import org.wordpress.android.ui.posts.services.PostUploadService;
 import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.ui.stats.StatsWidgetProvider;
 import org.wordpress.android.ui.stats.datasets.StatsDatabaseHelper;
@@ -61,9 +65,13 @@ import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.HelpshiftHelper;
 import org.wordpress.android.util.NetworkUtils;
 import org.wordpress.android.util.PackageUtils;
-import org.wordpress.android.util.ProfilingUtils;
 import org.wordpress.android.util.RateLimitedTask;
 import org.wordpress.android.util.SqlUtils;
+import org.wordpress.android.util.StartupOrchestrator;
+import org.wordpress.android.util.StartupOrchestrator.Initializer;
+import org.wordpress.android.util.StartupOrchestrator.Phase;
+import org.wordpress.android.util.StartupOrchestrator.ThreadType;
+import org.wordpress.android.util.Trace;
 import org.wordpress.android.util.VolleyUtils;
 import org.wordpress.android.util.WPActivityUtils;
 import org.wordpress.passcodelock.AbstractAppLock;
@@ -101,6 +109,29 @@ public class WordPress extends Application {
     private static Context mContext;
     private static BitmapLruCache mBitmapCache;
 
+    private StartupOrchestrator mStartupOrchestrator;
+
+    // the startup trace is dropped when no activity was resumed by then, such as in a process started for a service
+    private static final String STARTUP_TRACE_NAME = "App Startup";
+    private static final long STARTUP_TRACE_TIMEOUT_MS = 30 * 1000;
+    private static long sStartupTraceToken = -1;
+
+    /**
+     * Ends the startup trace begun in onCreate() and logs the trace summary, only the first call has any
+     * effect. Must be called on the main thread.
+     * @param isStartupComplete false to drop the startup section rather than recording it
+     */
+    public static void endStartupTrace(boolean isStartupComplete) {
+        if (sStartupTraceToken < 0) {
+            return;
+        }
+        if (isStartupComplete) {
+            Trace.endAsyncSection(STARTUP_TRACE_NAME, sStartupTraceToken);
+        }
+        sStartupTraceToken = -1;
+        Trace.logSummary();
+    }
+
     /**
      *  Updates Options for the current blog in background.
      */
@@ -164,55 +195,148 @@ public class WordPress extends Application {
 
         mContext = this;
 
-        ProfilingUtils.start("App Startup");
-        // Enable log recording
+        // Trace startup in debug builds, the section ends when WPMainActivity is first resumed
+        Trace.setEnabled(PackageUtils.isDebugBuild());
+        sStartupTraceToken = Trace.beginAsyncSection();
+        if (sStartupTraceToken >= 0) {
+            new Handler().postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    endStartupTrace(false);
+                }
+            }, STARTUP_TRACE_TIMEOUT_MS);
+        }
+        // Enable log recording, kept across sessions so support logs include what happened before a restart
         AppLog.enableRecording(true);
+        AppLog.enablePersistence(new File(getFilesDir(), "logs"));
         AppLog.i(T.UTILS, "WordPress.onCreate");
 
+        // Crash reporting is set up before anything else so crashes during startup are reported
         if (!PackageUtils.isDebugBuild()) {
             Fabric.with(this, new Crashlytics());
         }
 
         versionName = PackageUtils.getVersionName(this);
-        initWpDb();
-        enableHttpResponseCache(mContext);
-
-        // EventBus setup
-        EventBus.TAG = "WordPress-EVENT";
-        EventBus.builder()
-                .logNoSubscriberMessages(false)
-                .sendNoSubscriberEvent(false)
-                .throwSubscriberException(true)
-                .installDefaultEventBus();
-        EventBus.getDefault().register(this);
 
-        RestClientUtils.setUserAgent(getUserAgent());
+        mStartupOrchestrator = new StartupOrchestrator(startDate);
+        addStartupInitializers(mStartupOrchestrator);
+        mStartupOrchestrator.runOnCreatePhase();
 
-        // Volley networking setup
-        setupVolleyQueue();
-
-        AppLockManager.getInstance().enableDefaultAppLockIfAvailable(this);
-        if (AppLockManager.getInstance().isAppLockFeatureEnabled()) {
-            AppLockManager.getInstance().getCurrentAppLock().setDisabledActivities(
-                    new String[]{"org.wordpress.android.ui.ShareIntentReceiverActivity"});
-        }
-
-        HelpshiftHelper.init(this);
+        trackAppInstallOrUpgrade(mStartupOrchestrator.getOnCreateMs());
+    }
 
-        ApplicationLifecycleMonitor applicationLifecycleMonitor = new ApplicationLifecycleMonitor();
-        registerComponentCallbacks(applicationLifecycleMonitor);
-        registerActivityLifecycleCallbacks(applicationLifecycleMonitor);
+    /*
+     * The rest of the app expects the database, request queue, trackers, etc. to be ready once onCreate()
+     * returns, so these run in the ON_CREATE phase - but the ones which don't depend on each other run in
+     * parallel, and those which aren't needed until the user interacts with the app wait for the first frame.
+     */
+    private void addStartupInitializers(StartupOrchestrator startup) {
+        startup.add(new Initializer("database", Phase.ON_CREATE, ThreadType.BACKGROUND) {
+            @Override
+            public void run() {
+                initWpDb();
+            }
+        });
+        startup.add(new Initializer("http cache", Phase.ON_CREATE, ThreadType.BACKGROUND) {
+            @Override
+            public void run() {
+                enableHttpResponseCache(mContext);
+            }
+        });
+        startup.add(new Initializer("volley", Phase.ON_CREATE, ThreadType.BACKGROUND) {
+            @Override
+            public void run() {
+                setupVolleyQueue();
+            }
+        });
+        startup.add(new Initializer("analytics", Phase.ON_CREATE, ThreadType.BACKGROUND, "database") {
+            @Override
+            public void run() {
+                initAnalytics();
+            }
+        });
+        startup.add(new Initializer("event bus", Phase.ON_CREATE, ThreadType.MAIN) {
+            @Override
+            public void run() {
+                EventBus.TAG = "WordPress-EVENT";
+                EventBus.builder()
+                        .logNoSubscriberMessages(false)
+                        .sendNoSubscriberEvent(false)
+                        .throwSubscriberException(true)
+                        .installDefaultEventBus();
+                EventBus.getDefault().register(WordPress.this);
+            }
+        });
+        startup.add(new Initializer("user agent", Phase.ON_CREATE, ThreadType.MAIN) {
+            @Override
+            public void run() {
+                // getting the default user agent creates a WebView, which must happen on the main thread
+                RestClientUtils.setUserAgent(getUserAgent());
+            }
+        });
+        startup.add(new Initializer("app lock", Phase.ON_CREATE, ThreadType.MAIN) {
+            @Override
+            public void run() {
+                AppLockManager.getInstance().enableDefaultAppLockIfAvailable(WordPress.this);
+                if (AppLockManager.getInstance().isAppLockFeatureEnabled()) {
+                    AppLockManager.getInstance().getCurrentAppLock().setDisabledActivities(
+                            new String[]{"org.wordpress.android.ui.ShareIntentReceiverActivity"});
+                }
+            }
+        });
+        // Helpshift must be installed on the main thread, and before GCMMessageService and
+        // GCMRegistrationIntentService use it, which can happen in a process where no activity is ever drawn
+        startup.add(new Initializer("helpshift", Phase.ON_CREATE, ThreadType.MAIN) {
+            @Override
+            public void run() {
+                HelpshiftHelper.init(WordPress.this);
+            }
+        });
+        startup.add(new Initializer("lifecycle monitor", Phase.ON_CREATE, ThreadType.MAIN) {
+            @Override
+            public void run() {
+                ApplicationLifecycleMonitor applicationLifecycleMonitor = new ApplicationLifecycleMonitor();
+                registerComponentCallbacks(applicationLifecycleMonitor);
+                registerActivityLifecycleCallbacks(applicationLifecycleMonitor);
+            }
+        });
 
-        initAnalytics(SystemClock.elapsedRealtime() - startDate);
+        startup.add(new Initializer("cold start", Phase.AFTER_FIRST_FRAME, ThreadType.BACKGROUND, "analytics") {
+            @Override
+            public void run() {
+                trackColdStart();
+            }
+        });
+        startup.add(new Initializer("comment purge", Phase.AFTER_FIRST_FRAME, ThreadType.BACKGROUND, "database") {
+            @Override
+            public void run() {
+                int numDeleted = CommentTable.purge(wpDB.getDatabase());
+                if (numDeleted > 0) {
+                    AppLog.i(T.COMMENTS, numDeleted + " comments purged");
+                }
+            }
+        });
     }
 
-    private void initAnalytics(final long elapsedTimeOnCreate) {
+    private void initAnalytics() {
         AnalyticsTracker.registerTracker(new AnalyticsTrackerMixpanel(getContext(), BuildConfig.MIXPANEL_TOKEN));
         AnalyticsTracker.registerTracker(new AnalyticsTrackerNosara(getContext()));
         AnalyticsTracker.init(getContext());
         AnalyticsUtils.refreshMetadata();
+    }
 
-        // Track app upgrade and install
+    private void trackColdStart() {
+        long coldStartMs = mStartupOrchestrator.getColdStartMs();
+        if (coldStartMs < 0) {
+            return;
+        }
+        Map<String, Long> properties = new HashMap<String, Long>(2);
+        properties.put("cold_start_time", coldStartMs);
+        properties.put("elapsed_time_on_create", mStartupOrchestrator.getOnCreateMs());
+        AnalyticsTracker.track(Stat.APPLICATION_COLD_STARTED, properties);
+    }
+
+    private void trackAppInstallOrUpgrade(final long elapsedTimeOnCreate) {
         int versionCode = PackageUtils.getVersionCode(getContext());
 
         int oldVersionCode = AppPrefs.getLastAppVersionCode();
@@ -246,6 +370,9 @@ public class WordPress extends Application {
         }
         configureSimperium();
 
+        // Resume post uploads interrupted when the app was killed
+        PostUploadService.resumeQueuedUploads(this);
+
         // Refresh account informations
         if (AccountHelper.isSignedInWordPressDotCom()) {
             AccountHelper.getDefaultAccount().fetchAccountDetails();
@@ -490,6 +617,7 @@ public class WordPress extends Application {
         }
 
         flushHttpCache();
+        MediaImageLoader.reset();
 
         // Analytics resets
         AnalyticsTracker.endSession(false);
@@ -775,6 +903,7 @@ public class WordPress extends Application {
                 deferredInit(activity);
             }
             mFirstActivityResumed = false;
+            mStartupOrchestrator.onActivityResumed(activity);
         }
 
         @Override
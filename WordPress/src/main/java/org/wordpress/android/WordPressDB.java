@@ -8,6 +8,7 @@ import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Base64;
@@ -30,6 +31,7 @@ import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.BlogUtils;
+import org.wordpress.android.util.HtmlUtils;
 import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.StringUtils;
@@ -41,8 +43,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -81,7 +87,7 @@ public class WordPressDB {
     public static final String COLUMN_NAME_VIDEO_PRESS_SHORTCODE = "videoPressShortcode";
     public static final String COLUMN_NAME_UPLOAD_STATE          = "uploadState";
 
-    private static final int DATABASE_VERSION = 40;
+    private static final int DATABASE_VERSION = 45;
 
     private static final String CREATE_TABLE_BLOGS = "create table if not exists accounts (id integer primary key autoincrement, "
             + "url text, blogName text, username text, password text, imagePlacement text, centerThumbnail boolean, fullSizeImage boolean, maxImageWidth text, maxImageWidthId integer);";
@@ -129,6 +135,28 @@ public class WordPressDB {
 
     private static final String POSTS_TABLE = "posts";
 
+    // full-text index of posts and pages - the docid of each row is the id of the post row. the text is
+    // stripped of html before it's indexed so it's written by updatePostSearchIndex() rather than by
+    // triggers, but deleted rows are removed by a trigger since posts are deleted in so many places
+    private static final String POSTS_FTS_TABLE = "posts_fts";
+    private static final String CREATE_TABLE_POSTS_FTS = "create virtual table if not exists " + POSTS_FTS_TABLE
+            + " using fts4(title, excerpt, terms, content);";
+    private static final String CREATE_TRIGGER_POSTS_FTS_DELETE = "create trigger if not exists trg_posts_fts_delete"
+            + " after delete on " + POSTS_TABLE + " begin"
+            + " delete from " + POSTS_FTS_TABLE + " where docid=old.id; end;";
+
+    // post columns the search index is built from
+    private static final String[] POST_SEARCH_COLUMNS =
+            {"id", "title", "mt_excerpt", "mt_keywords", "categories", "description", "mt_text_more"};
+
+    // relative weight of matches in each column of the posts search index when ranking results
+    private static final double[] POST_SEARCH_WEIGHTS = {4.0, 2.0, 2.0, 1.0};
+
+    // posts waiting to be uploaded by PostUploadService, kept here so the queue survives process death
+    private static final String POST_UPLOAD_QUEUE_TABLE = "post_upload_queue";
+    private static final String CREATE_TABLE_POST_UPLOAD_QUEUE = "create table if not exists post_upload_queue ("
+            + "local_post_id integer primary key, local_blog_id integer, date_queued integer);";
+
     private static final String THEMES_TABLE = "themes";
     private static final String CREATE_TABLE_THEMES = "create table if not exists themes ("
             + COLUMN_NAME_ID + " integer primary key autoincrement, "
@@ -142,6 +170,25 @@ public class WordPressDB {
             + Theme.PRICE + " text, "
             + Theme.BLOG_ID + " text, "
             + Theme.IS_CURRENT + " boolean default false);";
+    private static final String CREATE_INDEX_THEMES_BLOG_ID =
+            "create index if not exists idx_themes_blog_id on themes(" + Theme.BLOG_ID + ", " + Theme.ID + ");";
+
+    // full-text index of theme names and authors, the docid of each row is the _id of the theme row
+    private static final String THEMES_FTS_TABLE = "themes_fts";
+    private static final String CREATE_TABLE_THEMES_FTS = "create virtual table if not exists " + THEMES_FTS_TABLE
+            + " using fts4(" + Theme.NAME + ", " + Theme.AUTHOR + ");";
+    private static final String CREATE_TRIGGER_THEMES_FTS_INSERT = "create trigger if not exists trg_themes_fts_insert"
+            + " after insert on " + THEMES_TABLE + " begin"
+            + " insert into " + THEMES_FTS_TABLE + "(docid, " + Theme.NAME + ", " + Theme.AUTHOR + ")"
+            + " values (new." + COLUMN_NAME_ID + ", new." + Theme.NAME + ", new." + Theme.AUTHOR + "); end;";
+    private static final String CREATE_TRIGGER_THEMES_FTS_UPDATE = "create trigger if not exists trg_themes_fts_update"
+            + " after update of " + Theme.NAME + ", " + Theme.AUTHOR + " on " + THEMES_TABLE + " begin"
+            + " delete from " + THEMES_FTS_TABLE + " where docid=old." + COLUMN_NAME_ID + ";"
+            + " insert into " + THEMES_FTS_TABLE + "(docid, " + Theme.NAME + ", " + Theme.AUTHOR + ")"
+            + " values (new." + COLUMN_NAME_ID + ", new." + Theme.NAME + ", new." + Theme.AUTHOR + "); end;";
+    private static final String CREATE_TRIGGER_THEMES_FTS_DELETE = "create trigger if not exists trg_themes_fts_delete"
+            + " after delete on " + THEMES_TABLE + " begin"
+            + " delete from " + THEMES_FTS_TABLE + " where docid=old." + COLUMN_NAME_ID + "; end;";
 
     // categories
     private static final String CREATE_TABLE_CATEGORIES = "create table if not exists cats (id integer primary key autoincrement, "
@@ -213,6 +260,28 @@ public class WordPressDB {
     private static final String ADD_MEDIA_UPLOAD_STATE = "alter table media add uploadState default '';";
     private static final String ADD_MEDIA_VIDEOPRESS_SHORTCODE = "alter table media add videoPressShortcode text default '';";
 
+    // media sync looks up existing items by blog and remote id
+    private static final String CREATE_INDEX_MEDIA_BLOG_MEDIA_ID =
+            "create index if not exists idx_media_blog_media_id on media(blogId, mediaId);";
+
+    // full-text index of media titles, captions and descriptions used for searching the media library - the
+    // docid of each row is the id of the media row, and triggers keep it in step with the media table
+    private static final String MEDIA_FTS_TABLE = "media_fts";
+    private static final String CREATE_TABLE_MEDIA_FTS = "create virtual table if not exists " + MEDIA_FTS_TABLE
+            + " using fts4(title, caption, description);";
+    private static final String CREATE_TRIGGER_MEDIA_FTS_INSERT = "create trigger if not exists trg_media_fts_insert"
+            + " after insert on media begin"
+            + " insert into " + MEDIA_FTS_TABLE + "(docid, title, caption, description)"
+            + " values (new.id, new.title, new.caption, new.description); end;";
+    private static final String CREATE_TRIGGER_MEDIA_FTS_UPDATE = "create trigger if not exists trg_media_fts_update"
+            + " after update of title, caption, description on media begin"
+            + " delete from " + MEDIA_FTS_TABLE + " where docid=old.id;"
+            + " insert into " + MEDIA_FTS_TABLE + "(docid, title, caption, description)"
+            + " values (new.id, new.title, new.caption, new.description); end;";
+    private static final String CREATE_TRIGGER_MEDIA_FTS_DELETE = "create trigger if not exists trg_media_fts_delete"
+            + " after delete on media begin"
+            + " delete from " + MEDIA_FTS_TABLE + " where docid=old.id; end;";
+
     // add hidden flag to blog settings (accounts)
     private static final String ADD_BLOGS_HIDDEN_FLAG = "alter table accounts add isHidden boolean default 0;";
 
@@ -234,10 +303,14 @@ public class WordPressDB {
         // Create tables if they don't exist
         db.execSQL(CREATE_TABLE_BLOGS);
         db.execSQL(CREATE_TABLE_POSTS);
+        db.execSQL(CREATE_TABLE_POSTS_FTS);
         db.execSQL(CREATE_TABLE_CATEGORIES);
         db.execSQL(CREATE_TABLE_QUICKPRESS_SHORTCUTS);
         db.execSQL(CREATE_TABLE_MEDIA);
+        db.execSQL(CREATE_TABLE_MEDIA_FTS);
         db.execSQL(CREATE_TABLE_THEMES);
+        db.execSQL(CREATE_TABLE_THEMES_FTS);
+        db.execSQL(CREATE_TABLE_POST_UPLOAD_QUEUE);
         CommentTable.createTables(db);
         SuggestionTable.createTables(db);
 
@@ -387,7 +460,46 @@ public class WordPressDB {
             case 39:
                 AccountTable.migrationAddFirstNameLastNameAboutMeFields(db);
                 currentVersion++;
+            case 40:
+                // no longer upgrades anything, the media columns it added were removed
+                currentVersion++;
+            case 41:
+                // count the unmoderated comments added before the counts table existed
+                CommentTable.rebuildCommentCounts(db);
+                currentVersion++;
+            case 42:
+                // index the media added before the search index existed
+                db.execSQL("INSERT INTO " + MEDIA_FTS_TABLE + "(docid, title, caption, description)"
+                        + " SELECT id, title, caption, description FROM " + MEDIA_TABLE);
+                currentVersion++;
+            case 43:
+                // index the posts added before the search index existed
+                db.beginTransaction();
+                try {
+                    updatePostSearchIndex(null, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                currentVersion++;
+            case 44:
+                // index the themes added before the search index existed
+                db.execSQL("INSERT INTO " + THEMES_FTS_TABLE + "(docid, " + Theme.NAME + ", " + Theme.AUTHOR + ")"
+                        + " SELECT " + COLUMN_NAME_ID + ", " + Theme.NAME + ", " + Theme.AUTHOR + " FROM " + THEMES_TABLE);
+                currentVersion++;
         }
+
+        // these rely on media columns added by the upgrades above
+        db.execSQL(CREATE_INDEX_MEDIA_BLOG_MEDIA_ID);
+        db.execSQL(CREATE_TRIGGER_MEDIA_FTS_INSERT);
+        db.execSQL(CREATE_TRIGGER_MEDIA_FTS_UPDATE);
+        db.execSQL(CREATE_TRIGGER_MEDIA_FTS_DELETE);
+        db.execSQL(CREATE_TRIGGER_POSTS_FTS_DELETE);
+        db.execSQL(CREATE_INDEX_THEMES_BLOG_ID);
+        db.execSQL(CREATE_TRIGGER_THEMES_FTS_INSERT);
+        db.execSQL(CREATE_TRIGGER_THEMES_FTS_UPDATE);
+        db.execSQL(CREATE_TRIGGER_THEMES_FTS_DELETE);
+
         db.setVersion(DATABASE_VERSION);
     }
 
@@ -428,6 +540,8 @@ public class WordPressDB {
     private void resetThemeTable() {
         db.execSQL(DROP_TABLE_PREFIX + THEMES_TABLE);
         db.execSQL(CREATE_TABLE_THEMES);
+        // dropping the table doesn't fire the delete trigger
+        db.delete(THEMES_FTS_TABLE, null, null);
     }
 
     private void migratePreferencesToAccountTable(Context context) {
@@ -738,6 +852,7 @@ public class WordPressDB {
         db.delete(MEDIA_TABLE, null, null);
         db.delete(CATEGORIES_TABLE, null, null);
         db.delete(CommentTable.COMMENTS_TABLE, null, null);
+        db.delete(POST_UPLOAD_QUEUE_TABLE, null, null);
     }
 
     public boolean hasDotOrgBlogForUsernameAndUrl(String username, String url) {
@@ -963,6 +1078,7 @@ public class WordPressDB {
     // Deletes all posts for the given blogId
     public void deleteAllPostsForLocalTableBlogId(int localBlogId) {
         db.delete(POSTS_TABLE, "blogID=?", new String[]{String.valueOf(localBlogId)});
+        db.delete(POST_UPLOAD_QUEUE_TABLE, "local_blog_id=?", new String[]{String.valueOf(localBlogId)});
     }
 
     public Object[] arrayListToArray(Object array) {
@@ -1096,8 +1212,13 @@ public class WordPressDB {
 
                     // only perform insert if update didn't match any rows, and only then if we're
                     // overwriting local changes or local changes for this post don't exist
-                    if (updateResult == 0 && (overwriteLocalChanges || !postHasLocalChanges(localBlogId, postID))) {
-                        db.insert(POSTS_TABLE, null, values);
+                    if (updateResult > 0) {
+                        updatePostSearchIndex(whereClause, args);
+                    } else if (overwriteLocalChanges || !postHasLocalChanges(localBlogId, postID)) {
+                        long id = db.insert(POSTS_TABLE, null, values);
+                        if (id != -1) {
+                            updatePostSearchIndex("id=?", new String[]{Long.toString(id)});
+                        }
                     }
                 }
 
@@ -1197,6 +1318,9 @@ public class WordPressDB {
             values.put("wp_post_thumbnail", post.getFeaturedImageId());
 
             result = db.insert(POSTS_TABLE, null, values);
+            if (result != -1) {
+                updatePostSearchIndex("id=?", new String[]{Long.toString(result)});
+            }
 
             if (result >= 0 && post.isLocalDraft()) {
                 post.setLocalTablePostId(result);
@@ -1207,42 +1331,179 @@ public class WordPressDB {
     }
 
     public int updatePost(Post post) {
-        int result = 0;
-        if (post != null) {
-            ContentValues values = new ContentValues();
-            values.put("title", post.getTitle());
-            values.put("date_created_gmt", post.getDate_created_gmt());
-            values.put("description", post.getDescription());
-            values.put("mt_text_more", post.getMoreText());
-            values.put("postid", post.getRemotePostId());
+        if (post == null) {
+            return 0;
+        }
+        return updatePostValues(post, getPostUpdateValues(post));
+    }
 
-            JSONArray categoriesJsonArray = post.getJSONCategories();
-            if (categoriesJsonArray != null) {
-                values.put("categories", categoriesJsonArray.toString());
+    /*
+     * returns the column values updatePost() writes for the passed post, callers can diff these
+     * against the values they last saved to only write the columns which changed
+     */
+    public ContentValues getPostUpdateValues(Post post) {
+        ContentValues values = new ContentValues();
+        values.put("title", post.getTitle());
+        values.put("date_created_gmt", post.getDate_created_gmt());
+        values.put("description", post.getDescription());
+        values.put("mt_text_more", post.getMoreText());
+        values.put("postid", post.getRemotePostId());
+
+        JSONArray categoriesJsonArray = post.getJSONCategories();
+        if (categoriesJsonArray != null) {
+            values.put("categories", categoriesJsonArray.toString());
+        }
+
+        values.put("localDraft", post.isLocalDraft());
+        values.put("mediaPaths", post.getMediaPaths());
+        values.put("mt_keywords", post.getKeywords());
+        values.put("wp_password", post.getPassword());
+        values.put("post_status", post.getPostStatus());
+        values.put("isPage", post.isPage());
+        values.put("wp_post_format", post.getPostFormat());
+        values.put("isLocalChange", post.isLocalChange());
+        values.put("mt_excerpt", post.getPostExcerpt());
+        values.put("wp_post_thumbnail", post.getFeaturedImageId());
+
+        putPostLocation(post, values);
+
+        return values;
+    }
+
+    /*
+     * writes only the passed column values to the row of the passed post
+     */
+    public int updatePostValues(Post post, ContentValues values) {
+        if (post == null || values == null || values.size() == 0) {
+            return 0;
+        }
+        String whereClause = "blogID=? AND id=? AND isPage=?";
+        String[] args = {
+                String.valueOf(post.getLocalTableBlogId()),
+                String.valueOf(post.getLocalTablePostId()),
+                String.valueOf(SqlUtils.boolToSql(post.isPage()))
+        };
+        int result = db.update(POSTS_TABLE, values, whereClause, args);
+        if (result > 0 && hasPostSearchColumn(values)) {
+            updatePostSearchIndex(whereClause, args);
+        }
+        return result;
+    }
+
+    private static boolean hasPostSearchColumn(ContentValues values) {
+        for (String column : POST_SEARCH_COLUMNS) {
+            if (values.containsKey(column)) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            values.put("localDraft", post.isLocalDraft());
-            values.put("mediaPaths", post.getMediaPaths());
-            values.put("mt_keywords", post.getKeywords());
-            values.put("wp_password", post.getPassword());
-            values.put("post_status", post.getPostStatus());
-            values.put("isPage", post.isPage());
-            values.put("wp_post_format", post.getPostFormat());
-            values.put("isLocalChange", post.isLocalChange());
-            values.put("mt_excerpt", post.getPostExcerpt());
-            values.put("wp_post_thumbnail", post.getFeaturedImageId());
+    /*
+     * (re)indexes the posts matching the passed where clause, or all posts if it's null
+     */
+    private void updatePostSearchIndex(String whereClause, String[] args) {
+        Cursor c = db.query(POSTS_TABLE, POST_SEARCH_COLUMNS, whereClause, args, null, null, null);
+        try {
+            while (c.moveToNext()) {
+                String docId = c.getString(0);
+                String body = StringUtils.notNullStr(c.getString(5)) + "\n" + StringUtils.notNullStr(c.getString(6));
+                ContentValues values = new ContentValues();
+                values.put("docid", c.getLong(0));
+                values.put("title", c.getString(1));
+                values.put("excerpt", c.getString(2));
+                // tags and the json array of category names - the tokenizer skips the json punctuation
+                values.put("terms", StringUtils.notNullStr(c.getString(3)) + " " + StringUtils.notNullStr(c.getString(4)));
+                values.put("content", HtmlUtils.fastStripHtml(body));
+                db.delete(POSTS_FTS_TABLE, "docid=?", new String[]{docId});
+                db.insert(POSTS_FTS_TABLE, null, values);
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+    }
 
-            putPostLocation(post, values);
+    /**
+     * Searches the title, excerpt, tags, categories and text of the blog's posts or pages and returns
+     * the requested page of matches, best matches first
+     */
+    public PostsListPostList searchPostsListPosts(int localBlogId, boolean loadPages, String searchTerm,
+                                                  int offset, int limit) {
+        PostsListPostList listPosts = new PostsListPostList();
+        String match = getSearchMatch(searchTerm);
+        if (match == null) {
+            return listPosts;
+        }
 
-            result = db.update(POSTS_TABLE, values, "blogID=? AND id=? AND isPage=?",
-                    new String[]{
-                            String.valueOf(post.getLocalTableBlogId()),
-                            String.valueOf(post.getLocalTablePostId()),
-                            String.valueOf(SqlUtils.boolToSql(post.isPage()))
-                    });
+        // score each match from the hit counts reported by matchinfo(), then load only the requested page
+        final Map<Long, Double> scores = new HashMap<>();
+        String sql = "SELECT docid, matchinfo(" + POSTS_FTS_TABLE + ", 'pcx') FROM " + POSTS_FTS_TABLE
+                + " WHERE " + POSTS_FTS_TABLE + " MATCH ? AND docid IN"
+                + " (SELECT id FROM " + POSTS_TABLE + " WHERE blogID=? AND isPage=?)";
+        String[] args = {match, Integer.toString(localBlogId), Integer.toString(loadPages ? 1 : 0)};
+        Cursor c = db.rawQuery(sql, args);
+        try {
+            while (c.moveToNext()) {
+                scores.put(c.getLong(0), getPostSearchScore(c.getBlob(1)));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+        if (offset >= scores.size()) {
+            return listPosts;
         }
 
-        return (result);
+        List<Long> ids = new ArrayList<>(scores.keySet());
+        Collections.sort(ids, new Comparator<Long>() {
+            @Override
+            public int compare(Long lhs, Long rhs) {
+                int result = Double.compare(scores.get(rhs), scores.get(lhs));
+                // most recently added first when the scores are equal
+                return result != 0 ? result : rhs.compareTo(lhs);
+            }
+        });
+        ids = ids.subList(offset, Math.min(offset + limit, ids.size()));
+
+        Map<Long, Post> posts = new HashMap<>();
+        c = db.query(POSTS_TABLE, null, "id IN (" + TextUtils.join(",", ids) + ")", null, null, null, null);
+        try {
+            while (c.moveToNext()) {
+                Post post = getPostFromCursor(c);
+                posts.put(post.getLocalTablePostId(), post);
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+        for (Long id : ids) {
+            Post post = posts.get(id);
+            if (post != null) {
+                listPosts.add(new PostsListPost(post));
+            }
+        }
+        return listPosts;
+    }
+
+    /*
+     * scores a match from its matchinfo 'pcx' blob - the number of phrases and columns, followed by three
+     * counts for each phrase in each column: hits in this row, hits in all rows and rows with hits. hits
+     * count for less the more common the phrase is in that column, and are weighted by the column
+     */
+    private static double getPostSearchScore(byte[] matchInfo) {
+        IntBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int numPhrases = buffer.get(0);
+        int numColumns = buffer.get(1);
+        double score = 0;
+        for (int phrase = 0; phrase < numPhrases; phrase++) {
+            for (int column = 0; column < numColumns && column < POST_SEARCH_WEIGHTS.length; column++) {
+                int index = 2 + 3 * (phrase * numColumns + column);
+                int hitsInRow = buffer.get(index);
+                int hitsInAllRows = buffer.get(index + 1);
+                if (hitsInRow > 0) {
+                    score += POST_SEARCH_WEIGHTS[column] * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
     }
 
     private void putPostLocation(Post post, ContentValues values) {
@@ -1277,6 +1538,36 @@ public class WordPressDB {
         }
     }
 
+    // Post upload queue
+
+    /** Add a post to the persistent upload queue, a post already in the queue keeps its position **/
+    public void addPostToUploadQueue(Post post) {
+        ContentValues values = new ContentValues();
+        values.put("local_post_id", post.getLocalTablePostId());
+        values.put("local_blog_id", post.getLocalTableBlogId());
+        values.put("date_queued", System.currentTimeMillis());
+        db.insertWithOnConflict(POST_UPLOAD_QUEUE_TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    public void removePostFromUploadQueue(long localTablePostId) {
+        db.delete(POST_UPLOAD_QUEUE_TABLE, "local_post_id=?", new String[]{String.valueOf(localTablePostId)});
+    }
+
+    /** Get the local ids of the queued posts, oldest first **/
+    public List<Long> getPostUploadQueue() {
+        List<Long> postIds = new ArrayList<Long>();
+        Cursor c = db.query(POST_UPLOAD_QUEUE_TABLE, new String[]{"local_post_id"}, null, null, null, null,
+                "date_queued");
+        try {
+            while (c.moveToNext()) {
+                postIds.add(c.getLong(0));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+        return postIds;
+    }
+
     // Categories
     public boolean insertCategory(int id, int wp_id, int parent_id, String category_name) {
         ContentValues values = new ContentValues();
@@ -1479,26 +1770,31 @@ public class WordPressDB {
         c.close();
     }
 
-    public int getUnmoderatedCommentCount(int blogID) {
-        int commentCount = 0;
-
-        Cursor c = db
-                .rawQuery(
-                        "select count(*) from comments where blogID=? AND status='hold'",
-                        new String[]{String.valueOf(blogID)});
-        int numRows = c.getCount();
-        c.moveToFirst();
-
-        if (numRows > 0) {
-            commentCount = c.getInt(0);
+    public void saveMediaFile(MediaFile mf) {
+        synchronized (this) {
+            saveMediaFileValues(mf);
         }
+    }
 
-        c.close();
-
-        return commentCount;
+    /**
+     * Saves a page of media files from the server in a single transaction, inserting new ones and updating
+     * existing ones
+     */
+    public void saveMediaFiles(List<MediaFile> mediaFiles) {
+        synchronized (this) {
+            db.beginTransaction();
+            try {
+                for (MediaFile mf : mediaFiles) {
+                    saveMediaFileValues(mf);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
     }
 
-    public void saveMediaFile(MediaFile mf) {
+    private void saveMediaFileValues(MediaFile mf) {
         ContentValues values = new ContentValues();
         values.put(COLUMN_NAME_POST_ID, mf.getPostID());
         values.put(COLUMN_NAME_FILE_PATH, mf.getFilePath());
@@ -1524,30 +1820,27 @@ public class WordPressDB {
         else
             values.putNull(COLUMN_NAME_UPLOAD_STATE);
 
-        synchronized (this) {
-            int result = 0;
-            boolean isMarkedForDelete = false;
-            if (mf.getMediaId() != null) {
-                Cursor cursor = db.rawQuery("SELECT uploadState FROM " + MEDIA_TABLE + " WHERE mediaId=?",
-                        new String[]{StringUtils.notNullStr(mf.getMediaId())});
-                if (cursor != null && cursor.moveToFirst()) {
-                    isMarkedForDelete = "delete".equals(cursor.getString(0));
-                    cursor.close();
-                }
-
-                if (!isMarkedForDelete)
-                    result = db.update(MEDIA_TABLE, values, "blogId=? AND mediaId=?",
-                            new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
+        int result = 0;
+        boolean isMarkedForDelete = false;
+        if (mf.getMediaId() != null) {
+            Cursor cursor = db.rawQuery("SELECT uploadState FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId=?",
+                    new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
+            if (cursor != null && cursor.moveToFirst()) {
+                isMarkedForDelete = "delete".equals(cursor.getString(0));
             }
+            SqlUtils.closeCursor(cursor);
 
-            if (result == 0 && !isMarkedForDelete) {
-                result = db.update(MEDIA_TABLE, values, "postID=? AND filePath=?",
-                        new String[]{String.valueOf(mf.getPostID()), StringUtils.notNullStr(mf.getFilePath())});
-                if (result == 0)
-                    db.insert(MEDIA_TABLE, null, values);
-            }
+            if (!isMarkedForDelete)
+                result = db.update(MEDIA_TABLE, values, "blogId=? AND mediaId=?",
+                        new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
         }
 
+        if (result == 0 && !isMarkedForDelete) {
+            result = db.update(MEDIA_TABLE, values, "postID=? AND filePath=?",
+                    new String[]{String.valueOf(mf.getPostID()), StringUtils.notNullStr(mf.getFilePath())});
+            if (result == 0)
+                db.insert(MEDIA_TABLE, null, values);
+        }
     }
 
     /** For a given blogId, get the first media files **/
@@ -1563,13 +1856,35 @@ public class WordPressDB {
                 + "(uploadState IS NULL OR uploadState IN ('uploaded', 'queued', 'failed', 'uploading')) ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[] { blogId, "uploading" });
     }
 
-    /** For a given blogId, get all the media files with searchTerm **/
+    /** For a given blogId, get all the media files whose title, caption or description match searchTerm **/
     public Cursor getMediaFilesForBlog(String blogId, String searchTerm) {
-        // Currently on WordPress.com, the media search engine only searches the title.
-        // We'll match this.
+        String match = getSearchMatch(searchTerm);
+        if (match == null) {
+            return getMediaFilesForBlog(blogId);
+        }
+        return db.rawQuery("SELECT id as _id, * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND "
+                + "(uploadState IS NULL OR uploadState ='uploaded') AND id IN (SELECT docid FROM " + MEDIA_FTS_TABLE
+                + " WHERE " + MEDIA_FTS_TABLE + " MATCH ?) ORDER BY date_created_gmt DESC", new String[]{blogId, match});
+    }
 
-        String term = searchTerm.toLowerCase(Locale.getDefault());
-        return db.rawQuery("SELECT id as _id, * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND title LIKE ? AND (uploadState IS NULL OR uploadState ='uploaded') ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[]{blogId, "%" + term + "%", "uploading"});
+    /*
+     * turns what the user typed into an FTS query which matches rows containing words starting with each
+     * of the typed words, returns null if nothing searchable was typed
+     */
+    private static String getSearchMatch(String searchTerm) {
+        if (searchTerm == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : searchTerm.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(word).append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
     }
 
     /** For a given blogId, get the media file with the given media_id **/
@@ -1785,17 +2100,41 @@ public class WordPressDB {
         }
     }
 
-    /** Mark media files as deleted without actually deleting them **/
-    public void setMediaFilesMarkedForDeleted(String blogId) {
-        // This is for syncing our files to the server:
-        // when we pull from the server, everything that is still 'deleted'
-        // was not downloaded from the server and can be removed via deleteFilesMarkedForDeleted()
-        updateMediaUploadState(blogId, null, "deleted");
-    }
+    /**
+     * Deletes the blog's synced media files which aren't in the passed set of remote ids - used after a full
+     * pass over the blog's media library to remove items deleted on the server. Items marked "deleted" after
+     * a failed server delete are removed too once the server no longer has them. Items being uploaded or
+     * waiting to be deleted are kept. Returns the number of files deleted.
+     */
+    public int deleteMediaFilesNotInSet(String blogId, Set<String> mediaIds) {
+        List<String> deletedIds = new ArrayList<>();
+        Cursor c = db.rawQuery("SELECT mediaId FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND "
+                + "(uploadState IS NULL OR uploadState IN ('uploaded', 'deleted'))", new String[]{blogId});
+        try {
+            while (c.moveToNext()) {
+                if (!mediaIds.contains(c.getString(0))) {
+                    deletedIds.add(c.getString(0));
+                }
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+        if (deletedIds.isEmpty()) {
+            return 0;
+        }
 
-    /** Delete files marked as deleted **/
-    public void deleteFilesMarkedForDeleted(String blogId) {
-        db.delete(MEDIA_TABLE, "blogId=? AND uploadState=?", new String[]{blogId, "deleted"});
+        synchronized (this) {
+            db.beginTransaction();
+            try {
+                for (String mediaId : deletedIds) {
+                    db.delete(MEDIA_TABLE, "blogId=? AND mediaId=?", new String[]{blogId, mediaId});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        return deletedIds.size();
     }
 
     /** Get a media file scheduled for delete for a given blogId **/
@@ -1867,8 +2206,8 @@ public class WordPressDB {
             int result = db.update(
                     THEMES_TABLE,
                     values,
-                    Theme.ID + "=?",
-                    new String[]{theme.getId()});
+                    Theme.BLOG_ID + "=? AND " + Theme.ID + "=?",
+                    new String[]{theme.getBlogId(), theme.getId()});
             if (result == 0)
                 returnValue = db.insert(THEMES_TABLE, null, values) > 0;
         }
@@ -1876,6 +2215,64 @@ public class WordPressDB {
         return (returnValue);
     }
 
+    /**
+     * Saves a list of themes fetched from the server in a single transaction, updating the ones which
+     * already exist and inserting the rest - the current theme flag of existing themes is left alone
+     * since it's set separately by setCurrentTheme()
+     */
+    public void saveThemes(List<Theme> themes) {
+        synchronized (this) {
+            SQLiteStatement updateStmt = db.compileStatement("UPDATE " + THEMES_TABLE + " SET "
+                    + Theme.AUTHOR + "=?1, "
+                    + Theme.SCREENSHOT + "=?2, "
+                    + Theme.AUTHOR_URI + "=?3, "
+                    + Theme.DEMO_URI + "=?4, "
+                    + Theme.NAME + "=?5, "
+                    + Theme.STYLESHEET + "=?6, "
+                    + Theme.PRICE + "=?7"
+                    + " WHERE " + Theme.BLOG_ID + "=?8 AND " + Theme.ID + "=?9");
+            SQLiteStatement insertStmt = db.compileStatement("INSERT INTO " + THEMES_TABLE + " ("
+                    + Theme.AUTHOR + ", "
+                    + Theme.SCREENSHOT + ", "
+                    + Theme.AUTHOR_URI + ", "
+                    + Theme.DEMO_URI + ", "
+                    + Theme.NAME + ", "
+                    + Theme.STYLESHEET + ", "
+                    + Theme.PRICE + ", "
+                    + Theme.BLOG_ID + ", "
+                    + Theme.ID + ", "
+                    + Theme.IS_CURRENT + ") VALUES (?1,?2,?3,?4,?5,?6,?7,?8,?9,?10)");
+            db.beginTransaction();
+            try {
+                for (Theme theme : themes) {
+                    bindThemeValues(updateStmt, theme);
+                    if (updateStmt.executeUpdateDelete() == 0) {
+                        bindThemeValues(insertStmt, theme);
+                        insertStmt.bindLong(10, SqlUtils.boolToSql(theme.getIsCurrent()));
+                        insertStmt.executeInsert();
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                SqlUtils.closeStatement(updateStmt);
+                SqlUtils.closeStatement(insertStmt);
+            }
+        }
+    }
+
+    private static void bindThemeValues(SQLiteStatement stmt, Theme theme) {
+        stmt.bindString(1, StringUtils.notNullStr(theme.getAuthor()));
+        stmt.bindString(2, StringUtils.notNullStr(theme.getScreenshot()));
+        stmt.bindString(3, StringUtils.notNullStr(theme.getAuthorURI()));
+        stmt.bindString(4, StringUtils.notNullStr(theme.getDemoURI()));
+        stmt.bindString(5, StringUtils.notNullStr(theme.getName()));
+        stmt.bindString(6, StringUtils.notNullStr(theme.getStylesheet()));
+        stmt.bindString(7, StringUtils.notNullStr(theme.getPrice()));
+        stmt.bindString(8, StringUtils.notNullStr(theme.getBlogId()));
+        stmt.bindString(9, StringUtils.notNullStr(theme.getId()));
+    }
+
     public Cursor getThemesAll(String blogId) {
         String[] columns = {COLUMN_NAME_ID, Theme.ID, Theme.NAME, Theme.SCREENSHOT, Theme.PRICE, Theme.IS_CURRENT};
         String[] selection = {blogId};
@@ -1924,11 +2321,19 @@ public class WordPressDB {
         return getThemesAll(blogId).getCount();
     }
 
+    /*
+     * returns the blog's themes with a word in their name or author starting with each word in searchTerm
+     */
     public Cursor getThemes(String blogId, String searchTerm) {
         String[] columns = {COLUMN_NAME_ID, Theme.ID, Theme.NAME, Theme.SCREENSHOT, Theme.PRICE, Theme.IS_CURRENT};
-        String[] selection = {blogId, "%" + searchTerm + "%"};
+        String match = getSearchMatch(searchTerm);
+        if (match == null) {
+            return getThemesAll(blogId);
+        }
+        String[] selection = {blogId, match};
 
-        return db.query(THEMES_TABLE, columns, Theme.BLOG_ID + "=? AND " + Theme.NAME + " LIKE ?", selection, null, null, null);
+        return db.query(THEMES_TABLE, columns, Theme.BLOG_ID + "=? AND " + COLUMN_NAME_ID + " IN (SELECT docid FROM "
+                + THEMES_FTS_TABLE + " WHERE " + THEMES_FTS_TABLE + " MATCH ?)", selection, null, null, null);
     }
 
     public Theme getTheme(String blogId, String themeId) {
@@ -5,6 +5,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
 import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
@@ -14,12 +15,20 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * replaces the comments table used in versions prior to 2.6.1, which didn't use a primary key
  * and missed a few important fields
  */
 public class CommentTable {
     public static final String COMMENTS_TABLE = "comments";
+    private static final String COMMENT_COUNTS_TABLE = "comment_counts";
+
+    private static final String UNMODERATED_STATUS = "hold";
 
     public static void createTables(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE IF NOT EXISTS " + COMMENTS_TABLE + " ("
@@ -36,10 +45,71 @@ public class CommentTable {
                  + "    profile_image_url   TEXT,"
                  + "    PRIMARY KEY (blog_id, post_id, comment_id)"
                  + " );");
+
+        // the comment list is ordered by date, and the unmoderated count is by status
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_comments_blog_published ON " + COMMENTS_TABLE + "(blog_id, published)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_comments_blog_status ON " + COMMENTS_TABLE + "(blog_id, status)");
+
+        // number of unmoderated comments in each blog, kept up to date by the triggers below so
+        // it can be read without counting comments. note that the triggers can't use INSERT OR IGNORE
+        // since the outer statement's INSERT OR REPLACE would override it and reset the count
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + COMMENT_COUNTS_TABLE + " ("
+                 + "    blog_id             INTEGER PRIMARY KEY,"
+                 + "    unmoderated_count   INTEGER DEFAULT 0"
+                 + " );");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_comments_insert AFTER INSERT ON " + COMMENTS_TABLE
+                 + " WHEN NEW.status='" + UNMODERATED_STATUS + "'"
+                 + " BEGIN"
+                 + "    INSERT INTO " + COMMENT_COUNTS_TABLE + " (blog_id) SELECT NEW.blog_id"
+                 + "     WHERE NOT EXISTS (SELECT 1 FROM " + COMMENT_COUNTS_TABLE + " WHERE blog_id = NEW.blog_id);"
+                 + "    UPDATE " + COMMENT_COUNTS_TABLE + " SET unmoderated_count = unmoderated_count + 1"
+                 + "     WHERE blog_id = NEW.blog_id;"
+                 + " END;");
+
+        // INSERT OR REPLACE removes the existing row without firing the delete trigger, so the
+        // existing row is accounted for before it's replaced
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_comments_replace BEFORE INSERT ON " + COMMENTS_TABLE
+                 + " BEGIN"
+                 + "    UPDATE " + COMMENT_COUNTS_TABLE + " SET unmoderated_count = unmoderated_count - 1"
+                 + "     WHERE blog_id = NEW.blog_id AND EXISTS (SELECT 1 FROM " + COMMENTS_TABLE
+                 + "     WHERE blog_id = NEW.blog_id AND post_id = NEW.post_id AND comment_id = NEW.comment_id"
+                 + "     AND status='" + UNMODERATED_STATUS + "');"
+                 + " END;");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_comments_delete AFTER DELETE ON " + COMMENTS_TABLE
+                 + " WHEN OLD.status='" + UNMODERATED_STATUS + "'"
+                 + " BEGIN"
+                 + "    UPDATE " + COMMENT_COUNTS_TABLE + " SET unmoderated_count = unmoderated_count - 1"
+                 + "     WHERE blog_id = OLD.blog_id;"
+                 + " END;");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_comments_update AFTER UPDATE OF status ON " + COMMENTS_TABLE
+                 + " WHEN (OLD.status='" + UNMODERATED_STATUS + "') <> (NEW.status='" + UNMODERATED_STATUS + "')"
+                 + " BEGIN"
+                 + "    INSERT INTO " + COMMENT_COUNTS_TABLE + " (blog_id) SELECT NEW.blog_id"
+                 + "     WHERE NOT EXISTS (SELECT 1 FROM " + COMMENT_COUNTS_TABLE + " WHERE blog_id = NEW.blog_id);"
+                 + "    UPDATE " + COMMENT_COUNTS_TABLE + " SET unmoderated_count = unmoderated_count"
+                 + "     + (CASE WHEN NEW.status='" + UNMODERATED_STATUS + "' THEN 1 ELSE -1 END)"
+                 + "     WHERE blog_id = NEW.blog_id;"
+                 + " END;");
     }
 
     private static void dropTables(SQLiteDatabase db) {
+        // dropping the comments table also drops its indexes and triggers
         db.execSQL("DROP TABLE IF EXISTS " + COMMENTS_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + COMMENT_COUNTS_TABLE);
+    }
+
+    /*
+     * recalculates the unmoderated counts from the comments - only needed when the counts table
+     * is added to an existing database
+     */
+    public static void rebuildCommentCounts(SQLiteDatabase db) {
+        db.delete(COMMENT_COUNTS_TABLE, null, null);
+        db.execSQL("INSERT INTO " + COMMENT_COUNTS_TABLE + " (blog_id, unmoderated_count)"
+                 + " SELECT blog_id, COUNT(*) FROM " + COMMENTS_TABLE
+                 + " WHERE status='" + UNMODERATED_STATUS + "' GROUP BY blog_id");
     }
 
     public static void reset(SQLiteDatabase db) {
@@ -56,10 +126,10 @@ public class CommentTable {
     }
 
     /*
-     * purge comments attached to blogs that no longer exist, and remove older comments
-     * TODO: call after hiding or deleting blogs
+     * purge comments attached to blogs that no longer exist, and remove older comments from
+     * blogs which have more than the max
      */
-    private static final int MAX_COMMENTS = 1000;
+    private static final int MAX_COMMENTS_PER_BLOG = 500;
     public static int purge(SQLiteDatabase db) {
         int numDeleted = 0;
 
@@ -67,14 +137,24 @@ public class CommentTable {
         String sql = " blog_id NOT IN (SELECT DISTINCT id FROM " + WordPressDB.BLOGS_TABLE
                    + " WHERE isHidden = 0)";
         numDeleted += db.delete(COMMENTS_TABLE, sql, null);
+        db.delete(COMMENT_COUNTS_TABLE, " blog_id NOT IN (SELECT DISTINCT blog_id FROM " + COMMENTS_TABLE + ")", null);
 
-        // get rid of older comments if we've reached the max
-        int numExisting = (int)SqlUtils.getRowCount(db, COMMENTS_TABLE);
-        if (numExisting > MAX_COMMENTS) {
-            int numToPurge = numExisting - MAX_COMMENTS;
-            sql = " comment_id IN (SELECT DISTINCT comment_id FROM " + COMMENTS_TABLE
-                + " ORDER BY published LIMIT " + Integer.toString(numToPurge) + ")";
-            numDeleted += db.delete(COMMENTS_TABLE, sql, null);
+        // get rid of older comments in blogs which have reached the max
+        List<Integer> blogIds = new ArrayList<>();
+        Cursor c = db.rawQuery("SELECT blog_id FROM " + COMMENTS_TABLE + " GROUP BY blog_id HAVING COUNT(*) > "
+                + Integer.toString(MAX_COMMENTS_PER_BLOG), null);
+        try {
+            while (c.moveToNext()) {
+                blogIds.add(c.getInt(0));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+        for (Integer blogId: blogIds) {
+            String[] args = {Integer.toString(blogId), Integer.toString(blogId)};
+            sql = " blog_id=? AND comment_id NOT IN (SELECT comment_id FROM " + COMMENTS_TABLE
+                + " WHERE blog_id=? ORDER BY published DESC LIMIT " + Integer.toString(MAX_COMMENTS_PER_BLOG) + ")";
+            numDeleted += db.delete(COMMENTS_TABLE, sql, args);
         }
 
         return numDeleted;
@@ -305,13 +385,80 @@ public class CommentTable {
         }
     }
 
+    /**
+     * delete comments by id using a single statement
+     * @param localBlogId - unique id in account table for this blog
+     * @param commentIds - ids of comments to delete
+     * @return number of comments deleted
+     */
+    public static int deleteCommentsWithIds(int localBlogId, final List<Long> commentIds) {
+        if (commentIds == null || commentIds.size() == 0)
+            return 0;
+        String[] args = {Integer.toString(localBlogId)};
+        return getWritableDb().delete(COMMENTS_TABLE, "blog_id=? AND comment_id IN (" + TextUtils.join(",", commentIds) + ")", args);
+    }
+
+    /**
+     * saves the passed comments which are new or differ from the stored ones, leaving the rest untouched
+     * @param localBlogId - unique id in account table for this blog
+     * @param comments - list of comments from the server
+     * @return number of comments saved
+     */
+    public static int saveChangedComments(int localBlogId, final CommentList comments) {
+        if (comments == null || comments.size() == 0)
+            return 0;
+
+        Map<Long, Comment> existing = new HashMap<>();
+        StringBuilder sb = new StringBuilder("SELECT * FROM " + COMMENTS_TABLE + " WHERE blog_id=? AND comment_id IN (");
+        for (int i = 0; i < comments.size(); i++) {
+            if (i > 0)
+                sb.append(",");
+            sb.append(comments.get(i).commentID);
+        }
+        sb.append(")");
+        Cursor c = getReadableDb().rawQuery(sb.toString(), new String[]{Integer.toString(localBlogId)});
+        try {
+            while (c.moveToNext()) {
+                Comment comment = getCommentFromCursor(c);
+                existing.put(comment.commentID, comment);
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+
+        CommentList changedComments = new CommentList();
+        for (Comment comment: comments) {
+            Comment existingComment = existing.get(comment.commentID);
+            if (existingComment == null || !existingComment.isSameAs(comment)) {
+                // keep the avatar we already have since XML-RPC doesn't return it
+                if (existingComment != null && !comment.hasProfileImageUrl())
+                    comment.setProfileImageUrl(existingComment.getProfileImageUrl());
+                changedComments.add(comment);
+            }
+        }
+
+        if (changedComments.size() > 0 && !saveComments(localBlogId, changedComments))
+            return 0;
+        return changedComments.size();
+    }
+
+    /**
+     * returns the lowest comment id stored for a specific blog, or 0 if none are stored
+     * @param localBlogId - unique id in account table for this blog
+     */
+    public static long getOldestCommentId(int localBlogId) {
+        String sql = "SELECT MIN(comment_id) FROM " + COMMENTS_TABLE + " WHERE blog_id=?";
+        String[] args = {Integer.toString(localBlogId)};
+        return SqlUtils.longForQuery(getReadableDb(), sql, args);
+    }
+
     /**
      * returns the number of unmoderated comments for a specific blog
      * @param localBlogId - unique id in account table for this blog
      */
     public static int getUnmoderatedCommentCount(int localBlogId) {
-        String sql = "SELECT COUNT(*) FROM " + COMMENTS_TABLE + " WHERE blog_id=? AND status=?";
-        String[] args = {Integer.toString(localBlogId), "hold"};
+        String sql = "SELECT unmoderated_count FROM " + COMMENT_COUNTS_TABLE + " WHERE blog_id=?";
+        String[] args = {Integer.toString(localBlogId)};
         return SqlUtils.intForQuery(getReadableDb(), sql, args);
     }
 
@@ -17,7 +17,11 @@ import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.UrlUtils;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * tbl_blog_info contains information about blogs viewed in the reader, and blogs the
@@ -200,6 +204,60 @@ public class ReaderBlogTable {
         }
     }
 
+    /*
+     * updates followed blogs to match the passed list from the read/following/mine endpoint - unlike
+     * setFollowedBlogs() this only writes blogs which are new or changed and unfollows those which
+     * are no longer followed - returns the number of rows changed
+     */
+    public static int updateFollowedBlogs(ReaderBlogList localBlogs, ReaderBlogList serverBlogs) {
+        if (localBlogs == null || serverBlogs == null) {
+            return 0;
+        }
+
+        // blogs are matched the same way ReaderBlogList.isSameList() matches them - by feedId
+        // if there is one, otherwise by blogId
+        Map<Long, ReaderBlog> localFeeds = new HashMap<>();
+        Map<Long, ReaderBlog> localSites = new HashMap<>();
+        for (ReaderBlog blog: localBlogs) {
+            if (blog.feedId != 0) {
+                localFeeds.put(blog.feedId, blog);
+            } else {
+                localSites.put(blog.blogId, blog);
+            }
+        }
+
+        ReaderBlogList changes = new ReaderBlogList();
+        for (ReaderBlog blog: serverBlogs) {
+            ReaderBlog localBlog = blog.feedId != 0 ? localFeeds.remove(blog.feedId) : localSites.remove(blog.blogId);
+            if (localBlog == null || !localBlog.isSameAs(blog)) {
+                changes.add(blog);
+            }
+        }
+
+        // whatever's left locally is no longer followed
+        List<ReaderBlog> unfollowed = new ArrayList<>(localFeeds.values());
+        unfollowed.addAll(localSites.values());
+        if (changes.isEmpty() && unfollowed.isEmpty()) {
+            return 0;
+        }
+
+        SQLiteDatabase db = ReaderDatabase.getWritableDb();
+        db.beginTransaction();
+        try {
+            for (ReaderBlog blog: unfollowed) {
+                setIsFollowedBlogId(blog.blogId, false);
+            }
+            for (ReaderBlog blog: changes) {
+                addOrUpdateBlog(blog);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return changes.size() + unfollowed.size();
+    }
+
     /*
      * return list of URLs of followed blogs
      */
@@ -332,6 +390,60 @@ public class ReaderBlogTable {
         }
     }
 
+    /*
+     * updates recommended blogs to match the passed list, only writing blogs which are new or changed
+     * and deleting those which are no longer recommended - returns the number of rows changed
+     */
+    public static int updateRecommendedBlogs(ReaderRecommendBlogList localBlogs, ReaderRecommendBlogList serverBlogs) {
+        if (localBlogs == null || serverBlogs == null) {
+            return 0;
+        }
+
+        Map<Long, ReaderRecommendedBlog> remaining = new HashMap<>();
+        for (ReaderRecommendedBlog blog : localBlogs) {
+            remaining.put(blog.blogId, blog);
+        }
+
+        ReaderRecommendBlogList changes = new ReaderRecommendBlogList();
+        for (ReaderRecommendedBlog blog : serverBlogs) {
+            ReaderRecommendedBlog localBlog = remaining.remove(blog.blogId);
+            if (localBlog == null || !localBlog.isSameAs(blog)) {
+                changes.add(blog);
+            }
+        }
+        if (changes.isEmpty() && remaining.isEmpty()) {
+            return 0;
+        }
+
+        SQLiteDatabase db = ReaderDatabase.getWritableDb();
+        SQLiteStatement stmt = db.compileStatement(
+                "INSERT OR REPLACE INTO tbl_recommended_blogs"
+                        + " (blog_id, follow_reco_id, score, title, blog_url, image_url, reason)"
+                        + " VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7)");
+        db.beginTransaction();
+        try {
+            for (Long blogId : remaining.keySet()) {
+                db.delete("tbl_recommended_blogs", "blog_id=?", new String[]{Long.toString(blogId)});
+            }
+            for (ReaderRecommendedBlog blog : changes) {
+                stmt.bindLong  (1, blog.blogId);
+                stmt.bindLong  (2, blog.followRecoId);
+                stmt.bindLong  (3, blog.score);
+                stmt.bindString(4, blog.getTitle());
+                stmt.bindString(5, blog.getBlogUrl());
+                stmt.bindString(6, blog.getImageUrl());
+                stmt.bindString(7, blog.getReason());
+                stmt.execute();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            SqlUtils.closeStatement(stmt);
+            db.endTransaction();
+        }
+
+        return changes.size() + remaining.size();
+    }
+
     /*
      * determine whether the passed blog info should be updated based on when it was last updated
      */
@@ -76,6 +76,57 @@ public class ReaderTagTable {
         }
     }
 
+    /*
+     * updates tbl_tags to match the passed server tags - unlike replaceTags() this only writes the
+     * tags which were added or changed and deletes those which were removed, so unchanged tags keep
+     * their date_updated - returns the number of rows written or deleted
+     */
+    public static int updateTags(ReaderTagList localTags, ReaderTagList serverTags) {
+        return updateTagsInTable("tbl_tags", localTags, serverTags);
+    }
+
+    /*
+     * same as above for tbl_tags_recommended
+     */
+    public static int updateRecommendedTags(ReaderTagList localTags, ReaderTagList serverTags) {
+        return updateTagsInTable("tbl_tags_recommended", localTags, serverTags);
+    }
+
+    private static int updateTagsInTable(String table, ReaderTagList localTags, ReaderTagList serverTags) {
+        if (localTags == null || serverTags == null) {
+            return 0;
+        }
+
+        ReaderTagList deletions = localTags.getDeletions(serverTags);
+        ReaderTagList changes = serverTags.getAdditionsAndChanges(localTags);
+        if (deletions.isEmpty() && changes.isEmpty()) {
+            return 0;
+        }
+
+        SQLiteDatabase db = ReaderDatabase.getWritableDb();
+        SQLiteStatement stmt = db.compileStatement(
+                "INSERT OR REPLACE INTO " + table + " (tag_name, tag_type, endpoint) VALUES (?1,?2,?3)");
+        db.beginTransaction();
+        try {
+            for (ReaderTag tag: deletions) {
+                String[] args = {tag.getTagName(), Integer.toString(tag.tagType.toInt())};
+                db.delete(table, "tag_name=? AND tag_type=?", args);
+            }
+            for (ReaderTag tag: changes) {
+                stmt.bindString(1, tag.getTagName());
+                stmt.bindLong  (2, tag.tagType.toInt());
+                stmt.bindString(3, tag.getEndpoint());
+                stmt.execute();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            SqlUtils.closeStatement(stmt);
+            db.endTransaction();
+        }
+
+        return deletions.size() + changes.size();
+    }
+
     public static void addOrUpdateTag(ReaderTag tag) {
         if (tag == null) {
             return;
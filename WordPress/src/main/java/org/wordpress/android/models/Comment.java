@@ -233,4 +233,23 @@ public class Comment {
         }
         return formattedTitle;
     }
+
+    /*
+     * returns true if the passed comment has the same content and status as this one - the profile
+     * image isn't compared since it's not returned by XML-RPC
+     */
+    public boolean isSameAs(Comment comment) {
+        if (comment == null) {
+            return false;
+        }
+        return comment.commentID == this.commentID
+            && comment.postID == this.postID
+            && comment.getStatus().equals(this.getStatus())
+            && comment.getCommentText().equals(this.getCommentText())
+            && comment.getPublished().equals(this.getPublished())
+            && comment.getAuthorName().equals(this.getAuthorName())
+            && comment.getAuthorUrl().equals(this.getAuthorUrl())
+            && comment.getAuthorEmail().equals(this.getAuthorEmail())
+            && comment.getPostTitle().equals(this.getPostTitle());
+    }
 }
@@ -18,7 +18,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.wordpress.android.ui.notifications.utils.NotificationsUtils;
 import org.wordpress.android.util.DateTimeUtils;
-import org.wordpress.android.util.JSONUtils;
+import org.wordpress.android.util.JSONUtils.JSONPath;
 import org.wordpress.android.util.StringUtils;
 
 import java.util.ArrayList;
@@ -47,6 +47,25 @@ public class Note extends Syncable {
     private static final String ACTION_KEY_SPAM = "spam-comment";
     private static final String ACTION_KEY_LIKE = "like-comment";
 
+    // compiled paths for the JSON properties queried while indexing and rendering notes
+    private static final JSONPath PATH_TYPE = JSONPath.compile("type");
+    private static final JSONPath PATH_TITLE = JSONPath.compile("title");
+    private static final JSONPath PATH_ICON = JSONPath.compile("icon");
+    private static final JSONPath PATH_NOTICON = JSONPath.compile("noticon");
+    private static final JSONPath PATH_READ = JSONPath.compile("read");
+    private static final JSONPath PATH_TIMESTAMP = JSONPath.compile("timestamp");
+    private static final JSONPath PATH_URL = JSONPath.compile("url");
+    private static final JSONPath PATH_SITE_ID = JSONPath.compile("meta.ids.site");
+    private static final JSONPath PATH_POST_ID = JSONPath.compile("meta.ids.post");
+    private static final JSONPath PATH_COMMENT_ID = JSONPath.compile("meta.ids.comment");
+    private static final JSONPath PATH_PARENT_COMMENT_ID = JSONPath.compile("meta.ids.parent_comment");
+    private static final JSONPath PATH_REPLY_COMMENT_ID = JSONPath.compile("meta.ids.reply_comment");
+    private static final JSONPath PATH_SUBJECT_RANGES = JSONPath.compile("subject[0].ranges");
+    private static final JSONPath PATH_COMMENT_SUBJECT = JSONPath.compileForArray("subject[1].text");
+    private static final JSONPath PATH_COMMENT_TEXT = JSONPath.compile("body[last].text");
+    private static final JSONPath PATH_ACTIONS = JSONPath.compile("actions");
+    private static final JSONPath PATH_LINKS_HOME = JSONPath.compile("meta.links.home");
+
     private JSONObject mActions;
     private JSONObject mNoteJSON;
     private final String mKey;
@@ -54,6 +73,13 @@ public class Note extends Syncable {
     private final Object mSyncLock = new Object();
     private String mLocalStatus;
 
+    // fields derived from the note json, memoized until the json is updated
+    private String mType;
+    private Long mTimestamp;
+    private Spannable mFormattedSubject;
+    private String mCommentSubject;
+    private String mCommentSubjectNoticon;
+
     public enum EnabledActions {
         ACTION_REPLY,
         ACTION_APPROVE,
@@ -101,7 +127,12 @@ public class Note extends Syncable {
     }
 
     public String getType() {
-        return queryJSON("type", NOTE_UNKNOWN_TYPE);
+        synchronized (mSyncLock) {
+            if (mType == null) {
+                mType = queryJSON(PATH_TYPE, NOTE_UNKNOWN_TYPE);
+            }
+            return mType;
+        }
     }
 
     private Boolean isType(String type) {
@@ -110,7 +141,7 @@ public class Note extends Syncable {
 
     public Boolean isCommentType() {
         synchronized (mSyncLock) {
-            return (isAutomattcherType() && JSONUtils.queryJSON(mNoteJSON, "meta.ids.comment", -1) != -1) ||
+            return (isAutomattcherType() && queryJSON(PATH_COMMENT_ID, -1) != -1) ||
                     isType(NOTE_COMMENT_TYPE);
         }
     }
@@ -172,38 +203,53 @@ public class Note extends Syncable {
     }
 
     private Spannable getFormattedSubject() {
-        return NotificationsUtils.getSpannableContentForRanges(getSubject());
+        synchronized (mSyncLock) {
+            if (mFormattedSubject == null) {
+                mFormattedSubject = NotificationsUtils.getSpannableContentForRanges(getSubject());
+            }
+            return mFormattedSubject;
+        }
     }
 
     public String getTitle() {
-        return queryJSON("title", "");
+        return queryJSON(PATH_TITLE, "");
     }
 
     private String getIconURL() {
-        return queryJSON("icon", "");
+        return queryJSON(PATH_ICON, "");
     }
 
     private String getCommentSubject() {
         synchronized (mSyncLock) {
-            JSONArray subjectArray = mNoteJSON.optJSONArray("subject");
-            if (subjectArray != null) {
-                String commentSubject = JSONUtils.queryJSON(subjectArray, "subject[1].text", "");
+            if (mCommentSubject == null) {
+                mCommentSubject = "";
+                JSONArray subjectArray = mNoteJSON.optJSONArray("subject");
+                if (subjectArray != null) {
+                    String commentSubject = PATH_COMMENT_SUBJECT.evaluate(subjectArray, "");
+
+                    // Trim down the comment preview if the comment text is too large.
+                    if (commentSubject != null && commentSubject.length() > MAX_COMMENT_PREVIEW_LENGTH) {
+                        commentSubject = commentSubject.substring(0, MAX_COMMENT_PREVIEW_LENGTH - 1);
+                    }
 
-                // Trim down the comment preview if the comment text is too large.
-                if (commentSubject != null && commentSubject.length() > MAX_COMMENT_PREVIEW_LENGTH) {
-                    commentSubject = commentSubject.substring(0, MAX_COMMENT_PREVIEW_LENGTH - 1);
+                    mCommentSubject = commentSubject;
                 }
-
-                return commentSubject;
             }
-
+            return mCommentSubject;
         }
-
-        return "";
     }
 
     private String getCommentSubjectNoticon() {
-        JSONArray subjectRanges = queryJSON("subject[0].ranges", new JSONArray());
+        synchronized (mSyncLock) {
+            if (mCommentSubjectNoticon == null) {
+                mCommentSubjectNoticon = findCommentSubjectNoticon();
+            }
+            return mCommentSubjectNoticon;
+        }
+    }
+
+    private String findCommentSubjectNoticon() {
+        JSONArray subjectRanges = queryJSON(PATH_SUBJECT_RANGES, new JSONArray());
         if (subjectRanges != null) {
             for (int i=0; i < subjectRanges.length(); i++) {
                 try {
@@ -221,7 +267,7 @@ public class Note extends Syncable {
     }
 
     public long getCommentReplyId() {
-        return queryJSON("meta.ids.reply_comment", 0);
+        return queryJSON(PATH_REPLY_COMMENT_ID, 0);
     }
 
     /**
@@ -253,7 +299,7 @@ public class Note extends Syncable {
     }
 
     private Boolean isRead() {
-        return queryJSON("read", 0) == 1;
+        return queryJSON(PATH_READ, 0) == 1;
     }
 
     public void markAsRead() {
@@ -272,7 +318,12 @@ public class Note extends Syncable {
      * Get the timestamp provided by the API for the note
      */
     public long getTimestamp() {
-        return DateTimeUtils.iso8601ToTimestamp(queryJSON("timestamp", ""));
+        synchronized (mSyncLock) {
+            if (mTimestamp == null) {
+                mTimestamp = DateTimeUtils.iso8601ToTimestamp(queryJSON(PATH_TIMESTAMP, ""));
+            }
+            return mTimestamp;
+        }
     }
 
     public JSONArray getBody() {
@@ -287,7 +338,7 @@ public class Note extends Syncable {
 
     // returns character code for notification font
     private String getNoticonCharacter() {
-        return queryJSON("noticon", "");
+        return queryJSON(PATH_NOTICON, "");
     }
 
     private JSONObject getCommentActions() {
@@ -299,8 +350,8 @@ public class Note extends Syncable {
                 try {
                     JSONObject bodyItem = bodyArray.getJSONObject(i);
                     if (bodyItem.has("type") && bodyItem.optString("type").equals("comment")
-                            && commentId == JSONUtils.queryJSON(bodyItem, "meta.ids.comment", 0)) {
-                        mActions = JSONUtils.queryJSON(bodyItem, "actions", new JSONObject());
+                            && commentId == PATH_COMMENT_ID.evaluate(bodyItem, 0)) {
+                        mActions = PATH_ACTIONS.evaluate(bodyItem, new JSONObject());
                         break;
                     }
                 } catch (JSONException e) {
@@ -320,6 +371,12 @@ public class Note extends Syncable {
     private void updateJSON(JSONObject json) {
         synchronized (mSyncLock) {
             mNoteJSON = json;
+            mActions = null;
+            mType = null;
+            mTimestamp = null;
+            mFormattedSubject = null;
+            mCommentSubject = null;
+            mCommentSubjectNoticon = null;
         }
     }
 
@@ -353,28 +410,28 @@ public class Note extends Syncable {
     }
 
     public int getSiteId() {
-        return queryJSON("meta.ids.site", 0);
+        return queryJSON(PATH_SITE_ID, 0);
     }
 
     public int getPostId() {
-        return queryJSON("meta.ids.post", 0);
+        return queryJSON(PATH_POST_ID, 0);
     }
 
     public long getCommentId() {
-        return queryJSON("meta.ids.comment", 0);
+        return queryJSON(PATH_COMMENT_ID, 0);
     }
 
     public long getParentCommentId() {
-        return queryJSON("meta.ids.parent_comment", 0);
+        return queryJSON(PATH_PARENT_COMMENT_ID, 0);
     }
 
     /**
      * Rudimentary system for pulling an item out of a JSON object hierarchy
      */
-    private <U> U queryJSON(String query, U defaultObject) {
+    private <U> U queryJSON(JSONPath path, U defaultObject) {
         synchronized (mSyncLock) {
             if (mNoteJSON == null) return defaultObject;
-            return JSONUtils.queryJSON(mNoteJSON, query, defaultObject);
+            return path.evaluate(mNoteJSON, defaultObject);
         }
     }
 
@@ -414,7 +471,7 @@ public class Note extends Syncable {
     }
 
     private String getCommentText() {
-        return queryJSON("body[last].text", "");
+        return queryJSON(PATH_COMMENT_TEXT, "");
     }
 
     private String getCommentAuthorUrl() {
@@ -424,7 +481,7 @@ public class Note extends Syncable {
             try {
                 JSONObject bodyItem = bodyArray.getJSONObject(i);
                 if (bodyItem.has("type") && bodyItem.optString("type").equals("user")) {
-                    return JSONUtils.queryJSON(bodyItem, "meta.links.home", "");
+                    return PATH_LINKS_HOME.evaluate(bodyItem, "");
                 }
             } catch (JSONException e) {
                 return "";
@@ -452,7 +509,7 @@ public class Note extends Syncable {
     }
 
     public String getUrl() {
-        return queryJSON("url", "");
+        return queryJSON(PATH_URL, "");
     }
 
     public JSONArray getHeader() {
@@ -66,4 +66,21 @@ public class ReaderTagList extends ArrayList<ReaderTag> {
 
         return deletions;
     }
+
+    /*
+     * returns a list of tags that are in this list but either aren't in the passed list or have
+     * a different endpoint there - ie: the tags that need to be written for the passed list to
+     * match this one
+     */
+    public ReaderTagList getAdditionsAndChanges(ReaderTagList otherList) {
+        ReaderTagList changes = new ReaderTagList();
+        for (ReaderTag thisTag: this) {
+            int i = (otherList != null ? otherList.indexOfTag(thisTag) : -1);
+            if (i == -1 || !thisTag.getEndpoint().equals(otherList.get(i).getEndpoint())) {
+                changes.add(thisTag);
+            }
+        }
+
+        return changes;
+    }
 }
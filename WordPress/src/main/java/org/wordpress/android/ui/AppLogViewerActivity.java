@@ -31,6 +31,11 @@ public class AppLogViewerActivity extends AppCompatActivity {
     private static final int ID_SHARE = 1;
     private static final int ID_COPY_TO_CLIPBOARD = 2;
 
+    // shared and copied text goes through a binder transaction, which fails above 1MB
+    private static final int MAX_SHARED_LOG_LENGTH = 100 * 1024;
+
+    private LogAdapter mAdapter;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -44,18 +49,45 @@ public class AppLogViewerActivity extends AppCompatActivity {
         }
 
         final ListView listView = (ListView) findViewById(android.R.id.list);
-        listView.setAdapter(new LogAdapter(this));
+        mAdapter = new LogAdapter(this);
+        listView.setAdapter(mAdapter);
+        loadAppLog();
+    }
+
+    /*
+     * the log is read from disk, so it's loaded in the background
+     */
+    private void loadAppLog() {
+        final Context context = getApplicationContext();
+        new Thread() {
+            @Override
+            public void run() {
+                final ArrayList<String> entries = AppLog.toHtmlList(context);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing()) {
+                            mAdapter.setEntries(entries);
+                        }
+                    }
+                });
+            }
+        }.start();
     }
 
     private class LogAdapter extends BaseAdapter {
-        private final ArrayList<String> mEntries;
+        private ArrayList<String> mEntries = new ArrayList<>();
         private final LayoutInflater mInflater;
 
         private LogAdapter(Context context) {
-            mEntries = AppLog.toHtmlList(context);
             mInflater = LayoutInflater.from(context);
         }
 
+        private void setEntries(ArrayList<String> entries) {
+            mEntries = entries;
+            notifyDataSetChanged();
+        }
+
         @Override
         public int getCount() {
             return mEntries.size();
@@ -108,10 +140,36 @@ public class AppLogViewerActivity extends AppCompatActivity {
         }
     }
 
-    private void shareAppLog() {
+    /*
+     * reads the most recent part of the log as plain text in the background and passes it to the
+     * callback on the UI thread
+     */
+    private void getSharedAppLog(final AppLogTextCallback callback) {
+        final Context context = getApplicationContext();
+        new Thread() {
+            @Override
+            public void run() {
+                final String text = AppLog.toPlainText(context, MAX_SHARED_LOG_LENGTH);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing()) {
+                            callback.onAppLogText(text);
+                        }
+                    }
+                });
+            }
+        }.start();
+    }
+
+    private interface AppLogTextCallback {
+        void onAppLogText(String text);
+    }
+
+    private void shareAppLog(String text) {
         Intent intent = new Intent(Intent.ACTION_SEND);
         intent.setType("text/plain");
-        intent.putExtra(Intent.EXTRA_TEXT, AppLog.toPlainText(this));
+        intent.putExtra(Intent.EXTRA_TEXT, text);
         intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.app_name) + " " + getTitle());
         try {
             startActivity(Intent.createChooser(intent, getString(R.string.reader_btn_share)));
@@ -120,10 +178,10 @@ public class AppLogViewerActivity extends AppCompatActivity {
         }
     }
 
-    private void copyAppLogToClipboard() {
+    private void copyAppLogToClipboard(String text) {
         try {
             ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-            clipboard.setPrimaryClip(ClipData.newPlainText("AppLog", AppLog.toPlainText(this)));
+            clipboard.setPrimaryClip(ClipData.newPlainText("AppLog", text));
             ToastUtils.showToast(this, R.string.logs_copied_to_clipboard);
         } catch (Exception e) {
             AppLog.e(T.UTILS, e);
@@ -152,10 +210,20 @@ public class AppLogViewerActivity extends AppCompatActivity {
                 finish();
                 return true;
             case ID_SHARE:
-                shareAppLog();
+                getSharedAppLog(new AppLogTextCallback() {
+                    @Override
+                    public void onAppLogText(String text) {
+                        shareAppLog(text);
+                    }
+                });
                 return true;
             case ID_COPY_TO_CLIPBOARD:
-                copyAppLogToClipboard();
+                getSharedAppLog(new AppLogTextCallback() {
+                    @Override
+                    public void onAppLogText(String text) {
+                        copyAppLogToClipboard(text);
+                    }
+                });
                 return true;
             default:
                 return super.onOptionsItemSelected(item);
@@ -7,8 +7,8 @@ import android.os.Bundle;
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.ui.main.WPMainActivity;
-import org.wordpress.android.util.ProfilingUtils;
 import org.wordpress.android.util.ToastUtils;
+import org.wordpress.android.util.Trace;
 
 public class WPLaunchActivity extends Activity {
 
@@ -22,7 +22,7 @@ public class WPLaunchActivity extends Activity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        ProfilingUtils.split("WPLaunchActivity.onCreate");
+        Trace.mark("WPLaunchActivity.onCreate");
 
         if (WordPress.wpDB == null) {
             ToastUtils.showToast(this, R.string.fatal_db_error, ToastUtils.Duration.LONG);
@@ -440,7 +440,7 @@ public class SignInFragment extends AbstractFragment implements TextWatcher {
             // both wp.com and self-hosted (self-hosted = "logged out" reader) - note that this
             // uses the application context since the activity is finished immediately below
             ReaderUpdateService.startService(getActivity().getApplicationContext(),
-                    EnumSet.of(UpdateTask.TAGS));
+                    EnumSet.of(UpdateTask.TAGS), true);
 
             if (isWPComLogin()) {
                 //Update previous stats widgets
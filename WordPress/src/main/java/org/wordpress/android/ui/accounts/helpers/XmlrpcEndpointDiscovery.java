@@ -0,0 +1,469 @@
+package org.wordpress.android.ui.accounts.helpers;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+import android.util.Base64;
+import android.webkit.URLUtil;
+
+import org.wordpress.android.R;
+import org.wordpress.android.WordPress;
+import org.wordpress.android.analytics.AnalyticsTracker;
+import org.wordpress.android.analytics.AnalyticsTracker.Stat;
+import org.wordpress.android.networking.SelfSignedSSLCertsManager;
+import org.wordpress.android.networking.WPTrustManager;
+import org.wordpress.android.ui.prefs.AppPrefs;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.CrashlyticsUtils;
+import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
+import org.wordpress.android.util.CrashlyticsUtils.ExtraKey;
+import org.wordpress.android.util.UrlUtils;
+import org.wordpress.android.util.WPUrlUtils;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.XMLRPCClientInterface;
+import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * finds the XML-RPC endpoint of a self-hosted site. three probes are raced against a shared deadline:
+ *
+ * - the site's homepage is read until its RSD link is found, and the endpoint is taken from the RSD document
+ * - system.listMethods is called on the URL the user entered, in case it's the endpoint itself
+ * - system.listMethods is called on a guessed /xmlrpc.php under the entered URL
+ *
+ * the first probe to find the endpoint wins, and the endpoint is cached by site so it's found instantly
+ * the next time the site is added. callers should remove a cached endpoint which turns out to be wrong.
+ * must be called from a background thread.
+ */
+public class XmlrpcEndpointDiscovery {
+    // how long all probes together may take before discovery gives up
+    private static final long DISCOVERY_TIMEOUT_MS = 30 * 1000;
+    private static final int HOMEPAGE_TIMEOUT_MS = 15 * 1000;
+
+    // the homepage is only read this far looking for the RSD link
+    private static final int MAX_HOMEPAGE_CHARS = 256 * 1024;
+    private static final int MAX_REDIRECTS = 5;
+
+    private static final Pattern LINK_TAG = Pattern.compile("<link\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RSD_REL = Pattern.compile("\\brel\\s*=\\s*[\"']?EditURI\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern HREF = Pattern.compile("\\bhref\\s*=\\s*[\"']([^\"']+)[\"']",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern HEAD_END = Pattern.compile("</head>|<body\\b", Pattern.CASE_INSENSITIVE);
+
+    // probes which lose the race can't be interrupted while they wait on the network, so the pool grows
+    // as needed rather than queueing new probes behind them
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "XmlrpcDiscovery-" + mCount.incrementAndGet());
+                }
+            });
+
+    private final String mHttpUsername;
+    private final String mHttpPassword;
+
+    // built once per discovery so certificates the user has just accepted are trusted
+    private SSLSocketFactory mSslSocketFactory;
+
+    // set by the probes, only reported when no endpoint is found
+    private volatile boolean mHttpAuthRequired;
+    private volatile boolean mErroneousSslCertificate;
+    private volatile int mErrorMsgId;
+
+    private boolean mIsFromCache;
+
+    public XmlrpcEndpointDiscovery(String httpUsername, String httpPassword) {
+        mHttpUsername = httpUsername;
+        mHttpPassword = httpPassword;
+    }
+
+    public boolean isHttpAuthRequired() {
+        return mHttpAuthRequired;
+    }
+
+    public boolean isErroneousSslCertificate() {
+        return mErroneousSslCertificate;
+    }
+
+    public int getErrorMsgId() {
+        return mErrorMsgId;
+    }
+
+    /*
+     * true if the endpoint returned by the last call to discover() came from the cache
+     */
+    public boolean isFromCache() {
+        return mIsFromCache;
+    }
+
+    /*
+     * returns the XML-RPC endpoint for the passed site URL, or null if it can't be found
+     */
+    public String discover(String url, boolean useCache) {
+        mIsFromCache = false;
+
+        // Convert IDN names to punycode if necessary
+        url = UrlUtils.convertUrlToPunycodeIfNeeded(url);
+
+        // Add http to the beginning of the URL if needed
+        url = UrlUtils.addUrlSchemeIfNeeded(url, false);
+
+        if (!URLUtil.isValidUrl(url) || !UrlUtils.isValidUrlAndHostNotNull(url)) {
+            AppLog.e(T.NUX, "invalid URL: " + url);
+            mErrorMsgId = R.string.invalid_url_message;
+            return null;
+        }
+
+        String siteKey = getSiteKey(url);
+        if (useCache) {
+            String cachedUrl = AppPrefs.getXmlrpcEndpoint(siteKey);
+            if (!TextUtils.isEmpty(cachedUrl)) {
+                AppLog.d(T.NUX, "using cached xmlrpc endpoint " + cachedUrl);
+                mIsFromCache = true;
+                return cachedUrl;
+            }
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        String xmlrpcUrl = race(url);
+        AppLog.d(T.NUX, "xmlrpc discovery took " + (SystemClock.elapsedRealtime() - startTime) + "ms, found "
+                + xmlrpcUrl);
+
+        if (xmlrpcUrl != null) {
+            AppPrefs.setXmlrpcEndpoint(siteKey, xmlrpcUrl);
+        } else if (!mHttpAuthRequired && !mErroneousSslCertificate && mErrorMsgId == 0) {
+            AnalyticsTracker.track(Stat.LOGIN_FAILED_TO_GUESS_XMLRPC);
+        }
+        return xmlrpcUrl;
+    }
+
+    /*
+     * removes the cached endpoint for the passed site URL - called when the cached endpoint no longer works
+     */
+    public static void removeCachedEndpoint(String url) {
+        url = UrlUtils.addUrlSchemeIfNeeded(UrlUtils.convertUrlToPunycodeIfNeeded(url), false);
+        if (UrlUtils.isValidUrlAndHostNotNull(url)) {
+            AppPrefs.setXmlrpcEndpoint(getSiteKey(url), null);
+        }
+    }
+
+    /*
+     * sites are keyed by scheme, host, port and path, ignoring a default port and any trailing slash - the
+     * scheme is part of the key so an https site never gets an endpoint found over http
+     */
+    static String getSiteKey(String url) {
+        URI uri = URI.create(url);
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        int port = uri.getPort();
+        boolean isDefaultPort = port == -1
+                || (port == 80 && scheme.equals("http"))
+                || (port == 443 && scheme.equals("https"));
+        return scheme + "://" + uri.getHost().toLowerCase(Locale.ROOT) + (isDefaultPort ? "" : ":" + port) + path;
+    }
+
+    private String race(final String url) {
+        final String guessUrl = (url.endsWith("/") ? url.substring(0, url.length() - 1) : url) + "/xmlrpc.php";
+
+        List<Callable<String>> probes = new ArrayList<>();
+        probes.add(new Callable<String>() {
+            @Override
+            public String call() {
+                return probeRsd(url);
+            }
+        });
+        probes.add(new Callable<String>() {
+            @Override
+            public String call() {
+                return probeListMethods(url);
+            }
+        });
+        if (!guessUrl.equals(url)) {
+            probes.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return probeListMethods(guessUrl);
+                }
+            });
+        }
+
+        return race(probes, DISCOVERY_TIMEOUT_MS);
+    }
+
+    /*
+     * runs the passed probes in parallel and returns the first non-null result, or null if none of them
+     * returned one before the timeout - probes which are still running are left to finish on their own
+     */
+    static String race(List<Callable<String>> probes, long timeoutMs) {
+        CompletionService<String> completionService = new ExecutorCompletionService<>(EXECUTOR);
+        for (Callable<String> probe : probes) {
+            completionService.submit(probe);
+        }
+        int numProbes = probes.size();
+
+        long deadline = SystemClock.elapsedRealtime() + timeoutMs;
+        boolean isInterrupted = false;
+        try {
+            while (numProbes > 0) {
+                long remainingMs = deadline - SystemClock.elapsedRealtime();
+                if (remainingMs <= 0) {
+                    AppLog.w(T.NUX, "xmlrpc discovery timed out");
+                    return null;
+                }
+                Future<String> future;
+                try {
+                    future = completionService.poll(remainingMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                    return null;
+                }
+                if (future == null) {
+                    continue;
+                }
+                numProbes--;
+                try {
+                    String xmlrpcUrl = future.get();
+                    if (xmlrpcUrl != null) {
+                        return xmlrpcUrl;
+                    }
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                    return null;
+                } catch (ExecutionException e) {
+                    AppLog.e(T.NUX, "xmlrpc discovery probe failed", e);
+                }
+            }
+            return null;
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * returns the endpoint listed in the RSD document linked from the site's homepage
+     */
+    private String probeRsd(String url) {
+        try {
+            String rsdUrl = getRsdUrl(url);
+            if (rsdUrl == null) {
+                return null;
+            }
+            String xmlrpcUrl = UrlUtils.addUrlSchemeIfNeeded(ApiHelper.getXMLRPCUrl(rsdUrl), false);
+            if (xmlrpcUrl == null) {
+                xmlrpcUrl = UrlUtils.addUrlSchemeIfNeeded(rsdUrl.replace("?rsd", ""), false);
+            }
+            return xmlrpcUrl;
+        } catch (SSLHandshakeException | SSLPeerUnverifiedException e) {
+            onSslError(url, e);
+        } catch (IOException e) {
+            AppLog.i(T.NUX, "unable to read RSD link from " + url + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /*
+     * returns the passed url if it responds to system.listMethods
+     */
+    private String probeListMethods(String url) {
+        try {
+            XMLRPCClientInterface client = XMLRPCFactory.instantiate(URI.create(url), mHttpUsername, mHttpPassword);
+            client.call(ApiHelper.Methods.LIST_METHODS);
+            return url;
+        } catch (SSLHandshakeException | SSLPeerUnverifiedException e) {
+            onSslError(url, e);
+        } catch (XMLRPCException | IOException | XmlPullParserException e) {
+            AppLog.i(T.NUX, "system.listMethods failed on: " + url);
+            checkHttpAuthError(e);
+        } catch (IllegalArgumentException e) {
+            // TODO: Hopefully a temporary log - remove it if we find a pattern of failing URLs
+            CrashlyticsUtils.setString(ExtraKey.ENTERED_URL, url);
+            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.NUX);
+            mErrorMsgId = R.string.invalid_url_message;
+        }
+        return null;
+    }
+
+    private void onSslError(String url, IOException e) {
+        if (!WPUrlUtils.isWordPressCom(url)) {
+            mErroneousSslCertificate = true;
+        }
+        AppLog.w(T.NUX, e.getClass().getSimpleName() + " failed. Erroneous SSL certificate detected.");
+    }
+
+    private void checkHttpAuthError(Exception e) {
+        if (e != null && e.getMessage() != null && e.getMessage().contains("401")) {
+            mHttpAuthRequired = true;
+        }
+    }
+
+    /*
+     * reads the site's homepage until its RSD link is found, following redirects - the rest of the page
+     * isn't downloaded since the link is in the head
+     */
+    private String getRsdUrl(String url) throws IOException {
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            HttpURLConnection connection = openConnection(new URL(url));
+            try {
+                int responseCode = connection.getResponseCode();
+                if (responseCode >= 300 && responseCode < 400) {
+                    String location = connection.getHeaderField("Location");
+                    if (location == null) {
+                        return null;
+                    }
+                    String newUrl = new URL(new URL(url), location).toString();
+                    // Abort redirect if old URL was HTTPS and not the new one
+                    if (URLUtil.isHttpsUrl(url) && !URLUtil.isHttpsUrl(newUrl)) {
+                        AppLog.e(T.NUX, "Redirect from HTTPS to HTTP not allowed.");
+                        return null;
+                    }
+                    url = newUrl;
+                    continue;
+                }
+                if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                    mHttpAuthRequired = true;
+                    return null;
+                }
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                String href = findRsdHref(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+                return href != null ? new URL(new URL(url), href).toString() : null;
+            } finally {
+                // closes the socket so a page whose RSD link was found isn't read any further
+                connection.disconnect();
+            }
+        }
+        AppLog.e(T.NUX, "Maximum of " + MAX_REDIRECTS + " redirects reached, aborting.");
+        return null;
+    }
+
+    /*
+     * returns the href of the RSD link in the passed html, reading no further than the end of its head
+     */
+    static String findRsdHref(Reader reader) throws IOException {
+        StringBuilder html = new StringBuilder();
+        char[] buffer = new char[4096];
+        int scanStart = 0;
+        int numRead;
+        while (html.length() < MAX_HOMEPAGE_CHARS && (numRead = reader.read(buffer)) != -1) {
+            html.append(buffer, 0, numRead);
+
+            // scan up to the end of the last complete tag, a tag cut off by the end of the buffer is
+            // scanned once the rest of it is read
+            int scanEnd = html.lastIndexOf(">") + 1;
+            if (scanEnd <= scanStart) {
+                continue;
+            }
+            Matcher headEndMatcher = HEAD_END.matcher(html).region(scanStart, scanEnd);
+            boolean isHeadEnded = headEndMatcher.find();
+            if (isHeadEnded) {
+                scanEnd = headEndMatcher.start();
+            }
+            Matcher linkMatcher = LINK_TAG.matcher(html).region(scanStart, scanEnd);
+            while (linkMatcher.find()) {
+                String tag = linkMatcher.group();
+                if (RSD_REL.matcher(tag).find()) {
+                    Matcher hrefMatcher = HREF.matcher(tag);
+                    if (hrefMatcher.find()) {
+                        return hrefMatcher.group(1).trim();
+                    }
+                }
+            }
+            if (isHeadEnded) {
+                return null;
+            }
+            scanStart = scanEnd;
+        }
+        return null;
+    }
+
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(HOMEPAGE_TIMEOUT_MS);
+        connection.setReadTimeout(HOMEPAGE_TIMEOUT_MS);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("User-Agent", WordPress.getUserAgent());
+        if (!TextUtils.isEmpty(mHttpUsername) && !TextUtils.isEmpty(mHttpPassword)) {
+            String creds = String.format("%s:%s", mHttpUsername, mHttpPassword);
+            connection.setRequestProperty("Authorization",
+                    "Basic " + Base64.encodeToString(creds.getBytes(), Base64.NO_WRAP));
+        }
+        if (connection instanceof HttpsURLConnection && !WPUrlUtils.isWordPressCom(url)) {
+            SSLSocketFactory sslSocketFactory = getSslSocketFactory();
+            if (sslSocketFactory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+            }
+        }
+        return connection;
+    }
+
+    /*
+     * socket factory which also trusts the certificates the user has accepted
+     */
+    private synchronized SSLSocketFactory getSslSocketFactory() {
+        if (mSslSocketFactory == null) {
+            try {
+                TrustManager[] trustAllowedCerts = new TrustManager[]{
+                        new WPTrustManager(SelfSignedSSLCertsManager.getInstance(WordPress.getContext())
+                                .getLocalKeyStore())
+                };
+                SSLContext context = SSLContext.getInstance("SSL");
+                context.init(null, trustAllowedCerts, new SecureRandom());
+                mSslSocketFactory = context.getSocketFactory();
+            } catch (GeneralSecurityException | IOException e) {
+                AppLog.e(T.NUX, e);
+            }
+        }
+        return mSslSocketFactory;
+    }
+}
@@ -0,0 +1,267 @@
+package org.wordpress.android.ui.comments;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import org.wordpress.android.datasets.CommentTable;
+import org.wordpress.android.models.Blog;
+import org.wordpress.android.models.Comment;
+import org.wordpress.android.models.CommentList;
+import org.wordpress.android.models.CommentStatus;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.XMLRPCClientInterface;
+import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFactory;
+import org.xmlrpc.android.XMLRPCFault;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * changes the status of (or trashes) a list of comments. the change is made to the local db first in a
+ * single transaction so it shows up right away, then it's sent to the blog using system.multicall in
+ * batches, a few batches at a time. comments the blog failed to change are restored in the local db
+ * once all batches are done.
+ */
+class CommentBatchModerator {
+    // number of comments sent in a single system.multicall request
+    private static final int BATCH_SIZE = 20;
+    private static final int MAX_CONCURRENT_BATCHES = 3;
+
+    // returned by blogs which don't support system.multicall
+    private static final int FAULT_METHOD_NOT_FOUND = -32601;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        EXECUTOR = new ThreadPoolExecutor(MAX_CONCURRENT_BATCHES, MAX_CONCURRENT_BATCHES, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "CommentModeration-" + mCount.incrementAndGet());
+                    }
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final Blog mBlog;
+    private final CommentStatus mNewStatus;
+    private final String mNewStatusStr;
+
+    // copies of the comments as they were before moderation, so failed ones can be restored
+    private final CommentList mComments = new CommentList();
+
+    /*
+     * must be called before the passed comments are changed to show the new status
+     */
+    CommentBatchModerator(Blog blog, CommentList comments, CommentStatus newStatus) {
+        mBlog = blog;
+        mNewStatus = newStatus;
+        mNewStatusStr = CommentStatus.toString(newStatus);
+        for (Comment comment: comments) {
+            mComments.add(new Comment(comment.postID,
+                    comment.commentID,
+                    comment.getAuthorName(),
+                    comment.getPublished(),
+                    comment.getCommentText(),
+                    comment.getStatus(),
+                    comment.getPostTitle(),
+                    comment.getAuthorUrl(),
+                    comment.getAuthorEmail(),
+                    comment.getProfileImageUrl()));
+        }
+    }
+
+    private boolean isTrashing() {
+        return mNewStatus == CommentStatus.TRASH;
+    }
+
+    /*
+     * performs the moderation and returns the comments the blog changed - must be called from
+     * a background thread
+     */
+    CommentList moderate() {
+        long startTime = SystemClock.elapsedRealtime();
+        int localBlogId = mBlog.getLocalTableBlogId();
+
+        if (isTrashing()) {
+            CommentTable.deleteComments(localBlogId, mComments);
+        } else {
+            CommentTable.updateCommentsStatus(localBlogId, mComments, mNewStatusStr);
+        }
+
+        List<List<Comment>> batches = new ArrayList<>();
+        List<Future<boolean[]>> futures = new ArrayList<>();
+        for (int i = 0; i < mComments.size(); i += BATCH_SIZE) {
+            final List<Comment> batch = mComments.subList(i, Math.min(i + BATCH_SIZE, mComments.size()));
+            batches.add(batch);
+            futures.add(EXECUTOR.submit(new Callable<boolean[]>() {
+                @Override
+                public boolean[] call() {
+                    return sendBatch(batch);
+                }
+            }));
+        }
+
+        CommentList moderatedComments = new CommentList();
+        CommentList failedComments = new CommentList();
+        for (int i = 0; i < batches.size(); i++) {
+            List<Comment> batch = batches.get(i);
+            boolean[] results = getResults(futures.get(i), batch.size());
+            for (int j = 0; j < batch.size(); j++) {
+                if (results[j]) {
+                    moderatedComments.add(batch.get(j));
+                } else {
+                    failedComments.add(batch.get(j));
+                }
+            }
+        }
+
+        // put back the comments the blog didn't change - these still have their original status
+        if (failedComments.size() > 0) {
+            CommentTable.saveComments(localBlogId, failedComments);
+        }
+        for (Comment comment: moderatedComments) {
+            comment.setStatus(mNewStatusStr);
+        }
+
+        AppLog.d(T.COMMENTS, "moderated " + moderatedComments.size() + " of " + mComments.size()
+                + " comments in " + batches.size() + " batches, " + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        return moderatedComments;
+    }
+
+    private static boolean[] getResults(Future<boolean[]> future, int batchSize) {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                } catch (ExecutionException e) {
+                    AppLog.e(T.COMMENTS, "Error while moderating comments", e);
+                    return new boolean[batchSize];
+                }
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * sends a single batch using system.multicall, returns whether each comment in it was changed
+     */
+    private boolean[] sendBatch(List<Comment> batch) {
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(mBlog.getUri(), mBlog.getHttpuser(),
+                mBlog.getHttppassword());
+        boolean[] results = new boolean[batch.size()];
+
+        Object[] calls = new Object[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, Object> call = new HashMap<>();
+            call.put("methodName", getMethodName());
+            call.put("params", getParams(batch.get(i)));
+            calls[i] = call;
+        }
+
+        Object result;
+        try {
+            result = client.call(ApiHelper.Methods.MULTICALL, new Object[]{calls});
+        } catch (XMLRPCFault e) {
+            if (e.getFaultCode() == FAULT_METHOD_NOT_FOUND) {
+                return sendIndividually(client, batch);
+            }
+            AppLog.e(T.COMMENTS, "Error while moderating comments", e);
+            return results;
+        } catch (XMLRPCException | IOException | XmlPullParserException e) {
+            AppLog.e(T.COMMENTS, "Error while moderating comments", e);
+            return results;
+        }
+
+        // each response is either an array holding the call's result, or a fault struct
+        if (result instanceof Object[]) {
+            Object[] responses = (Object[]) result;
+            for (int i = 0; i < Math.min(responses.length, results.length); i++) {
+                if (responses[i] instanceof Object[]) {
+                    Object[] response = (Object[]) responses[i];
+                    results[i] = (response.length > 0 && isSuccess(response[0]));
+                } else if (responses[i] instanceof Map) {
+                    AppLog.w(T.COMMENTS, "Error while moderating comment " + batch.get(i).commentID
+                            + ": " + ((Map) responses[i]).get("faultString"));
+                }
+            }
+        }
+        return results;
+    }
+
+    /*
+     * fallback for blogs which don't support system.multicall
+     */
+    private boolean[] sendIndividually(XMLRPCClientInterface client, List<Comment> batch) {
+        boolean[] results = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                results[i] = isSuccess(client.call(getMethodName(), getParams(batch.get(i))));
+            } catch (XMLRPCException | IOException | XmlPullParserException e) {
+                AppLog.e(T.COMMENTS, "Error while moderating comment", e);
+            }
+        }
+        return results;
+    }
+
+    private static boolean isSuccess(Object result) {
+        return (result != null && Boolean.parseBoolean(result.toString()));
+    }
+
+    private String getMethodName() {
+        return isTrashing() ? ApiHelper.Methods.DELETE_COMMENT : ApiHelper.Methods.EDIT_COMMENT;
+    }
+
+    private Object[] getParams(Comment comment) {
+        if (isTrashing()) {
+            return new Object[] {
+                    mBlog.getRemoteBlogId(),
+                    mBlog.getUsername(),
+                    mBlog.getPassword(),
+                    comment.commentID};
+        }
+
+        Map<String, String> postHash = new HashMap<>();
+        postHash.put("status", mNewStatusStr);
+        postHash.put("content", comment.getCommentText());
+        postHash.put("author", comment.getAuthorName());
+        postHash.put("author_url", comment.getAuthorUrl());
+        postHash.put("author_email", comment.getAuthorEmail());
+
+        return new Object[] {
+                mBlog.getRemoteBlogId(),
+                mBlog.getUsername(),
+                mBlog.getPassword(),
+                Long.toString(comment.commentID),
+                postHash};
+    }
+}
@@ -1,6 +1,5 @@
 package org.wordpress.android.ui.comments;
 
-import android.app.Dialog;
 import android.app.Fragment;
 import android.app.FragmentManager;
 import android.app.FragmentTransaction;
@@ -214,14 +213,6 @@ public class CommentsActivity extends AppCompatActivity
         super.onSaveInstanceState(outState);
     }
 
-    @Override
-    protected Dialog onCreateDialog(int id) {
-        Dialog dialog = CommentDialogs.createCommentDialog(this, id);
-        if (dialog != null)
-            return dialog;
-        return super.onCreateDialog(id);
-    }
-
     @Override
     public void onModerateComment(final int accountId, final Comment comment,
                                   final CommentStatus newStatus) {
@@ -238,16 +238,6 @@ public class CommentsListFragment extends Fragment {
         mSwipeToRefreshHelper.setRefreshing(refreshing);
     }
 
-    private void dismissDialog(int id) {
-        if (!isAdded())
-            return;
-        try {
-            getActivity().dismissDialog(id);
-        } catch (IllegalArgumentException e) {
-            // raised when dialog wasn't created
-        }
-    }
-
     private void moderateSelectedComments(final CommentStatus newStatus) {
         final CommentList selectedComments = getAdapter().getSelectedComments();
         final CommentList updateComments = new CommentList();
@@ -261,37 +251,15 @@ public class CommentsListFragment extends Fragment {
 
         if (!NetworkUtils.checkConnection(getActivity())) return;
 
-        final int dlgId;
-        switch (newStatus) {
-            case APPROVED:
-                dlgId = CommentDialogs.ID_COMMENT_DLG_APPROVING;
-                break;
-            case UNAPPROVED:
-                dlgId = CommentDialogs.ID_COMMENT_DLG_UNAPPROVING;
-                break;
-            case SPAM:
-                dlgId = CommentDialogs.ID_COMMENT_DLG_SPAMMING;
-                break;
-            case TRASH:
-                dlgId = CommentDialogs.ID_COMMENT_DLG_TRASHING;
-                break;
-            default :
-                return;
-        }
-        getActivity().showDialog(dlgId);
-
         CommentActions.OnCommentsModeratedListener listener = new CommentActions.OnCommentsModeratedListener() {
             @Override
             public void onCommentsModerated(final CommentList moderatedComments) {
                 if (!isAdded()) return;
 
-                finishActionMode();
-                dismissDialog(dlgId);
-                if (moderatedComments.size() > 0) {
-                    getAdapter().clearSelectedComments();
-                    getAdapter().replaceComments(moderatedComments);
-                } else {
+                // comments the blog failed to moderate have been restored locally, so reload to show them
+                if (moderatedComments.size() < updateComments.size()) {
                     ToastUtils.showToast(getActivity(), R.string.error_moderate_comment);
+                    getAdapter().loadComments();
                 }
             }
         };
@@ -301,6 +269,15 @@ public class CommentsListFragment extends Fragment {
                 updateComments,
                 newStatus,
                 listener);
+
+        // show the change right away rather than waiting for the blog
+        String newStatusStr = CommentStatus.toString(newStatus);
+        for (Comment comment: updateComments) {
+            comment.setStatus(newStatusStr);
+        }
+        finishActionMode();
+        getAdapter().clearSelectedComments();
+        getAdapter().replaceComments(updateComments);
     }
 
     private void confirmDeleteComments() {
@@ -328,25 +305,26 @@ public class CommentsListFragment extends Fragment {
         if (!NetworkUtils.checkConnection(getActivity())) return;
 
         final CommentList selectedComments = getAdapter().getSelectedComments();
-        getActivity().showDialog(CommentDialogs.ID_COMMENT_DLG_TRASHING);
         CommentActions.OnCommentsModeratedListener listener = new CommentActions.OnCommentsModeratedListener() {
             @Override
             public void onCommentsModerated(final CommentList deletedComments) {
                 if (!isAdded()) return;
 
-                finishActionMode();
-                dismissDialog(CommentDialogs.ID_COMMENT_DLG_TRASHING);
-                if (deletedComments.size() > 0) {
-                    getAdapter().clearSelectedComments();
-                    getAdapter().deleteComments(deletedComments);
-                } else {
+                // comments the blog failed to delete have been restored locally, so reload to show them
+                if (deletedComments.size() < selectedComments.size()) {
                     ToastUtils.showToast(getActivity(), R.string.error_moderate_comment);
+                    getAdapter().loadComments();
                 }
             }
         };
 
         CommentActions.moderateComments(
                 WordPress.getCurrentLocalTableBlogId(), selectedComments, CommentStatus.TRASH, listener);
+
+        // remove them right away rather than waiting for the blog
+        finishActionMode();
+        getAdapter().clearSelectedComments();
+        getAdapter().deleteComments(selectedComments);
     }
 
     void loadComments() {
@@ -433,20 +411,20 @@ public class CommentsListFragment extends Fragment {
                 ApiHelper.removeDeletedComments(blog);
             }
 
-            Map<String, Object> hPost = new HashMap<>();
-            if (mIsLoadingMore) {
+            try {
+                if (!mIsLoadingMore) {
+                    return ApiHelper.syncComments(blog, COMMENTS_PER_PAGE);
+                }
+
+                Map<String, Object> hPost = new HashMap<>();
                 int numExisting = getAdapter().getItemCount();
                 hPost.put("offset", numExisting);
                 hPost.put("number", COMMENTS_PER_PAGE);
-            } else {
-                hPost.put("number", COMMENTS_PER_PAGE);
-            }
 
-            Object[] params = { blog.getRemoteBlogId(),
-                                blog.getUsername(),
-                                blog.getPassword(),
-                                hPost };
-            try {
+                Object[] params = { blog.getRemoteBlogId(),
+                                    blog.getUsername(),
+                                    blog.getPassword(),
+                                    hPost };
                 return ApiHelper.refreshComments(blog, params);
             } catch (XMLRPCFault xmlrpcFault) {
                 mErrorType = ErrorType.UNKNOWN_ERROR;
@@ -19,6 +19,7 @@ import android.widget.ScrollView;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.datasets.CommentTable;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.ui.ActivityLauncher;
 import org.wordpress.android.ui.RequestCodes;
@@ -46,6 +47,7 @@ public class MySiteFragment extends Fragment
     private WPNetworkImageView mBlavatarImageView;
     private WPTextView mBlogTitleTextView;
     private WPTextView mBlogSubtitleTextView;
+    private WPTextView mCommentsTextView;
     private LinearLayout mLookAndFeelHeader;
     private RelativeLayout mThemesContainer;
     private View mFabView;
@@ -99,6 +101,9 @@ public class MySiteFragment extends Fragment
                 }
             }
         }, delayMs);
+
+        // comments may have been moderated since the count was last shown
+        refreshUnmoderatedCommentCount();
     }
 
     @Override
@@ -114,6 +119,7 @@ public class MySiteFragment extends Fragment
         mBlavatarImageView = (WPNetworkImageView) rootView.findViewById(R.id.my_site_blavatar);
         mBlogTitleTextView = (WPTextView) rootView.findViewById(R.id.my_site_title_label);
         mBlogSubtitleTextView = (WPTextView) rootView.findViewById(R.id.my_site_subtitle_label);
+        mCommentsTextView = (WPTextView) rootView.findViewById(R.id.my_site_comments_text_view);
         mLookAndFeelHeader = (LinearLayout) rootView.findViewById(R.id.my_site_look_and_feel_header);
         mThemesContainer = (RelativeLayout) rootView.findViewById(R.id.row_themes);
         mScrollView = (ScrollView) rootView.findViewById(R.id.scroll_view);
@@ -318,6 +324,24 @@ public class MySiteFragment extends Fragment
 
         mBlogTitleTextView.setText(blogTitle);
         mBlogSubtitleTextView.setText(homeURL);
+
+        refreshUnmoderatedCommentCount();
+    }
+
+    /*
+     * shows the number of comments awaiting moderation next to the comments label - this is read
+     * from a table of counts so it's cheap enough to do on the UI thread
+     */
+    private void refreshUnmoderatedCommentCount() {
+        if (!isAdded() || mBlog == null || mCommentsTextView == null) {
+            return;
+        }
+        int count = CommentTable.getUnmoderatedCommentCount(mBlog.getLocalTableBlogId());
+        if (count > 0) {
+            mCommentsTextView.setText(getString(R.string.my_site_btn_comments_unmoderated, count));
+        } else {
+            mCommentsTextView.setText(R.string.my_site_btn_comments);
+        }
     }
 
     @Override
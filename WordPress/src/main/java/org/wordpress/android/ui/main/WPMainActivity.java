@@ -46,9 +46,9 @@ import org.wordpress.android.util.CoreEvents.MainViewPagerScrolled;
 import org.wordpress.android.util.CoreEvents.UserSignedOutCompletely;
 import org.wordpress.android.util.CoreEvents.UserSignedOutWordPressCom;
 import org.wordpress.android.util.NetworkUtils;
-import org.wordpress.android.util.ProfilingUtils;
 import org.wordpress.android.util.StringUtils;
 import org.wordpress.android.util.ToastUtils;
+import org.wordpress.android.util.Trace;
 import org.wordpress.android.widgets.WPViewPager;
 
 import de.greenrobot.event.EventBus;
@@ -75,7 +75,7 @@ public class WPMainActivity extends Activity implements Bucket.Listener<Note> {
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
-        ProfilingUtils.split("WPMainActivity.onCreate");
+        Trace.mark("WPMainActivity.onCreate");
 
         super.onCreate(savedInstanceState);
         setContentView(R.layout.main_activity);
@@ -265,9 +265,9 @@ public class WPMainActivity extends Activity implements Bucket.Listener<Note> {
 
         checkConnection();
 
-        ProfilingUtils.split("WPMainActivity.onResume");
-        ProfilingUtils.dump();
-        ProfilingUtils.stop();
+        Trace.mark("WPMainActivity.onResume");
+        // ends the startup section begun in WordPress.onCreate(), which is only open on the first resume
+        WordPress.endStartupTrace(true);
     }
 
     private void trackLastVisibleTab(int position, boolean trackAnalytics) {
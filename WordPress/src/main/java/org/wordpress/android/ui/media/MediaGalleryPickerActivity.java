@@ -50,7 +50,8 @@ public class MediaGalleryPickerActivity extends AppCompatActivity
     public static final String RESULT_IDS = "RESULT_IDS";
     public static final String TAG = MediaGalleryPickerActivity.class.getSimpleName();
 
-    private int mOldMediaSyncOffset = 0;
+    // server offset of the next page of media to fetch
+    private int mNextMediaSyncOffset;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -172,8 +173,9 @@ public class MediaGalleryPickerActivity extends AppCompatActivity
 
     @Override
     public void fetchMoreData(int offset) {
-        if (!mHasRetrievedAllMedia) {
-            refreshMediaFromServer(offset);
+        // the passed offset is the number of images shown, so continue from where the last page left off
+        if (!mHasRetrievedAllMedia && !mIsRefreshing) {
+            refreshMediaFromServer(mNextMediaSyncOffset);
         }
     }
 
@@ -199,11 +201,7 @@ public class MediaGalleryPickerActivity extends AppCompatActivity
 
     void refreshMediaFromServer(int offset) {
         if (offset == 0 || !mIsRefreshing) {
-            if (offset == mOldMediaSyncOffset) {
-                // we're pulling the same data again for some reason. Pull from the beginning.
-                offset = 0;
-            }
-            mOldMediaSyncOffset = offset;
+            final int requestOffset = offset;
             mIsRefreshing = true;
             mGridAdapter.setRefreshing(true);
 
@@ -211,13 +209,14 @@ public class MediaGalleryPickerActivity extends AppCompatActivity
             apiArgs.add(WordPress.getCurrentBlog());
 
             ApiHelper.SyncMediaLibraryTask.Callback callback = new ApiHelper.SyncMediaLibraryTask.Callback() {
-                // refersh db from server. If returned count is 0, we've retrieved all the media.
-                // stop retrieving until the user manually refreshes
+                // refersh db from server. If returned count is less than a full page, we've retrieved all
+                // the media. stop retrieving until the user manually refreshes
 
                 @Override
                 public void onSuccess(int count) {
                     MediaGridAdapter adapter = (MediaGridAdapter) mGridView.getAdapter();
-                    mHasRetrievedAllMedia = (count == 0);
+                    mNextMediaSyncOffset = requestOffset + count;
+                    mHasRetrievedAllMedia = (count < ApiHelper.SyncMediaLibraryTask.PAGE_SIZE);
                     adapter.setHasRetrievedAll(mHasRetrievedAllMedia);
                     String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
                     if (WordPress.wpDB.getMediaCountAll(blogId) == 0 && count == 0) {
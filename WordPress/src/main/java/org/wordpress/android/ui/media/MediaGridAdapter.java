@@ -7,7 +7,6 @@ import android.database.MatrixCursor;
 import android.database.MergeCursor;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.Handler;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -30,8 +29,6 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
 import org.wordpress.android.ui.CheckableFrameLayout;
 import org.wordpress.android.util.DisplayUtils;
-import org.wordpress.android.util.ImageUtils.BitmapWorkerCallback;
-import org.wordpress.android.util.ImageUtils.BitmapWorkerTask;
 import org.wordpress.android.util.MediaUtils;
 import org.wordpress.android.util.PhotonUtils;
 
@@ -39,18 +36,23 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * An adapter for the media gallery listViews.
  */
 public class MediaGridAdapter extends CursorAdapter {
+    // number of items from the end of the grid at which the next page is requested
+    private static final int PREFETCH_DISTANCE = 20;
+
     private MediaGridAdapterCallback mCallback;
     private boolean mHasRetrievedAll;
     private boolean mIsRefreshing;
     private int mCursorDataCount;
     private int mGridItemWidth;
-    private final Map<String, List<BitmapReadyCallback>> mFilePathToCallbackMap;
-    private final Handler mHandler;
+    // views waiting for the thumbnail of each local image, and the requests creating them
+    private final Map<String, List<ImageView>> mFilePathToViewsMap;
+    private final Map<String, Future<?>> mFilePathToThumbnailMap;
     private final int mLocalImageWidth;
     private final LayoutInflater mInflater;
     private boolean mIsCurrentBlogPhotonCapable;
@@ -65,10 +67,6 @@ public class MediaGridAdapter extends CursorAdapter {
         public boolean isInMultiSelect();
     }
 
-    interface BitmapReadyCallback {
-        void onBitmapReady(Bitmap bitmap);
-    }
-
     private static enum ViewTypes {
         LOCAL, NETWORK, PROGRESS, SPACER
     }
@@ -79,8 +77,8 @@ public class MediaGridAdapter extends CursorAdapter {
         mSelectedItems = new ArrayList<String>();
         mLocalImageWidth = context.getResources().getDimensionPixelSize(R.dimen.media_grid_local_image_width);
         mInflater = LayoutInflater.from(context);
-        mFilePathToCallbackMap = new HashMap<String, List<BitmapReadyCallback>>();
-        mHandler = new Handler();
+        mFilePathToViewsMap = new HashMap<String, List<ImageView>>();
+        mFilePathToThumbnailMap = new HashMap<String, Future<?>>();
         setImageLoader(imageLoader);
         checkPhotonCapable();
     }
@@ -261,9 +259,10 @@ public class MediaGridAdapter extends CursorAdapter {
             }
         }
 
-        // if we are near the end, make a call to fetch more
+        // if we are near the end, make a call to fetch more so the next page is there by the time the user
+        // reaches it
         int position = cursor.getPosition();
-        if (position == mCursorDataCount - 1 && !mHasRetrievedAll) {
+        if (position >= mCursorDataCount - PREFETCH_DISTANCE && !mHasRetrievedAll) {
             if (mCallback != null) {
                 mCallback.fetchMoreData(mCursorDataCount);
             }
@@ -310,6 +309,11 @@ public class MediaGridAdapter extends CursorAdapter {
     private synchronized void loadLocalImage(Cursor cursor, final ImageView imageView) {
         final String filePath = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_PATH));
 
+        // this view may have been recycled while waiting for another image's thumbnail
+        if (imageView.getTag() instanceof String && !imageView.getTag().equals(filePath)) {
+            cancelThumbnailRequest((String) imageView.getTag(), imageView);
+        }
+
         if (MediaUtils.isValidImage(filePath)) {
             imageView.setTag(filePath);
 
@@ -319,55 +323,64 @@ public class MediaGridAdapter extends CursorAdapter {
             } else {
                 imageView.setImageBitmap(null);
 
-                boolean shouldFetch = false;
-
-                List<BitmapReadyCallback> list;
-                if (mFilePathToCallbackMap.containsKey(filePath)) {
-                    list = mFilePathToCallbackMap.get(filePath);
-                } else {
-                    list = new ArrayList<MediaGridAdapter.BitmapReadyCallback>();
-                    shouldFetch = true;
-                    mFilePathToCallbackMap.put(filePath, list);
+                List<ImageView> views = mFilePathToViewsMap.get(filePath);
+                if (views == null) {
+                    views = new ArrayList<ImageView>();
+                    mFilePathToViewsMap.put(filePath, views);
+                    fetchThumbnail(filePath);
                 }
-                list.add(new BitmapReadyCallback() {
-                    @Override
-                    public void onBitmapReady(Bitmap bitmap) {
-                        if (imageView.getTag() instanceof String && imageView.getTag().equals(filePath))
-                            imageView.setImageBitmap(bitmap);
-                    }
-                });
-
-
-                if (shouldFetch) {
-                    fetchBitmap(filePath);
+                if (!views.contains(imageView)) {
+                    views.add(imageView);
                 }
             }
         } else {
             // if not image, for now show no image.
+            imageView.setTag(null);
             imageView.setImageBitmap(null);
         }
     }
 
-    private void fetchBitmap(final String filePath) {
-        BitmapWorkerTask task = new BitmapWorkerTask(null, mLocalImageWidth, mLocalImageWidth, new BitmapWorkerCallback() {
+    private void fetchThumbnail(final String filePath) {
+        Future<?> request = MediaThumbnailCache.load(mContext, filePath, mLocalImageWidth,
+                new MediaThumbnailCache.ThumbnailCallback() {
             @Override
-            public void onBitmapReady(final String path, ImageView imageView, final Bitmap bitmap) {
-                mHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        List<BitmapReadyCallback> callbacks = mFilePathToCallbackMap.get(path);
-                        for (BitmapReadyCallback callback : callbacks) {
-                            callback.onBitmapReady(bitmap);
-                        }
+            public void onThumbnailReady(String path, Bitmap thumbnail) {
+                mFilePathToThumbnailMap.remove(path);
+                List<ImageView> views = mFilePathToViewsMap.remove(path);
+                if (thumbnail == null) {
+                    return;
+                }
 
-                        WordPress.getBitmapCache().put(path, bitmap);
-                        callbacks.clear();
-                        mFilePathToCallbackMap.remove(path);
+                WordPress.getBitmapCache().put(path, thumbnail);
+                if (views != null) {
+                    for (ImageView view : views) {
+                        if (path.equals(view.getTag())) {
+                            view.setImageBitmap(thumbnail);
+                        }
                     }
-                });
+                }
             }
         });
-        task.execute(filePath);
+        mFilePathToThumbnailMap.put(filePath, request);
+    }
+
+    /*
+     * stops the passed view waiting for a thumbnail, and cancels the request if no other view needs it
+     */
+    private void cancelThumbnailRequest(String filePath, ImageView imageView) {
+        List<ImageView> views = mFilePathToViewsMap.get(filePath);
+        if (views == null) {
+            return;
+        }
+        views.remove(imageView);
+        if (views.isEmpty()) {
+            mFilePathToViewsMap.remove(filePath);
+            Future<?> request = mFilePathToThumbnailMap.remove(filePath);
+            if (request != null) {
+                request.cancel(true);
+                MediaThumbnailCache.purgeCancelled();
+            }
+        }
     }
 
     @Override
@@ -63,6 +63,7 @@ public class MediaGridFragment extends Fragment
     private static final String BUNDLE_IN_MULTI_SELECT_MODE = "BUNDLE_IN_MULTI_SELECT_MODE";
     private static final String BUNDLE_SCROLL_POSITION = "BUNDLE_SCROLL_POSITION";
     private static final String BUNDLE_HAS_RETREIEVED_ALL_MEDIA = "BUNDLE_HAS_RETREIEVED_ALL_MEDIA";
+    private static final String BUNDLE_NEXT_MEDIA_SYNC_OFFSET = "BUNDLE_NEXT_MEDIA_SYNC_OFFSET";
     private static final String BUNDLE_FILTER = "BUNDLE_FILTER";
     private static final String BUNDLE_EMPTY_VIEW_MESSAGE = "BUNDLE_EMPTY_VIEW_MESSAGE";
 
@@ -95,7 +96,8 @@ public class MediaGridFragment extends Fragment
     private TextView mEmptyViewTitle;
     private EmptyViewMessageType mEmptyViewMessageType = EmptyViewMessageType.NO_CONTENT;
 
-    private int mOldMediaSyncOffset = 0;
+    // server offset of the next page of media to fetch
+    private int mNextMediaSyncOffset;
 
     private boolean mIsDateFilterSet;
     private boolean mSpinnerHasLaunched;
@@ -216,6 +218,7 @@ public class MediaGridFragment extends Fragment
 
         mGridView.setSelection(savedInstanceState.getInt(BUNDLE_SCROLL_POSITION, 0));
         mHasRetrievedAllMedia = savedInstanceState.getBoolean(BUNDLE_HAS_RETREIEVED_ALL_MEDIA, false);
+        mNextMediaSyncOffset = savedInstanceState.getInt(BUNDLE_NEXT_MEDIA_SYNC_OFFSET, 0);
         mFilter = Filter.getFilter(savedInstanceState.getInt(BUNDLE_FILTER));
         mEmptyViewMessageType = EmptyViewMessageType.getEnumFromString(savedInstanceState.
                 getString(BUNDLE_EMPTY_VIEW_MESSAGE));
@@ -243,6 +246,7 @@ public class MediaGridFragment extends Fragment
         outState.putStringArrayList(BUNDLE_SELECTED_STATES, mGridAdapter.getSelectedItems());
         outState.putInt(BUNDLE_SCROLL_POSITION, mGridView.getFirstVisiblePosition());
         outState.putBoolean(BUNDLE_HAS_RETREIEVED_ALL_MEDIA, mHasRetrievedAllMedia);
+        outState.putInt(BUNDLE_NEXT_MEDIA_SYNC_OFFSET, mNextMediaSyncOffset);
         outState.putBoolean(BUNDLE_IN_MULTI_SELECT_MODE, isInMultiSelect());
         outState.putInt(BUNDLE_FILTER, mFilter.ordinal());
         outState.putString(BUNDLE_EMPTY_VIEW_MESSAGE, mEmptyViewMessageType.name());
@@ -359,12 +363,7 @@ public class MediaGridFragment extends Fragment
         }
 
         if (offset == 0 || !mIsRefreshing) {
-            if (offset == mOldMediaSyncOffset) {
-                // we're pulling the same data again for some reason. Pull from the beginning.
-                offset = 0;
-            }
-            mOldMediaSyncOffset = offset;
-
+            final int requestOffset = offset;
             mIsRefreshing = true;
             updateEmptyView(EmptyViewMessageType.LOADING);
             mListener.onMediaItemListDownloadStart();
@@ -374,13 +373,14 @@ public class MediaGridFragment extends Fragment
             apiArgs.add(WordPress.getCurrentBlog());
 
             Callback callback = new Callback() {
-                // refresh db from server. If returned count is 0, we've retrieved all the media.
-                // stop retrieving until the user manually refreshes
+                // refresh db from server. If returned count is less than a full page, we've retrieved all the
+                // media. stop retrieving until the user manually refreshes
 
                 @Override
                 public void onSuccess(int count) {
                     MediaGridAdapter adapter = (MediaGridAdapter) mGridView.getAdapter();
-                    mHasRetrievedAllMedia = (count == 0);
+                    mNextMediaSyncOffset = requestOffset + count;
+                    mHasRetrievedAllMedia = (count < ApiHelper.SyncMediaLibraryTask.PAGE_SIZE);
                     adapter.setHasRetrievedAll(mHasRetrievedAllMedia);
 
                     mIsRefreshing = false;
@@ -517,6 +517,10 @@ public class MediaGridFragment extends Fragment
     }
 
     public void setFilter(Filter filter) {
+        if (filter != mFilter) {
+            // pages are fetched separately for each filter
+            mNextMediaSyncOffset = 0;
+        }
         mFilter = filter;
         Cursor cursor = filterItems(mFilter);
         if (filter != Filter.CUSTOM_DATE || cursor == null || cursor.getCount() == 0) {
@@ -639,8 +643,9 @@ public class MediaGridFragment extends Fragment
 
     @Override
     public void fetchMoreData(int offset) {
-        if (!mHasRetrievedAllMedia) {
-            refreshMediaFromServer(offset, true);
+        // the passed offset counts local items too, so continue from where the last page left off
+        if (!mHasRetrievedAllMedia && !mIsRefreshing) {
+            refreshMediaFromServer(mNextMediaSyncOffset, true);
         }
     }
 
@@ -705,6 +710,7 @@ public class MediaGridFragment extends Fragment
         mGridAdapter.changeCursor(null);
         resetSpinnerAdapter();
         mHasRetrievedAllMedia = false;
+        mNextMediaSyncOffset = 0;
     }
 
     public void removeFromMultiSelect(String mediaId) {
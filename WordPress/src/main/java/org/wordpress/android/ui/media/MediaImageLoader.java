@@ -1,25 +1,59 @@
 package org.wordpress.android.ui.media;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.widget.ImageView.ScaleType;
 
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.DiskBasedCache;
 import com.android.volley.toolbox.ImageLoader;
-import com.android.volley.toolbox.Volley;
+import com.android.volley.toolbox.ImageRequest;
 
 import org.wordpress.android.WordPress;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.UrlUtils;
 import org.wordpress.android.util.VolleyUtils;
+import org.wordpress.android.util.WPUrlUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * provides the ImageLoader and backing RequestQueue for media image requests - necessary because
- * images in protected blogs need to be authenticated, which requires a separate RequestQueue
+ * provides the ImageLoader for media image requests - images in protected blogs need to be authenticated,
+ * so those blogs get an ImageLoader which adds their credentials to each request. these loaders are kept
+ * in a registry keyed by credentials so requests for the same image are coalesced, and they all share a
+ * single RequestQueue (and its dispatcher threads and disk cache) rather than creating one each time.
+ * loaders which haven't been used for a while are dropped from the registry, and the queue is stopped
+ * when the user signs out.
  */
-class MediaImageLoader {
+public class MediaImageLoader {
     private MediaImageLoader() {
         throw new AssertionError();
     }
 
+    // loaders unused for this long, and without requests in flight, are dropped from the registry - anything
+    // still holding one can keep using it since the queue it uses remains running
+    private static final long MAX_IDLE_MS = 10 * 60 * 1000;
+
+    private static final int AUTH_NETWORK_THREAD_COUNT = 4;
+    private static final String AUTH_CACHE_DIR = "volley-auth";
+
+    private static final Map<String, AuthImageLoader> sAuthImageLoaders = new HashMap<>();
+    private static RequestQueue sAuthRequestQueue;
+    private static final AtomicInteger sInFlightCount = new AtomicInteger();
+
     static ImageLoader getInstance() {
         return getInstance(WordPress.getCurrentBlog());
     }
@@ -27,16 +61,161 @@ class MediaImageLoader {
     static ImageLoader getInstance(Blog blog) {
         if (blog != null && VolleyUtils.isCustomHTTPClientStackNeeded(blog)) {
             // use ImageLoader with authenticating request queue for protected blogs
-            AppLog.d(AppLog.T.MEDIA, "using custom imageLoader");
-            Context context = WordPress.getContext();
-            RequestQueue authRequestQueue = Volley.newRequestQueue(context, VolleyUtils.getHTTPClientStack(context, blog));
-            ImageLoader imageLoader = new ImageLoader(authRequestQueue, WordPress.getBitmapCache());
-            imageLoader.setBatchedResponseDelay(0);
-            return imageLoader;
+            return getAuthImageLoader(blog);
         } else {
             // use default ImageLoader for all others
-            AppLog.d(AppLog.T.MEDIA, "using default imageLoader");
             return WordPress.imageLoader;
         }
     }
+
+    private static synchronized ImageLoader getAuthImageLoader(Blog blog) {
+        removeIdleImageLoaders();
+
+        String creds = String.format("%s:%s", blog.getHttpuser(), blog.getHttppassword());
+        String authHeader = "Basic " + Base64.encodeToString(creds.getBytes(), Base64.NO_WRAP);
+
+        AuthImageLoader imageLoader = sAuthImageLoaders.get(authHeader);
+        if (imageLoader == null) {
+            if (sAuthRequestQueue == null) {
+                Context context = WordPress.getContext();
+                File cacheDir = new File(context.getCacheDir(), AUTH_CACHE_DIR);
+                sAuthRequestQueue = new RequestQueue(new DiskBasedCache(cacheDir),
+                        new BasicNetwork(VolleyUtils.getHTTPClientStack(context)), AUTH_NETWORK_THREAD_COUNT);
+                sAuthRequestQueue.start();
+            }
+            imageLoader = new AuthImageLoader(sAuthRequestQueue, authHeader);
+            imageLoader.setBatchedResponseDelay(0);
+            sAuthImageLoaders.put(authHeader, imageLoader);
+            AppLog.d(AppLog.T.MEDIA, "created authenticated imageLoader, " + sAuthImageLoaders.size() + " active");
+        }
+        imageLoader.mLastUsed = SystemClock.elapsedRealtime();
+        return imageLoader;
+    }
+
+    private static void removeIdleImageLoaders() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<AuthImageLoader> iterator = sAuthImageLoaders.values().iterator();
+        while (iterator.hasNext()) {
+            AuthImageLoader imageLoader = iterator.next();
+            if (imageLoader.mInFlightCount.get() == 0 && now - imageLoader.mLastUsed > MAX_IDLE_MS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /*
+     * cancels all authenticated requests and releases the shared queue - called when the user signs out
+     */
+    public static synchronized void reset() {
+        if (sAuthRequestQueue != null) {
+            VolleyUtils.cancelAllRequests(sAuthRequestQueue);
+            sAuthRequestQueue.stop();
+            sAuthRequestQueue = null;
+        }
+        sAuthImageLoaders.clear();
+    }
+
+    /*
+     * number of authenticated image loaders in the registry
+     */
+    public static synchronized int getActiveImageLoaderCount() {
+        return sAuthImageLoaders.size();
+    }
+
+    /*
+     * number of authenticated image requests which haven't completed or been cancelled
+     */
+    public static int getInFlightRequestCount() {
+        return sInFlightCount.get();
+    }
+
+    /*
+     * ImageLoader which adds the blog's credentials to its requests
+     */
+    private static class AuthImageLoader extends ImageLoader {
+        private final String mAuthHeader;
+        private final AtomicInteger mInFlightCount = new AtomicInteger();
+        private long mLastUsed;
+
+        AuthImageLoader(RequestQueue queue, String authHeader) {
+            super(queue, WordPress.getBitmapCache());
+            mAuthHeader = authHeader;
+        }
+
+        @Override
+        protected Request<Bitmap> makeImageRequest(String requestUrl, int maxWidth, int maxHeight,
+                                                   ScaleType scaleType, final String cacheKey) {
+            // the blog's credentials are never sent to wordpress.com, and requests which include them are
+            // made over HTTPS
+            boolean addAuthHeader = !WPUrlUtils.isWordPressCom(requestUrl);
+            String url = addAuthHeader ? UrlUtils.makeHttps(requestUrl) : requestUrl;
+            return new AuthImageRequest(this, url, addAuthHeader, new Response.Listener<Bitmap>() {
+                @Override
+                public void onResponse(Bitmap response) {
+                    onGetImageSuccess(cacheKey, response);
+                }
+            }, maxWidth, maxHeight, scaleType, new Response.ErrorListener() {
+                @Override
+                public void onErrorResponse(VolleyError error) {
+                    onGetImageError(cacheKey, error);
+                }
+            });
+        }
+    }
+
+    private static class AuthImageRequest extends ImageRequest {
+        private final AuthImageLoader mImageLoader;
+        private final boolean mAddAuthHeader;
+        private final AtomicBoolean mIsFinished = new AtomicBoolean();
+
+        AuthImageRequest(AuthImageLoader imageLoader,
+                         String url,
+                         boolean addAuthHeader,
+                         Response.Listener<Bitmap> listener,
+                         int maxWidth,
+                         int maxHeight,
+                         ScaleType scaleType,
+                         Response.ErrorListener errorListener) {
+            super(url, listener, maxWidth, maxHeight, scaleType, Bitmap.Config.RGB_565, errorListener);
+            mImageLoader = imageLoader;
+            mAddAuthHeader = addAuthHeader;
+            mImageLoader.mInFlightCount.incrementAndGet();
+            sInFlightCount.incrementAndGet();
+        }
+
+        @Override
+        public Map<String, String> getHeaders() throws AuthFailureError {
+            if (!mAddAuthHeader) {
+                return super.getHeaders();
+            }
+            Map<String, String> headers = new HashMap<>(super.getHeaders());
+            headers.put("Authorization", mImageLoader.mAuthHeader);
+            return headers;
+        }
+
+        @Override
+        protected void deliverResponse(Bitmap response) {
+            onFinished();
+            super.deliverResponse(response);
+        }
+
+        @Override
+        public void deliverError(VolleyError error) {
+            onFinished();
+            super.deliverError(error);
+        }
+
+        @Override
+        public void cancel() {
+            onFinished();
+            super.cancel();
+        }
+
+        private void onFinished() {
+            if (mIsFinished.compareAndSet(false, true)) {
+                mImageLoader.mInFlightCount.decrementAndGet();
+                sInFlightCount.decrementAndGet();
+            }
+        }
+    }
 }
@@ -0,0 +1,270 @@
+package org.wordpress.android.ui.media;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.support.annotation.NonNull;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.ImageUtils;
+import org.wordpress.android.util.SqlUtils;
+import org.wordpress.android.util.StringUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * creates thumbnails of local images for the media grid. thumbnails are stored on disk keyed by the
+ * image's path, modification time, size and the thumbnail size, so they're only created once for each
+ * version of an image. they're created from the MediaStore thumbnail when there is one, otherwise by
+ * decoding a subsampled copy of the image. all work is done on a small pool so decoding never blocks
+ * the UI, and callers cancel requests whose views have been recycled.
+ */
+class MediaThumbnailCache {
+    private MediaThumbnailCache() {
+        throw new AssertionError();
+    }
+
+    interface ThumbnailCallback {
+        void onThumbnailReady(String filePath, Bitmap thumbnail);
+    }
+
+    private static final String CACHE_DIR = "media_thumbnails";
+    private static final long MAX_CACHE_BYTES = 20 * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+
+    // the disk cache is trimmed after this many thumbnails are written
+    private static final int WRITES_BETWEEN_TRIMS = 50;
+    private static final AtomicInteger sWriteCount = new AtomicInteger();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        EXECUTOR = new ThreadPoolExecutor(2, 2, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "MediaThumbnail-" + mCount.incrementAndGet());
+                    }
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /*
+     * loads the thumbnail for the passed image in the background and passes it to the callback on the
+     * main thread (null if it couldn't be created) - returns a future which can be used to cancel it
+     */
+    static Future<?> load(Context context, final String filePath, final int size, final ThumbnailCallback callback) {
+        final Context appContext = context.getApplicationContext();
+        return EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap thumbnail = getThumbnail(appContext, filePath, size);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onThumbnailReady(filePath, thumbnail);
+                    }
+                });
+            }
+        });
+    }
+
+    /*
+     * removes cancelled requests from the pool's queue
+     */
+    static void purgeCancelled() {
+        EXECUTOR.purge();
+    }
+
+    private static Bitmap getThumbnail(Context context, String filePath, int size) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            return null;
+        }
+
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        String key = StringUtils.getMd5Hash(filePath + ":" + file.lastModified() + ":" + file.length() + ":" + size);
+        File cacheFile = new File(cacheDir, key + ".jpg");
+
+        if (cacheFile.exists()) {
+            Bitmap thumbnail = BitmapFactory.decodeFile(cacheFile.getPath());
+            if (thumbnail != null) {
+                return thumbnail;
+            }
+        }
+
+        Bitmap thumbnail = createThumbnail(context, filePath, size);
+        if (thumbnail != null) {
+            writeToCache(cacheDir, cacheFile, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    private static Bitmap createThumbnail(Context context, String filePath, int size) {
+        Bitmap bitmap = null;
+        int rotation = 0;
+
+        // use the MediaStore thumbnail if the image has one
+        String[] projection = {MediaStore.Images.Media._ID, MediaStore.Images.Media.ORIENTATION};
+        Cursor c = null;
+        try {
+            c = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, projection,
+                    MediaStore.Images.Media.DATA + "=?", new String[]{filePath}, null);
+            if (c != null && c.moveToFirst()) {
+                bitmap = MediaStore.Images.Thumbnails.getThumbnail(context.getContentResolver(), c.getLong(0),
+                        MediaStore.Images.Thumbnails.MINI_KIND, null);
+                rotation = c.getInt(1);
+            }
+        } catch (SecurityException | OutOfMemoryError e) {
+            AppLog.e(AppLog.T.MEDIA, "Unable to get MediaStore thumbnail", e);
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+
+        // otherwise decode a subsampled copy of the image
+        if (bitmap == null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(filePath, options);
+            options.inSampleSize = ImageUtils.calculateInSampleSize(options, size, size);
+            options.inJustDecodeBounds = false;
+            try {
+                bitmap = BitmapFactory.decodeFile(filePath, options);
+            } catch (OutOfMemoryError e) {
+                AppLog.e(AppLog.T.MEDIA, "OutOfMemoryError decoding " + filePath);
+            }
+            rotation = ImageUtils.getExifOrientation(filePath);
+        }
+
+        if (bitmap == null) {
+            return null;
+        }
+
+        // scale the shortest side down to the thumbnail size and apply the rotation in a single pass
+        Matrix matrix = new Matrix();
+        float scale = (float) size / Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (scale < 1f) {
+            matrix.postScale(scale, scale);
+        }
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        try {
+            Bitmap thumbnail = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            if (thumbnail != bitmap) {
+                bitmap.recycle();
+            }
+            return thumbnail;
+        } catch (OutOfMemoryError e) {
+            AppLog.e(AppLog.T.MEDIA, "OutOfMemoryError creating thumbnail for " + filePath);
+            return bitmap;
+        }
+    }
+
+    private static void writeToCache(File cacheDir, File cacheFile, Bitmap thumbnail) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return;
+        }
+
+        // write to a temp file first so a partial thumbnail is never read - it's uniquely named since two
+        // pool threads can write the same thumbnail
+        File tempFile = null;
+        FileOutputStream out = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+            out = new FileOutputStream(tempFile);
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(cacheFile)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            AppLog.e(AppLog.T.MEDIA, "Unable to write thumbnail", e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nop
+                }
+            }
+        }
+
+        if (sWriteCount.incrementAndGet() % WRITES_BETWEEN_TRIMS == 0) {
+            trimCache(cacheDir);
+        }
+    }
+
+    /*
+     * deletes the least recently written thumbnails until the cache fits in its budget
+     */
+    private static void trimCache(File cacheDir) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= MAX_CACHE_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        int numDeleted = 0;
+        for (File file : files) {
+            if (totalBytes <= MAX_CACHE_BYTES) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+                numDeleted++;
+            }
+        }
+        AppLog.d(AppLog.T.MEDIA, "trimmed " + numDeleted + " media thumbnails");
+    }
+}
@@ -29,4 +29,17 @@ public class MediaEvents {
             mMediaId = mediaId;
         }
     }
+
+    public static class MediaUploadProgress {
+        public final String mLocalBlogId;
+        public final int mPendingCount;
+        public final int mActiveCount;
+        public final int mCompletedCount;
+        MediaUploadProgress(String localBlogId, int pendingCount, int activeCount, int completedCount) {
+            mLocalBlogId = localBlogId;
+            mPendingCount = pendingCount;
+            mActiveCount = activeCount;
+            mCompletedCount = completedCount;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package org.wordpress.android.ui.media.services;
+
+import android.database.Cursor;
+
+import org.wordpress.android.WordPress;
+import org.wordpress.android.WordPressDB;
+import org.wordpress.android.util.helpers.MediaFile;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-memory upload queue for a single blog, backed by the "queued" rows of the media table.
+ * The table remains the source of truth: the queue is (re)filled from it whenever the
+ * service is started, skipping files that are already being uploaded.
+ *
+ * Not thread-safe, must only be accessed from the main thread.
+ */
+class MediaUploadQueue {
+    private final String mBlogId;
+    private final ArrayDeque<MediaFile> mPending = new ArrayDeque<>();
+    private final Set<String> mQueuedIds = new HashSet<>();
+    private final Set<String> mActiveIds = new HashSet<>();
+    private int mCompletedCount;
+
+    MediaUploadQueue(String blogId) {
+        mBlogId = blogId;
+    }
+
+    String getBlogId() {
+        return mBlogId;
+    }
+
+    /*
+     * adds all queued media files from the db which aren't already known, returns the number added
+     */
+    int refill() {
+        Cursor cursor = WordPress.wpDB.getMediaUploadQueue(mBlogId);
+        if (cursor == null) {
+            return 0;
+        }
+
+        int numAdded = 0;
+        try {
+            int colMediaId = cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MEDIA_ID);
+            int colFileName = cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_NAME);
+            int colFilePath = cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_PATH);
+            int colMimeType = cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MIME_TYPE);
+            while (cursor.moveToNext()) {
+                String mediaId = cursor.getString(colMediaId);
+                if (mediaId == null || mQueuedIds.contains(mediaId) || mActiveIds.contains(mediaId)) {
+                    continue;
+                }
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setBlogId(mBlogId);
+                mediaFile.setMediaId(mediaId);
+                mediaFile.setFileName(cursor.getString(colFileName));
+                mediaFile.setFilePath(cursor.getString(colFilePath));
+                mediaFile.setMimeType(cursor.getString(colMimeType));
+                mPending.add(mediaFile);
+                mQueuedIds.add(mediaId);
+                numAdded++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return numAdded;
+    }
+
+    /*
+     * returns the next file to upload and marks it as active, or null if nothing is waiting
+     */
+    MediaFile startNext() {
+        MediaFile mediaFile = mPending.poll();
+        if (mediaFile != null) {
+            mQueuedIds.remove(mediaFile.getMediaId());
+            mActiveIds.add(mediaFile.getMediaId());
+        }
+        return mediaFile;
+    }
+
+    void finish(String mediaId) {
+        if (mActiveIds.remove(mediaId)) {
+            mCompletedCount++;
+        }
+    }
+
+    int getPendingCount() {
+        return mPending.size();
+    }
+
+    int getActiveCount() {
+        return mActiveIds.size();
+    }
+
+    int getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    boolean isIdle() {
+        return mPending.isEmpty() && mActiveIds.isEmpty();
+    }
+}
@@ -3,15 +3,16 @@ package org.wordpress.android.ui.media.services;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.os.Handler;
+import android.os.AsyncTask;
 import android.os.IBinder;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.ui.media.services.MediaEvents.MediaChanged;
+import org.wordpress.android.models.Blog;
+import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.util.helpers.MediaFile;
-import org.wordpress.android.WordPressDB;
+import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.CrashlyticsUtils;
 import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
@@ -21,21 +22,23 @@ import org.xmlrpc.android.ApiHelper.GetMediaItemTask;
 import org.xmlrpc.android.XMLRPCFault;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.greenrobot.event.EventBus;
 
 /**
  * A service for uploading media files from the media browser.
- * Only one file is uploaded at a time.
+ * Files are uploaded in parallel, up to AppPrefs.getMediaUploadConcurrency() at a time for each
+ * blog. The queue is driven by upload callbacks rather than polling: a new upload is started as
+ * soon as a slot is freed, and the service stops itself once every queue is drained.
  */
 public class MediaUploadService extends Service {
-    // time to wait before trying to upload the next file
-    private static final int UPLOAD_WAIT_TIME = 1000;
-
     private Context mContext;
-    private Handler mHandler = new Handler();
-    private boolean mUploadInProgress;
+    private final Map<String, MediaUploadQueue> mQueues = new HashMap<>();
+    private final Map<String, Blog> mQueueBlogs = new HashMap<>();
+    private int mFetchesInProgress;
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -47,38 +50,31 @@ public class MediaUploadService extends Service {
         super.onCreate();
 
         mContext = this.getApplicationContext();
-        mUploadInProgress = false;
 
         cancelOldUploads();
     }
 
     @Override
-    public void onStart(Intent intent, int startId) {
-        mHandler.post(mFetchQueueTask);
-    }
-
-    private Runnable mFetchQueueTask = new Runnable() {
-        @Override
-        public void run() {
-            Cursor cursor = getQueue();
-            try {
-                if ((cursor == null || cursor.getCount() == 0 || mContext == null) && !mUploadInProgress) {
-                    MediaUploadService.this.stopSelf();
-                    return;
-                } else {
-                    if (mUploadInProgress) {
-                        mHandler.postDelayed(this, UPLOAD_WAIT_TIME);
-                    } else {
-                        uploadMediaFile(cursor);
-                    }
-                }
-            } finally {
-                if (cursor != null)
-                    cursor.close();
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        Blog blog = WordPress.getCurrentBlog();
+        if (blog != null) {
+            String blogId = String.valueOf(blog.getLocalTableBlogId());
+            MediaUploadQueue queue = mQueues.get(blogId);
+            if (queue == null) {
+                queue = new MediaUploadQueue(blogId);
+                mQueues.put(blogId, queue);
             }
-
+            mQueueBlogs.put(blogId, blog);
+            int numAdded = queue.refill();
+            if (numAdded > 0) {
+                AppLog.d(T.MEDIA, "media upload queue > added " + numAdded + " files for blog " + blogId);
+            }
+            startUploads(queue);
         }
-    };
+
+        stopIfIdle();
+        return START_NOT_STICKY;
+    }
 
     private void cancelOldUploads() {
         // There should be no media files with an upload state of 'uploading' at the start of this service.
@@ -90,47 +86,71 @@ public class MediaUploadService extends Service {
         }
     }
 
-    private Cursor getQueue() {
-        if (WordPress.getCurrentBlog() == null)
-            return null;
+    /*
+     * fills the free upload slots for the passed queue
+     */
+    private void startUploads(MediaUploadQueue queue) {
+        int maxActive = AppPrefs.getMediaUploadConcurrency(queue.getBlogId());
+        while (queue.getActiveCount() < maxActive) {
+            MediaFile mediaFile = queue.startNext();
+            if (mediaFile == null) {
+                break;
+            }
+            uploadMediaFile(queue, mediaFile);
+        }
+        postProgress(queue);
+    }
 
-        String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
-        return WordPress.wpDB.getMediaUploadQueue(blogId);
+    /*
+     * called when an upload slot is released, either after an upload failed or once the upload
+     * (and, when not pipelined, the following fetch) has completed
+     */
+    private void onUploadSlotFreed(MediaUploadQueue queue, String localMediaId) {
+        queue.finish(localMediaId);
+        startUploads(queue);
+        stopIfIdle();
     }
 
-    private void uploadMediaFile(Cursor cursor) {
-        if (!cursor.moveToFirst())
+    private void stopIfIdle() {
+        if (mFetchesInProgress > 0) {
             return;
+        }
+        for (MediaUploadQueue queue : mQueues.values()) {
+            if (!queue.isIdle()) {
+                return;
+            }
+        }
+        stopSelf();
+    }
 
-        mUploadInProgress = true;
-
-        final String blogIdStr = cursor.getString((cursor.getColumnIndex(WordPressDB.COLUMN_NAME_BLOG_ID)));
-        final String mediaId = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MEDIA_ID));
-        String fileName = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_NAME));
-        String filePath = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_FILE_PATH));
-        String mimeType = cursor.getString(cursor.getColumnIndex(WordPressDB.COLUMN_NAME_MIME_TYPE));
+    private void postProgress(MediaUploadQueue queue) {
+        EventBus.getDefault().post(new MediaEvents.MediaUploadProgress(queue.getBlogId(),
+                queue.getPendingCount(), queue.getActiveCount(), queue.getCompletedCount()));
+    }
 
-        MediaFile mediaFile = new MediaFile();
-        mediaFile.setBlogId(blogIdStr);
-        mediaFile.setFileName(fileName);
-        mediaFile.setFilePath(filePath);
-        mediaFile.setMimeType(mimeType);
+    private void uploadMediaFile(final MediaUploadQueue queue, MediaFile mediaFile) {
+        final String blogIdStr = queue.getBlogId();
+        final String mediaId = mediaFile.getMediaId();
 
-        ApiHelper.UploadMediaTask task = new ApiHelper.UploadMediaTask(mContext, mediaFile,
-                new ApiHelper.UploadMediaTask.Callback() {
+        ApiHelper.UploadMediaTask.Callback callback = new ApiHelper.UploadMediaTask.Callback() {
             @Override
             public void onSuccess(String id) {
                 // once the file has been uploaded, update the local database entry (swap the id with the remote id)
                 // and download the new one
                 WordPress.wpDB.updateMediaLocalToRemoteId(blogIdStr, mediaId, id);
                 EventBus.getDefault().post(new MediaEvents.MediaUploadSucceed(blogIdStr, mediaId, id));
-                fetchMediaFile(id);
+                if (AppPrefs.isMediaUploadFetchPipelined()) {
+                    // release the slot right away so the next upload overlaps with the fetch
+                    fetchMediaFile(queue, null, id);
+                    onUploadSlotFreed(queue, mediaId);
+                } else {
+                    fetchMediaFile(queue, mediaId, id);
+                }
             }
 
             @Override
             public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
                 WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "failed");
-                mUploadInProgress = false;
 
                 String errorMessageToDisplay = null;
                 // well formed XML-RPC response from the server, but it's an error.
@@ -148,24 +168,29 @@ public class MediaUploadService extends Service {
                 }
 
                 EventBus.getDefault().post(new MediaEvents.MediaUploadFailed(mediaId, errorMessageToDisplay));
-                mHandler.post(mFetchQueueTask);
+                onUploadSlotFreed(queue, mediaId);
                 // Only log the error if it's not caused by the network (internal inconsistency)
                 if (errorType != ErrorType.NETWORK_XMLRPC) {
                     CrashlyticsUtils.logException(throwable, ExceptionType.SPECIFIC, T.MEDIA, errorMessage);
                 }
             }
-        });
+        };
 
         WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "uploading");
         List<Object> apiArgs = new ArrayList<Object>();
-        apiArgs.add(WordPress.getCurrentBlog());
-        task.execute(apiArgs);
-        mHandler.post(mFetchQueueTask);
+        apiArgs.add(mQueueBlogs.get(blogIdStr));
+        new ApiHelper.UploadMediaTask(mContext, mediaFile, callback)
+                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, apiArgs);
     }
 
-    private void fetchMediaFile(final String id) {
+    /*
+     * fetches the uploaded media item - localMediaId is the upload slot to release once the fetch
+     * completes, or null if the slot has already been released (pipelined fetch)
+     */
+    private void fetchMediaFile(final MediaUploadQueue queue, final String localMediaId, final String id) {
+        mFetchesInProgress++;
         List<Object> apiArgs = new ArrayList<Object>();
-        apiArgs.add(WordPress.getCurrentBlog());
+        apiArgs.add(mQueueBlogs.get(queue.getBlogId()));
         GetMediaItemTask task = new GetMediaItemTask(Integer.valueOf(id),
                 new ApiHelper.GetMediaItemTask.Callback() {
             @Override
@@ -173,21 +198,28 @@ public class MediaUploadService extends Service {
                 String blogId = mediaFile.getBlogId();
                 String mediaId = mediaFile.getMediaId();
                 WordPress.wpDB.updateMediaUploadState(blogId, mediaId, "uploaded");
-                mUploadInProgress = false;
-                mHandler.post(mFetchQueueTask);
                 EventBus.getDefault().post(new MediaChanged(blogId, mediaId));
+                onFetchCompleted();
             }
 
             @Override
             public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
-                mUploadInProgress = false;
-                mHandler.post(mFetchQueueTask);
+                onFetchCompleted();
                 // Only log the error if it's not caused by the network (internal inconsistency)
                 if (errorType != ErrorType.NETWORK_XMLRPC) {
                     CrashlyticsUtils.logException(throwable, ExceptionType.SPECIFIC, T.MEDIA, errorMessage);
                 }
             }
+
+            private void onFetchCompleted() {
+                mFetchesInProgress--;
+                if (localMediaId != null) {
+                    onUploadSlotFreed(queue, localMediaId);
+                } else {
+                    stopIfIdle();
+                }
+            }
         });
-        task.execute(apiArgs);
+        task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, apiArgs);
     }
 }
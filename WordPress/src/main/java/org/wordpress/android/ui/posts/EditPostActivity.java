@@ -6,6 +6,7 @@ import android.app.Fragment;
 import android.app.FragmentManager;
 import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -16,6 +17,9 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v13.app.FragmentPagerAdapter;
 import android.support.v4.app.ActivityCompat;
@@ -44,6 +48,7 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.analytics.AnalyticsTracker;
 import org.wordpress.android.editor.EditorFragmentAbstract;
 import org.wordpress.android.editor.EditorFragmentAbstract.EditorFragmentListener;
+import org.wordpress.android.editor.EditorFragmentAbstract.TitleAndContentListener;
 import org.wordpress.android.editor.LegacyEditorFragment;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.models.Post;
@@ -94,8 +99,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.greenrobot.event.EventBus;
 
@@ -130,8 +134,16 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
     private static int PAGE_SETTINGS = 1;
     private static int PAGE_PREVIEW = 2;
 
-    private static final int AUTOSAVE_INTERVAL_MILLIS = 10000;
-    private Timer mAutoSaveTimer;
+    // autosave runs once the user stops typing for AUTOSAVE_DELAY_MILLIS, but no later than
+    // AUTOSAVE_MAX_DELAY_MILLIS after the first unsaved change
+    private static final int AUTOSAVE_DELAY_MILLIS = 2000;
+    private static final int AUTOSAVE_MAX_DELAY_MILLIS = 10000;
+    private HandlerThread mAutoSaveThread;
+    private volatile Handler mAutoSaveHandler;
+    private final AtomicBoolean mHasUnsavedChanges = new AtomicBoolean();
+    private volatile long mFirstUnsavedChangeTime;
+    private final Object mSaveLock = new Object();
+    private ContentValues mLastSavedValues;
 
     // Each element is a list of media IDs being uploaded to a gallery, keyed by gallery ID
     private Map<Long, List<String>> mPendingGalleryUploads = new HashMap<>();
@@ -169,6 +181,7 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
     private boolean mIsNewPost;
     private boolean mIsPage;
     private boolean mHasSetPostContent;
+    private boolean mIsSavingAndFinishing;
 
     // For opening the context menu after permissions have been granted
     private View mMenuView = null;
@@ -252,6 +265,8 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
             return;
         }
 
+        mLastSavedValues = WordPress.wpDB.getPostUpdateValues(mPost);
+
         if (mIsNewPost) {
             trackEditorCreatedPost(action, getIntent());
         }
@@ -275,32 +290,44 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
                 invalidateOptionsMenu();
                 if (position == PAGE_CONTENT) {
                     setTitle(StringUtils.unescapeHTML(WordPress.getCurrentBlog().getBlogName()));
+                    // the post settings may have been changed
+                    onEditorContentChanged();
                 } else if (position == PAGE_SETTINGS) {
                     setTitle(mPost.isPage() ? R.string.page_settings : R.string.post_settings);
                 } else if (position == PAGE_PREVIEW) {
                     setTitle(mPost.isPage() ? R.string.preview_page : R.string.preview_post);
-                    savePost(true);
-                    if (mEditPostPreviewFragment != null) {
-                        mEditPostPreviewFragment.loadPost();
-                    }
+                    savePostAsync(true, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mEditPostPreviewFragment != null) {
+                                mEditPostPreviewFragment.loadPost();
+                            }
+                        }
+                    });
                 }
             }
         });
         ActivityId.trackLastActivity(ActivityId.POST_EDITOR);
     }
 
-    class AutoSaveTask extends TimerTask {
+    private final Runnable mAutoSaveRunnable = new Runnable() {
+        @Override
         public void run() {
-            savePost(true);
+            autoSavePost();
         }
-    }
+    };
 
     @Override
     protected void onResume() {
         super.onResume();
 
-        mAutoSaveTimer = new Timer();
-        mAutoSaveTimer.scheduleAtFixedRate(new AutoSaveTask(), AUTOSAVE_INTERVAL_MILLIS, AUTOSAVE_INTERVAL_MILLIS);
+        // autosave runs on its own thread since reading the content may block on the editor
+        mAutoSaveThread = new HandlerThread("EditPostAutoSave");
+        mAutoSaveThread.start();
+        mAutoSaveHandler = new Handler(mAutoSaveThread.getLooper());
+        if (mHasUnsavedChanges.get()) {
+            mAutoSaveHandler.postDelayed(mAutoSaveRunnable, AUTOSAVE_DELAY_MILLIS);
+        }
     }
 
     @Override
@@ -326,7 +353,20 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
         }
 
         stopMediaUploadService();
-        mAutoSaveTimer.cancel();
+        mAutoSaveHandler.removeCallbacks(mAutoSaveRunnable);
+        mAutoSaveHandler = null;
+        mAutoSaveThread.quit();
+
+        // flush a pending autosave now rather than dropping it, the process may be killed while paused - the
+        // editor's snapshot may miss the latest edits on the UI thread, so the current content is fetched first
+        if (mHasUnsavedChanges.get()) {
+            fetchTitleAndContent(new TitleAndContentListener() {
+                @Override
+                public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                    autoSavePost(title, content);
+                }
+            });
+        }
     }
 
     @Override
@@ -510,25 +550,12 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
     public boolean onOptionsItemSelected(MenuItem item) {
         int itemId = item.getItemId();
         if (itemId == R.id.menu_save_post) {
-            // If the post is new and there are no changes, don't publish
-            updatePostObject(false);
-            if (!mPost.isPublishable()) {
-                ToastUtils.showToast(this, R.string.error_publish_empty_post, Duration.SHORT);
-                return false;
-            }
-
-            savePost(false, false);
-            trackSavePostAnalytics();
-
-            if (!NetworkUtils.isNetworkAvailable(this)) {
-                ToastUtils.showToast(this, R.string.error_publish_no_network, Duration.SHORT);
-                return false;
-            }
-
-            PostUploadService.addPostToUpload(mPost);
-            startService(new Intent(this, PostUploadService.class));
-            setResult(RESULT_OK);
-            finish();
+            fetchTitleAndContent(new TitleAndContentListener() {
+                @Override
+                public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                    publishPost(title, content);
+                }
+            });
             return true;
         } else if (itemId == R.id.menu_preview_post) {
             mViewPager.setCurrentItem(PAGE_PREVIEW);
@@ -651,7 +678,48 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
         );
     }
 
+    private void publishPost(CharSequence title, CharSequence content) {
+        // If the post is new and there are no changes, don't publish
+        updatePostObject(false, title, content);
+        if (!mPost.isPublishable()) {
+            ToastUtils.showToast(this, R.string.error_publish_empty_post, Duration.SHORT);
+            return;
+        }
+
+        savePost(false, false);
+        trackSavePostAnalytics();
+
+        if (!NetworkUtils.isNetworkAvailable(this)) {
+            ToastUtils.showToast(this, R.string.error_publish_no_network, Duration.SHORT);
+            return;
+        }
+
+        PostUploadService.addPostToUpload(mPost);
+        startService(new Intent(this, PostUploadService.class));
+        setResult(RESULT_OK);
+        finish();
+    }
+
+    /*
+     * gets the title and content from the editor without blocking the UI thread, null values are passed
+     * when there's no editor
+     */
+    private void fetchTitleAndContent(TitleAndContentListener listener) {
+        if (mEditorFragment != null) {
+            mEditorFragment.getTitleAndContent(listener);
+        } else {
+            listener.onTitleAndContentAvailable(null, null);
+        }
+    }
+
     private void updatePostObject(boolean isAutosave) {
+        updatePostObject(isAutosave, null, null);
+    }
+
+    /*
+     * title and content are read from the editor when null
+     */
+    private void updatePostObject(boolean isAutosave, CharSequence title, CharSequence content) {
         if (mPost == null) {
             AppLog.e(AppLog.T.POSTS, "Attempted to save an invalid Post.");
             return;
@@ -659,7 +727,7 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
 
         // Update post object from fragment fields
         if (mEditorFragment != null) {
-            updatePostContent(isAutosave);
+            updatePostContent(isAutosave, title, content);
         }
         if (mEditPostSettingsFragment != null) {
             mEditPostSettingsFragment.updatePostSettings();
@@ -672,10 +740,88 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
 
     private void savePost(boolean isAutosave, boolean updatePost) {
         if (updatePost) {
+            mHasUnsavedChanges.set(false);
             updatePostObject(isAutosave);
         }
 
-        WordPress.wpDB.updatePost(mPost);
+        writePost();
+    }
+
+    private void writePost() {
+        synchronized (mSaveLock) {
+            ContentValues values = WordPress.wpDB.getPostUpdateValues(mPost);
+            WordPress.wpDB.updatePostValues(mPost, values);
+            mLastSavedValues = values;
+        }
+    }
+
+    /*
+     * same as savePost() but doesn't block the UI thread while the content is read from the editor,
+     * onSaved is run once the post was written
+     */
+    private void savePostAsync(final boolean isAutosave, final Runnable onSaved) {
+        fetchTitleAndContent(new TitleAndContentListener() {
+            @Override
+            public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                mHasUnsavedChanges.set(false);
+                updatePostObject(isAutosave, title, content);
+                writePost();
+                if (onSaved != null) {
+                    onSaved.run();
+                }
+            }
+        });
+    }
+
+    private void autoSavePost() {
+        autoSavePost(null, null);
+    }
+
+    /*
+     * called on the autosave thread, or on the UI thread with the fetched title and content when paused,
+     * saves the post if it was edited since the last save and only writes the columns which actually changed
+     */
+    private void autoSavePost(CharSequence title, CharSequence content) {
+        if (!mHasUnsavedChanges.getAndSet(false)) {
+            return;
+        }
+        mFirstUnsavedChangeTime = 0;
+
+        long startTime = SystemClock.elapsedRealtime();
+        updatePostObject(true, title, content);
+
+        ContentValues changedValues;
+        synchronized (mSaveLock) {
+            ContentValues values = WordPress.wpDB.getPostUpdateValues(mPost);
+            changedValues = getChangedValues(values, mLastSavedValues);
+            WordPress.wpDB.updatePostValues(mPost, changedValues);
+            mLastSavedValues = values;
+        }
+
+        int numChars = 0;
+        for (String key : changedValues.keySet()) {
+            Object value = changedValues.get(key);
+            numChars += (value != null ? value.toString().length() : 0);
+        }
+        AppLog.d(T.POSTS, "autosave wrote " + changedValues.size() + " columns (" + numChars + " chars) in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+    }
+
+    private static ContentValues getChangedValues(ContentValues values, ContentValues lastSavedValues) {
+        ContentValues changedValues = new ContentValues(values);
+        if (lastSavedValues == null) {
+            return changedValues;
+        }
+        for (String key : values.keySet()) {
+            if (lastSavedValues.containsKey(key)) {
+                Object value = values.get(key);
+                Object lastSavedValue = lastSavedValues.get(key);
+                if (value == null ? lastSavedValue == null : value.equals(lastSavedValue)) {
+                    changedValues.remove(key);
+                }
+            }
+        }
+        return changedValues;
     }
 
     @Override
@@ -691,13 +837,29 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
         }
     }
 
-    private boolean hasEmptyContentFields() {
-        return TextUtils.isEmpty(mEditorFragment.getTitle()) && TextUtils.isEmpty(mEditorFragment.getContent());
+    private void saveAndFinish() {
+        if (mIsSavingAndFinishing) {
+            return;
+        }
+        mIsSavingAndFinishing = true;
+        fetchTitleAndContent(new TitleAndContentListener() {
+            @Override
+            public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                try {
+                    saveAndFinish(title, content);
+                } finally {
+                    // allow another attempt if this one didn't finish the activity
+                    mIsSavingAndFinishing = false;
+                }
+            }
+        });
     }
 
-    private void saveAndFinish() {
-        savePost(true);
-        if (mEditorFragment != null && hasEmptyContentFields()) {
+    private void saveAndFinish(CharSequence title, CharSequence content) {
+        mHasUnsavedChanges.set(false);
+        updatePostObject(true, title, content);
+        writePost();
+        if (mEditorFragment != null && TextUtils.isEmpty(title) && TextUtils.isEmpty(content)) {
             // new and empty post? delete it
             if (mIsNewPost) {
                 WordPress.wpDB.deletePost(mPost);
@@ -709,7 +871,8 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
             // changes have been made, save the post and ask for the post list to refresh.
             // We consider this being "manual save", it will replace some Android "spans" by an html
             // or a shortcode replacement (for instance for images and galleries)
-            savePost(false);
+            updatePostObject(false, title, content);
+            writePost();
             Intent i = new Intent();
             i.putExtra(EXTRA_SAVED_AS_LOCAL_DRAFT, true);
             i.putExtra(EXTRA_IS_PAGE, mIsPage);
@@ -1010,12 +1173,29 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
      * Updates post object with content of this fragment
      */
     public void updatePostContent(boolean isAutoSave) {
+        updatePostContent(isAutoSave, null, null);
+    }
+
+    private String getContentString(CharSequence editorContent) {
+        if (editorContent == null) {
+            editorContent = mEditorFragment.getContent();
+        }
+        return StringUtils.notNullStr(editorContent != null ? editorContent.toString() : null);
+    }
+
+    /**
+     * Updates post object with the passed title and content, which are read from the editor when null
+     */
+    private void updatePostContent(boolean isAutoSave, CharSequence editorTitle, CharSequence editorContent) {
         Post post = getPost();
 
         if (post == null) {
             return;
         }
-        String title = StringUtils.notNullStr((String) mEditorFragment.getTitle());
+        if (editorTitle == null) {
+            editorTitle = mEditorFragment.getTitle();
+        }
+        String title = StringUtils.notNullStr(editorTitle != null ? editorTitle.toString() : null);
         SpannableStringBuilder postContent;
         if (mEditorFragment.getSpannedContent() != null) {
             // needed by the legacy editor to save local drafts
@@ -1024,10 +1204,10 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
             } catch (IndexOutOfBoundsException e) {
                 // A core android bug might cause an out of bounds exception, if so we'll just use the current editable
                 // See https://code.google.com/p/android/issues/detail?id=5164
-                postContent = new SpannableStringBuilder(StringUtils.notNullStr((String) mEditorFragment.getContent()));
+                postContent = new SpannableStringBuilder(getContentString(editorContent));
             }
         } else {
-            postContent = new SpannableStringBuilder(StringUtils.notNullStr((String) mEditorFragment.getContent()));
+            postContent = new SpannableStringBuilder(getContentString(editorContent));
         }
 
         String content;
@@ -1698,6 +1878,28 @@ public class EditPostActivity extends AppCompatActivity implements EditorFragmen
         fillContentEditorFields();
     }
 
+    /*
+     * called by the editor for every edit, possibly from a background thread - (re)schedules the autosave
+     */
+    @Override
+    public void onEditorContentChanged() {
+        mHasUnsavedChanges.set(true);
+        Handler handler = mAutoSaveHandler;
+        if (handler == null) {
+            // paused, the autosave is scheduled again in onResume()
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (mFirstUnsavedChangeTime == 0) {
+            mFirstUnsavedChangeTime = now;
+        }
+        long maxDelay = Math.max(0, mFirstUnsavedChangeTime + AUTOSAVE_MAX_DELAY_MILLIS - now);
+        long delay = Math.min(AUTOSAVE_DELAY_MILLIS, maxDelay);
+        handler.removeCallbacks(mAutoSaveRunnable);
+        handler.postDelayed(mAutoSaveRunnable, delay);
+    }
+
     @Override
     public void saveMediaFile(MediaFile mediaFile) {
         WordPress.wpDB.saveMediaFile(mediaFile);
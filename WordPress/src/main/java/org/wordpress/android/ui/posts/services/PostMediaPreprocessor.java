@@ -0,0 +1,281 @@
+package org.wordpress.android.ui.posts.services;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ThumbnailUtils;
+import android.net.Uri;
+import android.provider.MediaStore.Images;
+import android.text.TextUtils;
+import android.webkit.MimeTypeMap;
+
+import org.wordpress.android.R;
+import org.wordpress.android.WordPress;
+import org.wordpress.android.models.Blog;
+import org.wordpress.android.models.Post;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.DisplayUtils;
+import org.wordpress.android.util.ImageResizer;
+import org.wordpress.android.util.ImageUtils;
+import org.wordpress.android.util.MediaUtils;
+import org.wordpress.android.util.SqlUtils;
+import org.wordpress.android.util.helpers.MediaFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prepares the local images of queued posts for upload - resolves the file, reads its orientation,
+ * creates the resized copy and the notification thumbnail through ImageResizer - on a small thread
+ * pool, so all images of a post are processed in parallel and while earlier posts are still uploading.
+ */
+class PostMediaPreprocessor {
+    private static final int THREAD_COUNT = 3;
+
+    private static final Pattern IMAGE_TAG_PATTERN =
+            Pattern.compile("<img[^>]+android-uri\\s*=\\s*['\"]([^'\"]+)['\"][^>]*>");
+    private static final Pattern ANDROID_URI_PATTERN = Pattern.compile("android-uri=\"([^\"]+)\"");
+
+    /*
+     * result of preprocessing a single image, errorResId is non-zero if the image can't be uploaded
+     */
+    static class PreparedImage {
+        String filePath;
+        String mimeType;
+        String fileName;
+        String fileExtension;
+        String resizedFilePath;
+        boolean shouldUploadResizedVersion;
+        boolean shouldAddImageWidthCSS;
+        Bitmap icon;
+        int errorResId;
+
+        void deleteResizedFile() {
+            if (resizedFilePath != null) {
+                File file = new File(resizedFilePath);
+                if (file.exists()) {
+                    file.delete();
+                }
+                resizedFilePath = null;
+            }
+        }
+    }
+
+    private final Context mContext;
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+    private final Map<Long, Map<String, Future<PreparedImage>>> mPostImages =
+            new HashMap<Long, Map<String, Future<PreparedImage>>>();
+
+    PostMediaPreprocessor(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /*
+     * returns the img tags in the passed content which reference a local image
+     */
+    static List<String> getLocalImageTags(String content) {
+        List<String> imageTags = new ArrayList<String>();
+        if (content != null) {
+            Matcher matcher = IMAGE_TAG_PATTERN.matcher(content);
+            while (matcher.find()) {
+                imageTags.add(matcher.group());
+            }
+        }
+        return imageTags;
+    }
+
+    static String getAndroidUri(String imageTag) {
+        Matcher m = ANDROID_URI_PATTERN.matcher(imageTag);
+        return m.find() ? m.group(1) : null;
+    }
+
+    /*
+     * starts preprocessing every local image in the passed post, no-op if the post was already submitted
+     */
+    void submit(final Post post) {
+        synchronized (mPostImages) {
+            if (mPostImages.containsKey(post.getLocalTablePostId())) {
+                return;
+            }
+            final Blog blog = WordPress.wpDB.instantiateBlogByLocalId(post.getLocalTableBlogId());
+            Map<String, Future<PreparedImage>> images = new HashMap<String, Future<PreparedImage>>();
+            List<String> imageTags = getLocalImageTags(post.getDescription());
+            imageTags.addAll(getLocalImageTags(post.getMoreText()));
+            for (String tag : imageTags) {
+                final String imageUri = getAndroidUri(tag);
+                if (TextUtils.isEmpty(imageUri) || images.containsKey(imageUri)) {
+                    continue;
+                }
+                images.put(imageUri, mExecutor.submit(new Callable<PreparedImage>() {
+                    @Override
+                    public PreparedImage call() throws Exception {
+                        MediaFile mediaFile = WordPress.wpDB.getMediaFile(imageUri, post);
+                        if (mediaFile == null || mediaFile.isVideo() || blog == null) {
+                            return null;
+                        }
+                        return prepareImage(imageUri, mediaFile, blog);
+                    }
+                }));
+            }
+            mPostImages.put(post.getLocalTablePostId(), images);
+        }
+    }
+
+    /*
+     * waits for the preprocessed image - returns null if the image wasn't submitted, in which case
+     * the caller should prepare it synchronously
+     */
+    PreparedImage get(Post post, String imageUri) {
+        Future<PreparedImage> future;
+        synchronized (mPostImages) {
+            Map<String, Future<PreparedImage>> images = mPostImages.get(post.getLocalTablePostId());
+            future = images != null ? images.get(imageUri) : null;
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            AppLog.e(T.POSTS, "image preprocessing failed", e);
+            return null;
+        }
+    }
+
+    /*
+     * forgets the passed post, removing any resized copies which weren't uploaded
+     */
+    void release(Post post) {
+        final Map<String, Future<PreparedImage>> images;
+        synchronized (mPostImages) {
+            images = mPostImages.remove(post.getLocalTablePostId());
+        }
+        if (images == null) {
+            return;
+        }
+        mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (Future<PreparedImage> future : images.values()) {
+                    try {
+                        PreparedImage image = future.get();
+                        if (image != null) {
+                            image.deleteResizedFile();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (ExecutionException e) {
+                        // nothing to clean up
+                    }
+                }
+            }
+        });
+    }
+
+    void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    PreparedImage prepareImage(String imageUri, MediaFile mediaFile, Blog blog) {
+        PreparedImage image = new PreparedImage();
+
+        Uri uri = Uri.parse(mediaFile.getFilePath());
+        File imageFile = null;
+        String mimeType = "";
+        String path = "";
+        if (uri.toString().contains("content:")) {
+            String[] projection = new String[]{Images.Media._ID, Images.Media.DATA, Images.Media.MIME_TYPE};
+            Cursor cur = mContext.getContentResolver().query(uri, projection, null, null, null);
+            try {
+                if (cur != null && cur.moveToFirst()) {
+                    path = cur.getString(cur.getColumnIndex(Images.Media.DATA));
+                    mimeType = cur.getString(cur.getColumnIndex(Images.Media.MIME_TYPE));
+                    imageFile = new File(path);
+                }
+            } finally {
+                SqlUtils.closeCursor(cur);
+            }
+        } else { // file is not in media library
+            path = uri.toString().replace("file://", "");
+            imageFile = new File(path);
+        }
+
+        // check if the file exists
+        if (imageFile == null) {
+            image.errorResId = R.string.file_not_found;
+            return image;
+        }
+
+        if (TextUtils.isEmpty(mimeType)) {
+            mimeType = MediaUtils.getMediaFileMimeType(imageFile);
+        }
+        image.filePath = imageFile.getPath();
+        image.mimeType = mimeType;
+        image.fileName = MediaUtils.getMediaFileName(imageFile, mimeType);
+        image.fileExtension = MimeTypeMap.getFileExtensionFromUrl(image.fileName).toLowerCase();
+
+        int orientation = ImageUtils.getImageOrientation(mContext, path);
+
+        // Get image thumbnail for notification icon, cropped to be squared in the center
+        Bitmap icon = ImageResizer.decodeScaled(path, DisplayUtils.dpToPx(mContext, 128), orientation);
+        if (icon != null) {
+            int squaredSize = DisplayUtils.dpToPx(mContext, 64);
+            image.icon = ThumbnailUtils.extractThumbnail(icon, squaredSize, squaredSize);
+            if (image.icon != icon) {
+                ImageResizer.release(icon);
+            }
+        }
+
+        // We need to upload a resized version of the picture when the blog settings != original size, or when
+        // the user has selected a smaller size for the current picture in the picture settings screen
+        // We won't resize gif images to keep them awesome.
+        if (!"image/gif".equals(mimeType) && !blog.getMaxImageWidth().equals("Original Size")) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            if (options.outWidth != 0 && options.outWidth != mediaFile.getWidth()) {
+                image.shouldUploadResizedVersion = true;
+            }
+        }
+
+        if (image.shouldUploadResizedVersion) {
+            File resizedImageFile;
+            try {
+                resizedImageFile = File.createTempFile("wp-image-", image.fileExtension, mContext.getCacheDir());
+            } catch (IOException e) {
+                AppLog.w(T.POSTS, "failed to create image temp file");
+                image.errorResId = R.string.error_media_upload;
+                return image;
+            }
+
+            // the resized image is streamed to the temp file, never held in memory as a whole
+            if (ImageResizer.resizeToFile(path, mediaFile.getWidth(), orientation, resizedImageFile,
+                    ImageResizer.getCompressFormat(image.fileExtension))) {
+                image.resizedFilePath = resizedImageFile.getPath();
+            } else {
+                // We weren't able to resize the image, so we will upload the full size image with css to resize it
+                resizedImageFile.delete();
+                image.shouldUploadResizedVersion = false;
+                image.shouldAddImageWidthCSS = true;
+            }
+        }
+
+        return image;
+    }
+}
@@ -9,12 +9,10 @@ import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.media.ThumbnailUtils;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.IBinder;
 import android.preference.PreferenceManager;
-import android.provider.MediaStore.Images;
 import android.provider.MediaStore.Video;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationCompat.Builder;
@@ -41,8 +39,6 @@ import org.wordpress.android.util.AnalyticsUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.CrashlyticsUtils;
-import org.wordpress.android.util.DisplayUtils;
-import org.wordpress.android.util.ImageUtils;
 import org.wordpress.android.util.MediaUtils;
 import org.wordpress.android.util.StringUtils;
 import org.wordpress.android.util.SystemServiceFactory;
@@ -57,7 +53,6 @@ import org.xmlrpc.android.XMLRPCFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -65,8 +60,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import de.greenrobot.event.EventBus;
 
@@ -76,11 +69,26 @@ public class PostUploadService extends Service {
     private static Post mCurrentUploadingPost = null;
     private UploadPostTask mCurrentTask = null;
     private FeatureSet mFeatureSet;
+    private PostMediaPreprocessor mMediaPreprocessor;
 
+    /*
+     * adds the passed post to the upload queue - the queue is stored in the db so uploads
+     * resume if the app is killed before they complete
+     */
     public static void addPostToUpload(Post currentPost) {
         synchronized (mPostsList) {
             mPostsList.add(currentPost);
         }
+        WordPress.wpDB.addPostToUploadQueue(currentPost);
+    }
+
+    /*
+     * restarts the service if posts from a previous session are still waiting in the upload queue
+     */
+    public static void resumeQueuedUploads(Context context) {
+        if (!WordPress.wpDB.getPostUploadQueue().isEmpty()) {
+            context.startService(new Intent(context, PostUploadService.class));
+        }
     }
 
     /*
@@ -113,6 +121,7 @@ public class PostUploadService extends Service {
     public void onCreate() {
         super.onCreate();
         mContext = this.getApplicationContext();
+        mMediaPreprocessor = new PostMediaPreprocessor(mContext);
     }
 
     @Override
@@ -123,15 +132,22 @@ public class PostUploadService extends Service {
             AppLog.d(T.POSTS, "cancelling current upload task");
             mCurrentTask.cancel(true);
         }
+        mMediaPreprocessor.shutdown();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        restoreQueueFromDb();
+
         synchronized (mPostsList) {
             if (mPostsList.size() == 0 || mContext == null) {
                 stopSelf();
                 return START_NOT_STICKY;
             }
+            // start preparing the media of every queued post while the first one uploads
+            for (Post post : mPostsList) {
+                mMediaPreprocessor.submit(post);
+            }
         }
 
         uploadNextPost();
@@ -139,6 +155,29 @@ public class PostUploadService extends Service {
         return START_STICKY;
     }
 
+    /*
+     * adds posts from the persistent queue which aren't in memory, which happens when the service
+     * is restarted after the app was killed
+     */
+    private void restoreQueueFromDb() {
+        List<Long> queuedPostIds = WordPress.wpDB.getPostUploadQueue();
+        synchronized (mPostsList) {
+            for (Long postId : queuedPostIds) {
+                if (isPostUploading(postId)) {
+                    continue;
+                }
+                Post post = WordPress.wpDB.getPostForLocalTablePostId(postId);
+                if (post == null) {
+                    // post was deleted while it was queued
+                    WordPress.wpDB.removePostFromUploadQueue(postId);
+                } else {
+                    AppLog.i(T.POSTS, "resuming queued upload of post " + postId);
+                    mPostsList.add(post);
+                }
+            }
+        }
+    }
+
     private FeatureSet synchronousGetFeatureSet() {
         if (WordPress.getCurrentBlog() == null || !WordPress.getCurrentBlog().isDotcomFlag()) {
             return null;
@@ -168,6 +207,10 @@ public class PostUploadService extends Service {
 
     private void postUploaded() {
         synchronized (mPostsList) {
+            if (mCurrentUploadingPost != null) {
+                WordPress.wpDB.removePostFromUploadQueue(mCurrentUploadingPost.getLocalTablePostId());
+                mMediaPreprocessor.release(mCurrentUploadingPost);
+            }
             mCurrentTask = null;
             mCurrentUploadingPost = null;
         }
@@ -465,61 +508,45 @@ public class PostUploadService extends Service {
          * Finds media in post content, uploads them, and returns the HTML to insert in the post
          */
         private String processPostMedia(String postContent) {
-            String imageTagsPattern = "<img[^>]+android-uri\\s*=\\s*['\"]([^'\"]+)['\"][^>]*>";
-            Pattern pattern = Pattern.compile(imageTagsPattern);
-            Matcher matcher = pattern.matcher(postContent);
-
-            int totalMediaItems = 0;
-            List<String> imageTags = new ArrayList<String>();
-            while (matcher.find()) {
-                imageTags.add(matcher.group());
-                totalMediaItems++;
-            }
-
-            mPostUploadNotifier.setTotalMediaItems(totalMediaItems);
+            List<String> imageTags = PostMediaPreprocessor.getLocalImageTags(postContent);
+            mPostUploadNotifier.setTotalMediaItems(imageTags.size());
 
             int mediaItemCount = 0;
             for (String tag : imageTags) {
-                Pattern p = Pattern.compile("android-uri=\"([^\"]+)\"");
-                Matcher m = p.matcher(tag);
-                if (m.find()) {
-                    String imageUri = m.group(1);
-                    if (!imageUri.equals("")) {
-                        MediaFile mediaFile = WordPress.wpDB.getMediaFile(imageUri, mPost);
-                        if (mediaFile != null) {
-                            // Get image thumbnail for notification icon
-                            Bitmap imageIcon = ImageUtils.getWPImageSpanThumbnailFromFilePath(
-                                    mContext,
-                                    imageUri,
-                                    DisplayUtils.dpToPx(mContext, 128)
-                            );
-
-                            // Crop the thumbnail to be squared in the center
-                            if (imageIcon != null) {
-                                int squaredSize = DisplayUtils.dpToPx(mContext, 64);
-                                imageIcon = ThumbnailUtils.extractThumbnail(imageIcon, squaredSize, squaredSize);
-                                mLatestIcon = imageIcon;
+                String imageUri = PostMediaPreprocessor.getAndroidUri(tag);
+                if (!TextUtils.isEmpty(imageUri)) {
+                    MediaFile mediaFile = WordPress.wpDB.getMediaFile(imageUri, mPost);
+                    if (mediaFile != null) {
+                        // images are usually prepared in the background while the previous post was uploading
+                        PostMediaPreprocessor.PreparedImage preparedImage = null;
+                        if (!mediaFile.isVideo()) {
+                            preparedImage = mMediaPreprocessor.get(mPost, imageUri);
+                            if (preparedImage == null) {
+                                preparedImage = mMediaPreprocessor.prepareImage(imageUri, mediaFile, mBlog);
                             }
-
-                            mediaItemCount++;
-                            mPostUploadNotifier.setCurrentMediaItem(mediaItemCount);
-                            mPostUploadNotifier.updateNotificationIcon(imageIcon);
-
-                            String mediaUploadOutput;
-                            if (mediaFile.isVideo()) {
-                                mHasVideo = true;
-                                mediaUploadOutput = uploadVideo(mediaFile);
-                            } else {
-                                mHasImage = true;
-                                mediaUploadOutput = uploadImage(mediaFile);
+                            if (preparedImage.icon != null) {
+                                mLatestIcon = preparedImage.icon;
                             }
+                        }
 
-                            if (mediaUploadOutput != null) {
-                                postContent = postContent.replace(tag, mediaUploadOutput);
-                            } else {
-                                postContent = postContent.replace(tag, "");
-                                mIsMediaError = true;
-                            }
+                        mediaItemCount++;
+                        mPostUploadNotifier.setCurrentMediaItem(mediaItemCount);
+                        mPostUploadNotifier.updateNotificationIcon(preparedImage != null ? preparedImage.icon : null);
+
+                        String mediaUploadOutput;
+                        if (mediaFile.isVideo()) {
+                            mHasVideo = true;
+                            mediaUploadOutput = uploadVideo(mediaFile);
+                        } else {
+                            mHasImage = true;
+                            mediaUploadOutput = uploadImage(mediaFile, preparedImage);
+                        }
+
+                        if (mediaUploadOutput != null) {
+                            postContent = postContent.replace(tag, mediaUploadOutput);
+                        } else {
+                            postContent = postContent.replace(tag, "");
+                            mIsMediaError = true;
                         }
                     }
                 }
@@ -528,131 +555,50 @@ public class PostUploadService extends Service {
             return postContent;
         }
 
-        private String uploadImage(MediaFile mediaFile) {
+        private String uploadImage(MediaFile mediaFile, PostMediaPreprocessor.PreparedImage image) {
             AppLog.d(T.POSTS, "uploadImage: " + mediaFile.getFilePath());
 
             if (mediaFile.getFilePath() == null) {
                 return null;
             }
 
-            Uri imageUri = Uri.parse(mediaFile.getFilePath());
-            File imageFile = null;
-            String mimeType = "", path = "";
-
-            if (imageUri.toString().contains("content:")) {
-                String[] projection = new String[]{Images.Media._ID, Images.Media.DATA, Images.Media.MIME_TYPE};
-
-                Cursor cur = mContext.getContentResolver().query(imageUri, projection, null, null, null);
-                if (cur != null && cur.moveToFirst()) {
-                    int dataColumn = cur.getColumnIndex(Images.Media.DATA);
-                    int mimeTypeColumn = cur.getColumnIndex(Images.Media.MIME_TYPE);
-
-                    String thumbData = cur.getString(dataColumn);
-                    mimeType = cur.getString(mimeTypeColumn);
-                    imageFile = new File(thumbData);
-                    path = thumbData;
-                    mediaFile.setFilePath(imageFile.getPath());
-                }
-            } else { // file is not in media library
-                path = imageUri.toString().replace("file://", "");
-                imageFile = new File(path);
-                mediaFile.setFilePath(path);
-            }
-
-            // check if the file exists
-            if (imageFile == null) {
-                mErrorMessage = mContext.getString(R.string.file_not_found);
+            if (image.errorResId != 0) {
+                mErrorMessage = mContext.getString(image.errorResId);
                 return null;
             }
-
-            if (TextUtils.isEmpty(mimeType)) {
-                mimeType = MediaUtils.getMediaFileMimeType(imageFile);
-            }
-            String fileName = MediaUtils.getMediaFileName(imageFile, mimeType);
-            String fileExtension = MimeTypeMap.getFileExtensionFromUrl(fileName).toLowerCase();
-
-            int orientation = ImageUtils.getImageOrientation(mContext, path);
+            mediaFile.setFilePath(image.filePath);
 
             String resizedPictureURL = null;
-
-            // We need to upload a resized version of the picture when the blog settings != original size, or when
-            // the user has selected a smaller size for the current picture in the picture settings screen
-            // We won't resize gif images to keep them awesome.
-            boolean shouldUploadResizedVersion = false;
-            // If it's not a gif and blog don't keep original size, there is a chance we need to resize
-            if (!mimeType.equals("image/gif") && !mBlog.getMaxImageWidth().equals("Original Size")) {
-                //check the picture settings
-                int pictureSettingWidth = mediaFile.getWidth();
-                BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inJustDecodeBounds = true;
-                BitmapFactory.decodeFile(path, options);
-                int imageHeight = options.outHeight;
-                int imageWidth = options.outWidth;
-                int[] dimensions = {imageWidth, imageHeight};
-                if (dimensions[0] != 0 && dimensions[0] != pictureSettingWidth) {
-                    shouldUploadResizedVersion = true;
-                }
-            }
-
-            boolean shouldAddImageWidthCSS = false;
-
-            if (shouldUploadResizedVersion) {
+            if (image.shouldUploadResizedVersion) {
                 MediaFile resizedMediaFile = new MediaFile(mediaFile);
-                // Create resized image
-                byte[] bytes = ImageUtils.createThumbnailFromUri(mContext, imageUri, resizedMediaFile.getWidth(),
-                        fileExtension, orientation);
-
-                if (bytes == null) {
-                    // We weren't able to resize the image, so we will upload the full size image with css to resize it
-                    shouldUploadResizedVersion = false;
-                    shouldAddImageWidthCSS = true;
-                } else {
-                    // Save temp image
-                    String tempFilePath;
-                    File resizedImageFile;
-                    try {
-                        resizedImageFile = File.createTempFile("wp-image-", fileExtension);
-                        FileOutputStream out = new FileOutputStream(resizedImageFile);
-                        out.write(bytes);
-                        out.close();
-                        tempFilePath = resizedImageFile.getPath();
-                    } catch (IOException e) {
-                        AppLog.w(T.POSTS, "failed to create image temp file");
-                        mErrorMessage = mContext.getString(R.string.error_media_upload);
-                        return null;
-                    }
-
-                    // upload resized picture
-                    if (!TextUtils.isEmpty(tempFilePath)) {
-                        resizedMediaFile.setFilePath(tempFilePath);
-                        Map<String, Object> parameters = new HashMap<String, Object>();
-
-                        parameters.put("name", fileName);
-                        parameters.put("type", mimeType);
-                        parameters.put("bits", resizedMediaFile);
-                        parameters.put("overwrite", true);
-                        resizedPictureURL = uploadImageFile(parameters, resizedMediaFile, mBlog);
-                        if (resizedPictureURL == null) {
-                            AppLog.w(T.POSTS, "failed to upload resized picture");
-                            return null;
-                        } else if (resizedImageFile.exists()) {
-                            resizedImageFile.delete();
-                        }
-                    } else {
-                        AppLog.w(T.POSTS, "failed to create resized picture");
-                        mErrorMessage = mContext.getString(R.string.out_of_memory);
+                if (!TextUtils.isEmpty(image.resizedFilePath)) {
+                    resizedMediaFile.setFilePath(image.resizedFilePath);
+                    Map<String, Object> parameters = new HashMap<String, Object>();
+
+                    parameters.put("name", image.fileName);
+                    parameters.put("type", image.mimeType);
+                    parameters.put("bits", resizedMediaFile);
+                    parameters.put("overwrite", true);
+                    resizedPictureURL = uploadImageFile(parameters, resizedMediaFile, mBlog);
+                    if (resizedPictureURL == null) {
+                        AppLog.w(T.POSTS, "failed to upload resized picture");
                         return null;
                     }
+                    image.deleteResizedFile();
+                } else {
+                    AppLog.w(T.POSTS, "failed to create resized picture");
+                    mErrorMessage = mContext.getString(R.string.out_of_memory);
+                    return null;
                 }
             }
 
             String fullSizeUrl = null;
             // Upload the full size picture if "Original Size" is selected in settings,
             // or if 'link to full size' is checked.
-            if (!shouldUploadResizedVersion || mBlog.isFullSizeImage()) {
+            if (!image.shouldUploadResizedVersion || mBlog.isFullSizeImage()) {
                 Map<String, Object> parameters = new HashMap<String, Object>();
-                parameters.put("name", fileName);
-                parameters.put("type", mimeType);
+                parameters.put("name", image.fileName);
+                parameters.put("type", image.mimeType);
                 parameters.put("bits", mediaFile);
                 parameters.put("overwrite", true);
 
@@ -663,7 +609,7 @@ public class PostUploadService extends Service {
                 }
             }
 
-            return mediaFile.getImageHtmlForUrls(fullSizeUrl, resizedPictureURL, shouldAddImageWidthCSS);
+            return mediaFile.getImageHtmlForUrls(fullSizeUrl, resizedPictureURL, image.shouldAddImageWidthCSS);
         }
 
         private String uploadVideo(MediaFile mediaFile) {
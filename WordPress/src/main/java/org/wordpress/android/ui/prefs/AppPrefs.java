@@ -4,14 +4,21 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.models.ReaderTag;
 import org.wordpress.android.models.ReaderTagType;
 import org.wordpress.android.ui.ActivityId;
 import org.wordpress.android.ui.stats.StatsTimeframe;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
 
 public class AppPrefs {
     private static final int THEME_IMAGE_SIZE_WIDTH_DEFAULT = 400;
+    private static final int MEDIA_UPLOAD_CONCURRENCY_DEFAULT = 3;
+    private static final int MEDIA_UPLOAD_CONCURRENCY_MAX = 6;
+    private static final int MAX_XMLRPC_ENDPOINTS = 50;
 
     public interface PrefKey {
         String name();
@@ -32,6 +39,12 @@ public class AppPrefs {
         // title of the last active page in ReaderSubsActivity
         READER_SUBS_PAGE_TITLE,
 
+        // time each ReaderUpdateService task last succeeded, stored as a json object keyed by task name
+        READER_UPDATE_TIMES,
+
+        // id of the newest comment synced for each blog, stored as a json object keyed by local blog id
+        COMMENT_SYNC_WATERMARKS,
+
         // email retrieved and attached to mixpanel profile
         MIXPANEL_EMAIL_ADDRESS,
 
@@ -46,6 +59,15 @@ public class AppPrefs {
 
         // last data stored for the Stats Widgets
         STATS_WIDGET_DATA,
+
+        // number of parallel media uploads, stored as a json object keyed by local blog id
+        MEDIA_UPLOAD_CONCURRENCY,
+
+        // whether the post-upload wp.getMediaItem fetch runs outside of the upload slot
+        MEDIA_UPLOAD_PIPELINE_FETCH,
+
+        // discovered xmlrpc endpoints of self-hosted sites, stored as a json object keyed by host and path
+        XMLRPC_ENDPOINTS,
     }
 
     /**
@@ -254,4 +276,138 @@ public class AppPrefs {
             return getInt(UndeletablePrefKey.THEME_IMAGE_SIZE_WIDTH);
         }
     }
+
+    // Media uploads
+    private static JSONObject getMediaUploadConcurrencyJson() {
+        String value = getString(DeletablePrefKey.MEDIA_UPLOAD_CONCURRENCY);
+        if (!TextUtils.isEmpty(value)) {
+            try {
+                return new JSONObject(value);
+            } catch (JSONException e) {
+                AppLog.e(T.MEDIA, e);
+            }
+        }
+        return new JSONObject();
+    }
+
+    /**
+     * number of media files uploaded in parallel for the passed blog, always between 1 and
+     * MEDIA_UPLOAD_CONCURRENCY_MAX
+     */
+    public static int getMediaUploadConcurrency(String localBlogId) {
+        int value = getMediaUploadConcurrencyJson().optInt(localBlogId, MEDIA_UPLOAD_CONCURRENCY_DEFAULT);
+        return Math.max(1, Math.min(value, MEDIA_UPLOAD_CONCURRENCY_MAX));
+    }
+    public static void setMediaUploadConcurrency(String localBlogId, int concurrency) {
+        JSONObject json = getMediaUploadConcurrencyJson();
+        try {
+            json.put(localBlogId, concurrency);
+            setString(DeletablePrefKey.MEDIA_UPLOAD_CONCURRENCY, json.toString());
+        } catch (JSONException e) {
+            AppLog.e(T.MEDIA, e);
+        }
+    }
+
+    private static JSONObject getReaderUpdateTimesJson() {
+        String value = getString(DeletablePrefKey.READER_UPDATE_TIMES);
+        if (!TextUtils.isEmpty(value)) {
+            try {
+                return new JSONObject(value);
+            } catch (JSONException e) {
+                AppLog.e(T.READER, e);
+            }
+        }
+        return new JSONObject();
+    }
+
+    /**
+     * time in millis when the passed reader update task last succeeded, or 0 if it never did
+     */
+    public static long getReaderUpdateTime(String taskName) {
+        return getReaderUpdateTimesJson().optLong(taskName, 0);
+    }
+    public static void clearReaderUpdateTimes() {
+        remove(DeletablePrefKey.READER_UPDATE_TIMES);
+    }
+    public static synchronized void setReaderUpdateTime(String taskName, long timeMillis) {
+        JSONObject json = getReaderUpdateTimesJson();
+        try {
+            json.put(taskName, timeMillis);
+            setString(DeletablePrefKey.READER_UPDATE_TIMES, json.toString());
+        } catch (JSONException e) {
+            AppLog.e(T.READER, e);
+        }
+    }
+
+    private static JSONObject getCommentSyncWatermarksJson() {
+        String value = getString(DeletablePrefKey.COMMENT_SYNC_WATERMARKS);
+        if (!TextUtils.isEmpty(value)) {
+            try {
+                return new JSONObject(value);
+            } catch (JSONException e) {
+                AppLog.e(T.COMMENTS, e);
+            }
+        }
+        return new JSONObject();
+    }
+
+    /**
+     * id of the newest comment synced for the passed blog, or 0 if its comments were never synced
+     */
+    public static long getCommentSyncWatermark(int localBlogId) {
+        return getCommentSyncWatermarksJson().optLong(Integer.toString(localBlogId), 0);
+    }
+    public static synchronized void setCommentSyncWatermark(int localBlogId, long commentId) {
+        JSONObject json = getCommentSyncWatermarksJson();
+        try {
+            json.put(Integer.toString(localBlogId), commentId);
+            setString(DeletablePrefKey.COMMENT_SYNC_WATERMARKS, json.toString());
+        } catch (JSONException e) {
+            AppLog.e(T.COMMENTS, e);
+        }
+    }
+
+    private static JSONObject getXmlrpcEndpointsJson() {
+        String value = getString(DeletablePrefKey.XMLRPC_ENDPOINTS);
+        if (!TextUtils.isEmpty(value)) {
+            try {
+                return new JSONObject(value);
+            } catch (JSONException e) {
+                AppLog.e(T.NUX, e);
+            }
+        }
+        return new JSONObject();
+    }
+
+    /**
+     * xmlrpc endpoint discovered for the passed site, or null if it hasn't been discovered
+     */
+    public static String getXmlrpcEndpoint(String siteKey) {
+        return getXmlrpcEndpointsJson().optString(siteKey, null);
+    }
+    public static synchronized void setXmlrpcEndpoint(String siteKey, String xmlrpcUrl) {
+        JSONObject json = getXmlrpcEndpointsJson();
+        if (xmlrpcUrl == null) {
+            json.remove(siteKey);
+        } else {
+            // drop an arbitrary endpoint rather than let the cache grow without bounds
+            if (!json.has(siteKey) && json.length() >= MAX_XMLRPC_ENDPOINTS) {
+                json.remove(json.keys().next());
+            }
+            try {
+                json.put(siteKey, xmlrpcUrl);
+            } catch (JSONException e) {
+                AppLog.e(T.NUX, e);
+                return;
+            }
+        }
+        setString(DeletablePrefKey.XMLRPC_ENDPOINTS, json.toString());
+    }
+
+    public static boolean isMediaUploadFetchPipelined() {
+        return getBoolean(DeletablePrefKey.MEDIA_UPLOAD_PIPELINE_FETCH, true);
+    }
+    public static void setMediaUploadFetchPipelined(boolean pipelined) {
+        setBoolean(DeletablePrefKey.MEDIA_UPLOAD_PIPELINE_FETCH, pipelined);
+    }
 }
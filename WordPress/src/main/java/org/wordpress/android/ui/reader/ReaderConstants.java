@@ -8,6 +8,11 @@ public class ReaderConstants {
     public static final long READER_AUTO_UPDATE_DELAY_MINUTES  = 10;     // 10 minute delay between automatic updates
     public static final int  READER_MAX_RECOMMENDED_TO_REQUEST = 20;     // max # of recommended blogs to request
 
+    // default min delay between ReaderUpdateService updates of each kind, see UpdateTask.setMinUpdateInterval()
+    public static final long READER_TAGS_UPDATE_INTERVAL_MINUTES              = 10;
+    public static final long READER_FOLLOWED_BLOGS_UPDATE_INTERVAL_MINUTES    = 10;
+    public static final long READER_RECOMMENDED_BLOGS_UPDATE_INTERVAL_MINUTES = 60;
+
     public static final int MIN_FEATURED_IMAGE_WIDTH = 640;              // min width for an image to be suitable featured image
 
     // intent arguments / keys
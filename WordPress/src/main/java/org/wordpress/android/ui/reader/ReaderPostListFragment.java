@@ -1153,8 +1153,13 @@ public class ReaderPostListFragment extends Fragment
         }
     }
 
+    /*
+     * called when the account changes - the service's own record of recent updates is cleared too,
+     * otherwise it would skip updating the new account's tags and blogs
+     */
     public static void resetLastUpdateDate() {
         mLastAutoUpdateDt = null;
+        ReaderUpdateService.clearUpdateTimes();
     }
 }
 
@@ -195,7 +195,8 @@ public class ReaderSubsActivity extends AppCompatActivity
         ReaderUpdateService.startService(this,
                 EnumSet.of(UpdateTask.TAGS,
                            UpdateTask.FOLLOWED_BLOGS,
-                           UpdateTask.RECOMMENDED_BLOGS));
+                           UpdateTask.RECOMMENDED_BLOGS),
+                true);
 
         mHasPerformedUpdate = true;
     }
@@ -24,6 +24,7 @@ import org.wordpress.android.ui.reader.actions.ReaderActions.UpdateResultListene
 import org.wordpress.android.ui.reader.utils.ReaderUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.StringUtils;
+import org.wordpress.android.util.Trace;
 import org.wordpress.android.util.UrlUtils;
 
 import de.greenrobot.event.EventBus;
@@ -287,49 +288,56 @@ public class ReaderPostService extends Service {
         new Thread() {
             @Override
             public void run() {
-                ReaderPostList serverPosts = ReaderPostList.fromJson(jsonObject);
-                UpdateResult updateResult = ReaderPostTable.comparePosts(serverPosts);
-                if (updateResult.isNewOrChanged()) {
-                    // gap detection - only applies to posts with a specific tag
-                    ReaderPost postWithGap = null;
-                    if (tag != null) {
-                        switch (updateAction) {
-                            case REQUEST_NEWER:
-                                // if there's no overlap between server and local (ie: all server
-                                // posts are new), assume there's a gap between server and local
-                                // provided that local posts exist
-                                int numServerPosts = serverPosts.size();
-                                if (numServerPosts >= 2
-                                        && ReaderPostTable.getNumPostsWithTag(tag) > 0
-                                        && !ReaderPostTable.hasOverlap(serverPosts)) {
-                                    // treat the second to last server post as having a gap
-                                    postWithGap = serverPosts.get(numServerPosts - 2);
-                                    // remove the last server post to deal with the edge case of
-                                    // there actually not being a gap between local & server
-                                    serverPosts.remove(numServerPosts - 1);
-                                    AppLog.d(AppLog.T.READER, "added gap marker to tag " + tag.getTagNameForLog());
-                                }
-                                ReaderPostTable.removeGapMarkerForTag(tag);
-                                break;
-                            case REQUEST_OLDER_THAN_GAP:
-                                // if service was started as a request to fill a gap, delete existing posts
-                                // older than the one with the gap marker, then remove the existing gap marker
-                                ReaderPostTable.deletePostsOlderThanGapMarkerForTag(tag);
-                                ReaderPostTable.removeGapMarkerForTag(tag);
-                                break;
+                UpdateResult updateResult;
+                Trace.beginSection("ReaderPostService.handleUpdatePostsResponse");
+                try {
+                    ReaderPostList serverPosts = ReaderPostList.fromJson(jsonObject);
+                    updateResult = ReaderPostTable.comparePosts(serverPosts);
+                    if (updateResult.isNewOrChanged()) {
+                        // gap detection - only applies to posts with a specific tag
+                        ReaderPost postWithGap = null;
+                        if (tag != null) {
+                            switch (updateAction) {
+                                case REQUEST_NEWER:
+                                    // if there's no overlap between server and local (ie: all server
+                                    // posts are new), assume there's a gap between server and local
+                                    // provided that local posts exist
+                                    int numServerPosts = serverPosts.size();
+                                    if (numServerPosts >= 2
+                                            && ReaderPostTable.getNumPostsWithTag(tag) > 0
+                                            && !ReaderPostTable.hasOverlap(serverPosts)) {
+                                        // treat the second to last server post as having a gap
+                                        postWithGap = serverPosts.get(numServerPosts - 2);
+                                        // remove the last server post to deal with the edge case of
+                                        // there actually not being a gap between local & server
+                                        serverPosts.remove(numServerPosts - 1);
+                                        AppLog.d(AppLog.T.READER, "added gap marker to tag " + tag.getTagNameForLog());
+                                    }
+                                    ReaderPostTable.removeGapMarkerForTag(tag);
+                                    break;
+                                case REQUEST_OLDER_THAN_GAP:
+                                    // if service was started as a request to fill a gap, delete existing posts
+                                    // older than the one with the gap marker, then remove the existing gap marker
+                                    ReaderPostTable.deletePostsOlderThanGapMarkerForTag(tag);
+                                    ReaderPostTable.removeGapMarkerForTag(tag);
+                                    break;
+                            }
                         }
-                    }
 
-                    ReaderPostTable.addOrUpdatePosts(tag, serverPosts);
+                        ReaderPostTable.addOrUpdatePosts(tag, serverPosts);
 
-                    // gap marker must be set after saving server posts
-                    if (postWithGap != null) {
-                        ReaderPostTable.setGapMarkerForTag(postWithGap.blogId, postWithGap.postId, tag);
+                        // gap marker must be set after saving server posts
+                        if (postWithGap != null) {
+                            ReaderPostTable.setGapMarkerForTag(postWithGap.blogId, postWithGap.postId, tag);
+                        }
+                    } else if (updateResult == UpdateResult.UNCHANGED
+                            && updateAction == UpdateAction.REQUEST_OLDER_THAN_GAP) {
+                        // edge case - request to fill gap returned nothing new, so remove the gap marker
+                        ReaderPostTable.removeGapMarkerForTag(tag);
+                        AppLog.w(AppLog.T.READER, "attempt to fill gap returned nothing new");
                     }
-                } else if (updateResult == UpdateResult.UNCHANGED && updateAction == UpdateAction.REQUEST_OLDER_THAN_GAP) {
-                    // edge case - request to fill gap returned nothing new, so remove the gap marker
-                    ReaderPostTable.removeGapMarkerForTag(tag);
-                    AppLog.w(AppLog.T.READER, "attempt to fill gap returned nothing new");
+                } finally {
+                    Trace.endSection();
                 }
                 AppLog.d(AppLog.T.READER, "requested posts response = " + updateResult.toString());
                 resultListener.onUpdateResult(updateResult);
@@ -5,6 +5,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
 
 import com.android.volley.VolleyError;
 import com.wordpress.rest.RestRequest;
@@ -20,14 +23,21 @@ import org.wordpress.android.models.ReaderRecommendBlogList;
 import org.wordpress.android.models.ReaderTag;
 import org.wordpress.android.models.ReaderTagList;
 import org.wordpress.android.models.ReaderTagType;
+import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.ui.reader.ReaderConstants;
 import org.wordpress.android.ui.reader.ReaderEvents;
 import org.wordpress.android.ui.reader.utils.ReaderUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.JSONUtils;
+import org.wordpress.android.util.Trace;
 
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.greenrobot.event.EventBus;
 
@@ -39,23 +49,89 @@ public class ReaderUpdateService extends Service {
      */
 
     public static enum UpdateTask {
-        TAGS,
-        FOLLOWED_BLOGS,
-        RECOMMENDED_BLOGS
+        TAGS(ReaderConstants.READER_TAGS_UPDATE_INTERVAL_MINUTES),
+        FOLLOWED_BLOGS(ReaderConstants.READER_FOLLOWED_BLOGS_UPDATE_INTERVAL_MINUTES),
+        RECOMMENDED_BLOGS(ReaderConstants.READER_RECOMMENDED_BLOGS_UPDATE_INTERVAL_MINUTES);
+
+        // the task is skipped if it succeeded more recently than this, unless the update is forced
+        private volatile long mMinIntervalMillis;
+
+        UpdateTask(long minIntervalMinutes) {
+            mMinIntervalMillis = TimeUnit.MINUTES.toMillis(minIntervalMinutes);
+        }
+
+        /*
+         * overrides the default interval from ReaderConstants, zero disables it
+         */
+        public void setMinUpdateInterval(long interval, TimeUnit unit) {
+            mMinIntervalMillis = unit.toMillis(interval);
+        }
+
+        public long getMinUpdateIntervalMillis() {
+            return mMinIntervalMillis;
+        }
+
+        /*
+         * true if the task should run given when it last succeeded - a last update time in the future
+         * (ie: the clock was changed) doesn't prevent it
+         */
+        boolean isUpdateDue(long lastUpdated, long now) {
+            return now - lastUpdated < 0 || now - lastUpdated >= mMinIntervalMillis;
+        }
     }
 
-    private EnumSet<UpdateTask> mCurrentTasks;
+    private final EnumSet<UpdateTask> mCurrentTasks = EnumSet.noneOf(UpdateTask.class);
     private static final String ARG_UPDATE_TASKS = "update_tasks";
+    private static final String ARG_FORCE = "force";
+
+    // responses are processed on this executor rather than a new thread each - it's shared by all
+    // instances of the service and its threads end when it's idle
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        EXECUTOR = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "ReaderUpdate-" + mCount.incrementAndGet());
+                    }
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
 
     public static void startService(Context context, EnumSet<UpdateTask> tasks) {
+        startService(context, tasks, false);
+    }
+
+    /*
+     * force = true performs the tasks even if they succeeded recently - used when the user asks for
+     * a refresh or the account changed
+     */
+    public static void startService(Context context, EnumSet<UpdateTask> tasks, boolean force) {
         if (context == null || tasks == null || tasks.size() == 0) {
             return;
         }
         Intent intent = new Intent(context, ReaderUpdateService.class);
         intent.putExtra(ARG_UPDATE_TASKS, tasks);
+        intent.putExtra(ARG_FORCE, force);
         context.startService(intent);
     }
 
+    /*
+     * forgets when each task last succeeded, so the next update performs them all - called when the
+     * account changes since the previous updates were for another user
+     */
+    public static void clearUpdateTimes() {
+        AppPrefs.clearReaderUpdateTimes();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return null;
@@ -77,35 +153,69 @@ public class ReaderUpdateService extends Service {
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent != null && intent.hasExtra(ARG_UPDATE_TASKS)) {
             EnumSet<UpdateTask> tasks = (EnumSet<UpdateTask>) intent.getSerializableExtra(ARG_UPDATE_TASKS);
-            performTasks(tasks);
+            performTasks(tasks, intent.getBooleanExtra(ARG_FORCE, false));
         }
 
         return START_NOT_STICKY;
     }
 
-    private void performTasks(EnumSet<UpdateTask> tasks) {
-        mCurrentTasks = EnumSet.copyOf(tasks);
+    private synchronized void performTasks(EnumSet<UpdateTask> tasks, boolean force) {
+        // skip tasks which are already running or were performed recently
+        EnumSet<UpdateTask> newTasks = EnumSet.noneOf(UpdateTask.class);
+        long now = System.currentTimeMillis();
+        for (UpdateTask task: tasks) {
+            if (mCurrentTasks.contains(task)) {
+                continue;
+            }
+            long lastUpdated = AppPrefs.getReaderUpdateTime(task.name());
+            if (!force && !task.isUpdateDue(lastUpdated, now)) {
+                AppLog.d(AppLog.T.READER, "reader service > skipped " + task.name() + ", updated "
+                        + TimeUnit.MILLISECONDS.toSeconds(now - lastUpdated) + "s ago");
+                continue;
+            }
+            newTasks.add(task);
+        }
+        if (newTasks.isEmpty()) {
+            if (mCurrentTasks.isEmpty()) {
+                allTasksCompleted();
+            }
+            return;
+        }
+        mCurrentTasks.addAll(newTasks);
 
         // perform in priority order - we want to update tags first since without them
         // the Reader can't show anything
-        if (tasks.contains(UpdateTask.TAGS)) {
+        if (newTasks.contains(UpdateTask.TAGS)) {
             updateTags();
         }
-        if (tasks.contains(UpdateTask.FOLLOWED_BLOGS)) {
+        if (newTasks.contains(UpdateTask.FOLLOWED_BLOGS)) {
             updateFollowedBlogs();
         }
-        if (tasks.contains(UpdateTask.RECOMMENDED_BLOGS)) {
+        if (newTasks.contains(UpdateTask.RECOMMENDED_BLOGS)) {
             updateRecommendedBlogs();
         }
     }
 
-    private void taskCompleted(UpdateTask task) {
+    /*
+     * called from the main thread when a request fails, otherwise from the executor
+     */
+    private synchronized void taskCompleted(UpdateTask task) {
         mCurrentTasks.remove(task);
         if (mCurrentTasks.isEmpty()) {
             allTasksCompleted();
         }
     }
 
+    /*
+     * records that the task succeeded, so it's skipped until its interval has passed
+     */
+    private void taskSucceeded(UpdateTask task, long startTime, int numRowsChanged) {
+        AppPrefs.setReaderUpdateTime(task.name(), System.currentTimeMillis());
+        AppLog.d(AppLog.T.READER, "reader service > " + task.name() + " updated in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms, " + numRowsChanged + " rows changed");
+        taskCompleted(task);
+    }
+
     private void allTasksCompleted() {
         AppLog.i(AppLog.T.READER, "reader service > all tasks completed");
         stopSelf();
@@ -116,10 +226,11 @@ public class ReaderUpdateService extends Service {
      * they're included in the response
      */
     private void updateTags() {
+        final long startTime = SystemClock.elapsedRealtime();
         com.wordpress.rest.RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                handleUpdateTagsResponse(jsonObject);
+                handleUpdateTagsResponse(jsonObject, startTime);
             }
         };
 
@@ -134,50 +245,70 @@ public class ReaderUpdateService extends Service {
         WordPress.getRestClientUtilsV1_2().get("read/menu", null, null, listener, errorListener);
     }
 
-    private void handleUpdateTagsResponse(final JSONObject jsonObject) {
-        new Thread() {
+    private void handleUpdateTagsResponse(final JSONObject jsonObject, final long startTime) {
+        EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
-                // get server topics, both default & followed - but use "recommended" for logged-out
-                // reader since user won't have any followed tags
-                ReaderTagList serverTopics = new ReaderTagList();
-                serverTopics.addAll(parseTags(jsonObject, "default", ReaderTagType.DEFAULT));
-                if (ReaderUtils.isLoggedOutReader()) {
-                    serverTopics.addAll(parseTags(jsonObject, "recommended", ReaderTagType.FOLLOWED));
-                } else {
-                    serverTopics.addAll(parseTags(jsonObject, "subscribed", ReaderTagType.FOLLOWED));
-                }
+                int numTopicsChanged;
+                int numRecommendedChanged = 0;
+                Trace.beginSection("ReaderUpdateService.handleUpdateTagsResponse");
+                try {
+                    // get server topics, both default & followed - but use "recommended" for logged-out
+                    // reader since user won't have any followed tags
+                    ReaderTagList serverTopics = new ReaderTagList();
+                    serverTopics.addAll(parseTags(jsonObject, "default", ReaderTagType.DEFAULT));
+                    if (ReaderUtils.isLoggedOutReader()) {
+                        serverTopics.addAll(parseTags(jsonObject, "recommended", ReaderTagType.FOLLOWED));
+                    } else {
+                        serverTopics.addAll(parseTags(jsonObject, "subscribed", ReaderTagType.FOLLOWED));
+                    }
 
-                // parse topics from the response, detect whether they're different from local
-                ReaderTagList localTopics = new ReaderTagList();
-                localTopics.addAll(ReaderTagTable.getDefaultTags());
-                localTopics.addAll(ReaderTagTable.getFollowedTags());
+                    ReaderTagList localTopics = new ReaderTagList();
+                    localTopics.addAll(ReaderTagTable.getDefaultTags());
+                    localTopics.addAll(ReaderTagTable.getFollowedTags());
 
-                if (!localTopics.isSameList(serverTopics)) {
+                    ReaderTagList serverRecommended = null;
+                    ReaderTagList localRecommended = null;
+                    if (!ReaderUtils.isLoggedOutReader()) {
+                        serverRecommended = parseTags(jsonObject, "recommended", ReaderTagType.RECOMMENDED);
+                        localRecommended = ReaderTagTable.getRecommendedTags(false);
+                    }
+
+                    // write only what changed, in a single transaction
+                    SQLiteDatabase db = ReaderDatabase.getWritableDb();
+                    db.beginTransaction();
+                    try {
+                        // if any local topics have been removed from the server, make sure to delete
+                        // their posts along with them
+                        for (ReaderTag tag: localTopics.getDeletions(serverTopics)) {
+                            ReaderPostTable.deletePostsWithTag(tag);
+                        }
+                        numTopicsChanged = ReaderTagTable.updateTags(localTopics, serverTopics);
+                        if (serverRecommended != null) {
+                            numRecommendedChanged =
+                                    ReaderTagTable.updateRecommendedTags(localRecommended, serverRecommended);
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                } finally {
+                    Trace.endSection();
+                }
+
+                // broadcast the fact that there are changes
+                if (numTopicsChanged > 0) {
                     AppLog.d(AppLog.T.READER, "reader service > followed topics changed");
-                    // if any local topics have been removed from the server, make sure to delete
-                    // them locally (including their posts)
-                    deleteTags(localTopics.getDeletions(serverTopics));
-                    // now replace local topics with the server topics
-                    ReaderTagTable.replaceTags(serverTopics);
-                    // broadcast the fact that there are changes
                     EventBus.getDefault().post(new ReaderEvents.FollowedTagsChanged());
                 }
-
-                // save changes to recommended topics
-                if (!ReaderUtils.isLoggedOutReader()) {
-                    ReaderTagList serverRecommended = parseTags(jsonObject, "recommended", ReaderTagType.RECOMMENDED);
-                    ReaderTagList localRecommended = ReaderTagTable.getRecommendedTags(false);
-                    if (!serverRecommended.isSameList(localRecommended)) {
-                        AppLog.d(AppLog.T.READER, "reader service > recommended topics changed");
-                        ReaderTagTable.setRecommendedTags(serverRecommended);
-                        EventBus.getDefault().post(new ReaderEvents.RecommendedTagsChanged());
-                    }
+                if (numRecommendedChanged > 0) {
+                    AppLog.d(AppLog.T.READER, "reader service > recommended topics changed");
+                    EventBus.getDefault().post(new ReaderEvents.RecommendedTagsChanged());
                 }
 
-                taskCompleted(UpdateTask.TAGS);
+                taskSucceeded(UpdateTask.TAGS, startTime, numTopicsChanged + numRecommendedChanged);
             }
-        }.start();
+        });
     }
 
     /*
@@ -214,33 +345,15 @@ public class ReaderUpdateService extends Service {
         return topics;
     }
 
-    private static void deleteTags(ReaderTagList tagList) {
-        if (tagList == null || tagList.size() == 0) {
-            return;
-        }
-
-        SQLiteDatabase db = ReaderDatabase.getWritableDb();
-        db.beginTransaction();
-        try {
-            for (ReaderTag tag: tagList) {
-                ReaderTagTable.deleteTag(tag);
-                ReaderPostTable.deletePostsWithTag(tag);
-            }
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
-    }
-
-
     /***
      * request the list of blogs the current user is following
      */
     void updateFollowedBlogs() {
+        final long startTime = SystemClock.elapsedRealtime();
         RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                handleFollowedBlogsResponse(jsonObject);
+                handleFollowedBlogsResponse(jsonObject, startTime);
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
@@ -255,32 +368,39 @@ public class ReaderUpdateService extends Service {
         // request using ?meta=site,feed to get extra info
         WordPress.getRestClientUtilsV1_1().get("read/following/mine?meta=site%2Cfeed", listener, errorListener);
     }
-    private void handleFollowedBlogsResponse(final JSONObject jsonObject) {
-        new Thread() {
+    private void handleFollowedBlogsResponse(final JSONObject jsonObject, final long startTime) {
+        EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
-                ReaderBlogList serverBlogs = ReaderBlogList.fromJson(jsonObject);
-                ReaderBlogList localBlogs = ReaderBlogTable.getFollowedBlogs();
+                int numChanged;
+                Trace.beginSection("ReaderUpdateService.handleFollowedBlogsResponse");
+                try {
+                    ReaderBlogList serverBlogs = ReaderBlogList.fromJson(jsonObject);
+                    ReaderBlogList localBlogs = ReaderBlogTable.getFollowedBlogs();
+                    numChanged = ReaderBlogTable.updateFollowedBlogs(localBlogs, serverBlogs);
+                } finally {
+                    Trace.endSection();
+                }
 
-                if (!localBlogs.isSameList(serverBlogs)) {
-                    ReaderBlogTable.setFollowedBlogs(serverBlogs);
+                if (numChanged > 0) {
                     AppLog.d(AppLog.T.READER, "reader blogs service > followed blogs changed");
                     EventBus.getDefault().post(new ReaderEvents.FollowedBlogsChanged());
                 }
 
-                taskCompleted(UpdateTask.FOLLOWED_BLOGS);
+                taskSucceeded(UpdateTask.FOLLOWED_BLOGS, startTime, numChanged);
             }
-        }.start();
+        });
     }
 
     /***
      * request the latest recommended blogs, replaces all local ones
      */
     void updateRecommendedBlogs() {
+        final long startTime = SystemClock.elapsedRealtime();
         RestRequest.Listener listener = new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
-                handleRecommendedBlogsResponse(jsonObject);
+                handleRecommendedBlogsResponse(jsonObject, startTime);
             }
         };
         RestRequest.ErrorListener errorListener = new RestRequest.ErrorListener() {
@@ -297,20 +417,26 @@ public class ReaderUpdateService extends Service {
                     + "&number=" + Integer.toString(ReaderConstants.READER_MAX_RECOMMENDED_TO_REQUEST);
         WordPress.getRestClientUtilsV1_1().get(path, listener, errorListener);
     }
-    private void handleRecommendedBlogsResponse(final JSONObject jsonObject) {
-        new Thread() {
+    private void handleRecommendedBlogsResponse(final JSONObject jsonObject, final long startTime) {
+        EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
-                ReaderRecommendBlogList serverBlogs = ReaderRecommendBlogList.fromJson(jsonObject);
-                ReaderRecommendBlogList localBlogs = ReaderBlogTable.getRecommendedBlogs();
+                int numChanged;
+                Trace.beginSection("ReaderUpdateService.handleRecommendedBlogsResponse");
+                try {
+                    ReaderRecommendBlogList serverBlogs = ReaderRecommendBlogList.fromJson(jsonObject);
+                    ReaderRecommendBlogList localBlogs = ReaderBlogTable.getRecommendedBlogs();
+                    numChanged = ReaderBlogTable.updateRecommendedBlogs(localBlogs, serverBlogs);
+                } finally {
+                    Trace.endSection();
+                }
 
-                if (!localBlogs.isSameList(serverBlogs)) {
-                    ReaderBlogTable.setRecommendedBlogs(serverBlogs);
+                if (numChanged > 0) {
                     EventBus.getDefault().post(new ReaderEvents.RecommendedBlogsChanged());
                 }
 
-                taskCompleted(UpdateTask.RECOMMENDED_BLOGS);
+                taskSucceeded(UpdateTask.RECOMMENDED_BLOGS, startTime, numChanged);
             }
-        }.start();
+        });
     }
 }
@@ -278,7 +278,7 @@ public class StatsWidgetProvider extends AppWidgetProvider {
     public void onDisabled(Context context) {
         AppLog.d(AppLog.T.STATS, "onDisabled called");
         AnalyticsTracker.track(AnalyticsTracker.Stat.STATS_WIDGET_REMOVED);
-        AnalyticsTracker.flush();
+        AnalyticsTracker.flushAndWait();
         AppPrefs.resetStatsWidgetsKeys();
         AppPrefs.resetStatsWidgetsData();
     }
@@ -448,7 +448,7 @@ public class StatsWidgetProvider extends AppWidgetProvider {
         }
 
         AnalyticsUtils.trackWithBlogDetails(AnalyticsTracker.Stat.STATS_WIDGET_ADDED, remoteBlogID);
-        AnalyticsTracker.flush();
+        AnalyticsTracker.flushAndWait();
 
         // Store the association between the widget ID and the remote blog id into prefs.
         setRemoteBlogIDForWidgetIDs(new int[] {widgetID}, remoteBlogID);
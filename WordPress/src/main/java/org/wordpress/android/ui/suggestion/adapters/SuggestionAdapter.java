@@ -11,17 +11,20 @@ import android.widget.TextView;
 
 import org.wordpress.android.R;
 import org.wordpress.android.models.Suggestion;
+import org.wordpress.android.ui.suggestion.util.SuggestionIndex;
 import org.wordpress.android.util.GravatarUtils;
 import org.wordpress.android.widgets.WPNetworkImageView;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class SuggestionAdapter extends BaseAdapter implements Filterable {
+    private static final int MAX_RESULTS = 50;
+
     private final LayoutInflater mInflater;
     private Filter mSuggestionFilter;
     private List<Suggestion> mSuggestionList;
     private List<Suggestion> mOrigSuggestionList;
+    private SuggestionIndex<Suggestion> mIndex;
     private int mAvatarSz;
 
     public SuggestionAdapter(Context context) {
@@ -29,8 +32,28 @@ public class SuggestionAdapter extends BaseAdapter implements Filterable {
         mInflater = LayoutInflater.from(context);
     }
 
-    public void setSuggestionList(List<Suggestion> suggestionList) {
+    public void setSuggestionList(final List<Suggestion> suggestionList) {
         mOrigSuggestionList = suggestionList;
+        // build the index now so it's usually ready before the user starts typing
+        if (suggestionList != null) {
+            SuggestionIndex.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    getIndex(suggestionList);
+                }
+            });
+        }
+    }
+
+    /*
+     * returns the index of the passed list, building it if it hasn't been built yet - must be called
+     * from a background thread
+     */
+    private synchronized SuggestionIndex<Suggestion> getIndex(List<Suggestion> list) {
+        if (mIndex == null || !mIndex.isFor(list)) {
+            mIndex = SuggestionIndex.forSuggestions(list);
+        }
+        return mIndex;
     }
 
     @Override
@@ -113,15 +136,8 @@ public class SuggestionAdapter extends BaseAdapter implements Filterable {
                 results.count = mOrigSuggestionList.size();
             }
             else {
-                List<Suggestion> nSuggestionList = new ArrayList<Suggestion>();
-
-                for (Suggestion suggestion : mOrigSuggestionList) {
-                    String lowerCaseConstraint = constraint.toString().toLowerCase();
-                    if (suggestion.getUserLogin().toLowerCase().startsWith(lowerCaseConstraint)
-                            || suggestion.getDisplayName().toLowerCase().startsWith(lowerCaseConstraint)
-                            || suggestion.getDisplayName().toLowerCase().contains(" " + lowerCaseConstraint))
-                        nSuggestionList.add(suggestion);
-                }
+                // performFiltering() runs on a background thread, so the index can be built here if needed
+                List<Suggestion> nSuggestionList = getIndex(mOrigSuggestionList).find(constraint, MAX_RESULTS);
 
                 results.values = nSuggestionList;
                 results.count = nSuggestionList.size();
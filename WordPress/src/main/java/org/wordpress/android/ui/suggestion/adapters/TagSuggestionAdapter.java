@@ -11,22 +11,45 @@ import android.widget.TextView;
 
 import org.wordpress.android.R;
 import org.wordpress.android.models.Tag;
+import org.wordpress.android.ui.suggestion.util.SuggestionIndex;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class TagSuggestionAdapter extends BaseAdapter implements Filterable {
+    private static final int MAX_RESULTS = 50;
+
     private final LayoutInflater mInflater;
     private Filter mTagFilter;
     private List<Tag> mTagList;
     private List<Tag> mOrigTagList;
+    private SuggestionIndex<Tag> mIndex;
 
     public TagSuggestionAdapter(Context context) {
         mInflater = LayoutInflater.from(context);
     }
 
-    public void setTagList(List<Tag> tagList) {
+    public void setTagList(final List<Tag> tagList) {
         mOrigTagList = tagList;
+        // build the index now so it's usually ready before the user starts typing
+        if (tagList != null) {
+            SuggestionIndex.runInBackground(new Runnable() {
+                @Override
+                public void run() {
+                    getIndex(tagList);
+                }
+            });
+        }
+    }
+
+    /*
+     * returns the index of the passed list, building it if it hasn't been built yet - must be called
+     * from a background thread
+     */
+    private synchronized SuggestionIndex<Tag> getIndex(List<Tag> list) {
+        if (mIndex == null || !mIndex.isFor(list)) {
+            mIndex = SuggestionIndex.forTags(list);
+        }
+        return mIndex;
     }
 
     @Override
@@ -102,14 +125,8 @@ public class TagSuggestionAdapter extends BaseAdapter implements Filterable {
                 results.count = mOrigTagList.size();
             }
             else {
-                List<Tag> nTagList = new ArrayList<Tag>();
-
-                for (Tag tag : mOrigTagList) {
-                    String lowerCaseConstraint = constraint.toString().toLowerCase();
-                    if (tag.getTag().toLowerCase().startsWith(lowerCaseConstraint)
-                            || tag.getTag().toLowerCase().contains(" " + lowerCaseConstraint))
-                        nTagList.add(tag);
-                }
+                // performFiltering() runs on a background thread, so the index can be built here if needed
+                List<Tag> nTagList = getIndex(mOrigTagList).find(constraint, MAX_RESULTS);
 
                 results.values = nTagList;
                 results.count = nTagList.size();
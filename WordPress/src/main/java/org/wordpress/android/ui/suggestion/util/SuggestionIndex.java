@@ -0,0 +1,195 @@
+package org.wordpress.android.ui.suggestion.util;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import org.wordpress.android.models.Suggestion;
+import org.wordpress.android.models.Tag;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * prefix index of a site's mention or tag suggestions. each item is indexed by the case-folded text
+ * which follows the start of each of its words, so a query matches an item when one of its names
+ * starts with the query or the query follows a space in one of them. the keys are kept in a sorted
+ * array so a lookup is a binary search followed by a scan of the matching range. building the index
+ * sorts every key, so it should be done off the UI thread.
+ */
+public class SuggestionIndex<T> {
+    // indexes are built ahead of typing on this executor rather than a new thread each - it's shared
+    // by all the suggestion adapters and its thread ends when it's idle
+    private static final ThreadPoolExecutor EXECUTOR;
+    static {
+        EXECUTOR = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "SuggestionIndex-" + mCount.incrementAndGet());
+                    }
+                });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final List<T> mItems;
+    private final String[] mKeys;
+    private final int[] mItemIndexes;
+
+    private SuggestionIndex(List<T> items, List<List<String>> namesPerItem) {
+        mItems = items;
+
+        List<Key> keys = new ArrayList<>();
+        for (int i = 0; i < namesPerItem.size(); i++) {
+            for (String name : namesPerItem.get(i)) {
+                addKeys(keys, normalize(name), i);
+            }
+        }
+        Collections.sort(keys, new Comparator<Key>() {
+            @Override
+            public int compare(Key lhs, Key rhs) {
+                return lhs.mText.compareTo(rhs.mText);
+            }
+        });
+
+        mKeys = new String[keys.size()];
+        mItemIndexes = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            mKeys[i] = keys.get(i).mText;
+            mItemIndexes[i] = keys.get(i).mItemIndex;
+        }
+    }
+
+    public static SuggestionIndex<Suggestion> forSuggestions(List<Suggestion> suggestions) {
+        List<List<String>> names = new ArrayList<>(suggestions.size());
+        for (Suggestion suggestion : suggestions) {
+            List<String> itemNames = new ArrayList<>(2);
+            itemNames.add(suggestion.getUserLogin());
+            itemNames.add(suggestion.getDisplayName());
+            names.add(itemNames);
+        }
+        return new SuggestionIndex<>(suggestions, names);
+    }
+
+    public static SuggestionIndex<Tag> forTags(List<Tag> tags) {
+        List<List<String>> names = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            names.add(Collections.singletonList(tag.getTag()));
+        }
+        return new SuggestionIndex<>(tags, names);
+    }
+
+    /*
+     * runs the passed task, which usually builds an index, on the shared background executor
+     */
+    public static void runInBackground(Runnable task) {
+        EXECUTOR.execute(task);
+    }
+
+    /*
+     * true if this index was built from the passed list
+     */
+    public boolean isFor(List<T> items) {
+        return mItems == items;
+    }
+
+    /*
+     * returns up to maxResults items matching the query, in the order they appear in the indexed list
+     */
+    public List<T> find(CharSequence query, int maxResults) {
+        List<T> results = new ArrayList<>();
+        String prefix = normalize(query != null ? query.toString() : null);
+        if (prefix.length() == 0 || maxResults <= 0) {
+            return results;
+        }
+
+        BitSet matches = new BitSet(mItems.size());
+        for (int i = lowerBound(prefix); i < mKeys.length && mKeys[i].startsWith(prefix); i++) {
+            matches.set(mItemIndexes[i]);
+        }
+        for (int i = matches.nextSetBit(0); i >= 0 && results.size() < maxResults; i = matches.nextSetBit(i + 1)) {
+            results.add(mItems.get(i));
+        }
+        return results;
+    }
+
+    /*
+     * index of the first key which isn't less than the passed one
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * adds the whole name along with the text following each space in it, matching the way
+     * the suggestion lists have always been filtered
+     */
+    private static void addKeys(List<Key> keys, String name, int itemIndex) {
+        if (name.length() == 0) {
+            return;
+        }
+        keys.add(new Key(name, itemIndex));
+        int start = name.indexOf(' ');
+        while (start >= 0) {
+            if (start + 1 < name.length() && name.charAt(start + 1) != ' ') {
+                keys.add(new Key(name.substring(start + 1), itemIndex));
+            }
+            start = name.indexOf(' ', start + 1);
+        }
+    }
+
+    /*
+     * composes and case-folds the passed text so it can be compared regardless of case or of how
+     * accented characters were entered - upper-casing before lower-casing folds characters whose
+     * upper case form is longer (such as ß, which folds to "ss"), and Locale.ROOT avoids locale-specific
+     * rules such as the Turkish dotless i. the dot above which İ leaves on its lower case i is dropped
+     * so "irem" matches "İrem". the final sigma is folded to the regular one since a partly typed word
+     * can end with a sigma which isn't final in the name
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT)
+                .replace("i\u0307", "i")
+                .replace('\u03C2', '\u03C3');
+    }
+
+    private static class Key {
+        private final String mText;
+        private final int mItemIndex;
+
+        Key(String text, int itemIndex) {
+            mText = text;
+            mItemIndex = itemIndex;
+        }
+    }
+}
@@ -486,10 +486,10 @@ public class ThemeBrowserActivity extends AppCompatActivity implements ThemeBrow
                             JSONObject object = array.getJSONObject(i);
                             Theme theme = Theme.fromJSONV1_2(object);
                             if (theme != null) {
-                                theme.save();
                                 themes.add(theme);
                             }
                         }
+                        WordPress.wpDB.saveThemes(themes);
                     }
                 } catch (JSONException e) {
                     AppLog.e(T.THEMES, e);
@@ -26,6 +26,7 @@ public class HelpshiftHelper {
     private static String HELPSHIFT_ORIGIN_KEY = "origin";
     private static HelpshiftHelper mInstance = null;
     private static HashMap<String, Object> mMetadata = new HashMap<String, Object>();
+    private static final int MAX_LOG_METADATA_LENGTH = 100 * 1024;
 
     public enum MetadataKey {
         USER_ENTERED_URL("user-entered-url"),
@@ -132,8 +133,7 @@ public class HelpshiftHelper {
         AnalyticsTracker.track(Stat.SUPPORT_OPENED_HELPSHIFT_SCREEN, properties);
         // Add tags to Helpshift metadata
         addTags(new Tag[]{origin});
-        HashMap config = getHelpshiftConfig(activity);
-        Helpshift.showConversation(activity, config);
+        showWithConfig(activity, false);
     }
 
     /**
@@ -151,8 +151,36 @@ public class HelpshiftHelper {
         AnalyticsTracker.track(Stat.SUPPORT_OPENED_HELPSHIFT_SCREEN, properties);
         // Add tags to Helpshift metadata
         addTags(new Tag[]{origin});
-        HashMap config = getHelpshiftConfig(activity);
-        Helpshift.showFAQs(activity, config);
+        showWithConfig(activity, true);
+    }
+
+    /*
+     * the app log added to the metadata is read from disk, so it's loaded in the background before the
+     * conversation or FAQ screen is shown
+     */
+    private void showWithConfig(final Activity activity, final boolean showFAQs) {
+        new Thread() {
+            @Override
+            public void run() {
+                // Use plain text log (unfortunately Helpshift can't display this correctly)
+                final String log = AppLog.toPlainText(activity, MAX_LOG_METADATA_LENGTH);
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (activity.isFinishing()) {
+                            return;
+                        }
+                        mMetadata.put("log", log);
+                        HashMap config = getHelpshiftConfig(activity);
+                        if (showFAQs) {
+                            Helpshift.showFAQs(activity, config);
+                        } else {
+                            Helpshift.showConversation(activity, config);
+                        }
+                    }
+                });
+            }
+        }.start();
     }
 
     /**
@@ -199,9 +227,6 @@ public class HelpshiftHelper {
     }
 
     private void addDefaultMetaData(Context context) {
-        // Use plain text log (unfortunately Helpshift can't display this correctly)
-        mMetadata.put("log", AppLog.toPlainText(context));
-
         // List blogs name and url
         int counter = 1;
         for (Map<String, Object> account : WordPress.wpDB.getAllBlogs()) {
@@ -0,0 +1,330 @@
+package org.wordpress.android.util;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the app's initializers at startup. Each initializer declares the phase it belongs to, the thread
+ * it must run on and the initializers it depends on:
+ *
+ * - ON_CREATE initializers run when runOnCreatePhase() is called from Application.onCreate(), which
+ *   returns once they're all done. Background ones run in parallel on a small pool as soon as their
+ *   dependencies are done, while main thread ones run on the calling thread.
+ * - AFTER_FIRST_FRAME initializers run once the first activity has been drawn, and nothing waits for
+ *   them. They never run if the process is started for a service or receiver and no activity is shown.
+ *
+ * Each initializer is traced and its duration logged, and the cold start time (from Application.onCreate()
+ * to the first frame) is available once the first frame is drawn.
+ */
+public class StartupOrchestrator {
+    public enum Phase {ON_CREATE, AFTER_FIRST_FRAME}
+    public enum ThreadType {MAIN, BACKGROUND}
+
+    // a first activity resumed later than this after onCreate wasn't the reason the process started
+    private static final long MAX_COLD_START_GAP_MS = 5000;
+
+    public abstract static class Initializer {
+        private final String mName;
+        private final Phase mPhase;
+        private final ThreadType mThreadType;
+        private final String[] mDependencies;
+
+        private final List<Initializer> mDependents = new ArrayList<>();
+        private final AtomicInteger mPendingDependencies = new AtomicInteger();
+        private volatile boolean mIsDone;
+
+        public Initializer(String name, Phase phase, ThreadType threadType, String... dependencies) {
+            mName = name;
+            mPhase = phase;
+            mThreadType = threadType;
+            mDependencies = dependencies;
+        }
+
+        public abstract void run();
+    }
+
+    /*
+     * state of a single phase
+     */
+    private static class PhaseRun {
+        private final boolean mIsBlocking;
+        private final AtomicInteger mRemaining;
+        // main thread initializers which are ready to run while the caller is blocked
+        private final BlockingQueue<Initializer> mMainThreadQueue = new LinkedBlockingQueue<>();
+        private volatile Throwable mFailure;
+
+        PhaseRun(boolean isBlocking, int count) {
+            mIsBlocking = isBlocking;
+            mRemaining = new AtomicInteger(count);
+        }
+    }
+
+    // queued once all of a phase's initializers are done, to release the blocked caller
+    private static final Initializer PHASE_FINISHED = new Initializer("finished", Phase.ON_CREATE, ThreadType.MAIN) {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final Map<String, Initializer> mInitializers = new LinkedHashMap<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor;
+
+    private final long mStartRealtime;
+    private long mOnCreateEndRealtime;
+    private long mFirstResumeRealtime;
+    private long mColdStartMs = -1;
+    private boolean mIsFirstFrameDrawn;
+
+    /**
+     * @param startRealtime SystemClock.elapsedRealtime() when Application.onCreate() started
+     */
+    public StartupOrchestrator(long startRealtime) {
+        mStartRealtime = startRealtime;
+
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        mExecutor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "Startup-" + mCount.incrementAndGet());
+            }
+        });
+        // the pool is only needed at startup, so let its threads end once it's idle
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Adds an initializer, its dependencies must have been added before it and can't belong to a later phase
+     */
+    public StartupOrchestrator add(Initializer initializer) {
+        if (mInitializers.containsKey(initializer.mName)) {
+            throw new IllegalArgumentException("Duplicate initializer " + initializer.mName);
+        }
+        for (String name : initializer.mDependencies) {
+            Initializer dependency = mInitializers.get(name);
+            if (dependency == null) {
+                throw new IllegalArgumentException(initializer.mName + " depends on unknown initializer " + name);
+            }
+            if (dependency.mPhase.ordinal() > initializer.mPhase.ordinal()) {
+                throw new IllegalArgumentException(initializer.mName + " depends on later initializer " + name);
+            }
+        }
+        mInitializers.put(initializer.mName, initializer);
+        return this;
+    }
+
+    /**
+     * Runs the ON_CREATE initializers and returns once they're done, rethrowing the first failure
+     */
+    public void runOnCreatePhase() {
+        Trace.beginSection("StartupOrchestrator.onCreate");
+        PhaseRun run = startPhase(Phase.ON_CREATE, true);
+        if (run != null) {
+            while (true) {
+                Initializer initializer = takeUninterruptibly(run.mMainThreadQueue);
+                if (initializer == PHASE_FINISHED) {
+                    break;
+                }
+                execute(run, initializer);
+            }
+        }
+        mOnCreateEndRealtime = SystemClock.elapsedRealtime();
+        Trace.endSection();
+        AppLog.i(T.UTILS, "startup: onCreate initializers done in " + getOnCreateMs() + "ms");
+
+        if (run != null && run.mFailure != null) {
+            if (run.mFailure instanceof RuntimeException) {
+                throw (RuntimeException) run.mFailure;
+            } else if (run.mFailure instanceof Error) {
+                throw (Error) run.mFailure;
+            }
+            throw new RuntimeException(run.mFailure);
+        }
+    }
+
+    /**
+     * Must be called on the main thread whenever an activity is resumed, to find out when the first frame is drawn
+     */
+    public void onActivityResumed(Activity activity) {
+        if (mIsFirstFrameDrawn) {
+            return;
+        }
+        if (mFirstResumeRealtime == 0) {
+            mFirstResumeRealtime = SystemClock.elapsedRealtime();
+        }
+
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // posted so it runs after the frame which is about to be drawn
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFirstFrameDrawn();
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    private void onFirstFrameDrawn() {
+        if (mIsFirstFrameDrawn) {
+            return;
+        }
+        mIsFirstFrameDrawn = true;
+        Trace.mark("first frame");
+
+        if (mFirstResumeRealtime - mOnCreateEndRealtime <= MAX_COLD_START_GAP_MS) {
+            mColdStartMs = SystemClock.elapsedRealtime() - mStartRealtime;
+            AppLog.i(T.UTILS, "startup: first frame drawn " + mColdStartMs + "ms after onCreate");
+        }
+        startPhase(Phase.AFTER_FIRST_FRAME, false);
+    }
+
+    public long getOnCreateMs() {
+        return mOnCreateEndRealtime - mStartRealtime;
+    }
+
+    /**
+     * Returns the time from Application.onCreate() to the first frame, or -1 if the first frame hasn't been
+     * drawn yet or the process wasn't started to show an activity
+     */
+    public long getColdStartMs() {
+        return mColdStartMs;
+    }
+
+    /*
+     * schedules the phase's initializers which have no pending dependencies, returns null if the phase
+     * has no initializers
+     */
+    private PhaseRun startPhase(Phase phase, boolean isBlocking) {
+        List<Initializer> initializers = new ArrayList<>();
+        for (Initializer initializer : mInitializers.values()) {
+            if (initializer.mPhase == phase) {
+                initializers.add(initializer);
+            }
+        }
+        if (initializers.isEmpty()) {
+            return null;
+        }
+
+        // dependencies from earlier phases are already done
+        for (Initializer initializer : initializers) {
+            int pending = 0;
+            for (String name : initializer.mDependencies) {
+                Initializer dependency = mInitializers.get(name);
+                if (!dependency.mIsDone) {
+                    dependency.mDependents.add(initializer);
+                    pending++;
+                }
+            }
+            initializer.mPendingDependencies.set(pending);
+        }
+
+        PhaseRun run = new PhaseRun(isBlocking, initializers.size());
+        for (Initializer initializer : initializers) {
+            if (initializer.mPendingDependencies.get() == 0) {
+                schedule(run, initializer);
+            }
+        }
+        return run;
+    }
+
+    private void schedule(final PhaseRun run, final Initializer initializer) {
+        if (initializer.mThreadType == ThreadType.MAIN) {
+            if (run.mIsBlocking) {
+                run.mMainThreadQueue.add(initializer);
+            } else {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(run, initializer);
+                    }
+                });
+            }
+        } else {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // deferred initializers shouldn't compete with the UI thread
+                    Process.setThreadPriority(run.mIsBlocking ? Process.THREAD_PRIORITY_DEFAULT
+                            : Process.THREAD_PRIORITY_BACKGROUND);
+                    execute(run, initializer);
+                }
+            });
+        }
+    }
+
+    private void execute(PhaseRun run, Initializer initializer) {
+        long start = SystemClock.elapsedRealtime();
+        Trace.beginSection(initializer.mName);
+        try {
+            initializer.run();
+        } catch (RuntimeException | Error e) {
+            if (!run.mIsBlocking) {
+                throw e;
+            }
+            // rethrown by runOnCreatePhase() once the blocked caller is released
+            if (run.mFailure == null) {
+                run.mFailure = e;
+            }
+        } finally {
+            Trace.endSection();
+        }
+        AppLog.d(T.UTILS, "startup: " + initializer.mName + " took " + (SystemClock.elapsedRealtime() - start)
+                + "ms on " + Thread.currentThread().getName());
+
+        initializer.mIsDone = true;
+        for (Initializer dependent : initializer.mDependents) {
+            if (dependent.mPendingDependencies.decrementAndGet() == 0) {
+                schedule(run, dependent);
+            }
+        }
+        initializer.mDependents.clear();
+
+        if (run.mRemaining.decrementAndGet() == 0 && run.mIsBlocking) {
+            run.mMainThreadQueue.add(PHASE_FINISHED);
+        }
+    }
+
+    private static Initializer takeUninterruptibly(BlockingQueue<Initializer> queue) {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
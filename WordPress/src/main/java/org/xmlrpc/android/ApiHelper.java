@@ -4,7 +4,6 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.text.TextUtils;
-import android.util.Xml;
 import android.webkit.URLUtil;
 
 import com.android.volley.DefaultRetryPolicy;
@@ -26,6 +25,7 @@ import org.wordpress.android.models.Comment;
 import org.wordpress.android.models.CommentList;
 import org.wordpress.android.models.FeatureSet;
 import org.wordpress.android.networking.WPDelayedHurlStack;
+import org.wordpress.android.ui.prefs.AppPrefs;
 import org.wordpress.android.ui.media.MediaGridFragment.Filter;
 import org.wordpress.android.ui.stats.StatsUtils;
 import org.wordpress.android.ui.stats.StatsWidgetProvider;
@@ -36,16 +36,13 @@ import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.UrlUtils;
 import org.wordpress.android.util.helpers.MediaFile;
-import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringReader;
 import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
@@ -53,6 +50,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -92,6 +90,7 @@ public class ApiHelper {
         public static final String WPCOM_GET_FEATURES = "wpcom.getFeatures";
 
         public static final String LIST_METHODS       = "system.listMethods";
+        public static final String MULTICALL          = "system.multicall";
     }
 
     public enum ErrorType {
@@ -331,12 +330,8 @@ public class ApiHelper {
             }
 
             // refresh the comments
-            Map<String, Object> hPost = new HashMap<String, Object>();
-            hPost.put("number", 30);
-            Object[] commentParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(),
-                    mBlog.getPassword(), hPost};
             try {
-                ApiHelper.refreshComments(mBlog, commentParams);
+                ApiHelper.syncComments(mBlog, 30);
             } catch (Exception e) {
                 setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
                 return false;
@@ -358,6 +353,12 @@ public class ApiHelper {
         }
     }
 
+    // most pages of comments requested by a single sync
+    private static final int MAX_COMMENT_SYNC_PAGES = 5;
+
+    // trashed comments requested per page when looking for comments deleted on the server
+    private static final int TRASHED_COMMENTS_PAGE_SIZE = 50;
+
     /**
      * request deleted comments for passed blog and remove them from local db
      * @param blog  blog to check
@@ -368,32 +369,48 @@ public class ApiHelper {
             return 0;
         }
 
+        // trashed comments older than anything we store can't be in the local db
+        int localBlogId = blog.getLocalTableBlogId();
+        long oldestLocalId = CommentTable.getOldestCommentId(localBlogId);
+        if (oldestLocalId == 0) {
+            return 0;
+        }
+
         XMLRPCClientInterface client = XMLRPCFactory.instantiate(
                 blog.getUri(),
                 blog.getHttpuser(),
                 blog.getHttppassword());
 
-        Map<String, Object> hPost = new HashMap<String, Object>();
-        hPost.put("status", "trash");
-
-        Object[] params = { blog.getRemoteBlogId(),
-                blog.getUsername(),
-                blog.getPassword(),
-                hPost };
-
         int numDeleted = 0;
         try {
-            Object[] result = (Object[]) client.call(ApiHelper.Methods.GET_COMMENTS, params);
-            if (result == null || result.length == 0) {
-                return 0;
-            }
-            Map<?, ?> contentHash;
-            for (Object aComment : result) {
-                contentHash = (Map<?, ?>) aComment;
-                long commentId = Long.parseLong(contentHash.get("comment_id").toString());
-                if (CommentTable.deleteComment(blog.getLocalTableBlogId(), commentId))
-                    numDeleted++;
+            // the trash is returned newest first, so page through it only until reaching comments
+            // older than the oldest stored one
+            List<Long> commentIds = new ArrayList<Long>();
+            for (int page = 0; page < MAX_COMMENT_SYNC_PAGES; page++) {
+                Map<String, Object> hPost = new HashMap<String, Object>();
+                hPost.put("status", "trash");
+                hPost.put("number", TRASHED_COMMENTS_PAGE_SIZE);
+                if (page > 0) {
+                    hPost.put("offset", page * TRASHED_COMMENTS_PAGE_SIZE);
+                }
+                Object[] params = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), hPost};
+
+                Object[] result = (Object[]) client.call(ApiHelper.Methods.GET_COMMENTS, params);
+                if (result == null || result.length == 0) {
+                    break;
+                }
+                long minId = Long.MAX_VALUE;
+                for (Object aComment : result) {
+                    Map<?, ?> contentHash = (Map<?, ?>) aComment;
+                    long commentId = Long.parseLong(contentHash.get("comment_id").toString());
+                    commentIds.add(commentId);
+                    minId = Math.min(minId, commentId);
+                }
+                if (result.length < TRASHED_COMMENTS_PAGE_SIZE || minId <= oldestLocalId) {
+                    break;
+                }
             }
+            numDeleted = CommentTable.deleteCommentsWithIds(localBlogId, commentIds);
             if (numDeleted > 0) {
                 AppLog.d(T.COMMENTS, String.format("removed %d deleted comments", numDeleted));
             }
@@ -408,6 +425,10 @@ public class ApiHelper {
         return numDeleted;
     }
 
+    /**
+     * request the comments matching the passed params and store the ones which are new or changed
+     * @return comments returned by the server, or null if there weren't any
+     */
     public static CommentList refreshComments(Blog blog, Object[] commentParams)
             throws XMLRPCException, IOException, XmlPullParserException {
         if (blog == null) {
@@ -415,12 +436,85 @@ public class ApiHelper {
         }
         XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                 blog.getHttppassword());
-        Object[] result;
-        result = (Object[]) client.call(ApiHelper.Methods.GET_COMMENTS, commentParams);
+        CommentList comments = getComments(client, commentParams);
+        if (comments.size() == 0) {
+            return null;
+        }
 
-        if (result.length == 0) {
+        saveChangedComments(blog, comments);
+        return comments;
+    }
+
+    /**
+     * request the newest comments for the passed blog, continuing with older pages until reaching
+     * comments that were already synced, and store the ones which are new or changed
+     * @return comments returned by the server, or null if there weren't any
+     */
+    public static CommentList syncComments(Blog blog, int pageSize)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        if (blog == null) {
             return null;
         }
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
+
+        // wp.getComments can't filter by date or id, but it returns the newest first so
+        // we can stop once we reach the newest comment from the last sync
+        int localBlogId = blog.getLocalTableBlogId();
+        long watermark = AppPrefs.getCommentSyncWatermark(localBlogId);
+        CommentList comments = new CommentList();
+        for (int page = 0; page < MAX_COMMENT_SYNC_PAGES; page++) {
+            Map<String, Object> hPost = new HashMap<String, Object>();
+            hPost.put("number", pageSize);
+            if (page > 0) {
+                hPost.put("offset", page * pageSize);
+            }
+            Object[] params = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), hPost};
+            CommentList pageComments = getComments(client, params);
+            comments.addAll(pageComments);
+
+            if (watermark == 0 || pageComments.size() < pageSize || getMinCommentId(pageComments) <= watermark) {
+                break;
+            }
+        }
+        if (comments.size() == 0) {
+            return null;
+        }
+
+        saveChangedComments(blog, comments);
+
+        long newestId = getMaxCommentId(comments);
+        if (newestId > watermark) {
+            AppPrefs.setCommentSyncWatermark(localBlogId, newestId);
+        }
+        return comments;
+    }
+
+    private static void saveChangedComments(Blog blog, CommentList comments) {
+        int numSaved = CommentTable.saveChangedComments(blog.getLocalTableBlogId(), comments);
+        AppLog.d(T.COMMENTS, String.format("received %d comments, %d new or changed", comments.size(), numSaved));
+    }
+
+    private static long getMinCommentId(CommentList comments) {
+        long minId = Long.MAX_VALUE;
+        for (Comment comment : comments) {
+            minId = Math.min(minId, comment.commentID);
+        }
+        return minId;
+    }
+
+    private static long getMaxCommentId(CommentList comments) {
+        long maxId = 0;
+        for (Comment comment : comments) {
+            maxId = Math.max(maxId, comment.commentID);
+        }
+        return maxId;
+    }
+
+    private static CommentList getComments(XMLRPCClientInterface client, Object[] commentParams)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        Object[] result;
+        result = (Object[]) client.call(ApiHelper.Methods.GET_COMMENTS, commentParams);
 
         Map<?, ?> contentHash;
         long commentID, postID;
@@ -456,9 +550,6 @@ public class ApiHelper {
             comments.add(comment);
         }
 
-        int localBlogId = blog.getLocalTableBlogId();
-        CommentTable.saveComments(localBlogId, comments);
-
         return comments;
     }
 
@@ -494,6 +585,19 @@ public class ApiHelper {
             public void onSuccess(int results);
         }
 
+        // number of items requested per page, fewer than this means the end of the library was reached
+        public static final int PAGE_SIZE = 50;
+
+        // unfiltered passes over each blog's library which are in progress, keyed by local blog id. a pass
+        // starts with the page at offset 0 and collects the ids of the items on each page, so once the last
+        // page is reached the items which weren't seen can be removed as they were deleted on the server
+        private static final Map<String, MediaSyncPass> sSyncPasses = new HashMap<>();
+
+        private static class MediaSyncPass {
+            private final Set<String> mMediaIds = new HashSet<>();
+            private int mNextOffset;
+        }
+
         private Callback mCallback;
         private int mOffset;
         private Filter mFilter;
@@ -518,7 +622,7 @@ public class ApiHelper {
             XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                     blog.getHttppassword());
             Map<String, Object> filter = new HashMap<String, Object>();
-            filter.put("number", 50);
+            filter.put("number", PAGE_SIZE);
             filter.put("offset", mOffset);
 
             if (mFilter == Filter.IMAGES) {
@@ -557,22 +661,51 @@ public class ApiHelper {
                 return 0;
             }
 
-            Map<?, ?> resultMap;
-            // results returned, so mark everything existing to deleted
-            // since offset is 0, we are doing a full refresh
-            if (mOffset == 0) {
-                WordPress.wpDB.setMediaFilesMarkedForDeleted(blogId);
-            }
+            List<MediaFile> mediaFiles = new ArrayList<>(results.length);
             for (Object result : results) {
-                resultMap = (Map<?, ?>) result;
-                boolean isDotCom = (WordPress.getCurrentBlog() != null && WordPress.getCurrentBlog().isDotcomFlag());
-                MediaFile mediaFile = new MediaFile(blogId, resultMap, isDotCom);
-                WordPress.wpDB.saveMediaFile(mediaFile);
+                mediaFiles.add(new MediaFile(blogId, (Map<?, ?>) result, blog.isDotcomFlag()));
+            }
+            WordPress.wpDB.saveMediaFiles(mediaFiles);
+
+            if (mFilter == Filter.ALL) {
+                updateSyncPass(blogId, mediaFiles);
             }
-            WordPress.wpDB.deleteFilesMarkedForDeleted(blogId);
             return results.length;
         }
 
+        /*
+         * adds the fetched page to the blog's current pass, and removes the items deleted on the server once
+         * the pass is complete - a page which doesn't follow on from the previous one abandons the pass so
+         * nothing is removed based on an incomplete list
+         */
+        private void updateSyncPass(String blogId, List<MediaFile> mediaFiles) {
+            synchronized (sSyncPasses) {
+                MediaSyncPass pass;
+                if (mOffset == 0) {
+                    pass = new MediaSyncPass();
+                    sSyncPasses.put(blogId, pass);
+                } else {
+                    pass = sSyncPasses.get(blogId);
+                    if (pass == null || pass.mNextOffset != mOffset) {
+                        sSyncPasses.remove(blogId);
+                        return;
+                    }
+                }
+
+                for (MediaFile mediaFile : mediaFiles) {
+                    pass.mMediaIds.add(mediaFile.getMediaId());
+                }
+                pass.mNextOffset = mOffset + mediaFiles.size();
+
+                if (mediaFiles.size() < PAGE_SIZE) {
+                    sSyncPasses.remove(blogId);
+                    int numDeleted = WordPress.wpDB.deleteMediaFilesNotInSet(blogId, pass.mMediaIds);
+                    AppLog.d(T.MEDIA, "media sync complete, " + pass.mMediaIds.size() + " items, "
+                            + numDeleted + " removed");
+                }
+            }
+        }
+
         private void prepareErrorMessage(Exception e) {
             // user does not have permission to view media gallery
             if (e.getMessage() != null && e.getMessage().contains("401")) {
@@ -677,8 +810,8 @@ public class ApiHelper {
         @Override
         protected MediaFile doInBackground(List<?>... params) {
             List<?> arguments = params[0];
-            WordPress.currentBlog = (Blog) arguments.get(0);
-            Blog blog = WordPress.currentBlog;
+            // the blog is passed along rather than made current since several of these tasks can run at once
+            Blog blog = (Blog) arguments.get(0);
             if (blog == null) {
                 setError(ErrorType.INVALID_CURRENT_BLOG, "ApiHelper - current blog is null");
                 return null;
@@ -747,8 +880,8 @@ public class ApiHelper {
         @Override
         protected String doInBackground(List<?>... params) {
             List<?> arguments = params[0];
-            WordPress.currentBlog = (Blog) arguments.get(0);
-            Blog blog = WordPress.currentBlog;
+            // the blog is passed along rather than made current since several of these tasks can run at once
+            Blog blog = (Blog) arguments.get(0);
 
             if (blog == null) {
                 setError(ErrorType.INVALID_CURRENT_BLOG, "current blog is null");
@@ -775,9 +908,15 @@ public class ApiHelper {
                 return null;
             }
 
+            File tempFile = getTempFile(mContext);
+            if (tempFile == null) {
+                setError(ErrorType.UNKNOWN_ERROR, "unable to create temp file");
+                return null;
+            }
+
             Map<?, ?> resultMap;
             try {
-                resultMap = (HashMap<?, ?>) client.call(Methods.UPLOAD_FILE, apiParams, getTempFile(mContext));
+                resultMap = (HashMap<?, ?>) client.call(Methods.UPLOAD_FILE, apiParams, tempFile);
             } catch (ClassCastException cce) {
                 setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
                 return null;
@@ -801,15 +940,14 @@ public class ApiHelper {
             return null;
         }
 
-        // Create a temp file for media upload
+        // Create a temp file for media upload, uniquely named since several uploads can run at once
         private File getTempFile(Context context) {
-            String tempFileName = "wp-" + System.currentTimeMillis();
             try {
-                context.openFileOutput(tempFileName, Context.MODE_PRIVATE);
-            } catch (FileNotFoundException e) {
+                return File.createTempFile("wp-", null, context.getCacheDir());
+            } catch (IOException e) {
+                AppLog.e(T.API, e);
                 return null;
             }
-            return context.getFileStreamPath(tempFileName);
         }
 
         @Override
@@ -1032,89 +1170,6 @@ public class ApiHelper {
         return null;
     }
 
-    /**
-     * Regex pattern for matching the RSD link found in most WordPress sites.
-     */
-    private static final Pattern rsdLink = Pattern.compile(
-            "<link\\s*?rel=\"EditURI\"\\s*?type=\"application/rsd\\+xml\"\\s*?title=\"RSD\"\\s*?href=\"(.*?)\"",
-            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-    /**
-     * Returns RSD URL based on regex match
-     * @param urlString
-     * @return String RSD url
-     */
-    public static String getRSDMetaTagHrefRegEx(String urlString)
-            throws SSLHandshakeException {
-        String html = ApiHelper.getResponse(urlString);
-        if (html != null) {
-            Matcher matcher = rsdLink.matcher(html);
-            if (matcher.find()) {
-                String href = matcher.group(1);
-                return href;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Returns RSD URL based on html tag search
-     * @param urlString
-     * @return String RSD url
-     */
-    public static String getRSDMetaTagHref(String urlString)
-            throws SSLHandshakeException {
-        // get the html code
-        String data = ApiHelper.getResponse(urlString);
-
-        // parse the html and get the attribute for xmlrpc endpoint
-        if (data != null) {
-            StringReader stringReader = new StringReader(data);
-            XmlPullParser parser = Xml.newPullParser();
-            try {
-                // auto-detect the encoding from the stream
-                parser.setInput(stringReader);
-                int eventType = parser.getEventType();
-                while (eventType != XmlPullParser.END_DOCUMENT) {
-                    String name = null;
-                    String rel = "";
-                    String type = "";
-                    String href = "";
-                    switch (eventType) {
-                    case XmlPullParser.START_TAG:
-                        name = parser.getName();
-                        if (name.equalsIgnoreCase("link")) {
-                            for (int i = 0; i < parser.getAttributeCount(); i++) {
-                                String attrName = parser.getAttributeName(i);
-                                String attrValue = parser.getAttributeValue(i);
-                                if (attrName.equals("rel")) {
-                                    rel = attrValue;
-                                } else if (attrName.equals("type"))
-                                    type = attrValue;
-                                else if (attrName.equals("href"))
-                                    href = attrValue;
-                            }
-
-                            if (rel.equals("EditURI") && type.equals("application/rsd+xml")) {
-                                return href;
-                            }
-                            // currentMessage.setLink(parser.nextText());
-                        }
-                        break;
-                    }
-                    eventType = parser.next();
-                }
-            } catch (XmlPullParserException e) {
-                AppLog.e(T.API, e);
-                return null;
-            } catch (IOException e) {
-                AppLog.e(T.API, e);
-                return null;
-            }
-        }
-        return null; // never found the rsd tag
-    }
-
     /*
      * fetches a single post saves it to the db - note that this should NOT be called from main thread
      */
@@ -2,12 +2,11 @@ package org.xmlrpc.android;
 
 import android.text.TextUtils;
 import android.util.Base64;
-import android.util.Xml;
 
 import org.wordpress.android.util.helpers.MediaFile;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
-import org.wordpress.android.util.StringUtils;
+import org.wordpress.android.util.EmoticonsUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
@@ -50,21 +49,6 @@ class XMLRPCSerializer {
     static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss");
     static Calendar cal = Calendar.getInstance(new SimpleTimeZone(0, "GMT"));
 
-    private static final XmlSerializer serializeTester;
-
-    static {
-        serializeTester = Xml.newSerializer();
-        try {
-            serializeTester.setOutput(new NullOutputStream(), "UTF-8");
-        } catch (IllegalArgumentException e) {
-            AppLog.e(AppLog.T.EDITOR, "IllegalArgumentException setting test serializer output stream", e );
-        } catch (IllegalStateException e) {
-            AppLog.e(AppLog.T.EDITOR, "IllegalStateException setting test serializer output stream", e );
-        } catch (IOException e) {
-            AppLog.e(AppLog.T.EDITOR, "IOException setting test serializer output stream", e );
-        }
-    }
-
     @SuppressWarnings("unchecked")
     static void serialize(XmlSerializer serializer, Object object) throws IOException {
         // check for scalar types:
@@ -164,36 +148,59 @@ class XMLRPCSerializer {
         }
     }
 
-    private static final String makeValidInputString(final String input) throws IOException {
-        if (TextUtils.isEmpty(input))
+    /**
+     * Returns the passed string with the characters which can't be sent as XML 1.0 text replaced, in a single pass
+     * and without shared state so concurrent requests can serialize at the same time:
+     * - supplementary characters (emoji) become their WordPress smiley text if there is one, else a hex entity
+     * - characters outside the XML 1.0 charset (control characters, unpaired surrogates, U+FFFE and U+FFFF) are
+     *   dropped, see http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
+     * The string itself is returned when there's nothing to replace, which is almost always the case.
+     */
+    static String makeValidInputString(final String input) {
+        if (TextUtils.isEmpty(input)) {
             return "";
+        }
 
-        if (serializeTester == null)
-            return input;
+        final int length = input.length();
+        StringBuilder out = null;
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (isValidXmlChar(c)) {
+                if (out != null) {
+                    out.append(c);
+                }
+                i++;
+                continue;
+            }
 
-        try {
-            // try to encode the string as-is, 99.9% of the time it's OK
-            serializeTester.text(input);
-            return input;
-        } catch (IllegalArgumentException e) {
-            // There are characters outside the XML unicode charset as specified by the XML 1.0 standard
-            // See http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char
-            AppLog.e(AppLog.T.EDITOR, "There are characters outside the XML unicode charset as specified by the XML 1.0 standard", e );
+            if (out == null) {
+                out = new StringBuilder(length + 16);
+                out.append(input, 0, i);
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, input.charAt(i + 1));
+                String smiley = EmoticonsUtils.wpSmiliesCodePointToText.get(codePoint);
+                if (smiley != null) {
+                    out.append(smiley);
+                } else {
+                    out.append("&#x").append(Integer.toHexString(codePoint)).append(';');
+                }
+                i += 2;
+            } else {
+                i++;
+            }
         }
+        return out != null ? out.toString() : input;
+    }
 
-        // We need to do the following things:
-        // 1. Replace surrogates with HTML Entity.
-        // 2. Replace emoji with their textual versions (if available on WP)
-        // 3. Try to serialize the resulting string.
-        // 4. If it fails again, strip characters that are not allowed in XML 1.0
-        final String noEmojiString = StringUtils.replaceUnicodeSurrogateBlocksWithHTMLEntities(input);
-        try {
-            serializeTester.text(noEmojiString);
-            return noEmojiString;
-        } catch (IllegalArgumentException e) {
-            AppLog.e(AppLog.T.EDITOR, "noEmojiString still contains characters outside the XML unicode charset as specified by the XML 1.0 standard", e );
-            return StringUtils.stripNonValidXMLCharacters(noEmojiString);
-        }
+    /*
+     * true for BMP characters which can be written as is, surrogates are handled separately
+     */
+    private static boolean isValidXmlChar(char c) {
+        return (c >= 0x20 && c < Character.MIN_SURROGATE)
+                || (c > Character.MAX_SURROGATE && c <= 0xFFFD)
+                || c == 0x9 || c == 0xA || c == 0xD;
     }
 
     static Object deserialize(XmlPullParser parser) throws XmlPullParserException, IOException, NumberFormatException {
@@ -0,0 +1,238 @@
+package org.wordpress.android.analytics;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.analytics.AnalyticsTracker.Stat;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AnalyticsDispatcherTest extends InstrumentationTestCase {
+    private static final int THREAD_COUNT = 4;
+    private static final int EVENTS_PER_THREAD = 10000;
+    private static final int BENCHMARK_EVENTS_PER_THREAD = 100000;
+    private static final long TIMEOUT_MS = 10000;
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    /*
+     * records the properties of every event it's handed, on the dispatcher's thread
+     */
+    private static class RecordingTracker extends Tracker {
+        private final List<Map<String, ?>> mEvents = new ArrayList<>();
+
+        RecordingTracker(Context context) {
+            super(context);
+        }
+
+        @Override
+        void track(Stat stat) {
+            mEvents.add(null);
+        }
+
+        @Override
+        void track(Stat stat, Map<String, ?> properties) {
+            mEvents.add(properties);
+        }
+
+        @Override
+        void endSession() {
+        }
+
+        @Override
+        void flush() {
+        }
+
+        @Override
+        void refreshMetadata(boolean isUserConnected, boolean isWordPressComUser, boolean isJetpackUser,
+                             int sessionCount, int numBlogs, int versionCode, String username, String email) {
+        }
+
+        @Override
+        void registerPushNotificationToken(String regId) {
+        }
+
+        @Override
+        String getAnonIdPrefKey() {
+            return "analytics_dispatcher_test_anon_id";
+        }
+    }
+
+    private RecordingTracker mTracker;
+    private AnalyticsDispatcher mDispatcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTracker = new RecordingTracker(getInstrumentation().getTargetContext());
+        List<Tracker> trackers = new ArrayList<>();
+        trackers.add(mTracker);
+        mDispatcher = new AnalyticsDispatcher(trackers);
+    }
+
+    private static Map<String, Object> createProperties(int thread, int index) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("thread", thread);
+        properties.put("index", index);
+        return properties;
+    }
+
+    /*
+     * waits until everything queued so far was dispatched - commands run in order with the events before them
+     */
+    private void waitForDispatch() {
+        assertTrue(mDispatcher.runAndWait(NO_OP, TIMEOUT_MS));
+    }
+
+    public void testMultipleProducers() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                        mDispatcher.track(Stat.APPLICATION_OPENED, createProperties(thread, i));
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        waitForDispatch();
+
+        // every event was either dispatched or counted as dropped, and each thread's events kept their order
+        assertEquals(THREAD_COUNT * EVENTS_PER_THREAD,
+                mDispatcher.getDispatchedCount() + mDispatcher.getDroppedCount());
+        assertEquals(mDispatcher.getDispatchedCount(), mTracker.mEvents.size());
+        int[] lastIndexes = new int[THREAD_COUNT];
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            lastIndexes[t] = -1;
+        }
+        for (Map<String, ?> properties : mTracker.mEvents) {
+            int thread = (Integer) properties.get("thread");
+            int index = (Integer) properties.get("index");
+            assertTrue(index > lastIndexes[thread]);
+            lastIndexes[thread] = index;
+        }
+    }
+
+    public void testWrapsAround() {
+        // several laps around the ring, waiting for the consumer every half lap so nothing is dropped
+        int count = AnalyticsDispatcher.CAPACITY * 3;
+        for (int i = 0; i < count; i++) {
+            assertTrue(mDispatcher.track(Stat.APPLICATION_OPENED, createProperties(0, i)));
+            if (i % (AnalyticsDispatcher.CAPACITY / 2) == 0) {
+                waitForDispatch();
+            }
+        }
+        waitForDispatch();
+
+        assertEquals(0, mDispatcher.getDroppedCount());
+        assertEquals(count, mTracker.mEvents.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, mTracker.mEvents.get(i).get("index"));
+        }
+    }
+
+    public void testDropsEventsWhenFull() throws InterruptedException {
+        // keep the consumer busy with a command so nothing is taken out of the ring
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mDispatcher.run(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < AnalyticsDispatcher.CAPACITY; i++) {
+            assertTrue(mDispatcher.track(Stat.APPLICATION_OPENED, null));
+        }
+        assertFalse(mDispatcher.track(Stat.APPLICATION_OPENED, null));
+        assertEquals(1, mDispatcher.getDroppedCount());
+
+        release.countDown();
+        waitForDispatch();
+        assertEquals(AnalyticsDispatcher.CAPACITY, mDispatcher.getDispatchedCount());
+        assertEquals(Collections.nCopies(AnalyticsDispatcher.CAPACITY, null), mTracker.mEvents);
+
+        // there's room again once the consumer caught up
+        assertTrue(mDispatcher.track(Stat.APPLICATION_OPENED, null));
+    }
+
+    public void testRunAndWaitTimesOut() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        assertFalse(mDispatcher.runAndWait(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 100));
+        release.countDown();
+        waitForDispatch();
+    }
+
+    /*
+     * time spent in track() by each of four threads, events without properties as tracked by most screens
+     */
+    public void testTrackBenchmark() throws InterruptedException {
+        final long[] threadNanos = new long[THREAD_COUNT];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < BENCHMARK_EVENTS_PER_THREAD; i++) {
+                        mDispatcher.track(Stat.APPLICATION_OPENED, null);
+                    }
+                    threadNanos[thread] = System.nanoTime() - start;
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        waitForDispatch();
+
+        long totalNanos = 0;
+        for (long nanos : threadNanos) {
+            totalNanos += nanos;
+        }
+        long totalEvents = THREAD_COUNT * BENCHMARK_EVENTS_PER_THREAD;
+        assertEquals(totalEvents, mDispatcher.getDispatchedCount() + mDispatcher.getDroppedCount());
+        AppLog.i(T.TESTS, "tracked " + totalEvents + " events from " + THREAD_COUNT + " threads, "
+                + (totalNanos / totalEvents) + "ns per event, " + mDispatcher.getDroppedCount() + " dropped");
+    }
+}
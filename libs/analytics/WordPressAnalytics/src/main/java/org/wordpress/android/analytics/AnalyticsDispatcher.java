@@ -0,0 +1,286 @@
+package org.wordpress.android.analytics;
+
+import android.os.Process;
+
+import org.wordpress.android.analytics.AnalyticsTracker.Stat;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands tracked events to the registered trackers on a background thread, so tracking from the UI thread
+ * doesn't build properties, touch preferences or write to the trackers' own queues inline.
+ *
+ * Events go into a bounded lock-free queue (a ring of preallocated slots, each with a sequence number
+ * which tells producers and the consumer whose turn it is). Tracking an event without properties doesn't
+ * allocate. A single consumer thread waits for events to accumulate, then hands them to each tracker in
+ * batches. When the queue is full new events are dropped and counted.
+ *
+ * Other tracker calls such as flush and endSession are queued as commands so they run in order with the
+ * events tracked before them, and they wake the consumer immediately. Commands are never dropped.
+ */
+final class AnalyticsDispatcher {
+    static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final int BATCH_SIZE = 64;
+
+    // how long the consumer waits for more events after being woken by the first one
+    private static final long BATCH_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Tracker> mTrackers;
+
+    // slot i is free for the producer at position p when its sequence is p, and holds an event for the
+    // consumer at position p when its sequence is p + 1
+    private final AtomicLongArray mSequences = new AtomicLongArray(CAPACITY);
+    private final Stat[] mStats = new Stat[CAPACITY];
+    private final Object[] mProperties = new Object[CAPACITY];
+    private final Runnable[] mCommands = new Runnable[CAPACITY];
+
+    private final AtomicLong mTail = new AtomicLong();
+    private volatile long mHead;
+
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mDispatchedCount = new AtomicLong();
+    private long mLoggedDroppedCount;
+
+    private final Thread mConsumer;
+    private volatile boolean mIsConsumerIdle;
+    private volatile boolean mIsDispatchRequested;
+
+    // the current batch, only accessed by the consumer
+    private final Stat[] mBatchStats = new Stat[BATCH_SIZE];
+    private final Object[] mBatchProperties = new Object[BATCH_SIZE];
+    private int mBatchCount;
+
+    AnalyticsDispatcher(List<Tracker> trackers) {
+        mTrackers = trackers;
+        for (int i = 0; i < CAPACITY; i++) {
+            mSequences.set(i, i);
+        }
+        mConsumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                consume();
+            }
+        }, "AnalyticsDispatcher");
+        mConsumer.setDaemon(true);
+        mConsumer.start();
+    }
+
+    /**
+     * Queues an event, returns false if it was dropped because the queue is full. The properties must
+     * not be changed after they're passed here.
+     */
+    boolean track(Stat stat, Map<String, ?> properties) {
+        long position = claim();
+        if (position < 0) {
+            mDroppedCount.incrementAndGet();
+            requestDispatch();
+            return false;
+        }
+        publish(position, stat, properties, null);
+        if (position - mHead == CAPACITY / 2) {
+            // don't let a burst of events wait for the batch delay
+            requestDispatch();
+        }
+        return true;
+    }
+
+    /**
+     * Queues a command to run on the consumer thread after the events queued before it are dispatched.
+     * Waits for room if the queue is full.
+     */
+    void run(Runnable command) {
+        if (Thread.currentThread() == mConsumer) {
+            // called by a tracker, which would otherwise wait for itself
+            command.run();
+            return;
+        }
+        long position;
+        while ((position = claim()) < 0) {
+            requestDispatch();
+            Thread.yield();
+        }
+        publish(position, null, null, command);
+        requestDispatch();
+    }
+
+    /**
+     * Same as run(), but also waits up to timeoutMillis for the command to complete - returns false if it
+     * didn't complete in time
+     */
+    boolean runAndWait(final Runnable command, long timeoutMillis) {
+        if (Thread.currentThread() == mConsumer) {
+            command.run();
+            return true;
+        }
+        final CountDownLatch completed = new CountDownLatch(1);
+        run(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run();
+                } finally {
+                    completed.countDown();
+                }
+            }
+        });
+        try {
+            return completed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    long getDispatchedCount() {
+        return mDispatchedCount.get();
+    }
+
+    /*
+     * reserves the next slot, returns its position or -1 if the queue is full
+     */
+    private long claim() {
+        long position = mTail.get();
+        while (true) {
+            long difference = mSequences.get((int) position & MASK) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+                // the consumer hasn't freed this slot yet
+                return -1;
+            } else {
+                // another producer claimed it first
+                position = mTail.get();
+            }
+        }
+    }
+
+    private void publish(long position, Stat stat, Map<String, ?> properties, Runnable command) {
+        int index = (int) position & MASK;
+        mStats[index] = stat;
+        mProperties[index] = properties;
+        mCommands[index] = command;
+        // the volatile write makes the slot's fields visible to the consumer, and must happen before
+        // reading mIsConsumerIdle so the consumer can't park without seeing this event
+        mSequences.set(index, position + 1);
+        if (mIsConsumerIdle) {
+            mIsConsumerIdle = false;
+            LockSupport.unpark(mConsumer);
+        }
+    }
+
+    private void requestDispatch() {
+        mIsDispatchRequested = true;
+        LockSupport.unpark(mConsumer);
+    }
+
+    private boolean isEmpty() {
+        long head = mHead;
+        return mSequences.get((int) head & MASK) != head + 1;
+    }
+
+    private void consume() {
+        while (true) {
+            if (isEmpty()) {
+                mIsConsumerIdle = true;
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+                mIsConsumerIdle = false;
+                continue;
+            }
+
+            if (!mIsDispatchRequested) {
+                // let more events accumulate so they're dispatched together
+                LockSupport.parkNanos(this, BATCH_DELAY_NANOS);
+            }
+            mIsDispatchRequested = false;
+            drain();
+        }
+    }
+
+    private void drain() {
+        while (!isEmpty()) {
+            long head = mHead;
+            int index = (int) head & MASK;
+            Stat stat = mStats[index];
+            Object properties = mProperties[index];
+            Runnable command = mCommands[index];
+            mStats[index] = null;
+            mProperties[index] = null;
+            mCommands[index] = null;
+            mHead = head + 1;
+            // frees the slot for the producer one lap ahead
+            mSequences.set(index, head + CAPACITY);
+
+            if (command != null) {
+                dispatchBatch();
+                runSafely(command);
+            } else {
+                mBatchStats[mBatchCount] = stat;
+                mBatchProperties[mBatchCount] = properties;
+                if (++mBatchCount == BATCH_SIZE) {
+                    dispatchBatch();
+                }
+            }
+        }
+        dispatchBatch();
+
+        long droppedCount = mDroppedCount.get();
+        if (droppedCount != mLoggedDroppedCount) {
+            AppLog.w(T.STATS, "analytics queue full, dropped " + (droppedCount - mLoggedDroppedCount) + " events");
+            mLoggedDroppedCount = droppedCount;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatchBatch() {
+        if (mBatchCount == 0) {
+            return;
+        }
+        for (Tracker tracker : mTrackers) {
+            for (int i = 0; i < mBatchCount; i++) {
+                try {
+                    Map<String, ?> properties = (Map<String, ?>) mBatchProperties[i];
+                    if (properties == null) {
+                        tracker.track(mBatchStats[i]);
+                    } else {
+                        tracker.track(mBatchStats[i], properties);
+                    }
+                } catch (RuntimeException e) {
+                    AppLog.e(T.STATS, "failed to track " + mBatchStats[i], e);
+                }
+            }
+        }
+        mDispatchedCount.addAndGet(mBatchCount);
+        for (int i = 0; i < mBatchCount; i++) {
+            mBatchStats[i] = null;
+            mBatchProperties[i] = null;
+        }
+        mBatchCount = 0;
+    }
+
+    private static void runSafely(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            AppLog.e(T.STATS, e);
+        }
+    }
+}
@@ -4,9 +4,11 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.wordpress.android.util.AppLog;
 
 public final class AnalyticsTracker {
     private static boolean mHasUserOptedOut;
@@ -21,6 +23,7 @@ public final class AnalyticsTracker {
         APPLICATION_CLOSED,
         APPLICATION_INSTALLED,
         APPLICATION_UPGRADED,
+        APPLICATION_COLD_STARTED,
         READER_ACCESSED,
         READER_ARTICLE_COMMENTED_ON,
         READER_ARTICLE_LIKED,
@@ -121,7 +124,19 @@ public final class AnalyticsTracker {
         THEMES_DETAILS_ACCESSED,
     }
 
-    private static final List<Tracker> TRACKERS = new ArrayList<Tracker>();
+    // trackers are called on the dispatcher's thread, so they're registered in a thread-safe list
+    private static final List<Tracker> TRACKERS = new CopyOnWriteArrayList<Tracker>();
+    private static final AnalyticsDispatcher DISPATCHER = new AnalyticsDispatcher(TRACKERS);
+
+    private static final long FLUSH_AND_WAIT_TIMEOUT_MS = 2000;
+    private static final Runnable FLUSH_COMMAND = new Runnable() {
+        @Override
+        public void run() {
+            for (Tracker tracker : TRACKERS) {
+                tracker.flush();
+            }
+        }
+    };
 
     private AnalyticsTracker() {
     }
@@ -144,64 +159,110 @@ public final class AnalyticsTracker {
         }
     }
 
+    /*
+     * events are handed to the trackers asynchronously, see AnalyticsDispatcher
+     */
     public static void track(Stat stat) {
         if (mHasUserOptedOut) {
             return;
         }
-        for (Tracker tracker : TRACKERS) {
-            tracker.track(stat);
-        }
+        DISPATCHER.track(stat, null);
     }
 
+    /*
+     * the properties must not be changed after calling this, since they're read on the dispatcher's thread
+     */
     public static void track(Stat stat, Map<String, ?> properties) {
         if (mHasUserOptedOut) {
             return;
         }
-        for (Tracker tracker : TRACKERS) {
-            tracker.track(stat, properties);
-        }
+        DISPATCHER.track(stat, properties);
     }
 
+    /*
+     * returns the number of events dropped because they were tracked faster than they could be dispatched
+     */
+    public static long getDroppedEventCount() {
+        return DISPATCHER.getDroppedCount();
+    }
 
+    /*
+     * flushes the trackers once the events tracked so far were handed to them, without waiting for it
+     */
     public static void flush() {
         if (mHasUserOptedOut) {
             return;
         }
-        for (Tracker tracker : TRACKERS) {
-            tracker.flush();
+        DISPATCHER.run(FLUSH_COMMAND);
+    }
+
+    /*
+     * same as flush(), but waits (up to a couple of seconds) until the trackers were flushed - use it in
+     * receivers and services whose process may be killed as soon as they return
+     */
+    public static void flushAndWait() {
+        if (mHasUserOptedOut) {
+            return;
+        }
+        if (!DISPATCHER.runAndWait(FLUSH_COMMAND, FLUSH_AND_WAIT_TIMEOUT_MS)) {
+            AppLog.w(AppLog.T.STATS, "timed out waiting for analytics to be flushed");
         }
     }
 
+    /*
+     * dispatches the events tracked so far, then ends the session, which flushes each tracker
+     */
     public static void endSession(boolean force) {
         if (mHasUserOptedOut && !force) {
             return;
         }
-        for (Tracker tracker : TRACKERS) {
-            tracker.endSession();
-        }
+        DISPATCHER.run(new Runnable() {
+            @Override
+            public void run() {
+                for (Tracker tracker : TRACKERS) {
+                    tracker.endSession();
+                }
+            }
+        });
     }
 
-    public static void registerPushNotificationToken(String regId) {
+    public static void registerPushNotificationToken(final String regId) {
         if (mHasUserOptedOut) {
             return;
         }
-        for (Tracker tracker : TRACKERS) {
-            tracker.registerPushNotificationToken(regId);
-        }
+        DISPATCHER.run(new Runnable() {
+            @Override
+            public void run() {
+                for (Tracker tracker : TRACKERS) {
+                    tracker.registerPushNotificationToken(regId);
+                }
+            }
+        });
     }
 
     public static void clearAllData() {
-        for (Tracker tracker : TRACKERS) {
-            tracker.clearAllData();
-        }
+        DISPATCHER.run(new Runnable() {
+            @Override
+            public void run() {
+                for (Tracker tracker : TRACKERS) {
+                    tracker.clearAllData();
+                }
+            }
+        });
     }
 
-    public static void refreshMetadata(boolean isUserConnected, boolean isWordPressComUser, boolean isJetpackUser,
-                                       int sessionCount, int numBlogs, int versionCode, String username, String email) {
-        for (Tracker tracker : TRACKERS) {
-            tracker.refreshMetadata(isUserConnected, isWordPressComUser, isJetpackUser, sessionCount, numBlogs,
-                    versionCode, username, email);
-        }
+    public static void refreshMetadata(final boolean isUserConnected, final boolean isWordPressComUser,
+                                       final boolean isJetpackUser, final int sessionCount, final int numBlogs,
+                                       final int versionCode, final String username, final String email) {
+        DISPATCHER.run(new Runnable() {
+            @Override
+            public void run() {
+                for (Tracker tracker : TRACKERS) {
+                    tracker.refreshMetadata(isUserConnected, isWordPressComUser, isJetpackUser, sessionCount,
+                            numBlogs, versionCode, username, email);
+                }
+            }
+        });
     }
 }
 
@@ -57,6 +57,9 @@ public class AnalyticsTrackerNosara extends Tracker {
             case APPLICATION_UPGRADED:
                 eventName = "application_upgraded";
                 break;
+            case APPLICATION_COLD_STARTED:
+                eventName = "application_cold_started";
+                break;
             case READER_ACCESSED:
                 eventName = "reader_accessed";
                 break;
@@ -61,6 +61,11 @@ public class MockEditorActivity extends AppCompatActivity implements EditorFragm
 
     }
 
+    @Override
+    public void onEditorContentChanged() {
+
+    }
+
     @Override
     public void saveMediaFile(MediaFile mediaFile) {
 
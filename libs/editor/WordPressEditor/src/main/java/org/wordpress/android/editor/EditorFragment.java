@@ -44,10 +44,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class EditorFragment extends EditorFragmentAbstract implements View.OnClickListener, View.OnTouchListener,
         OnJsEditorStateChangedListener, OnImeBackListener, EditorMediaUploadListener {
@@ -67,8 +69,19 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
 
     protected static final int BUTTON_ID_LOG_HTML = 555;
 
-    private String mTitle = "";
-    private String mContentHtml = "";
+    private static final long SNAPSHOT_REFRESH_DELAY_MILLIS = 500;
+    private static final long TITLE_AND_CONTENT_TIMEOUT_MILLIS = 1000;
+
+    // last known title and content, refreshed from the JS editor shortly after each change
+    private volatile String mTitle = "";
+    private volatile String mContentHtml = "";
+
+    // the snapshot is stale while the number of edits differs from the count it was taken at
+    private final AtomicInteger mEditCount = new AtomicInteger();
+    private volatile int mSnapshotEditCount;
+    private volatile int mRequestedEditCount;
+    private boolean mIsTitleAndContentRequested;
+    private final List<TitleAndContentListener> mTitleAndContentListeners = new ArrayList<>();
 
     private EditorWebViewAbstract mWebView;
     private View mSourceView;
@@ -81,7 +94,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
     private String mTitlePlaceholder = "";
     private String mContentPlaceholder = "";
 
-    private boolean mDomHasLoaded = false;
+    private volatile boolean mDomHasLoaded = false;
     private boolean mIsKeyboardOpen = false;
     private boolean mEditorWasPaused = false;
     private boolean mHideActionBarOnSoftKeyboardUp = false;
@@ -92,8 +105,6 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
 
     private String mJavaScriptResult = "";
 
-    private CountDownLatch mGetTitleCountDownLatch;
-    private CountDownLatch mGetContentCountDownLatch;
     private CountDownLatch mGetSelectedTextCountDownLatch;
 
     private final Map<String, ToggleButton> mTagToggleButtonMap = new HashMap<>();
@@ -180,6 +191,8 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         mSourceViewContent.setOnImeBackListener(this);
 
         mSourceViewContent.addTextChangedListener(new HtmlStyleTextWatcher());
+        mSourceViewTitle.addTextChangedListener(mContentChangedWatcher);
+        mSourceViewContent.addTextChangedListener(mContentChangedWatcher);
 
         mSourceViewTitle.setHint(mTitlePlaceholder);
         mSourceViewContent.setHint("<p>" + mContentPlaceholder + "</p>");
@@ -224,8 +237,10 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
-        outState.putCharSequence(KEY_TITLE, getTitle());
-        outState.putCharSequence(KEY_CONTENT, getContent());
+        // use the last known snapshot, the JS editor can't be queried without blocking here
+        updateSnapshotFromSourceView();
+        outState.putCharSequence(KEY_TITLE, StringUtils.notNullStr(mTitle));
+        outState.putCharSequence(KEY_CONTENT, StringUtils.notNullStr(mContentHtml));
     }
 
     private ActionBar getActionBar() {
@@ -379,21 +394,29 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
             updateFormatBarEnabledState(true);
 
             if (((ToggleButton) v).isChecked()) {
-                mSourceViewTitle.setText(getTitle());
+                getTitleAndContent(new TitleAndContentListener() {
+                    @Override
+                    public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                        if (!isAdded()) {
+                            return;
+                        }
+                        mSourceViewTitle.setText(title);
 
-                SpannableString spannableContent = new SpannableString(getContent());
-                HtmlStyleUtils.styleHtmlForDisplay(spannableContent);
-                mSourceViewContent.setText(spannableContent);
+                        SpannableString spannableContent = new SpannableString(content);
+                        HtmlStyleUtils.styleHtmlForDisplay(spannableContent);
+                        mSourceViewContent.setText(spannableContent);
 
-                mWebView.setVisibility(View.GONE);
-                mSourceView.setVisibility(View.VISIBLE);
+                        mWebView.setVisibility(View.GONE);
+                        mSourceView.setVisibility(View.VISIBLE);
 
-                mSourceViewContent.requestFocus();
-                mSourceViewContent.setSelection(0);
+                        mSourceViewContent.requestFocus();
+                        mSourceViewContent.setSelection(0);
 
-                InputMethodManager imm = ((InputMethodManager) getActivity()
-                        .getSystemService(Context.INPUT_METHOD_SERVICE));
-                imm.showSoftInput(mSourceViewContent, InputMethodManager.SHOW_IMPLICIT);
+                        InputMethodManager imm = ((InputMethodManager) getActivity()
+                                .getSystemService(Context.INPUT_METHOD_SERVICE));
+                        imm.showSoftInput(mSourceViewContent, InputMethodManager.SHOW_IMPLICIT);
+                    }
+                });
             } else {
                 mWebView.setVisibility(View.VISIBLE);
                 mSourceView.setVisibility(View.GONE);
@@ -418,7 +441,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         } else if (id == R.id.format_bar_button_link) {
             if (!((ToggleButton) v).isChecked()) {
                 // The link button was checked when it was pressed; remove the current link
-                mWebView.execJavaScriptFromString("ZSSEditor.unlink();");
+                execEditingJavaScript("ZSSEditor.unlink();");
                 return;
             }
 
@@ -455,6 +478,8 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         } else {
             if (v instanceof ToggleButton) {
                 onFormattingButtonClicked((ToggleButton) v);
+                // formatting changes don't always trigger an input callback from the editor
+                onEditorFieldChanged();
             }
         }
     }
@@ -487,7 +512,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
                 requestCode == LinkDialogFragment.LINK_DIALOG_REQUEST_CODE_UPDATE)) {
 
             if (resultCode == LinkDialogFragment.LINK_DIALOG_REQUEST_CODE_DELETE) {
-                mWebView.execJavaScriptFromString("ZSSEditor.unlink();");
+                execEditingJavaScript("ZSSEditor.unlink();");
                 return;
             }
 
@@ -528,7 +553,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
                 } else {
                     jsMethod = "ZSSEditor.updateLink";
                 }
-                mWebView.execJavaScriptFromString(jsMethod + "('" + Utils.escapeHtml(linkUrl) + "', '" +
+                execEditingJavaScript(jsMethod + "('" + Utils.escapeHtml(linkUrl) + "', '" +
                         Utils.escapeHtml(linkText) + "');");
             }
         } else if (requestCode == ImageSettingsDialogFragment.IMAGE_SETTINGS_DIALOG_REQUEST_CODE) {
@@ -548,7 +573,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
             mWebView.post(new Runnable() {
                 @Override
                 public void run() {
-                    mWebView.execJavaScriptFromString("ZSSEditor.updateCurrentImageMeta('" + imageMeta + "');");
+                    execEditingJavaScript("ZSSEditor.updateCurrentImageMeta('" + imageMeta + "');");
                 }
             });
 
@@ -614,81 +639,161 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
     }
 
     /**
-     * Returns the contents of the title field from the JavaScript editor. Should be called from a background thread
-     * where possible.
+     * Returns the contents of the title field. Called from the UI thread this returns the last known
+     * snapshot, from a background thread it waits for the JavaScript editor if the snapshot is stale.
+     * Use getTitleAndContent() where possible.
      */
     @Override
     public CharSequence getTitle() {
         if (!isAdded()) {
             return "";
         }
+        refreshSnapshotIfStale();
+        return StringUtils.notNullStr(mTitle);
+    }
 
-        if (mSourceView != null && mSourceView.getVisibility() == View.VISIBLE) {
-            mTitle = mSourceViewTitle.getText().toString();
-            return StringUtils.notNullStr(mTitle);
+    /**
+     * Returns the contents of the content field. Called from the UI thread this returns the last known
+     * snapshot, from a background thread it waits for the JavaScript editor if the snapshot is stale.
+     * Use getTitleAndContent() where possible.
+     */
+    @Override
+    public CharSequence getContent() {
+        if (!isAdded()) {
+            return "";
         }
+        refreshSnapshotIfStale();
+        return StringUtils.notNullStr(mContentHtml);
+    }
 
-        if (Looper.myLooper() == Looper.getMainLooper()) {
-            AppLog.d(T.EDITOR, "getTitle() called from UI thread");
+    /**
+     * Fetches the title and the content from the JavaScript editor in a single round trip, or answers
+     * right away from the snapshot when it's up to date. Requests made while one is in flight share it.
+     */
+    @Override
+    public void getTitleAndContent(TitleAndContentListener listener) {
+        updateSnapshotFromSourceView();
+        if (!isAdded() || !mDomHasLoaded || !isSnapshotStale() || isSourceViewVisible()) {
+            listener.onTitleAndContentAvailable(StringUtils.notNullStr(mTitle), StringUtils.notNullStr(mContentHtml));
+            return;
         }
 
-        mGetTitleCountDownLatch = new CountDownLatch(1);
+        mTitleAndContentListeners.add(listener);
+        requestTitleAndContent();
+    }
 
-        // All WebView methods must be called from the UI thread
-        getActivity().runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mWebView.execJavaScriptFromString("ZSSEditor.getField('zss_field_title').getHTMLForCallback();");
-            }
-        });
+    private boolean isSnapshotStale() {
+        return mEditCount.get() != mSnapshotEditCount;
+    }
 
-        try {
-            mGetTitleCountDownLatch.await(1, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            AppLog.e(T.EDITOR, e);
-            Thread.currentThread().interrupt();
+    private boolean isSourceViewVisible() {
+        return mSourceView != null && mSourceView.getVisibility() == View.VISIBLE;
+    }
+
+    private void updateSnapshotFromSourceView() {
+        if (isSourceViewVisible()) {
+            mTitle = mSourceViewTitle.getText().toString();
+            mContentHtml = mSourceViewContent.getText().toString();
         }
+    }
 
-        return StringUtils.notNullStr(mTitle);
+    /*
+     * must be called from the UI thread
+     */
+    private void requestTitleAndContent() {
+        if (mIsTitleAndContentRequested) {
+            return;
+        }
+        mIsTitleAndContentRequested = true;
+        mRequestedEditCount = mEditCount.get();
+        mWebView.execJavaScriptFromString("ZSSEditor.getFieldsHTMLForCallback();");
+        mWebView.postDelayed(mTitleAndContentTimeoutRunnable, TITLE_AND_CONTENT_TIMEOUT_MILLIS);
     }
 
-    /**
-     * Returns the contents of the content field from the JavaScript editor. Should be called from a background thread
-     * where possible.
+    /*
+     * must be called from the UI thread, hands the snapshot to everyone waiting for it
      */
-    @Override
-    public CharSequence getContent() {
-        if (!isAdded()) {
-            return "";
+    private void deliverTitleAndContent() {
+        mWebView.removeCallbacks(mTitleAndContentTimeoutRunnable);
+        mIsTitleAndContentRequested = false;
+
+        List<TitleAndContentListener> listeners = new ArrayList<>(mTitleAndContentListeners);
+        mTitleAndContentListeners.clear();
+        String title = StringUtils.notNullStr(mTitle);
+        String content = StringUtils.notNullStr(mContentHtml);
+        for (TitleAndContentListener listener : listeners) {
+            listener.onTitleAndContentAvailable(title, content);
         }
+    }
 
-        if (mSourceView != null && mSourceView.getVisibility() == View.VISIBLE) {
-            mContentHtml = mSourceViewContent.getText().toString();
-            return StringUtils.notNullStr(mContentHtml);
+    private final Runnable mTitleAndContentTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            AppLog.w(T.EDITOR, "Timed out waiting for the editor fields, using the last known snapshot");
+            deliverTitleAndContent();
         }
+    };
 
-        if (Looper.myLooper() == Looper.getMainLooper()) {
-            AppLog.d(T.EDITOR, "getContent() called from UI thread");
+    private final Runnable mRefreshSnapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isAdded() && mDomHasLoaded && isSnapshotStale() && !isSourceViewVisible()) {
+                requestTitleAndContent();
+            }
         }
+    };
 
-        mGetContentCountDownLatch = new CountDownLatch(1);
+    /*
+     * brings the snapshot up to date when called off the UI thread, the UI thread must never wait for
+     * the JavaScript editor since its response may be delivered through the UI thread
+     */
+    private void refreshSnapshotIfStale() {
+        if (isSourceViewVisible()) {
+            updateSnapshotFromSourceView();
+            return;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper() || !mDomHasLoaded || !isSnapshotStale()) {
+            return;
+        }
 
-        // All WebView methods must be called from the UI thread
+        final CountDownLatch latch = new CountDownLatch(1);
         getActivity().runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                mWebView.execJavaScriptFromString("ZSSEditor.getField('zss_field_content').getHTMLForCallback();");
+                getTitleAndContent(new TitleAndContentListener() {
+                    @Override
+                    public void onTitleAndContentAvailable(CharSequence title, CharSequence content) {
+                        latch.countDown();
+                    }
+                });
             }
         });
 
         try {
-            mGetContentCountDownLatch.await(1, TimeUnit.SECONDS);
+            latch.await(TITLE_AND_CONTENT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             AppLog.e(T.EDITOR, e);
             Thread.currentThread().interrupt();
         }
+    }
 
-        return StringUtils.notNullStr(mContentHtml);
+    /*
+     * runs JS which changes the document without an input callback from the editor, such as link and
+     * image edits, and marks the snapshot as stale
+     */
+    private void execEditingJavaScript(String javaScript) {
+        mWebView.execJavaScriptFromString(javaScript);
+        onEditorFieldChanged();
+    }
+
+    /*
+     * called for every change made in the JS editor, marks the snapshot as stale and schedules its refresh
+     */
+    private void onEditorFieldChanged() {
+        mEditCount.incrementAndGet();
+        mWebView.removeCallbacks(mRefreshSnapshotRunnable);
+        mWebView.postDelayed(mRefreshSnapshotRunnable, SNAPSHOT_REFRESH_DELAY_MILLIS);
+        onContentChanged();
     }
 
     @Override
@@ -705,10 +810,10 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
             public void run() {
                 if (URLUtil.isNetworkUrl(mediaUrl)) {
                     String mediaId = mediaFile.getMediaId();
-                    mWebView.execJavaScriptFromString("ZSSEditor.insertImage('" + mediaUrl + "', '" + mediaId + "');");
+                    execEditingJavaScript("ZSSEditor.insertImage('" + mediaUrl + "', '" + mediaId + "');");
                 } else {
                     String id = mediaFile.getMediaId();
-                    mWebView.execJavaScriptFromString("ZSSEditor.insertLocalImage(" + id + ", '" + mediaUrl + "');");
+                    execEditingJavaScript("ZSSEditor.insertLocalImage(" + id + ", '" + mediaUrl + "');");
                     mWebView.execJavaScriptFromString("ZSSEditor.setProgressOnImage(" + id + ", " + 0 + ");");
                     mUploadingMediaIds.add(id);
                 }
@@ -746,7 +851,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         mWebView.post(new Runnable() {
             @Override
             public void run() {
-                mWebView.execJavaScriptFromString("ZSSEditor.replaceLocalImageWithRemoteImage(" + mediaId + ", '" +
+                execEditingJavaScript("ZSSEditor.replaceLocalImageWithRemoteImage(" + mediaId + ", '" +
                         remoteId + "', '" + remoteUrl + "');");
                 mUploadingMediaIds.remove(mediaId);
             }
@@ -770,7 +875,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         mWebView.post(new Runnable() {
             @Override
             public void run() {
-                mWebView.execJavaScriptFromString("ZSSEditor.markImageUploadFailed(" + mediaId + ");");
+                execEditingJavaScript("ZSSEditor.markImageUploadFailed(" + mediaId + ");");
                 mFailedMediaIds.add(mediaId);
                 mUploadingMediaIds.remove(mediaId);
             }
@@ -824,6 +929,14 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
         });
     }
 
+    public void onInput() {
+        onEditorFieldChanged();
+    }
+
+    public void onFocusOut() {
+        mWebView.post(mRefreshSnapshotRunnable);
+    }
+
     public void onSelectionStyleChanged(final Map<String, Boolean> changeMap) {
         mWebView.post(new Runnable() {
             public void run() {
@@ -870,7 +983,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
                         mWebView.post(new Runnable() {
                             @Override
                             public void run() {
-                                mWebView.execJavaScriptFromString("ZSSEditor.removeImage(" + mediaId + ");");
+                                execEditingJavaScript("ZSSEditor.removeImage(" + mediaId + ");");
                                 mUploadingMediaIds.remove(mediaId);
                             }
                         });
@@ -894,7 +1007,7 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
                 mWebView.post(new Runnable() {
                     @Override
                     public void run() {
-                        mWebView.execJavaScriptFromString("ZSSEditor.unmarkImageUploadFailed(" + mediaId + ");");
+                        execEditingJavaScript("ZSSEditor.unmarkImageUploadFailed(" + mediaId + ");");
                         mWebView.execJavaScriptFromString("ZSSEditor.setProgressOnImage(" + mediaId + ", " + 0 + ");");
                         mFailedMediaIds.remove(mediaId);
                         mUploadingMediaIds.add(mediaId);
@@ -965,15 +1078,31 @@ public class EditorFragment extends EditorFragmentAbstract implements View.OnCli
                     switch (fieldId) {
                         case "zss_field_title":
                             mTitle = fieldContents;
-                            mGetTitleCountDownLatch.countDown();
                             break;
                         case "zss_field_content":
                             mContentHtml = fieldContents;
-                            mGetContentCountDownLatch.countDown();
                             break;
                     }
                 }
                 break;
+            case "getFieldsHTMLForCallback":
+                // keep the last snapshot if the fields couldn't be parsed
+                if (inputArgs.containsKey("title") && inputArgs.containsKey("contents")) {
+                    mTitle = inputArgs.get("title");
+                    mContentHtml = inputArgs.get("contents");
+                }
+                mSnapshotEditCount = mRequestedEditCount;
+                mWebView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliverTitleAndContent();
+                        // edits made while the request was in flight
+                        if (isSnapshotStale()) {
+                            mWebView.postDelayed(mRefreshSnapshotRunnable, SNAPSHOT_REFRESH_DELAY_MILLIS);
+                        }
+                    }
+                });
+                break;
             case "getSelectedText":
                 mJavaScriptResult = inputArgs.get("result");
                 mGetSelectedTextCountDownLatch.countDown();
@@ -4,7 +4,9 @@ import android.app.Activity;
 import android.app.Fragment;
 import android.os.Bundle;
 
+import android.text.Editable;
 import android.text.Spanned;
+import android.text.TextWatcher;
 
 import com.android.volley.toolbox.ImageLoader;
 
@@ -25,6 +27,21 @@ public abstract class EditorFragmentAbstract extends Fragment {
     // TODO: remove this as soon as we can (we'll need to drop the legacy editor or fix html2spanned translation)
     public abstract Spanned getSpannedContent();
 
+    /**
+     * Callback for getTitleAndContent(), always called on the main thread
+     */
+    public interface TitleAndContentListener {
+        void onTitleAndContentAvailable(CharSequence title, CharSequence content);
+    }
+
+    /**
+     * Retrieves the title and the content together without blocking the caller, must be called from
+     * the main thread. Editors holding their content natively answer right away.
+     */
+    public void getTitleAndContent(TitleAndContentListener listener) {
+        listener.onTitleAndContentAvailable(getTitle(), getContent());
+    }
+
     private static final String FEATURED_IMAGE_SUPPORT_KEY = "featured-image-supported";
     private static final String FEATURED_IMAGE_WIDTH_KEY   = "featured-image-width";
 
@@ -87,6 +104,34 @@ public abstract class EditorFragmentAbstract extends Fragment {
         mDebugModeEnabled = debugModeEnabled;
     }
 
+    /**
+     * Notifies the activity that the title or the content was edited, so it can schedule an autosave.
+     * May be called from any thread.
+     */
+    protected void onContentChanged() {
+        if (mEditorFragmentListener != null) {
+            mEditorFragmentListener.onEditorContentChanged();
+        }
+    }
+
+    /**
+     * Watcher for native title and content fields, reports every edit through onContentChanged()
+     */
+    protected final TextWatcher mContentChangedWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            onContentChanged();
+        }
+    };
+
     /**
      * Called by the activity when back button is pressed.
      */
@@ -113,6 +158,7 @@ public abstract class EditorFragmentAbstract extends Fragment {
         void onMediaRetryClicked(String mediaId);
         void onMediaUploadCancelClicked(String mediaId, boolean delete);
         void onFeaturedImageChanged(int mediaId);
+        void onEditorContentChanged();
         // TODO: remove saveMediaFile, it's currently needed for the legacy editor
         void saveMediaFile(MediaFile mediaFile);
     }
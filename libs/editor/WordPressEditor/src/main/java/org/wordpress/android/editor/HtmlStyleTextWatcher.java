@@ -2,6 +2,7 @@ package org.wordpress.android.editor;
 
 import android.text.Editable;
 import android.text.Spannable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 
 import org.wordpress.android.util.AppLog;
@@ -12,6 +13,8 @@ public class HtmlStyleTextWatcher implements TextWatcher {
         INSERT, DELETE, REPLACE, NONE
     }
 
+    private static final char[] OPENING_SYMBOLS = {'<', '&'};
+
     private int mOffset;
     private CharSequence mModifiedText;
     private Operation mLastOperation;
@@ -51,6 +54,7 @@ public class HtmlStyleTextWatcher implements TextWatcher {
                 if (before > 0) {
                     // Text was added, replacing some existing text
                     mLastOperation = Operation.REPLACE;
+                    mOffset = start;
                     mModifiedText = s.subSequence(start, start + count);
                 } else {
                     // Text was added only
@@ -71,20 +75,20 @@ public class HtmlStyleTextWatcher implements TextWatcher {
         SpanRange spanRange;
 
         // If the modified text included a tag or entity symbol ("<", ">", "&" or ";"), find its match and restyle
-        if (mModifiedText.toString().contains("<")) {
-            spanRange = getRespanRangeForChangedOpeningSymbol(s, "<");
-        } else if (mModifiedText.toString().contains(">")) {
-            spanRange = getRespanRangeForChangedClosingSymbol(s, ">");
-        } else if (mModifiedText.toString().contains("&")) {
-            spanRange = getRespanRangeForChangedOpeningSymbol(s, "&");
-        } else if (mModifiedText.toString().contains(";")) {
-            spanRange = getRespanRangeForChangedClosingSymbol(s, ";");
+        if (TextUtils.indexOf(mModifiedText, '<') >= 0) {
+            spanRange = getRespanRangeForChangedOpeningSymbol(s, '<');
+        } else if (TextUtils.indexOf(mModifiedText, '>') >= 0) {
+            spanRange = getRespanRangeForChangedClosingSymbol(s, '>');
+        } else if (TextUtils.indexOf(mModifiedText, '&') >= 0) {
+            spanRange = getRespanRangeForChangedOpeningSymbol(s, '&');
+        } else if (TextUtils.indexOf(mModifiedText, ';') >= 0) {
+            spanRange = getRespanRangeForChangedClosingSymbol(s, ';');
         } else {
             // If the modified text didn't include any tag or entity symbols, restyle if the modified text is inside
             // a tag or entity
-            spanRange = getRespanRangeForNormalText(s, "<");
+            spanRange = getRespanRangeForNormalText(s, '<');
             if (spanRange == null) {
-                spanRange = getRespanRangeForNormalText(s, "&");
+                spanRange = getRespanRangeForNormalText(s, '&');
             }
         }
 
@@ -103,25 +107,24 @@ public class HtmlStyleTextWatcher implements TextWatcher {
      * @param openingSymbol the opening symbol recognized (e.g. '<' or '&')
      * @return the range of characters to re-apply spans to
      */
-    protected SpanRange getRespanRangeForChangedOpeningSymbol(Editable content, String openingSymbol) {
-        // For simplicity, re-parse the document if text was replaced
+    protected SpanRange getRespanRangeForChangedOpeningSymbol(Editable content, char openingSymbol) {
         if (mLastOperation == Operation.REPLACE) {
-            return new SpanRange(0, content.length());
+            return getRespanRangeForReplacedText(content);
         }
 
-        String closingSymbol = getMatchingSymbol(openingSymbol);
+        char closingSymbol = getMatchingSymbol(openingSymbol);
 
-        int firstOpeningTagLoc = mOffset + mModifiedText.toString().indexOf(openingSymbol);
+        int firstOpeningTagLoc = mOffset + TextUtils.indexOf(mModifiedText, openingSymbol);
         int closingTagLoc;
         if (mLastOperation == Operation.INSERT) {
             // Apply span from the first added opening symbol until the closing symbol in the content matching the
             // last added opening symbol
             // e.g. pasting "<b><" before "/b>" - we want the span to be applied to all of "<b></b>"
-            int lastOpeningTagLoc = mOffset + mModifiedText.toString().lastIndexOf(openingSymbol);
-            closingTagLoc = content.toString().indexOf(closingSymbol, lastOpeningTagLoc);
+            int lastOpeningTagLoc = mOffset + TextUtils.lastIndexOf(mModifiedText, openingSymbol);
+            closingTagLoc = TextUtils.indexOf(content, closingSymbol, lastOpeningTagLoc);
         } else {
             // Apply span until the first closing tag that appears after the deleted text
-            closingTagLoc = content.toString().indexOf(closingSymbol, mOffset);
+            closingTagLoc = TextUtils.indexOf(content, closingSymbol, mOffset);
         }
 
         if (closingTagLoc > 0) {
@@ -137,18 +140,17 @@ public class HtmlStyleTextWatcher implements TextWatcher {
      * @param closingSymbol the closing symbol recognized (e.g. '>' or ';')
      * @return the range of characters to re-apply spans to
      */
-    protected SpanRange getRespanRangeForChangedClosingSymbol(Editable content, String closingSymbol) {
-        // For simplicity, re-parse the document if text was replaced
+    protected SpanRange getRespanRangeForChangedClosingSymbol(Editable content, char closingSymbol) {
         if (mLastOperation == Operation.REPLACE) {
-            return new SpanRange(0, content.length());
+            return getRespanRangeForReplacedText(content);
         }
 
-        String openingSymbol = getMatchingSymbol(closingSymbol);
+        char openingSymbol = getMatchingSymbol(closingSymbol);
 
-        int firstClosingTagInModLoc = mOffset + mModifiedText.toString().indexOf(closingSymbol);
-        int firstClosingTagAfterModLoc = content.toString().indexOf(closingSymbol, mOffset + mModifiedText.length());
+        int firstClosingTagInModLoc = mOffset + TextUtils.indexOf(mModifiedText, closingSymbol);
+        int firstClosingTagAfterModLoc = TextUtils.indexOf(content, closingSymbol, mOffset + mModifiedText.length());
 
-        int openingTagLoc = content.toString().lastIndexOf(openingSymbol, firstClosingTagInModLoc - 1);
+        int openingTagLoc = TextUtils.lastIndexOf(content, openingSymbol, firstClosingTagInModLoc - 1);
         if (openingTagLoc >= 0) {
             if (firstClosingTagAfterModLoc >= 0) {
                 return new SpanRange(openingTagLoc, firstClosingTagAfterModLoc + 1);
@@ -166,12 +168,12 @@ public class HtmlStyleTextWatcher implements TextWatcher {
      * @param openingSymbol the opening symbol of the tag to check for (e.g. '<' or '&')
      * @return the range of characters to re-apply spans to
      */
-    protected SpanRange getRespanRangeForNormalText(Editable content, String openingSymbol) {
-        String closingSymbol = getMatchingSymbol(openingSymbol);
+    protected SpanRange getRespanRangeForNormalText(Editable content, char openingSymbol) {
+        char closingSymbol = getMatchingSymbol(openingSymbol);
 
-        int openingTagLoc = content.toString().lastIndexOf(openingSymbol, mOffset);
+        int openingTagLoc = TextUtils.lastIndexOf(content, openingSymbol, mOffset);
         if (openingTagLoc >= 0) {
-            int closingTagLoc = content.toString().indexOf(closingSymbol, openingTagLoc);
+            int closingTagLoc = TextUtils.indexOf(content, closingSymbol, openingTagLoc);
             if (closingTagLoc >= mOffset) {
                 return new SpanRange(openingTagLoc, closingTagLoc + 1);
             }
@@ -179,6 +181,40 @@ public class HtmlStyleTextWatcher implements TextWatcher {
         return null;
     }
 
+    /**
+     * For text replaced by text containing tag or entity symbols, returns the range of text which should have its
+     * style reapplied: the replacement, extended back to any tag or entity left open where it starts, and forward to
+     * the closing symbol of any tag or entity left open where it ends.
+     * @param content the content after modification
+     * @return the range of characters to re-apply spans to
+     */
+    protected SpanRange getRespanRangeForReplacedText(Editable content) {
+        int changeStart = Math.min(mOffset, content.length());
+        int changeEnd = Math.min(mOffset + mModifiedText.length(), content.length());
+        int spanStart = changeStart;
+        int spanEnd = changeEnd;
+
+        for (char openingSymbol : OPENING_SYMBOLS) {
+            char closingSymbol = getMatchingSymbol(openingSymbol);
+
+            int openingLoc = TextUtils.lastIndexOf(content, openingSymbol, changeStart - 1);
+            if (openingLoc >= 0 && TextUtils.lastIndexOf(content, closingSymbol, changeStart - 1) < openingLoc) {
+                spanStart = Math.min(spanStart, openingLoc);
+            }
+
+            // Nothing can match past the end of the change if there's no closing symbol after it
+            openingLoc = TextUtils.lastIndexOf(content, openingSymbol, changeEnd - 1);
+            if (openingLoc >= 0 && TextUtils.lastIndexOf(content, closingSymbol, changeEnd - 1) < openingLoc) {
+                int closingLoc = TextUtils.indexOf(content, closingSymbol, changeEnd);
+                if (closingLoc >= 0) {
+                    spanEnd = Math.max(spanEnd, closingLoc + 1);
+                }
+            }
+        }
+
+        return new SpanRange(spanStart, spanEnd);
+    }
+
     /**
      * Clears and re-applies spans to {@code content} within range {@code spanRange} according to rules in
      * {@link HtmlStyleUtils}.
@@ -194,25 +230,24 @@ public class HtmlStyleTextWatcher implements TextWatcher {
             return;
         }
 
-        HtmlStyleUtils.clearSpans(content, spanStart, spanEnd);
-        HtmlStyleUtils.styleHtmlForDisplay(content, spanStart, spanEnd);
+        HtmlStyleUtils.restyleHtmlForDisplay(content, spanStart, spanEnd);
     }
 
     /**
      * Returns the closing/opening symbol corresponding to the given opening/closing symbol.
      */
-    private String getMatchingSymbol(String symbol) {
+    private char getMatchingSymbol(char symbol) {
         switch(symbol) {
-            case "<":
-                return ">";
-            case ">":
-                return "<";
-            case "&":
-                return ";";
-            case ";":
-                return "&";
+            case '<':
+                return '>';
+            case '>':
+                return '<';
+            case '&':
+                return ';';
+            case ';':
+                return '&';
             default:
-                return "";
+                return 0;
         }
     }
 
@@ -5,6 +5,7 @@ import android.graphics.Typeface;
 import android.os.Build;
 import android.support.annotation.NonNull;
 import android.text.Spannable;
+import android.text.TextUtils;
 import android.text.style.CharacterStyle;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.RelativeSizeSpan;
@@ -12,6 +13,10 @@ import android.text.style.StyleSpan;
 
 import org.wordpress.android.util.AppLog;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,6 +68,16 @@ public class HtmlStyleUtils {
 
     public static final int SPANNABLE_FLAGS = Spannable.SPAN_EXCLUSIVE_EXCLUSIVE;
 
+    private static final Pattern HTML_TAGS_PATTERN = Pattern.compile(REGEX_HTML_TAGS);
+    private static final Pattern HTML_ATTRIBUTES_PATTERN = Pattern.compile(REGEX_HTML_ATTRIBUTES);
+    private static final Pattern HTML_COMMENTS_PATTERN = Pattern.compile(REGEX_HTML_COMMENTS);
+
+    // Matching REGEX_HTML_ENTITIES directly tries every alternative at every character of the content. Instead,
+    // anything shaped like an entity is matched and then looked up in the set of entities the regex lists.
+    private static final Pattern HTML_ENTITY_CANDIDATES_PATTERN = Pattern.compile("&#?[A-Za-z0-9]+;");
+    private static final Set<String> HTML_ENTITIES = new HashSet<>(Arrays.asList(
+            REGEX_HTML_ENTITIES.substring(1, REGEX_HTML_ENTITIES.length() - 1).split("\\|")));
+
     /**
      * Apply styling rules to {@code content}.
      */
@@ -78,53 +93,114 @@ public class HtmlStyleUtils {
      * @param end the index in {@code content} to style until
      */
     public static void styleHtmlForDisplay(@NonNull Spannable content, int start, int end) {
+        styleHtmlForDisplay(content, start, end, null);
+    }
+
+    /**
+     * Clears and re-applies styling rules to {@code content} inside the range from {@code start} to {@code end}.
+     * Like {@link #clearSpans(Spannable, int, int)} followed by {@link #styleHtmlForDisplay(Spannable, int, int)},
+     * except that:
+     * - the range is widened to cover the existing spans it overlaps, so a tag or comment which was only partly
+     *   inside the range keeps its style
+     * - the existing spans are moved to the new matches rather than being removed and re-allocated
+     *
+     * @param content the Spannable to re-style
+     * @param start the index in {@code content} to start styling from
+     * @param end the index in {@code content} to style until
+     */
+    public static void restyleHtmlForDisplay(@NonNull Spannable content, int start, int end) {
+        SpanRecycler recycler = new SpanRecycler();
+        for (CharacterStyle span : content.getSpans(start, end, CharacterStyle.class)) {
+            if (isHtmlStyleSpan(span)) {
+                recycler.add(span);
+                start = Math.min(start, content.getSpanStart(span));
+                end = Math.max(end, content.getSpanEnd(span));
+            }
+        }
+
+        styleHtmlForDisplay(content, start, end, recycler);
+        recycler.removeUnused(content);
+    }
+
+    private static void styleHtmlForDisplay(Spannable content, int start, int end, SpanRecycler recycler) {
         if (Build.VERSION.RELEASE.equals("4.1") || Build.VERSION.RELEASE.equals("4.1.1")) {
             // Avoids crashing bug in Android 4.1 and 4.1.1 triggered when spanned text is line-wrapped
             // AOSP issue: https://code.google.com/p/android/issues/detail?id=35466
             return;
         }
 
-        applySpansByRegex(content, start, end, REGEX_HTML_TAGS);
-        applySpansByRegex(content, start, end, REGEX_HTML_ATTRIBUTES);
-        applySpansByRegex(content, start, end, REGEX_HTML_COMMENTS);
-        applySpansByRegex(content, start, end, REGEX_HTML_ENTITIES);
+        if (content == null || start < 0 || end < start || end > content.length()) {
+            AppLog.d(AppLog.T.EDITOR, "styleHtmlForDisplay() received invalid input");
+            return;
+        }
+
+        if (recycler == null) {
+            recycler = new SpanRecycler();
+        }
+
+        // Matcher works on a String copy of its input, so copy only the range being styled, and only once
+        String text = TextUtils.substring(content, start, end);
+
+        applySpansByRegex(content, start, text, REGEX_HTML_TAGS, recycler);
+        applySpansByRegex(content, start, text, REGEX_HTML_ATTRIBUTES, recycler);
+        applySpansByRegex(content, start, text, REGEX_HTML_COMMENTS, recycler);
+        applySpansByRegex(content, start, text, REGEX_HTML_ENTITIES, recycler);
     }
 
     /**
-     * Applies styles to {@code content} from {@code start} to {@code end}, based on rule {@code regex}.
+     * Applies styles to {@code content} for each match of rule {@code regex} in {@code text}.
      * @param content the Spannable to apply style rules to
-     * @param start the index in {@code content} to start styling from
-     * @param end the index in {@code content} to style until
+     * @param start the index in {@code content} which {@code text} was copied from
+     * @param text the part of {@code content} to be styled
      * @param regex the pattern to match for styling
+     * @param recycler spans to reuse before allocating new ones
      */
-    private static void applySpansByRegex(Spannable content, int start, int end, String regex) {
-        if (content == null || start < 0 || end < 0 || start > content.length() || end > content.length()) {
-            AppLog.d(AppLog.T.EDITOR, "applySpansByRegex() received invalid input");
-            return;
+    private static void applySpansByRegex(Spannable content, int start, String text, String regex,
+                                          SpanRecycler recycler) {
+        Matcher matcher;
+        switch (regex) {
+            case REGEX_HTML_TAGS:
+                matcher = HTML_TAGS_PATTERN.matcher(text);
+                break;
+            case REGEX_HTML_ATTRIBUTES:
+                matcher = HTML_ATTRIBUTES_PATTERN.matcher(text);
+                break;
+            case REGEX_HTML_COMMENTS:
+                matcher = HTML_COMMENTS_PATTERN.matcher(text);
+                break;
+            case REGEX_HTML_ENTITIES:
+                matcher = HTML_ENTITY_CANDIDATES_PATTERN.matcher(text);
+                break;
+            default:
+                return;
         }
 
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(content.subSequence(start, end));
-
         while (matcher.find()) {
             int matchStart = matcher.start() + start;
             int matchEnd = matcher.end() + start;
             switch(regex) {
                 case REGEX_HTML_TAGS:
-                    content.setSpan(new ForegroundColorSpan(TAG_COLOR), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainForegroundColorSpan(TAG_COLOR), matchStart, matchEnd,
+                            SPANNABLE_FLAGS);
                     break;
                 case REGEX_HTML_ATTRIBUTES:
-                    content.setSpan(new ForegroundColorSpan(ATTRIBUTE_COLOR), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainForegroundColorSpan(ATTRIBUTE_COLOR), matchStart, matchEnd,
+                            SPANNABLE_FLAGS);
                     break;
                 case REGEX_HTML_COMMENTS:
-                    content.setSpan(new ForegroundColorSpan(ATTRIBUTE_COLOR), matchStart, matchEnd, SPANNABLE_FLAGS);
-                    content.setSpan(new StyleSpan(Typeface.ITALIC), matchStart, matchEnd, SPANNABLE_FLAGS);
-                    content.setSpan(new RelativeSizeSpan(0.75f), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainForegroundColorSpan(ATTRIBUTE_COLOR), matchStart, matchEnd,
+                            SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainStyleSpan(Typeface.ITALIC), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainRelativeSizeSpan(), matchStart, matchEnd, SPANNABLE_FLAGS);
                     break;
                 case REGEX_HTML_ENTITIES:
-                    content.setSpan(new ForegroundColorSpan(TAG_COLOR), matchStart, matchEnd, SPANNABLE_FLAGS);
-                    content.setSpan(new StyleSpan(Typeface.BOLD), matchStart, matchEnd, SPANNABLE_FLAGS);
-                    content.setSpan(new RelativeSizeSpan(0.75f), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    if (!HTML_ENTITIES.contains(matcher.group())) {
+                        break;
+                    }
+                    content.setSpan(recycler.obtainForegroundColorSpan(TAG_COLOR), matchStart, matchEnd,
+                            SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainStyleSpan(Typeface.BOLD), matchStart, matchEnd, SPANNABLE_FLAGS);
+                    content.setSpan(recycler.obtainRelativeSizeSpan(), matchStart, matchEnd, SPANNABLE_FLAGS);
                     break;
             }
         }
@@ -132,7 +208,7 @@ public class HtmlStyleUtils {
 
     /**
      * Clears all relevant spans in {@code content} from {@code start} to {@code end}. Relevant spans are the subclasses
-     * of {@link CharacterStyle} applied by {@link HtmlStyleUtils#applySpansByRegex(Spannable, int, int, String)}.
+     * of {@link CharacterStyle} applied by {@link HtmlStyleUtils#styleHtmlForDisplay(Spannable, int, int)}.
      * @param content the Spannable to clear styles from
      * @param spanStart the index in {@code content} to start clearing styles from
      * @param spanEnd the index in {@code content} to clear styles until
@@ -141,9 +217,83 @@ public class HtmlStyleUtils {
         CharacterStyle[] spans = content.getSpans(spanStart, spanEnd, CharacterStyle.class);
 
         for (CharacterStyle span : spans) {
-            if (span instanceof ForegroundColorSpan || span instanceof StyleSpan || span instanceof RelativeSizeSpan) {
+            if (isHtmlStyleSpan(span)) {
+                content.removeSpan(span);
+            }
+        }
+    }
+
+    private static boolean isHtmlStyleSpan(CharacterStyle span) {
+        return span instanceof ForegroundColorSpan || span instanceof StyleSpan || span instanceof RelativeSizeSpan;
+    }
+
+    /**
+     * Pool of spans taken from a range which is being re-styled. Spans handed out are moved to their new location by
+     * {@link Spannable#setSpan(Object, int, int, int)}, whatever wasn't reused is removed afterwards.
+     */
+    private static class SpanRecycler {
+        private final ArrayDeque<CharacterStyle> mTagColorSpans = new ArrayDeque<>();
+        private final ArrayDeque<CharacterStyle> mAttributeColorSpans = new ArrayDeque<>();
+        private final ArrayDeque<CharacterStyle> mItalicSpans = new ArrayDeque<>();
+        private final ArrayDeque<CharacterStyle> mBoldSpans = new ArrayDeque<>();
+        private final ArrayDeque<CharacterStyle> mRelativeSizeSpans = new ArrayDeque<>();
+        private final ArrayDeque<CharacterStyle> mOtherSpans = new ArrayDeque<>();
+
+        void add(CharacterStyle span) {
+            if (span instanceof ForegroundColorSpan) {
+                int color = ((ForegroundColorSpan) span).getForegroundColor();
+                if (color == TAG_COLOR) {
+                    mTagColorSpans.add(span);
+                } else if (color == ATTRIBUTE_COLOR) {
+                    mAttributeColorSpans.add(span);
+                } else {
+                    mOtherSpans.add(span);
+                }
+            } else if (span instanceof StyleSpan) {
+                int style = ((StyleSpan) span).getStyle();
+                if (style == Typeface.ITALIC) {
+                    mItalicSpans.add(span);
+                } else if (style == Typeface.BOLD) {
+                    mBoldSpans.add(span);
+                } else {
+                    mOtherSpans.add(span);
+                }
+            } else if (span instanceof RelativeSizeSpan && ((RelativeSizeSpan) span).getSizeChange() == 0.75f) {
+                mRelativeSizeSpans.add(span);
+            } else {
+                mOtherSpans.add(span);
+            }
+        }
+
+        CharacterStyle obtainForegroundColorSpan(int color) {
+            CharacterStyle span = (color == TAG_COLOR ? mTagColorSpans : mAttributeColorSpans).poll();
+            return span != null ? span : new ForegroundColorSpan(color);
+        }
+
+        CharacterStyle obtainStyleSpan(int style) {
+            CharacterStyle span = (style == Typeface.ITALIC ? mItalicSpans : mBoldSpans).poll();
+            return span != null ? span : new StyleSpan(style);
+        }
+
+        CharacterStyle obtainRelativeSizeSpan() {
+            CharacterStyle span = mRelativeSizeSpans.poll();
+            return span != null ? span : new RelativeSizeSpan(0.75f);
+        }
+
+        void removeUnused(Spannable content) {
+            removeAll(content, mTagColorSpans);
+            removeAll(content, mAttributeColorSpans);
+            removeAll(content, mItalicSpans);
+            removeAll(content, mBoldSpans);
+            removeAll(content, mRelativeSizeSpans);
+            removeAll(content, mOtherSpans);
+        }
+
+        private static void removeAll(Spannable content, ArrayDeque<CharacterStyle> spans) {
+            for (CharacterStyle span : spans) {
                 content.removeSpan(span);
             }
+            spans.clear();
         }
     }
 }
@@ -8,6 +8,7 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.JSONUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -75,6 +76,7 @@ public class JsCallbackReceiver {
             case CALLBACK_INPUT:
                 // Called on key press
                 // TODO: Possibly needed for handling WebView scrolling when caret moves (from iOS)
+                mListener.onInput();
                 break;
             case CALLBACK_FOCUS_IN:
                 // TODO: Needed to handle displaying/graying the format bar when focus changes between the title and content
@@ -83,6 +85,7 @@ public class JsCallbackReceiver {
             case CALLBACK_FOCUS_OUT:
                 // TODO: Needed to handle displaying/graying the format bar when focus changes between the title and content
                 AppLog.d(AppLog.T.EDITOR, "Focus out callback received");
+                mListener.onFocusOut();
                 break;
             case CALLBACK_NEW_FIELD:
                 // TODO: Used for logging/testing purposes on iOS
@@ -169,6 +172,13 @@ public class JsCallbackReceiver {
                 if (params.startsWith("function=")) {
                     String functionName = params.substring("function=".length(), params.indexOf(JS_CALLBACK_DELIMITER));
 
+                    if (functionName.equals("getFieldsHTMLForCallback")) {
+                        // The field contents can contain the delimiter, so they're sent as a JSON object
+                        String fieldsJson = params.substring(params.indexOf(JS_CALLBACK_DELIMITER) + 1);
+                        mListener.onGetHtmlResponse(buildFieldsResponseMap(functionName, fieldsJson));
+                        break;
+                    }
+
                     List<String> responseIds = new ArrayList<>();
                     switch (functionName) {
                         case "getHTMLForCallback":
@@ -192,4 +202,17 @@ public class JsCallbackReceiver {
                 AppLog.d(AppLog.T.EDITOR, "Unhandled callback: " + callbackId + ":" + params);
         }
     }
+
+    private static Map<String, String> buildFieldsResponseMap(String functionName, String fieldsJson) {
+        Map<String, String> responseMap = new HashMap<>();
+        responseMap.put("function", functionName);
+        try {
+            JSONObject fields = new JSONObject(fieldsJson);
+            responseMap.put("title", fields.optString("title"));
+            responseMap.put("contents", fields.optString("contents"));
+        } catch (JSONException e) {
+            AppLog.e(AppLog.T.EDITOR, "Fields from " + functionName + " were not JSON-formatted", e);
+        }
+        return responseMap;
+    }
 }
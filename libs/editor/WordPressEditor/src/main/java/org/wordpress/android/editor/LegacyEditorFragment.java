@@ -169,6 +169,7 @@ public class LegacyEditorFragment extends EditorFragmentAbstract implements Text
         mFormatBar = (LinearLayout) rootView.findViewById(R.id.format_bar);
         mTitleEditText = (EditText) rootView.findViewById(R.id.post_title);
         mTitleEditText.setText(mTitle);
+        mTitleEditText.addTextChangedListener(mContentChangedWatcher);
         mTitleEditText.setOnEditorActionListener(new TextView.OnEditorActionListener() {
             @Override
             public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
@@ -207,6 +208,7 @@ public class LegacyEditorFragment extends EditorFragmentAbstract implements Text
         mContentEditText.setOnSelectionChangedListener(this);
         mContentEditText.setOnTouchListener(this);
         mContentEditText.addTextChangedListener(this);
+        mContentEditText.addTextChangedListener(mContentChangedWatcher);
         mContentEditText.setOnEditTextImeBackListener(new WPEditText.EditTextImeBackListener() {
             @Override
             public void onImeBack(WPEditText ctrl, String text) {
@@ -414,6 +416,10 @@ public class LegacyEditorFragment extends EditorFragmentAbstract implements Text
         @Override
         public void onClick(View v) {
             int id = v.getId();
+            if (id != R.id.addPictureButton) {
+                // formatting a selection only changes spans, which the text watchers don't see
+                onContentChanged();
+            }
             if (id == R.id.bold) {
                 AnalyticsTracker.track(Stat.EDITOR_TAPPED_BOLD);
                 onFormatButtonClick(mBoldToggleButton, TAG_FORMAT_BAR_BUTTON_STRONG);
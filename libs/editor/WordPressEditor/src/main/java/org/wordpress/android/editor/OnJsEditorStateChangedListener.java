@@ -8,6 +8,8 @@ public interface OnJsEditorStateChangedListener {
     void onDomLoaded();
     void onSelectionChanged(Map<String, String> selectionArgs);
     void onSelectionStyleChanged(Map<String, Boolean> changeSet);
+    void onInput();
+    void onFocusOut();
     void onMediaTapped(String mediaId, String url, JSONObject meta, String uploadStatus);
     void onLinkTapped(String url, String title);
     void onGetHtmlResponse(Map<String, String> responseArgs);
@@ -0,0 +1,156 @@
+package org.wordpress.android.editor;
+
+import android.text.Editable;
+import android.text.Spanned;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.text.style.CharacterStyle;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StyleSpan;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Times typing, pasting and replacing in styled documents of 10 KB to 500 KB, and checks the incrementally
+ * styled result matches styling the edited document from scratch.
+ */
+@Config(sdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class HtmlStyleTextWatcherBenchmarkTest {
+    private static final int[] DOCUMENT_SIZES = {10 * 1024, 100 * 1024, 500 * 1024};
+
+    private static final String BLOCK = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit. Sed do eiusmod "
+            + "tempor incididunt ut labore et dolore <b>bold</b> magna aliqua &amp; ut enim ad minim veniam, quis "
+            + "nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat. "
+            + "<a href=\"https://example.com\">Duis aute</a> irure dolor in reprehenderit in voluptate velit esse "
+            + "cillum dolore eu fugiat nulla pariatur.</p>\n<!-- more -->\n";
+
+    private static final int TYPED_CHARACTERS = 200;
+    private static final int PASTES = 20;
+    private static final int REPLACEMENTS = 20;
+
+    @Test
+    public void testTyping() {
+        for (int size : DOCUMENT_SIZES) {
+            Editable content = buildStyledDocument(size);
+            HtmlStyleTextWatcher watcher = new HtmlStyleTextWatcher();
+            int offset = TextUtils.indexOf(content, "Sed do", content.length() / 2);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < TYPED_CHARACTERS; i++) {
+                edit(watcher, content, offset + i, offset + i, "x");
+            }
+            logElapsed("typed " + TYPED_CHARACTERS + " characters", size, start);
+
+            assertStyledLikeFullDocument(content);
+        }
+    }
+
+    @Test
+    public void testPasting() {
+        for (int size : DOCUMENT_SIZES) {
+            Editable content = buildStyledDocument(size);
+            HtmlStyleTextWatcher watcher = new HtmlStyleTextWatcher();
+            int step = content.length() / PASTES;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < PASTES; i++) {
+                int offset = TextUtils.indexOf(content, "Sed do", i * step);
+                assertTrue(offset >= 0);
+                edit(watcher, content, offset, offset, "<i>italic</i> ");
+            }
+            logElapsed("pasted " + PASTES + " tag pairs", size, start);
+
+            assertStyledLikeFullDocument(content);
+        }
+    }
+
+    @Test
+    public void testReplacing() {
+        for (int size : DOCUMENT_SIZES) {
+            Editable content = buildStyledDocument(size);
+            HtmlStyleTextWatcher watcher = new HtmlStyleTextWatcher();
+            int step = content.length() / REPLACEMENTS;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < REPLACEMENTS; i++) {
+                int offset = TextUtils.indexOf(content, "<b>bold</b>", i * step);
+                assertTrue(offset >= 0);
+                edit(watcher, content, offset, offset + "<b>bold</b>".length(), "<em>new</em>");
+            }
+            logElapsed("replaced " + REPLACEMENTS + " tag pairs", size, start);
+
+            assertStyledLikeFullDocument(content);
+        }
+    }
+
+    private static Editable buildStyledDocument(int size) {
+        StringBuilder builder = new StringBuilder(size + BLOCK.length());
+        while (builder.length() < size) {
+            builder.append(BLOCK);
+        }
+        Editable content = new SpannableStringBuilder(builder);
+        HtmlStyleUtils.styleHtmlForDisplay(content);
+        return content;
+    }
+
+    /*
+     * replaces the range from start to end with text, notifying the watcher the way an EditText would
+     */
+    private static void edit(HtmlStyleTextWatcher watcher, Editable content, int start, int end, CharSequence text) {
+        int before = end - start;
+        watcher.beforeTextChanged(content, start, before, text.length());
+        content.replace(start, end, text);
+        watcher.onTextChanged(content, start, before, text.length());
+        watcher.afterTextChanged(content);
+    }
+
+    private static void logElapsed(String action, int size, long startNanos) {
+        long elapsedMs = (System.nanoTime() - startNanos) / 1000000;
+        AppLog.i(T.EDITOR, action + " in a " + (size / 1024) + " KB document in " + elapsedMs + "ms");
+    }
+
+    private static void assertStyledLikeFullDocument(Spanned content) {
+        SpannableStringBuilder expected = new SpannableStringBuilder(content.toString());
+        HtmlStyleUtils.styleHtmlForDisplay(expected);
+        assertEquals(describeSpans(expected), describeSpans(content));
+    }
+
+    private static List<String> describeSpans(Spanned content) {
+        List<String> descriptions = new ArrayList<>();
+        for (CharacterStyle span : content.getSpans(0, content.length(), CharacterStyle.class)) {
+            int start = content.getSpanStart(span);
+            int end = content.getSpanEnd(span);
+            if (start == end) {
+                continue;
+            }
+
+            String style;
+            if (span instanceof ForegroundColorSpan) {
+                style = "color " + ((ForegroundColorSpan) span).getForegroundColor();
+            } else if (span instanceof StyleSpan) {
+                style = "style " + ((StyleSpan) span).getStyle();
+            } else if (span instanceof RelativeSizeSpan) {
+                style = "size " + ((RelativeSizeSpan) span).getSizeChange();
+            } else {
+                continue;
+            }
+            descriptions.add(start + "-" + end + " " + style);
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+}
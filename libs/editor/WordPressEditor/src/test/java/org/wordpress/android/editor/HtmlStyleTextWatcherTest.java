@@ -424,9 +424,9 @@ public class HtmlStyleTextWatcherTest {
         mWatcher.onTextChanged(mContent, 2, 3, 4);
         mWatcher.afterTextChanged(mContent);
 
-        // Should re-style whole document
-        assertEquals(0, mSpanRange.getOpeningTagLoc());
-        assertEquals(mContent.length(), mSpanRange.getClosingTagLoc());
+        // "<b></b>" should be re-styled
+        assertEquals(2, mSpanRange.getOpeningTagLoc());
+        assertEquals(9, mSpanRange.getClosingTagLoc());
 
 
         // -- Test pasting cut text while text is selected, case 2
@@ -437,9 +437,22 @@ public class HtmlStyleTextWatcherTest {
         mWatcher.onTextChanged(mContent, 1, 5, 2);
         mWatcher.afterTextChanged(mContent);
 
-        // Should re-style whole document
+        // "<i>" should be re-styled
         assertEquals(0, mSpanRange.getOpeningTagLoc());
-        assertEquals(mContent.length(), mSpanRange.getClosingTagLoc());
+        assertEquals(3, mSpanRange.getClosingTagLoc());
+
+
+        // -- Test replacing text inside an entity, leaving the entity open
+        // Pasted "lt&gt", replacing "amp" of "&amp;"
+        mContent = new SpannableStringBuilder("text &amp; more <b>bold</b>");
+        mWatcher.beforeTextChanged(mContent, 6, 3, 5);
+        mContent = new SpannableStringBuilder("text &lt&gt; more <b>bold</b>");
+        mWatcher.onTextChanged(mContent, 6, 3, 5);
+        mWatcher.afterTextChanged(mContent);
+
+        // "&lt&gt;" should be re-styled
+        assertEquals(5, mSpanRange.getOpeningTagLoc());
+        assertEquals(12, mSpanRange.getClosingTagLoc());
     }
 
     @Test
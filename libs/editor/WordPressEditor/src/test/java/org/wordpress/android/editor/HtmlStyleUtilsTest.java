@@ -14,6 +14,9 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Arrays;
+import java.util.HashSet;
+
 import static org.junit.Assert.assertEquals;
 
 @Config(sdk = 18)
@@ -89,4 +92,43 @@ public class HtmlStyleUtilsTest {
 
         assertEquals(1, content.getSpans(0, 4, UnderlineSpan.class).length);
     }
+
+    @Test
+    public void testUnknownEntitiesAreNotStyled() {
+        Spannable content = new SpannableStringBuilder("&foo; &amp; &#1234567;");
+        HtmlStyleUtils.styleHtmlForDisplay(content);
+
+        assertEquals(0, content.getSpans(0, 5, CharacterStyle.class).length); // '&foo;'
+        assertEquals(1, content.getSpans(6, 11, ForegroundColorSpan.class).length); // '&amp;'
+        assertEquals(0, content.getSpans(12, 22, CharacterStyle.class).length); // '&#1234567;'
+    }
+
+    @Test
+    public void testRestyleReusesSpans() {
+        Spannable content = new SpannableStringBuilder("<b>text</b> &amp; <!--a comment-->");
+        HtmlStyleUtils.styleHtmlForDisplay(content);
+        CharacterStyle[] spans = content.getSpans(0, content.length(), CharacterStyle.class);
+
+        HtmlStyleUtils.restyleHtmlForDisplay(content, 0, content.length());
+
+        CharacterStyle[] restyledSpans = content.getSpans(0, content.length(), CharacterStyle.class);
+        assertEquals(new HashSet<>(Arrays.asList(spans)), new HashSet<>(Arrays.asList(restyledSpans)));
+
+        assertEquals(1, content.getSpans(0, 3, ForegroundColorSpan.class).length); // '<b>'
+        assertEquals(1, content.getSpans(12, 17, StyleSpan.class).length); // '&amp;'
+    }
+
+    @Test
+    public void testRestyleWidensToOverlappingSpans() {
+        // '>' inside the comment stops the range from being extended by the text watcher
+        Spannable content = new SpannableStringBuilder("text <!-- a > b -->");
+        HtmlStyleUtils.styleHtmlForDisplay(content);
+
+        HtmlStyleUtils.restyleHtmlForDisplay(content, 14, 15);
+
+        StyleSpan[] spans = content.getSpans(5, 19, StyleSpan.class);
+        assertEquals(1, spans.length);
+        assertEquals(5, content.getSpanStart(spans[0]));
+        assertEquals(19, content.getSpanEnd(spans[0]));
+    }
 }
@@ -5,16 +5,19 @@ import android.util.Log;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowLog;
 import org.wordpress.android.util.AppLog;
 
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.robolectric.shadows.ShadowLog.LogItem;
 
 @Config(sdk = 18)
@@ -22,12 +25,13 @@ import static org.robolectric.shadows.ShadowLog.LogItem;
 public class JsCallbackReceiverTest {
     private final static String EDITOR_LOG_TAG = "WordPress-" + AppLog.T.EDITOR.toString();
 
+    private EditorFragment mEditorFragment;
     private JsCallbackReceiver mJsCallbackReceiver;
 
     @Before
     public void setUp() {
-        EditorFragment editorFragment = mock(EditorFragment.class);
-        mJsCallbackReceiver = new JsCallbackReceiver(editorFragment);
+        mEditorFragment = mock(EditorFragment.class);
+        mJsCallbackReceiver = new JsCallbackReceiver(mEditorFragment);
     }
 
     @Test
@@ -81,6 +85,19 @@ public class JsCallbackReceiverTest {
         assertLogged(Log.DEBUG, EDITOR_LOG_TAG, "callback-log: test-message", null);
     }
 
+    @Test
+    public void testFieldsResponseWithDelimiterInContent() {
+        mJsCallbackReceiver.executeCallback("callback-response-string",
+                "function=getFieldsHTMLForCallback~{\"title\":\"A~B\",\"contents\":\"x~title=y~contents=z\"}");
+
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(mEditorFragment).onGetHtmlResponse(captor.capture());
+        Map<?, ?> response = captor.getValue();
+        assertEquals("getFieldsHTMLForCallback", response.get("function"));
+        assertEquals("A~B", response.get("title"));
+        assertEquals("x~title=y~contents=z", response.get("contents"));
+    }
+
     private void assertLogged(int type, String tag, String msg, Throwable throwable) {
         LogItem lastLog = ShadowLog.getLogs().get(0);
         assertEquals(type, lastLog.type);
@@ -180,6 +180,11 @@ public class EditorExampleActivity extends AppCompatActivity implements EditorFr
         mEditorFragment.setLocalDraft(isLocalDraft);
     }
 
+    @Override
+    public void onEditorContentChanged() {
+        // TODO
+    }
+
     @Override
     public void saveMediaFile(MediaFile mediaFile) {
         // TODO
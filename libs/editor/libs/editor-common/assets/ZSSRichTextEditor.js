@@ -188,6 +188,18 @@ ZSSEditor.execFunctionForResult = function(methodName) {
     ZSSEditor.callback('callback-response-string', functionArgument +  defaultCallbackSeparator + resultArgument);
 }
 
+// Returns the title and the content fields in a single callback
+ZSSEditor.getFieldsHTMLForCallback = function() {
+    var functionArgument = "function=getFieldsHTMLForCallback";
+    // The fields can contain the callback separator, so they're sent as a JSON object
+    var fieldsArgument = JSON.stringify({
+        title: ZSSEditor.getField('zss_field_title').getHTML(),
+        contents: ZSSEditor.getField('zss_field_content').getHTML()
+    });
+    var joinedArguments = functionArgument + defaultCallbackSeparator + fieldsArgument;
+    ZSSEditor.callback('callback-response-string', joinedArguments);
+};
+
 // MARK: - Logging
 
 ZSSEditor.log = function(msg) {
@@ -0,0 +1,82 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class AppLogTest extends InstrumentationTestCase {
+    private static final int THREAD_COUNT = 4;
+    private static final int ENTRIES_PER_THREAD = 1000;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        AppLog.enableRecording(true);
+    }
+
+    public void testKeepsMostRecentEntries() {
+        for (int i = 0; i < 1000; i++) {
+            AppLog.d(T.TESTS, "entry " + i);
+        }
+
+        List<String> items = AppLog.toHtmlList(getInstrumentation().getTargetContext());
+        String last = items.get(items.size() - 1);
+        assertTrue(last.contains("entry 999"));
+        assertFalse(items.get(AppLog.HEADER_LINE_COUNT).contains("entry 0<"));
+        assertTrue(items.size() < 1000);
+    }
+
+    public void testPlainTextKeepsMostRecentEntriesWhenTruncated() {
+        for (int i = 0; i < 100; i++) {
+            AppLog.d(T.TESTS, "truncated entry " + i);
+        }
+
+        String log = AppLog.toPlainText(getInstrumentation().getTargetContext(), 1000);
+        assertTrue(log.length() <= 1000);
+        assertTrue(log.startsWith("WordPress Android version: "));
+        assertTrue(log.contains("truncated entry 99\n"));
+        assertFalse(log.contains("truncated entry 0\n"));
+    }
+
+    public void testConcurrentLogging() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int thread = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+                        AppLog.v(T.TESTS, "thread " + thread + " entry " + i);
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        // each entry which is still in the log must appear exactly once
+        String log = AppLog.toPlainText(getInstrumentation().getTargetContext());
+        Set<String> entries = new HashSet<>();
+        for (String line : log.split("\n")) {
+            int separator = line.indexOf(" - thread ");
+            if (separator > 0) {
+                assertTrue(line, entries.add(line.substring(separator)));
+            }
+        }
+        assertFalse(entries.isEmpty());
+        AppLog.i(T.TESTS, "logged " + (THREAD_COUNT * ENTRIES_PER_THREAD) + " entries from " + THREAD_COUNT
+                + " threads in " + elapsedMs + "ms");
+    }
+}
@@ -0,0 +1,141 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+import android.text.Html;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.wordpress.android.util.AppLog.T;
+
+public class HtmlDecoderTest extends InstrumentationTestCase {
+    private static final int BENCHMARK_PASSES = 200;
+
+    // post titles and excerpts as returned by xmlrpc and the REST api
+    private static final String[] TITLES = {
+            "Hello world!",
+            "Tips &amp; Tricks for Your First Marathon",
+            "&#8220;Less is more&#8221; &#8211; on minimalist design",
+            "Caf&eacute; culture in Lisbon",
+            "Why I&#8217;m leaving the city",
+            "Q&amp;A with the team",
+            "10 &lt;div&gt;s you don&#8217;t need",
+            "Photo of the week #42",
+            "Recipes: pasta, salads &#038; more",
+            "Gr&uuml;&szlig;e aus M&uuml;nchen",
+            "Road trip \u2014 day 3",
+            "&quot;Draft&quot; (untitled)",
+    };
+
+    private static final String[] EXCERPTS = {
+            "<p>Last weekend we drove up the coast and stopped at every caf&eacute; we could find.</p>\n",
+            "<p>First paragraph with <a href=\"https://example.com/?a=1&amp;b=2\">a link</a>.</p>\n"
+                    + "<p>Second paragraph<br />\nwith a line break.</p>",
+            "<p><strong>Update:</strong> the event has moved to Saturday &#8211; see you there!</p>",
+            "<p>&nbsp;</p>\n<p>Spacing, <em>emphasis</em> and a <!-- hidden --> comment.</p>",
+            "<h2>Ingredients</h2>\n<ul>\n<li>2 eggs</li>\n<li>1 cup of flour</li>\n</ul>",
+            "<p>Prices went up by 5&#37; &#x2192; time to rethink the budget&hellip;</p>",
+            "<blockquote><p>Simplicity is the ultimate sophistication.</p></blockquote>\n<p>&#8212; Leonardo</p>",
+            "Plain text excerpt without any markup at all.",
+    };
+
+    public void testDecodeEntities() {
+        assertEquals("Tips & Tricks", HtmlDecoder.decodeEntities("Tips &amp; Tricks"));
+        assertEquals("\u201cquoted\u201d", HtmlDecoder.decodeEntities("&#8220;quoted&#8221;"));
+        assertEquals("\u2192 \u00e9 '", HtmlDecoder.decodeEntities("&#x2192; &eacute; &apos;"));
+        assertEquals("\ud83d\ude00", HtmlDecoder.decodeEntities("&#x1F600;"));
+        assertEquals("Gr\u00fc\u00dfe", HtmlDecoder.decodeEntities("Gr&uuml;&szlig;e"));
+    }
+
+    public void testDecodeEntitiesLeavesUnknownEntities() {
+        String[] unchanged = {"&foo;", "&amp", "& amp;", "&#;", "&#x;", "&#55296;", "&#99999999;", "AT&T", "&"};
+        for (String text : unchanged) {
+            assertEquals(text, HtmlDecoder.decodeEntities(text));
+        }
+
+        String text = "nothing to decode";
+        assertSame(text, HtmlDecoder.decodeEntities(text));
+    }
+
+    public void testToPlainText() {
+        assertEquals("First\nSecond", HtmlDecoder.toPlainText("<p>First</p><p>Second</p>"));
+        assertEquals("one\ntwo", HtmlDecoder.toPlainText("one<br/>two"));
+        assertEquals("a > b", HtmlDecoder.toPlainText("<a title=\"x > y\">a &gt; b</a>"));
+        assertEquals("visible", HtmlDecoder.toPlainText("<!-- <p>hidden</p> -->visible"));
+        assertEquals("1 < 2", HtmlDecoder.toPlainText("1 < 2"));
+        assertEquals("text", HtmlDecoder.toPlainText("\u00a0 <b>text</b>"));
+    }
+
+    public void testToPlainTextMatchesRegexStripping() {
+        for (String excerpt : EXCERPTS) {
+            assertEquals(excerpt, legacyStripHtml(excerpt), HtmlDecoder.toPlainText(excerpt));
+        }
+    }
+
+    public void testToDisplayTextMatchesHtmlFromHtml() {
+        for (String title : TITLES) {
+            assertEquals(title, Html.fromHtml(title).toString(), HtmlDecoder.toDisplayText(title));
+        }
+        String html = "<p>First  paragraph\nwrapped</p><p>Second<br>line</p>";
+        assertEquals(Html.fromHtml(html).toString(), HtmlDecoder.toDisplayText(html));
+    }
+
+    public void testDecodeBenchmark() {
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (String title : TITLES) {
+                Html.fromHtml(title).toString();
+            }
+        }
+        long fromHtmlMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (String title : TITLES) {
+                HtmlDecoder.toDisplayText(title);
+            }
+        }
+        long decoderMs = (System.nanoTime() - start) / 1000000;
+
+        AppLog.i(T.UTILS, "titles: Html.fromHtml " + fromHtmlMs + "ms, HtmlDecoder " + decoderMs + "ms");
+    }
+
+    public void testStripBenchmark() {
+        long start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (String excerpt : EXCERPTS) {
+                legacyStripHtml(excerpt);
+            }
+        }
+        long regexMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        for (int pass = 0; pass < BENCHMARK_PASSES; pass++) {
+            for (String excerpt : EXCERPTS) {
+                HtmlDecoder.toPlainText(excerpt);
+            }
+        }
+        long decoderMs = (System.nanoTime() - start) / 1000000;
+
+        AppLog.i(T.UTILS, "excerpts: regex " + regexMs + "ms, HtmlDecoder " + decoderMs + "ms");
+    }
+
+    /*
+     * the regex based HtmlUtils.fastStripHtml() this replaced
+     */
+    private static String legacyStripHtml(String str) {
+        if (str.lastIndexOf("<p") > 0) {
+            str = str.replaceAll("<p(.|\n)*?>", "\n<p>");
+        }
+        if (str.contains("<br")) {
+            str = str.replaceAll("<br(.|\n)*?>", "\n");
+        }
+        str = str.replaceAll("<(.|\n)*?>", "");
+        if (str.contains("&")) {
+            str = StringEscapeUtils.unescapeHtml(str);
+        }
+        int start = 0;
+        while (start < str.length() && (Character.isWhitespace(str.charAt(start)) || str.charAt(start) == 160)) {
+            start++;
+        }
+        return str.substring(start);
+    }
+}
@@ -0,0 +1,172 @@
+package org.wordpress.android.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+public class ImageResizerTest extends InstrumentationTestCase {
+    private static final int SRC_WIDTH = 1600;
+    private static final int SRC_HEIGHT = 1200;
+
+    private File mSrcFile;
+    private File mDestFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        File cacheDir = getInstrumentation().getTargetContext().getCacheDir();
+        mSrcFile = new File(cacheDir, "image-resizer-src.jpg");
+        mDestFile = new File(cacheDir, "image-resizer-dest.jpg");
+
+        Bitmap bitmap = Bitmap.createBitmap(SRC_WIDTH, SRC_HEIGHT, Bitmap.Config.RGB_565);
+        new Canvas(bitmap).drawColor(Color.BLUE);
+        FileOutputStream out = new FileOutputStream(mSrcFile);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        out.close();
+        bitmap.recycle();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSrcFile.delete();
+        mDestFile.delete();
+        super.tearDown();
+    }
+
+    public void testCalculateInSampleSize() {
+        assertEquals(1, ImageResizer.calculateInSampleSize(1600, 1024));
+        assertEquals(2, ImageResizer.calculateInSampleSize(1600, 800));
+        assertEquals(4, ImageResizer.calculateInSampleSize(4000, 640));
+        assertEquals(1, ImageResizer.calculateInSampleSize(1600, 0));
+    }
+
+    public void testResizeToFile() {
+        assertTrue(ImageResizer.resizeToFile(mSrcFile.getPath(), 400, 0, mDestFile, Bitmap.CompressFormat.JPEG));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(mDestFile.getPath(), options);
+        assertEquals(400, options.outWidth);
+        assertEquals(300, options.outHeight);
+        assertEquals(0, ImageResizer.getMemoryBudget().getUsed());
+    }
+
+    public void testDecodeScaledRotated() {
+        Bitmap bitmap = ImageResizer.decodeScaled(mSrcFile.getPath(), 300, 90);
+        assertNotNull(bitmap);
+        assertEquals(300, bitmap.getWidth());
+        assertEquals(400, bitmap.getHeight());
+        ImageResizer.release(bitmap);
+    }
+
+    public void testDecodeScaledDoesNotUpscale() {
+        Bitmap bitmap = ImageResizer.decodeScaled(mSrcFile.getPath(), 4000, 0);
+        assertNotNull(bitmap);
+        assertEquals(SRC_WIDTH, bitmap.getWidth());
+        ImageResizer.release(bitmap);
+    }
+
+    public void testDecodeScaledKeepsOutputReservedUntilReleased() {
+        Bitmap bitmap = ImageResizer.decodeScaled(mSrcFile.getPath(), 400, 0);
+        assertNotNull(bitmap);
+        assertEquals(bitmap.getByteCount(), ImageResizer.getMemoryBudget().getUsed());
+        ImageResizer.release(bitmap);
+        assertTrue(bitmap.isRecycled());
+        assertEquals(0, ImageResizer.getMemoryBudget().getUsed());
+    }
+
+    /*
+     * times resizing a 12 MP and a 50 MP photo to the default upload width - the sources are written
+     * as PNGs a row at a time since the test process can't hold a 50 MP bitmap to compress
+     */
+    public void testResizeBenchmark() throws IOException {
+        int[][] sizes = {{4000, 3000}, {8160, 6120}};
+        File cacheDir = getInstrumentation().getTargetContext().getCacheDir();
+        for (int[] size : sizes) {
+            File srcFile = new File(cacheDir, "image-resizer-benchmark.png");
+            try {
+                writeGradientPng(srcFile, size[0], size[1]);
+                long start = System.nanoTime();
+                assertTrue(ImageResizer.resizeToFile(srcFile.getPath(), 1024, 0, mDestFile,
+                        Bitmap.CompressFormat.JPEG));
+                long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFile(mDestFile.getPath(), options);
+                assertEquals(1024, options.outWidth);
+                assertEquals(0, ImageResizer.getMemoryBudget().getUsed());
+                AppLog.i(T.TESTS, "resized " + size[0] + "x" + size[1] + " to 1024 wide in " + elapsedMillis + "ms");
+            } finally {
+                srcFile.delete();
+            }
+        }
+    }
+
+    /*
+     * writes an 8-bit RGB PNG with a horizontal gradient, one deflated row at a time
+     */
+    private static void writeGradientPng(File file, int width, int height) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.write(new byte[]{8, 2, 0, 0, 0});
+            writePngChunk(out, "IHDR", headerBytes.toByteArray());
+
+            ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+            OutputStream deflater = new DeflaterOutputStream(imageBytes);
+            // each row is a "none" filter byte followed by its RGB pixels
+            byte[] row = new byte[1 + width * 3];
+            for (int x = 0; x < width; x++) {
+                row[1 + x * 3] = (byte) (x * 256 / width);
+                row[2 + x * 3] = (byte) 0x80;
+            }
+            for (int y = 0; y < height; y++) {
+                deflater.write(row);
+            }
+            deflater.close();
+            writePngChunk(out, "IDAT", imageBytes.toByteArray());
+            writePngChunk(out, "IEND", new byte[0]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writePngChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    public void testMemoryBudgetClampsOversizedRequests() throws InterruptedException {
+        ImageResizer.MemoryBudget budget = new ImageResizer.MemoryBudget(100);
+        long reserved = budget.acquire(1000);
+        assertEquals(100, reserved);
+        budget.release(reserved);
+        assertEquals(0, budget.getUsed());
+    }
+}
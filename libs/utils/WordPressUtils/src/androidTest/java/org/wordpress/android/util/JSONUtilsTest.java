@@ -29,4 +29,23 @@ public class JSONUtilsTest extends InstrumentationTestCase {
     public void testQueryJSONNullReturnValue2() {
         JSONUtils.queryJSON(new JSONArray(), "", null);
     }
+
+    public void testQueryJSONNestedPaths() throws Exception {
+        JSONObject json = new JSONObject("{\"meta\":{\"ids\":{\"comment\":146}},"
+                + "\"subject\":[{\"ranges\":[{\"id\":1},{\"id\":2}]},{\"text\":\"hello\"}]}");
+
+        assertEquals(146, (int) JSONUtils.queryJSON(json, "meta.ids.comment", 0));
+        assertEquals(2, (int) JSONUtils.queryJSON(json, "subject[0].ranges[last].id", 0));
+        assertEquals(1, (int) JSONUtils.queryJSON(json, "subject[first].ranges[-2].id", 0));
+        assertEquals("hello", JSONUtils.queryJSON(json.getJSONArray("subject"), "subject[1].text", ""));
+        assertEquals("none", JSONUtils.queryJSON(json, "meta.ids.missing", "none"));
+        assertEquals("none", JSONUtils.queryJSON(json, "subject[5].text", "none"));
+        assertEquals("none", JSONUtils.queryJSON(json, "subject[x].text", "none"));
+        // type mismatch falls back to the default
+        assertEquals("none", JSONUtils.queryJSON(json, "meta.ids.comment", "none"));
+    }
+
+    public void testCompiledPathsAreCached() {
+        assertSame(JSONUtils.JSONPath.compile("meta.ids.site"), JSONUtils.JSONPath.compile("meta.ids.site"));
+    }
 }
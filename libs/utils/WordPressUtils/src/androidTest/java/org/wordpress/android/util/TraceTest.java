@@ -0,0 +1,107 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TraceTest extends InstrumentationTestCase {
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Trace.setEnabled(true);
+        Trace.reset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Trace.setEnabled(false);
+        super.tearDown();
+    }
+
+    public void testNestedSections() throws Exception {
+        Trace.beginSection("outer");
+        Trace.beginSection("inner");
+        Thread.sleep(5);
+        long inner = Trace.endSection();
+        long outer = Trace.endSection();
+
+        assertTrue(inner >= 5000000);
+        assertTrue(outer >= inner);
+        assertEquals(-1, Trace.endSection());
+    }
+
+    public void testAsyncSectionDoesNotCloseNestedSections() throws Exception {
+        long token = Trace.beginAsyncSection();
+        Trace.beginSection("nested");
+        Thread.sleep(5);
+        assertTrue(Trace.endAsyncSection("async", token) >= 5000000);
+
+        // the nested section is still the one which is open
+        assertTrue(Trace.endSection() >= 5000000);
+        assertEquals(-1, Trace.endSection());
+        assertEquals(-1, Trace.endAsyncSection("async", -1));
+    }
+
+    public void testDisabled() {
+        Trace.setEnabled(false);
+        Trace.beginSection("disabled");
+        assertEquals(-1, Trace.endSection());
+        assertEquals(-1, Trace.beginAsyncSection());
+    }
+
+    public void testThreadsDontShareSections() throws Exception {
+        Trace.beginSection("main");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        Trace.beginSection("worker");
+                        Trace.endSection();
+                    }
+                    // ending a section this thread never began has no effect
+                    Trace.endSection();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(Trace.endSection() >= 0);
+    }
+
+    public void testChromeTrace() throws Exception {
+        Trace.beginSection("section \"quoted\"");
+        Trace.mark("instant");
+        Trace.endSection();
+
+        StringWriter writer = new StringWriter();
+        Trace.writeChromeTrace(writer);
+        JSONArray events = new JSONObject(writer.toString()).getJSONArray("traceEvents");
+
+        boolean foundSection = false;
+        boolean foundInstant = false;
+        for (int i = 0; i < events.length(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            if (event.getString("name").equals("section \"quoted\"")) {
+                assertEquals("X", event.getString("ph"));
+                assertTrue(event.getDouble("dur") >= 0);
+                foundSection = true;
+            } else if (event.getString("name").equals("instant")) {
+                assertEquals("i", event.getString("ph"));
+                foundInstant = true;
+            }
+        }
+        assertTrue(foundSection);
+        assertTrue(foundInstant);
+    }
+}
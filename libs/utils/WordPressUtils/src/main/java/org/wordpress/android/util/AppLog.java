@@ -4,11 +4,23 @@ import android.content.Context;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * simple wrapper for Android log calls, enables recording and displaying log
@@ -20,7 +32,7 @@ public class AppLog {
     public static final String TAG = "WordPress";
     public static final int HEADER_LINE_COUNT = 2;
 
-    private static boolean mEnableRecording = false;
+    private static volatile boolean mEnableRecording = false;
 
     private AppLog() {
         throw new AssertionError();
@@ -34,6 +46,21 @@ public class AppLog {
         mEnableRecording = enable;
     }
 
+    /**
+     * Also append recorded entries to a size capped log file in the passed directory, so the log shown by
+     * AppLogViewerActivity and sent to support covers previous sessions. Entries are written on a background
+     * thread, logging itself never touches the file.
+     * @param logDir directory to keep the current and the previous log file in
+     */
+    public static synchronized void enablePersistence(File logDir) {
+        if (mLogFileWriter != null) {
+            return;
+        }
+        mLogFileWriter = new LogFileWriter(logDir);
+        mLogFileWriter.start();
+        addEntry(T.UTILS, LogLevel.i, "--- new session ---");
+    }
+
     /**
      * Sends a VERBOSE log message
      * @param tag Used to identify the source of a log message.
@@ -141,7 +168,8 @@ public class AppLog {
 
     // --------------------------------------------------------------------------------------------------------
 
-    private static final int MAX_ENTRIES = 99;
+    private static final int MAX_ENTRIES = 500;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private enum LogLevel {
         v, d, i, w, e;
@@ -166,6 +194,7 @@ public class AppLog {
         LogLevel mLogLevel;
         String mLogText;
         T mLogTag;
+        long mSequence;
 
         public LogEntry(LogLevel logLevel, String logText, T logTag) {
             mLogLevel = logLevel;
@@ -190,27 +219,239 @@ public class AppLog {
             sb.append("</font>");
             return sb.toString();
         }
+
+        /*
+         * single line form used in the log file: level, tag and text with backslashes and line breaks escaped
+         */
+        private String toFileLine() {
+            StringBuilder sb = new StringBuilder(mLogText.length() + 16);
+            sb.append(mLogLevel.name()).append(' ').append(mLogTag.name()).append(' ');
+            for (int i = 0; i < mLogText.length(); i++) {
+                char c = mLogText.charAt(i);
+                if (c == '\\') {
+                    sb.append("\\\\");
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else if (c == '\r') {
+                    sb.append("\\r");
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.append('\n').toString();
+        }
+
+        private static LogEntry fromFileLine(String line) {
+            int levelEnd = line.indexOf(' ');
+            int tagEnd = levelEnd > 0 ? line.indexOf(' ', levelEnd + 1) : -1;
+            if (tagEnd < 0) {
+                return null;
+            }
+            try {
+                LogLevel level = LogLevel.valueOf(line.substring(0, levelEnd));
+                T tag = T.valueOf(line.substring(levelEnd + 1, tagEnd));
+                StringBuilder text = new StringBuilder(line.length() - tagEnd);
+                for (int i = tagEnd + 1; i < line.length(); i++) {
+                    char c = line.charAt(i);
+                    if (c == '\\' && i + 1 < line.length()) {
+                        i++;
+                        char escaped = line.charAt(i);
+                        text.append(escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+                    } else {
+                        text.append(c);
+                    }
+                }
+                return new LogEntry(level, text.toString(), tag);
+            } catch (IllegalArgumentException e) {
+                // written by a version with different levels or tags
+                return null;
+            }
+        }
     }
 
-    private static class LogEntryList extends ArrayList<LogEntry> {
-        private synchronized boolean addEntry(LogEntry entry) {
-            if (size() >= MAX_ENTRIES)
-                removeFirstEntry();
-            return add(entry);
+    /**
+     * Fixed capacity ring of the most recent entries. Writers claim a sequence number and store the entry in its
+     * slot, readers skip slots which were overwritten or not yet filled while they copied them without locking.
+     */
+    private static class LogEntryRing {
+        private final AtomicReferenceArray<LogEntry> mSlots = new AtomicReferenceArray<LogEntry>(MAX_ENTRIES);
+        private final AtomicLong mNextSequence = new AtomicLong();
+
+        private void add(LogEntry entry) {
+            entry.mSequence = mNextSequence.getAndIncrement();
+            mSlots.set((int) (entry.mSequence % MAX_ENTRIES), entry);
+        }
+
+        /*
+         * returns the entries still in the ring whose sequence number is above afterSequence, oldest first
+         */
+        private List<LogEntry> getEntries(long afterSequence) {
+            long end = mNextSequence.get();
+            long start = Math.max(Math.max(0, end - MAX_ENTRIES), afterSequence + 1);
+            List<LogEntry> entries = new ArrayList<LogEntry>((int) Math.max(0, end - start));
+            for (long sequence = start; sequence < end; sequence++) {
+                LogEntry entry = mSlots.get((int) (sequence % MAX_ENTRIES));
+                if (entry != null && entry.mSequence == sequence) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Appends entries to the log file from a low priority background thread, once a second. When the file
+     * reaches MAX_FILE_SIZE it replaces the previous file, so at most twice that is kept on disk.
+     */
+    private static class LogFileWriter extends Thread {
+        private static final long MAX_FILE_SIZE = 256 * 1024;
+        private static final long FLUSH_INTERVAL_MS = 1000;
+        private static final String FILE_NAME = "wordpress.log";
+        private static final String PREVIOUS_FILE_NAME = "wordpress.log.1";
+
+        private final File mLogDir;
+        private final ConcurrentLinkedQueue<LogEntry> mPendingEntries = new ConcurrentLinkedQueue<LogEntry>();
+        private final TreeMap<Long, LogEntry> mHeldEntries = new TreeMap<Long, LogEntry>();
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(16 * 1024);
+        private final Object mFileLock = new Object();
+        private FileChannel mChannel;
+        private long mLastWrittenSequence = -1;
+        private long mHeldUpToSequence = -1;
+
+        private LogFileWriter(File logDir) {
+            super("AppLogWriter");
+            mLogDir = logDir;
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        private void enqueue(LogEntry entry) {
+            mPendingEntries.offer(entry);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(FLUSH_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    writePendingEntries();
+                } catch (IOException e) {
+                    Log.e(TAG, "unable to write log file", e);
+                }
+            }
+        }
+
+        private void writePendingEntries() throws IOException {
+            synchronized (mFileLock) {
+                LogEntry entry;
+                while ((entry = mPendingEntries.poll()) != null) {
+                    mHeldEntries.put(entry.mSequence, entry);
+                }
+                // entries can be enqueued out of sequence order since adding them isn't locked, so only write up
+                // to the first gap - an entry already held during the previous flush is written anyway, its gap
+                // is an entry which was added before this writer existed
+                while (!mHeldEntries.isEmpty()) {
+                    long sequence = mHeldEntries.firstKey();
+                    if (sequence != mLastWrittenSequence + 1 && sequence > mHeldUpToSequence) {
+                        break;
+                    }
+                    writeEntry(mHeldEntries.pollFirstEntry().getValue());
+                }
+                mHeldUpToSequence = mHeldEntries.isEmpty() ? mLastWrittenSequence : mHeldEntries.lastKey();
+                writeBuffer();
+            }
+        }
+
+        private void writeEntry(LogEntry entry) throws IOException {
+            byte[] line = entry.toFileLine().getBytes(UTF_8);
+            if (mChannel == null) {
+                mChannel = openLogFile();
+            }
+            if (mChannel.size() + mBuffer.position() + line.length > MAX_FILE_SIZE) {
+                writeBuffer();
+                rotate();
+            }
+            if (line.length > mBuffer.remaining()) {
+                writeBuffer();
+            }
+            if (line.length > mBuffer.capacity()) {
+                mChannel.write(ByteBuffer.wrap(line));
+            } else {
+                mBuffer.put(line);
+            }
+            mLastWrittenSequence = Math.max(mLastWrittenSequence, entry.mSequence);
+        }
+
+        private void writeBuffer() throws IOException {
+            mBuffer.flip();
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+
+        private FileChannel openLogFile() throws IOException {
+            if (!mLogDir.exists() && !mLogDir.mkdirs()) {
+                throw new IOException("unable to create " + mLogDir);
+            }
+            return new FileOutputStream(new File(mLogDir, FILE_NAME), true).getChannel();
+        }
+
+        private void rotate() throws IOException {
+            mChannel.close();
+            File previousFile = new File(mLogDir, PREVIOUS_FILE_NAME);
+            if (!new File(mLogDir, FILE_NAME).renameTo(previousFile)) {
+                Log.w(TAG, "unable to rotate log file");
+            }
+            mChannel = openLogFile();
+        }
+
+        /*
+         * reads the entries from both log files, oldest first - returns the sequence number of the last entry
+         * which was written, so entries still pending can be taken from the ring instead
+         */
+        private long readEntries(List<LogEntry> entries) {
+            synchronized (mFileLock) {
+                readFile(new File(mLogDir, PREVIOUS_FILE_NAME), entries);
+                readFile(new File(mLogDir, FILE_NAME), entries);
+                return mLastWrittenSequence;
+            }
         }
-        private void removeFirstEntry() {
-            Iterator<LogEntry> it = iterator();
-            if (!it.hasNext())
+
+        private static void readFile(File file, List<LogEntry> entries) {
+            if (!file.exists()) {
                 return;
+            }
+            BufferedReader reader = null;
             try {
-                remove(it.next());
-            } catch (NoSuchElementException e) {
-                // ignore
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LogEntry entry = LogEntry.fromFileLine(line);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "unable to read log file", e);
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
             }
         }
     }
 
-    private static LogEntryList mLogEntries = new LogEntryList();
+    private static final LogEntryRing mLogEntries = new LogEntryRing();
+    private static volatile LogFileWriter mLogFileWriter;
 
     private static void addEntry(T tag, LogLevel level, String text) {
         // skip if recording is disabled (default)
@@ -218,7 +459,25 @@ public class AppLog {
             return;
         }
         LogEntry entry = new LogEntry(level, text, tag);
-        mLogEntries.addEntry(entry);
+        mLogEntries.add(entry);
+        LogFileWriter writer = mLogFileWriter;
+        if (writer != null) {
+            writer.enqueue(entry);
+        }
+    }
+
+    /*
+     * recorded entries, oldest first - includes previous sessions when persistence is enabled
+     */
+    private static List<LogEntry> getEntries() {
+        LogFileWriter writer = mLogFileWriter;
+        if (writer == null) {
+            return mLogEntries.getEntries(-1);
+        }
+        List<LogEntry> entries = new ArrayList<LogEntry>();
+        long lastWrittenSequence = writer.readEntries(entries);
+        entries.addAll(mLogEntries.getEntries(lastWrittenSequence));
+        return entries;
     }
 
     private static String getStringStackTrace(Throwable throwable) {
@@ -228,7 +487,8 @@ public class AppLog {
     }
 
     /**
-     * Returns entire log as html for display (see AppLogViewerActivity)
+     * Returns entire log as html for display (see AppLogViewerActivity) - this reads the log files when
+     * persistence is enabled, so avoid calling it on the UI thread
      * @param  context
      * @return Arraylist of Strings containing log messages
      */
@@ -239,32 +499,56 @@ public class AppLog {
         items.add("<strong>WordPress Android version: " + PackageUtils.getVersionName(context) + "</strong>");
         items.add("<strong>Android device name: " + DeviceUtils.getInstance().getDeviceName(context) + "</strong>");
 
-        Iterator<LogEntry> it = mLogEntries.iterator();
-        while (it.hasNext()) {
-            items.add(it.next().toHtml());
+        for (LogEntry entry : getEntries()) {
+            items.add(entry.toHtml());
         }
         return items;
     }
 
     /**
-     * Converts the entire log to plain text
+     * Converts the entire log to plain text - this reads the log files when persistence is enabled, so avoid
+     * calling it on the UI thread
      * @param context
      * @return The log as plain text
      */
     public static String toPlainText(Context context) {
+        return toPlainText(context, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Converts the most recent part of the log to plain text, dropping the oldest entries so the text
+     * is at most about maxLength characters long
+     * @param context
+     * @param maxLength maximum number of characters, the header lines are always included
+     * @return The log as plain text
+     */
+    public static String toPlainText(Context context, int maxLength) {
         StringBuilder sb = new StringBuilder();
 
         // add version & device info
         sb.append("WordPress Android version: " + PackageUtils.getVersionName(context)).append("\n")
                 .append("Android device name: " + DeviceUtils.getInstance().getDeviceName(context)).append("\n\n");
 
-        Iterator<LogEntry> it = mLogEntries.iterator();
-        int lineNum = 1;
-        while (it.hasNext()) {
-            sb.append(String.format("%02d - ", lineNum))
-                    .append(it.next().mLogText)
+        List<LogEntry> entries = getEntries();
+        int firstIndex = entries.size();
+        int length = sb.length();
+        while (firstIndex > 0) {
+            // line number, separator and line break take up to 10 more characters
+            length += entries.get(firstIndex - 1).mLogText.length() + 10;
+            if (length > maxLength) {
+                break;
+            }
+            firstIndex--;
+        }
+
+        for (int i = firstIndex; i < entries.size(); i++) {
+            int lineNum = i + 1;
+            if (lineNum < 10) {
+                sb.append('0');
+            }
+            sb.append(lineNum).append(" - ")
+                    .append(entries.get(i).mLogText)
                     .append("\n");
-            lineNum++;
         }
         return sb.toString();
     }
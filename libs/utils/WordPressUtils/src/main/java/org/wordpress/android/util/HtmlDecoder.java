@@ -0,0 +1,381 @@
+package org.wordpress.android.util;
+
+/**
+ * Single pass replacements for Html.fromHtml(html).toString() and regex based tag stripping, written in plain
+ * Java so they're cheap enough to run on every row of a list and can be tested off the device:
+ *
+ * - decodeEntities() converts the HTML 4 named entities, &apos; and decimal or hex character references
+ * - toPlainText() removes tags and comments, turns p and br tags into line breaks and decodes entities
+ * - toDisplayText() does the same but collapses whitespace and separates blocks the way Html.fromHtml() does
+ *
+ * All of them return the passed string itself when there's nothing to convert.
+ */
+public class HtmlDecoder {
+    // "thetasym" is the longest entity name
+    private static final int MAX_ENTITY_NAME_LENGTH = 8;
+    private static final int MAX_CHARACTER_REFERENCE_DIGITS = 8;
+
+    private static final String[] ENTITIES = {
+            "quot:34", "amp:38", "apos:39", "lt:60", "gt:62", "nbsp:160", "iexcl:161", "cent:162", "pound:163",
+            "curren:164", "yen:165", "brvbar:166", "sect:167", "uml:168", "copy:169", "ordf:170", "laquo:171",
+            "not:172", "shy:173", "reg:174", "macr:175", "deg:176", "plusmn:177", "sup2:178", "sup3:179", "acute:180",
+            "micro:181", "para:182", "middot:183", "cedil:184", "sup1:185", "ordm:186", "raquo:187", "frac14:188",
+            "frac12:189", "frac34:190", "iquest:191", "Agrave:192", "Aacute:193", "Acirc:194", "Atilde:195",
+            "Auml:196", "Aring:197", "AElig:198", "Ccedil:199", "Egrave:200", "Eacute:201", "Ecirc:202", "Euml:203",
+            "Igrave:204", "Iacute:205", "Icirc:206", "Iuml:207", "ETH:208", "Ntilde:209", "Ograve:210", "Oacute:211",
+            "Ocirc:212", "Otilde:213", "Ouml:214", "times:215", "Oslash:216", "Ugrave:217", "Uacute:218", "Ucirc:219",
+            "Uuml:220", "Yacute:221", "THORN:222", "szlig:223", "agrave:224", "aacute:225", "acirc:226", "atilde:227",
+            "auml:228", "aring:229", "aelig:230", "ccedil:231", "egrave:232", "eacute:233", "ecirc:234", "euml:235",
+            "igrave:236", "iacute:237", "icirc:238", "iuml:239", "eth:240", "ntilde:241", "ograve:242", "oacute:243",
+            "ocirc:244", "otilde:245", "ouml:246", "divide:247", "oslash:248", "ugrave:249", "uacute:250",
+            "ucirc:251", "uuml:252", "yacute:253", "thorn:254", "yuml:255", "OElig:338", "oelig:339", "Scaron:352",
+            "scaron:353", "Yuml:376", "fnof:402", "circ:710", "tilde:732", "Alpha:913", "Beta:914", "Gamma:915",
+            "Delta:916", "Epsilon:917", "Zeta:918", "Eta:919", "Theta:920", "Iota:921", "Kappa:922", "Lambda:923",
+            "Mu:924", "Nu:925", "Xi:926", "Omicron:927", "Pi:928", "Rho:929", "Sigma:931", "Tau:932", "Upsilon:933",
+            "Phi:934", "Chi:935", "Psi:936", "Omega:937", "alpha:945", "beta:946", "gamma:947", "delta:948",
+            "epsilon:949", "zeta:950", "eta:951", "theta:952", "iota:953", "kappa:954", "lambda:955", "mu:956",
+            "nu:957", "xi:958", "omicron:959", "pi:960", "rho:961", "sigmaf:962", "sigma:963", "tau:964",
+            "upsilon:965", "phi:966", "chi:967", "psi:968", "omega:969", "thetasym:977", "upsih:978", "piv:982",
+            "ensp:8194", "emsp:8195", "thinsp:8201", "zwnj:8204", "zwj:8205", "lrm:8206", "rlm:8207", "ndash:8211",
+            "mdash:8212", "lsquo:8216", "rsquo:8217", "sbquo:8218", "ldquo:8220", "rdquo:8221", "bdquo:8222",
+            "dagger:8224", "Dagger:8225", "bull:8226", "hellip:8230", "permil:8240", "prime:8242", "Prime:8243",
+            "lsaquo:8249", "rsaquo:8250", "oline:8254", "frasl:8260", "euro:8364", "image:8465", "weierp:8472",
+            "real:8476", "trade:8482", "alefsym:8501", "larr:8592", "uarr:8593", "rarr:8594", "darr:8595",
+            "harr:8596", "crarr:8629", "lArr:8656", "uArr:8657", "rArr:8658", "dArr:8659", "hArr:8660", "forall:8704",
+            "part:8706", "exist:8707", "empty:8709", "nabla:8711", "isin:8712", "notin:8713", "ni:8715", "prod:8719",
+            "sum:8721", "minus:8722", "lowast:8727", "radic:8730", "prop:8733", "infin:8734", "ang:8736", "and:8743",
+            "or:8744", "cap:8745", "cup:8746", "int:8747", "there4:8756", "sim:8764", "cong:8773", "asymp:8776",
+            "ne:8800", "equiv:8801", "le:8804", "ge:8805", "sub:8834", "sup:8835", "nsub:8836", "sube:8838",
+            "supe:8839", "oplus:8853", "otimes:8855", "perp:8869", "sdot:8901", "lceil:8968", "rceil:8969",
+            "lfloor:8970", "rfloor:8971", "lang:9001", "rang:9002", "loz:9674", "spades:9824", "clubs:9827",
+            "hearts:9829", "diams:9830"
+    };
+
+    // open addressing hash table of entity names, looked up without creating a substring for each entity
+    private static final int TABLE_SIZE = 1024;
+    private static final String[] sEntityNames = new String[TABLE_SIZE];
+    private static final char[] sEntityChars = new char[TABLE_SIZE];
+
+    static {
+        for (String entity : ENTITIES) {
+            int separator = entity.indexOf(':');
+            String name = entity.substring(0, separator);
+            int index = tableIndex(name.hashCode());
+            while (sEntityNames[index] != null) {
+                index = (index + 1) & (TABLE_SIZE - 1);
+            }
+            sEntityNames[index] = name;
+            sEntityChars[index] = (char) Integer.parseInt(entity.substring(separator + 1));
+        }
+    }
+
+    private HtmlDecoder() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Converts the entities in the passed text to the characters they stand for, unknown or malformed entities
+     * are left as they are
+     */
+    public static String decodeEntities(final String text) {
+        if (text == null) {
+            return null;
+        }
+        int ampersand = text.indexOf('&');
+        if (ampersand < 0) {
+            return text;
+        }
+
+        int length = text.length();
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(text, 0, ampersand);
+        int i = ampersand;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                int next = appendEntity(text, i, sb);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Removes tags and comments from the passed html and decodes its entities - p tags (other than a leading one)
+     * and br tags become line breaks, other whitespace is kept as it is, leading whitespace is removed
+     */
+    public static String toPlainText(final String html) {
+        if (html == null) {
+            return null;
+        }
+        if (html.indexOf('<') < 0 && html.indexOf('&') < 0) {
+            return trimStart(html);
+        }
+        return trimStart(convert(html, false));
+    }
+
+    /**
+     * Same text as Html.fromHtml(html).toString(): whitespace runs are collapsed to a single space, br tags become
+     * line breaks and paragraphs, divs, headings and blockquotes are separated by an empty line
+     */
+    public static String toDisplayText(final String html) {
+        if (html == null) {
+            return null;
+        }
+        if (isDisplayText(html)) {
+            return html;
+        }
+        return convert(html, true);
+    }
+
+    private static String convert(String html, boolean isDisplayText) {
+        int length = html.length();
+        StringBuilder sb = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int next = handleMarkup(html, i, sb, isDisplayText);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            } else if (c == '&') {
+                int next = appendEntity(html, i, sb);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            } else if (isDisplayText && isCollapsibleWhitespace(c)) {
+                char previous = sb.length() > 0 ? sb.charAt(sb.length() - 1) : '\n';
+                if (previous != ' ' && previous != '\n') {
+                    sb.append(' ');
+                }
+                i++;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /*
+     * skips the tag or comment starting with the '<' at start, appending the line breaks it stands for, and
+     * returns the index following it - returns start if it's not markup, in which case '<' is plain text
+     */
+    private static int handleMarkup(String html, int start, StringBuilder sb, boolean isDisplayText) {
+        int length = html.length();
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end >= 0 ? end + 3 : length;
+        }
+
+        int nameStart = start + 1;
+        boolean isClosingTag = nameStart < length && html.charAt(nameStart) == '/';
+        if (isClosingTag) {
+            nameStart++;
+        }
+        if (nameStart >= length || !(isAsciiLetter(html.charAt(nameStart)) || html.charAt(nameStart) == '!'
+                || html.charAt(nameStart) == '?')) {
+            return start;
+        }
+        int nameEnd = nameStart + 1;
+        while (nameEnd < length && isAsciiLetterOrDigit(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        // find the end of the tag, ignoring '>' inside quoted attribute values
+        char quote = 0;
+        int end = nameEnd;
+        while (end < length) {
+            char c = html.charAt(end);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                break;
+            }
+            end++;
+        }
+        if (end >= length) {
+            return start;
+        }
+
+        if (isTag(html, nameStart, nameEnd, "br")) {
+            sb.append('\n');
+        } else if (isDisplayText) {
+            if (isBlockTag(html, nameStart, nameEnd)) {
+                appendParagraphBreak(sb);
+            }
+        } else if (!isClosingTag && isTag(html, nameStart, nameEnd, "p")) {
+            sb.append('\n');
+        }
+        return end + 1;
+    }
+
+    /*
+     * decodes the entity starting with the '&' at start, appending its character to sb, and returns the index
+     * following it - returns start if there's no valid entity there
+     */
+    private static int appendEntity(String text, int start, StringBuilder sb) {
+        int length = text.length();
+        int pos = start + 1;
+        if (pos < length && text.charAt(pos) == '#') {
+            pos++;
+            int radix = 10;
+            if (pos < length && (text.charAt(pos) == 'x' || text.charAt(pos) == 'X')) {
+                radix = 16;
+                pos++;
+            }
+            int digitsStart = pos;
+            long codePoint = 0;
+            while (pos < length && pos - digitsStart < MAX_CHARACTER_REFERENCE_DIGITS) {
+                int digit = asciiDigit(text.charAt(pos), radix);
+                if (digit < 0) {
+                    break;
+                }
+                codePoint = codePoint * radix + digit;
+                pos++;
+            }
+            if (pos == digitsStart || pos >= length || text.charAt(pos) != ';' || !isValidCodePoint(codePoint)) {
+                return start;
+            }
+            sb.appendCodePoint((int) codePoint);
+            return pos + 1;
+        }
+
+        int nameStart = pos;
+        while (pos < length && pos - nameStart < MAX_ENTITY_NAME_LENGTH && isAsciiLetterOrDigit(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == nameStart || pos >= length || text.charAt(pos) != ';') {
+            return start;
+        }
+        int index = findEntity(text, nameStart, pos);
+        if (index < 0) {
+            return start;
+        }
+        sb.append(sEntityChars[index]);
+        return pos + 1;
+    }
+
+    private static int findEntity(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int nameLength = end - start;
+        int index = tableIndex(hash);
+        String name;
+        while ((name = sEntityNames[index]) != null) {
+            if (name.length() == nameLength && text.regionMatches(start, name, 0, nameLength)) {
+                return index;
+            }
+            index = (index + 1) & (TABLE_SIZE - 1);
+        }
+        return -1;
+    }
+
+    private static int tableIndex(int hash) {
+        return (hash ^ (hash >>> 16)) & (TABLE_SIZE - 1);
+    }
+
+    /*
+     * true if Html.fromHtml() would return the passed text unchanged
+     */
+    private static boolean isDisplayText(String text) {
+        char previous = '\n';
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<' || c == '&') {
+                return false;
+            }
+            if (isCollapsibleWhitespace(c) && (c != ' ' || previous == ' ' || previous == '\n')) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    private static void appendParagraphBreak(StringBuilder sb) {
+        int length = sb.length();
+        if (length == 0) {
+            return;
+        }
+        if (sb.charAt(length - 1) != '\n') {
+            sb.append("\n\n");
+        } else if (length < 2 || sb.charAt(length - 2) != '\n') {
+            sb.append('\n');
+        }
+    }
+
+    private static boolean isBlockTag(String html, int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        if (nameLength == 2 && Character.toLowerCase(html.charAt(nameStart)) == 'h') {
+            char level = html.charAt(nameStart + 1);
+            return level >= '1' && level <= '6';
+        }
+        return isTag(html, nameStart, nameEnd, "p")
+                || isTag(html, nameStart, nameEnd, "div")
+                || isTag(html, nameStart, nameEnd, "blockquote");
+    }
+
+    private static boolean isTag(String html, int nameStart, int nameEnd, String tagName) {
+        return nameEnd - nameStart == tagName.length() && html.regionMatches(true, nameStart, tagName, 0,
+                tagName.length());
+    }
+
+    private static boolean isCollapsibleWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static int asciiDigit(char c, int radix) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (radix == 16) {
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValidCodePoint(long codePoint) {
+        return codePoint > 0 && codePoint <= Character.MAX_CODE_POINT
+                && (codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE);
+    }
+
+    /*
+     * removes leading whitespace, including non-breaking spaces
+     */
+    private static String trimStart(final String str) {
+        int start = 0;
+        int length = str.length();
+        while (start < length && (Character.isWhitespace(str.charAt(start)) || str.charAt(start) == 160)) {
+            start++;
+        }
+        return start > 0 ? str.substring(start) : str;
+    }
+}
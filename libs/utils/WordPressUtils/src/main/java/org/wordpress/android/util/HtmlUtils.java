@@ -9,7 +9,6 @@ import android.text.TextUtils;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.QuoteSpan;
 
-import org.apache.commons.lang.StringEscapeUtils;
 import org.wordpress.android.util.helpers.WPHtmlTagHandler;
 import org.wordpress.android.util.helpers.WPImageGetter;
 import org.wordpress.android.util.helpers.WPQuoteSpan;
@@ -30,8 +29,8 @@ public class HtmlUtils {
     }
 
     /**
-     * This is much faster than stripHtml() but should only be used when we know the html is valid
-     * since the regex will be unpredictable with invalid html
+     * This is much faster than stripHtml() but doesn't handle invalid html as well - tags are removed,
+     * p and br tags are converted to line breaks and entities are decoded in a single pass
      * @param str String containing only valid html
      * @return String without HTML
      */
@@ -39,47 +38,16 @@ public class HtmlUtils {
         if (TextUtils.isEmpty(str)) {
             return str;
         }
-
-        // insert a line break before P tags unless the only one is at the start
-        if (str.lastIndexOf("<p") > 0) {
-            str = str.replaceAll("<p(.|\n)*?>", "\n<p>");
-        }
-
-        // convert BR tags to line breaks
-        if (str.contains("<br")) {
-            str = str.replaceAll("<br(.|\n)*?>", "\n");
-        }
-
-        // use regex to strip tags, then convert entities in the result
-        return trimStart(fastUnescapeHtml(str.replaceAll("<(.|\n)*?>", "")));
-    }
-
-    /*
-     * Same as apache.commons.lang.StringUtils.stripStart() but also removes non-breaking
-     * space (160) chars
-     */
-    private static String trimStart(final String str) {
-        int strLen;
-        if (str == null || (strLen = str.length()) == 0) {
-            return "";
-        }
-        int start = 0;
-        while (start != strLen && (Character.isWhitespace(str.charAt(start)) || str.charAt(start) == 160)) {
-            start++;
-        }
-        return str.substring(start);
+        return HtmlDecoder.toPlainText(str);
     }
 
     /**
-     * Convert html entities to actual Unicode characters - relies on commons apache lang
+     * Convert html entities to actual Unicode characters
      * @param text String to be decoded to Unicode
      * @return String containing unicode characters
      */
     public static String fastUnescapeHtml(final String text) {
-        if (text == null || !text.contains("&")) {
-            return text;
-        }
-        return StringEscapeUtils.unescapeHtml(text);
+        return HtmlDecoder.decodeEntities(text);
     }
 
     /**
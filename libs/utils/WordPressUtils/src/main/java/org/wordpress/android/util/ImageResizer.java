@@ -0,0 +1,289 @@
+package org.wordpress.android.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Resizes images for upload without holding more than the output bitmap and one decoded strip
+ * of the source in memory:
+ *
+ * - the source is decoded with the largest power-of-two inSampleSize that keeps it at least as
+ *   wide as the target, in horizontal strips through BitmapRegionDecoder when possible
+ * - each strip is drawn scaled and rotated straight into the output bitmap
+ * - the output is compressed directly to a file stream rather than to a byte[]
+ *
+ * Every decode reserves its worst case memory from a process-wide budget first, so concurrent
+ * uploads wait for each other instead of running out of memory. The output bitmap's share stays
+ * reserved until it's passed to release().
+ */
+public class ImageResizer {
+    private static final int STRIP_HEIGHT = 512;
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int DEFAULT_QUALITY = 100;
+
+    private static final MemoryBudget sBudget = new MemoryBudget(Runtime.getRuntime().maxMemory() / 4);
+
+    // budget reserved for each bitmap returned by decodeScaled() which hasn't been released yet
+    private static final Map<Bitmap, Long> sReservations = new IdentityHashMap<>();
+
+    private ImageResizer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Process-wide budget for decoded bitmaps - acquire() blocks until enough memory was released
+     * by other decodes. A single request larger than the whole budget is clamped so it can still
+     * run on its own.
+     */
+    public static class MemoryBudget {
+        private final long mCapacity;
+        private long mUsed;
+
+        public MemoryBudget(long capacity) {
+            mCapacity = capacity;
+        }
+
+        public synchronized long acquire(long bytes) throws InterruptedException {
+            long amount = Math.min(bytes, mCapacity);
+            while (mUsed + amount > mCapacity) {
+                wait();
+            }
+            mUsed += amount;
+            return amount;
+        }
+
+        public synchronized void release(long amount) {
+            mUsed -= amount;
+            notifyAll();
+        }
+
+        public synchronized long getUsed() {
+            return mUsed;
+        }
+
+        public long getCapacity() {
+            return mCapacity;
+        }
+    }
+
+    public static MemoryBudget getMemoryBudget() {
+        return sBudget;
+    }
+
+    /**
+     * Recycles a bitmap returned by decodeScaled() and returns its memory to the budget
+     */
+    public static void release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        Long reserved;
+        synchronized (sReservations) {
+            reserved = sReservations.remove(bitmap);
+        }
+        bitmap.recycle();
+        if (reserved != null) {
+            sBudget.release(reserved);
+        }
+    }
+
+    public static Bitmap.CompressFormat getCompressFormat(String fileExtension) {
+        if (fileExtension != null && fileExtension.equalsIgnoreCase("png")) {
+            return Bitmap.CompressFormat.PNG;
+        }
+        return Bitmap.CompressFormat.JPEG;
+    }
+
+    /*
+     * largest power of two sample size which keeps the decoded width >= targetWidth
+     */
+    public static int calculateInSampleSize(int srcWidth, int targetWidth) {
+        int sampleSize = 1;
+        if (targetWidth <= 0) {
+            return sampleSize;
+        }
+        while (srcWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Resizes the image at srcPath so it's at most maxWidth wide (after rotation) and writes it to
+     * destFile, returns false if the image couldn't be decoded or written
+     */
+    public static boolean resizeToFile(String srcPath, int maxWidth, int rotation, File destFile,
+                                       Bitmap.CompressFormat format) {
+        Bitmap bitmap = decodeScaled(srcPath, maxWidth, rotation);
+        if (bitmap == null) {
+            return false;
+        }
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(destFile));
+            return bitmap.compress(format, DEFAULT_QUALITY, out);
+        } catch (IOException e) {
+            AppLog.e(T.UTILS, "unable to write resized image", e);
+            return false;
+        } finally {
+            release(bitmap);
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    AppLog.e(T.UTILS, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the image at srcPath scaled to be at most maxWidth wide after applying the passed
+     * rotation (0, 90, 180 or 270), or null if it can't be decoded. The returned bitmap must be
+     * passed to release() once it's no longer needed.
+     */
+    public static Bitmap decodeScaled(String srcPath, int maxWidth, int rotation) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(srcPath, bounds);
+        int srcWidth = bounds.outWidth;
+        int srcHeight = bounds.outHeight;
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            return null;
+        }
+
+        rotation = ((rotation % 360) + 360) % 360;
+        boolean isSideways = (rotation == 90 || rotation == 270);
+        int rotatedWidth = isSideways ? srcHeight : srcWidth;
+        int rotatedHeight = isSideways ? srcWidth : srcHeight;
+
+        int destWidth = (maxWidth > 0 && rotatedWidth > maxWidth) ? maxWidth : rotatedWidth;
+        float scale = (float) destWidth / rotatedWidth;
+        int destHeight = Math.max(1, Math.round(rotatedHeight * scale));
+
+        // sample on the source axis which ends up horizontal
+        int srcTargetWidth = Math.round((isSideways ? srcHeight : srcWidth) * scale);
+        int sampleSize = calculateInSampleSize(isSideways ? srcHeight : srcWidth, srcTargetWidth);
+        int sampledWidth = divideRoundingUp(srcWidth, sampleSize);
+        int stripHeight = Math.min(srcHeight, STRIP_HEIGHT * sampleSize);
+
+        // formats without region decoding support (gif, bmp...) are sampled in a single pass
+        BitmapRegionDecoder regionDecoder = newRegionDecoder(srcPath);
+        int decodedHeight = regionDecoder != null ? stripHeight : srcHeight;
+
+        long outputBytes = (long) destWidth * destHeight * BYTES_PER_PIXEL;
+        long decodeBytes = (long) sampledWidth * divideRoundingUp(decodedHeight, sampleSize) * BYTES_PER_PIXEL;
+
+        long reserved = 0;
+        long outputReserved = 0;
+        boolean isReturned = false;
+        Bitmap dest = null;
+        try {
+            reserved = sBudget.acquire(outputBytes + decodeBytes);
+            // a clamped reservation is all kept for the output
+            outputReserved = Math.min(outputBytes, reserved);
+            dest = Bitmap.createBitmap(destWidth, destHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(dest);
+            canvas.concat(getSourceToDestMatrix(srcWidth, srcHeight, rotation, scale));
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+
+            if (regionDecoder != null) {
+                Rect region = new Rect();
+                for (int top = 0; top < srcHeight; top += stripHeight) {
+                    region.set(0, top, srcWidth, Math.min(srcHeight, top + stripHeight));
+                    Bitmap strip = regionDecoder.decodeRegion(region, options);
+                    if (strip == null) {
+                        dest.recycle();
+                        return null;
+                    }
+                    // the strip is drawn in source coordinates, the canvas matrix does the rest
+                    canvas.drawBitmap(strip, null, region, paint);
+                    strip.recycle();
+                }
+            } else {
+                Bitmap sampled = BitmapFactory.decodeFile(srcPath, options);
+                if (sampled == null) {
+                    dest.recycle();
+                    return null;
+                }
+                canvas.drawBitmap(sampled, null, new Rect(0, 0, srcWidth, srcHeight), paint);
+                sampled.recycle();
+            }
+            synchronized (sReservations) {
+                sReservations.put(dest, outputReserved);
+            }
+            isReturned = true;
+            return dest;
+        } catch (OutOfMemoryError e) {
+            AppLog.e(T.UTILS, "OutOfMemoryError resizing " + srcPath);
+            if (dest != null) {
+                dest.recycle();
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (dest != null) {
+                dest.recycle();
+            }
+            return null;
+        } finally {
+            // the output's share stays reserved for as long as the returned bitmap is in use
+            sBudget.release(isReturned ? reserved - outputReserved : reserved);
+            if (regionDecoder != null) {
+                regionDecoder.recycle();
+            }
+        }
+    }
+
+    /*
+     * maps source pixel coordinates to the rotated and scaled destination
+     */
+    private static Matrix getSourceToDestMatrix(int srcWidth, int srcHeight, int rotation, float scale) {
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        switch (rotation) {
+            case 90:
+                matrix.postTranslate(srcHeight, 0);
+                break;
+            case 180:
+                matrix.postTranslate(srcWidth, srcHeight);
+                break;
+            case 270:
+                matrix.postTranslate(0, srcWidth);
+                break;
+        }
+        matrix.postScale(scale, scale);
+        return matrix;
+    }
+
+    private static BitmapRegionDecoder newRegionDecoder(String srcPath) {
+        try {
+            return BitmapRegionDecoder.newInstance(srcPath, false);
+        } catch (IOException e) {
+            // unsupported format
+            return null;
+        }
+    }
+
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -1,6 +1,7 @@
 package org.wordpress.android.util;
 
 import android.text.TextUtils;
+import android.util.LruCache;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -10,7 +11,6 @@ import org.wordpress.android.util.AppLog.T;
 import java.util.ArrayList;
 
 public class JSONUtils {
-    private static String QUERY_SEPERATOR = ".";
     private static String QUERY_ARRAY_INDEX_START = "[";
     private static String QUERY_ARRAY_INDEX_END = "]";
     private static String QUERY_ARRAY_FIRST = "first";
@@ -32,60 +32,7 @@ public class JSONUtils {
             AppLog.e(T.UTILS, "Parameter query is null");
             return defaultObject;
         }
-        int nextSeperator = query.indexOf(QUERY_SEPERATOR);
-        int nextIndexStart = query.indexOf(QUERY_ARRAY_INDEX_START);
-        if (nextSeperator == -1 && nextIndexStart == -1) {
-            // last item let's get it
-            try {
-                if (!source.has(query)) {
-                    return defaultObject;
-                }
-                Object result = source.get(query);
-                if (result.getClass().isAssignableFrom(defaultObject.getClass())) {
-                    return (U) result;
-                } else {
-                    AppLog.w(T.UTILS, String.format("The returned object type %s is not assignable to the type %s. Using default!",
-                            result.getClass(),defaultObject.getClass()));
-                    return defaultObject;
-                }
-            } catch (java.lang.ClassCastException e) {
-                AppLog.e(T.UTILS, "Unable to cast the object to " + defaultObject.getClass().getName(), e);
-                return defaultObject;
-            } catch (JSONException e) {
-                AppLog.e(T.UTILS, "Unable to get the Key from the input object. Key:" + query, e);
-                return defaultObject;
-            }
-        }
-        int endQuery;
-        if (nextSeperator == -1 || nextIndexStart == -1) {
-            endQuery = Math.max(nextSeperator, nextIndexStart);
-        } else {
-            endQuery = Math.min(nextSeperator, nextIndexStart);
-        }
-        String nextQuery = query.substring(endQuery);
-        String key = query.substring(0, endQuery);
-        try {
-            if (nextQuery.indexOf(QUERY_SEPERATOR) == 0) {
-                return queryJSON(source.getJSONObject(key), nextQuery.substring(1), defaultObject);
-            } else if (nextQuery.indexOf(QUERY_ARRAY_INDEX_START) == 0) {
-                return queryJSON(source.getJSONArray(key), nextQuery, defaultObject);
-            } else if (!nextQuery.equals("")) {
-                return defaultObject;
-            }
-            Object result = source.get(key);
-            if (result.getClass().isAssignableFrom(defaultObject.getClass())) {
-                return (U) result;
-            } else {
-                AppLog.w(T.UTILS, String.format("The returned object type %s is not assignable to the type %s. Using default!",
-                        result.getClass(),defaultObject.getClass()));
-                return defaultObject;
-            }
-        } catch (java.lang.ClassCastException e) {
-            AppLog.e(T.UTILS, "Unable to cast the object to " + defaultObject.getClass().getName(), e);
-            return defaultObject;
-        } catch (JSONException e) {
-            return defaultObject;
-        }
+        return JSONPath.compile(query).evaluate(source, defaultObject);
     }
 
     /**
@@ -104,51 +51,172 @@ public class JSONUtils {
             AppLog.e(T.UTILS, "Parameter query is null");
             return defaultObject;
         }
-        // query must start with [ have an index and then have ]
-        int indexStart = query.indexOf(QUERY_ARRAY_INDEX_START);
-        int indexEnd = query.indexOf(QUERY_ARRAY_INDEX_END);
-        if (indexStart == -1 || indexEnd == -1 || indexStart > indexEnd) {
-            return defaultObject;
+        return JSONPath.compileForArray(query).evaluate(source, defaultObject);
+    }
+
+    /**
+     * A queryJSON() path parsed into its keys and array indexes. Paths are compiled once and
+     * cached by their query string, so evaluating the same query again only walks the JSON tree.
+     */
+    public static class JSONPath {
+        private static final int CACHE_SIZE = 256;
+        private static final LruCache<String, JSONPath> sObjectPaths = new LruCache<>(CACHE_SIZE);
+        private static final LruCache<String, JSONPath> sArrayPaths = new LruCache<>(CACHE_SIZE);
+
+        // a null key marks an array index segment
+        private final String[] mKeys;
+        private final int[] mIndexes;
+        private final boolean mIsValid;
+        private final String mQuery;
+
+        private JSONPath(String query, String[] keys, int[] indexes, boolean isValid) {
+            mQuery = query;
+            mKeys = keys;
+            mIndexes = indexes;
+            mIsValid = isValid;
+        }
+
+        /**
+         * Returns the compiled path for a query made on a JSONObject, e.g. "meta.ids.comment"
+         */
+        public static JSONPath compile(String query) {
+            JSONPath path = sObjectPaths.get(query);
+            if (path == null) {
+                path = parse(query, 0);
+                sObjectPaths.put(query, path);
+            }
+            return path;
         }
-        // get "index" from "[index]"
-        String indexStr = query.substring(indexStart + 1, indexEnd);
-        int index;
-        if (indexStr.equals(QUERY_ARRAY_FIRST)) {
-            index = 0;
-        } else if (indexStr.equals(QUERY_ARRAY_LAST)) {
-            index = -1;
-        } else {
-            index = Integer.parseInt(indexStr);
-        }
-        if (index < 0) {
-            index = source.length() + index;
-        }
-        // copy remaining query
-        String remainingQuery = query.substring(indexEnd + 1);
-        try {
-            if (remainingQuery.indexOf(QUERY_ARRAY_INDEX_START) == 0) {
-                return queryJSON(source.getJSONArray(index), remainingQuery, defaultObject);
-            } else if (remainingQuery.indexOf(QUERY_SEPERATOR) == 0) {
-                return queryJSON(source.getJSONObject(index), remainingQuery.substring(1), defaultObject);
-            } else if (!remainingQuery.equals("")) {
-                // TODO throw an exception since the query isn't valid?
-                AppLog.w(T.UTILS, String.format("Incorrect query for next object %s", remainingQuery));
+
+        /**
+         * Returns the compiled path for a query made on a JSONArray, e.g. "[0].ranges" - anything
+         * before the first index is ignored
+         */
+        public static JSONPath compileForArray(String query) {
+            JSONPath path = sArrayPaths.get(query);
+            if (path == null) {
+                int indexStart = query.indexOf(QUERY_ARRAY_INDEX_START);
+                int indexEnd = query.indexOf(QUERY_ARRAY_INDEX_END);
+                if (indexStart == -1 || indexEnd == -1 || indexStart > indexEnd) {
+                    path = new JSONPath(query, null, null, false);
+                } else {
+                    path = parse(query, indexStart);
+                }
+                sArrayPaths.put(query, path);
+            }
+            return path;
+        }
+
+        private static JSONPath parse(String query, int start) {
+            ArrayList<String> keys = new ArrayList<>();
+            ArrayList<Integer> indexes = new ArrayList<>();
+            int pos = start;
+            int length = query.length();
+            boolean expectKey = !query.startsWith(QUERY_ARRAY_INDEX_START, start);
+            while (true) {
+                if (expectKey) {
+                    // a key runs up to the next separator or index
+                    int end = pos;
+                    while (end < length && query.charAt(end) != '.' && query.charAt(end) != '[') {
+                        end++;
+                    }
+                    keys.add(query.substring(pos, end));
+                    indexes.add(0);
+                    if (end == length) {
+                        break;
+                    }
+                    pos = query.charAt(end) == '.' ? end + 1 : end;
+                    expectKey = query.charAt(end) == '.';
+                } else {
+                    // get "index" from "[index]"
+                    int indexEnd = query.indexOf(QUERY_ARRAY_INDEX_END, pos);
+                    if (indexEnd == -1) {
+                        return new JSONPath(query, null, null, false);
+                    }
+                    String indexStr = query.substring(pos + 1, indexEnd);
+                    int index;
+                    if (indexStr.equals(QUERY_ARRAY_FIRST)) {
+                        index = 0;
+                    } else if (indexStr.equals(QUERY_ARRAY_LAST)) {
+                        index = -1;
+                    } else {
+                        try {
+                            index = Integer.parseInt(indexStr);
+                        } catch (NumberFormatException e) {
+                            AppLog.w(T.UTILS, String.format("Invalid array index in query %s", query));
+                            return new JSONPath(query, null, null, false);
+                        }
+                    }
+                    keys.add(null);
+                    indexes.add(index);
+                    pos = indexEnd + 1;
+                    if (pos == length) {
+                        break;
+                    } else if (query.charAt(pos) == '.') {
+                        pos++;
+                        expectKey = true;
+                    } else if (query.charAt(pos) != '[') {
+                        AppLog.w(T.UTILS, String.format("Incorrect query for next object %s", query.substring(pos)));
+                        return new JSONPath(query, null, null, false);
+                    }
+                }
+            }
+
+            int[] indexArray = new int[indexes.size()];
+            for (int i = 0; i < indexArray.length; i++) {
+                indexArray[i] = indexes.get(i);
+            }
+            return new JSONPath(query, keys.toArray(new String[keys.size()]), indexArray, true);
+        }
+
+        public <U> U evaluate(JSONObject source, U defaultObject) {
+            return evaluateFrom(source, defaultObject);
+        }
+
+        public <U> U evaluate(JSONArray source, U defaultObject) {
+            return evaluateFrom(source, defaultObject);
+        }
+
+        private <U> U evaluateFrom(Object current, U defaultObject) {
+            if (!mIsValid || current == null) {
                 return defaultObject;
             }
-            Object result = source.get(index);
-            if (result.getClass().isAssignableFrom(defaultObject.getClass())) {
+            for (int i = 0; i < mKeys.length; i++) {
+                String key = mKeys[i];
+                if (key != null) {
+                    if (!(current instanceof JSONObject)) {
+                        return defaultObject;
+                    }
+                    current = ((JSONObject) current).opt(key);
+                } else {
+                    if (!(current instanceof JSONArray)) {
+                        return defaultObject;
+                    }
+                    JSONArray array = (JSONArray) current;
+                    int index = mIndexes[i] < 0 ? array.length() + mIndexes[i] : mIndexes[i];
+                    current = array.opt(index);
+                }
+                if (current == null) {
+                    return defaultObject;
+                }
+            }
+            return castResult(current, defaultObject);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <U> U castResult(Object result, U defaultObject) {
+            if (defaultObject == null || result.getClass().isAssignableFrom(defaultObject.getClass())) {
                 return (U) result;
-            } else {
-                AppLog.w(T.UTILS, String.format("The returned object type %s is not assignable to the type %s. Using default!",
-                        result.getClass(),defaultObject.getClass()));
-                return defaultObject;
             }
-        } catch (java.lang.ClassCastException e) {
-            AppLog.e(T.UTILS, "Unable to cast the object to "+defaultObject.getClass().getName(), e);
-            return defaultObject;
-        } catch (JSONException e) {
+            AppLog.w(T.UTILS, String.format("The returned object type %s is not assignable to the type %s. Using default!",
+                    result.getClass(), defaultObject.getClass()));
             return defaultObject;
         }
+
+        @Override
+        public String toString() {
+            return mQuery;
+        }
     }
 
     /**
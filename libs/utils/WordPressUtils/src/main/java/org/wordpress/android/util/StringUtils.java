@@ -1,6 +1,5 @@
 package org.wordpress.android.util;
 
-import android.text.Html;
 import android.text.TextUtils;
 
 import org.wordpress.android.util.AppLog.T;
@@ -97,7 +96,7 @@ public class StringUtils {
 
     public static String unescapeHTML(String html) {
         if (html != null) {
-            return Html.fromHtml(html).toString();
+            return HtmlDecoder.toDisplayText(html);
         } else {
             return "";
         }
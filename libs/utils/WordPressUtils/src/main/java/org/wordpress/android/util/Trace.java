@@ -0,0 +1,415 @@
+package org.wordpress.android.util;
+
+import android.os.Process;
+
+import org.json.JSONObject;
+import org.wordpress.android.util.AppLog.T;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lightweight tracing of nested, named sections. Each thread records its own sections, so concurrent
+ * services don't interfere with each other's timings:
+ *
+ *   Trace.beginSection("reader.savePosts");
+ *   try {
+ *       ...
+ *   } finally {
+ *       Trace.endSection();
+ *   }
+ *
+ * Sections which don't nest with the thread's other sections, such as one which starts in
+ * Application.onCreate() and ends once an activity was resumed, use beginAsyncSection() and
+ * endAsyncSection() instead, which are matched by a token rather than by nesting.
+ *
+ * Completed sections are kept in a fixed-size buffer per thread, and their durations are aggregated into
+ * a histogram per section name. Use logSummary() to write the histograms to AppLog, or writeChromeTrace()
+ * to export the recorded sections in the Chrome trace format (load it in chrome://tracing).
+ *
+ * Tracing is disabled by default, in which case beginSection() and endSection() return immediately.
+ */
+public class Trace {
+    private static final int EVENTS_PER_THREAD = 1024;
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_NAMES = 1024;
+
+    // number of finished threads whose sections are kept for export
+    private static final int MAX_FINISHED_THREADS = 8;
+
+    // names past MAX_NAMES are recorded under this one
+    private static final String OTHER_NAME = "(other)";
+
+    // event durations used to mark instants rather than sections
+    private static final long INSTANT = -1;
+
+    private static volatile boolean sEnabled;
+    private static final long sStartNanos = System.nanoTime();
+
+    // section names are interned so events only store an int
+    private static final ConcurrentHashMap<String, Integer> sNameIds = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<String> sNames = new AtomicReferenceArray<>(MAX_NAMES);
+    private static final AtomicReferenceArray<Histogram> sHistograms = new AtomicReferenceArray<>(MAX_NAMES);
+
+    private static final List<ThreadBuffer> sBuffers = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<ThreadBuffer> sThreadBuffer = new ThreadLocal<ThreadBuffer>() {
+        @Override
+        protected ThreadBuffer initialValue() {
+            removeFinishedThreads();
+            ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread());
+            sBuffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    static {
+        getNameId(OTHER_NAME);
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Starts a section on the current thread, which must be ended by endSection() on the same thread.
+     * Sections may be nested.
+     */
+    public static void beginSection(String name) {
+        if (!sEnabled) {
+            return;
+        }
+        sThreadBuffer.get().begin(getNameId(name), System.nanoTime());
+    }
+
+    /**
+     * Ends the innermost section started on the current thread, returns its duration in nanoseconds or
+     * -1 if no section was open
+     */
+    public static long endSection() {
+        if (!sEnabled) {
+            return -1;
+        }
+        return sThreadBuffer.get().end(System.nanoTime());
+    }
+
+    /**
+     * Starts a section which isn't part of the current thread's nesting, returns the token to pass to
+     * endAsyncSection() or -1 if tracing is disabled. A section which is never ended leaves nothing open.
+     */
+    public static long beginAsyncSection() {
+        if (!sEnabled) {
+            return -1;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends the section started by beginAsyncSection() with the passed token and records it on the current
+     * thread, returns its duration in nanoseconds or -1 if the token is -1 or tracing is disabled
+     */
+    public static long endAsyncSection(String name, long token) {
+        if (!sEnabled || token < 0) {
+            return -1;
+        }
+        return sThreadBuffer.get().endAsync(getNameId(name), token, System.nanoTime());
+    }
+
+    /**
+     * Records a point in time on the current thread, such as an activity being created
+     */
+    public static void mark(String name) {
+        if (!sEnabled) {
+            return;
+        }
+        sThreadBuffer.get().mark(getNameId(name), System.nanoTime());
+    }
+
+    /**
+     * Discards all recorded sections and histograms. Sections which are open when this is called are
+     * still recorded when they end.
+     */
+    public static void reset() {
+        for (ThreadBuffer buffer : sBuffers) {
+            buffer.clear();
+        }
+        for (int i = 0; i < MAX_NAMES; i++) {
+            Histogram histogram = sHistograms.get(i);
+            if (histogram != null) {
+                histogram.clear();
+            }
+        }
+    }
+
+    private static int getNameId(String name) {
+        Integer id = sNameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (sNameIds) {
+            id = sNameIds.get(name);
+            if (id == null) {
+                id = sNameIds.size();
+                if (id >= MAX_NAMES) {
+                    // too many distinct names, likely from names built with variable data
+                    return sNameIds.get(OTHER_NAME);
+                }
+                sNames.set(id, name);
+                sHistograms.set(id, new Histogram());
+                sNameIds.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /*
+     * threads which are started for a single task would otherwise each leave a buffer behind, so only
+     * the most recently added buffers of finished threads are kept
+     */
+    private static synchronized void removeFinishedThreads() {
+        int finished = 0;
+        for (int i = sBuffers.size() - 1; i >= 0; i--) {
+            ThreadBuffer buffer = sBuffers.get(i);
+            if (!buffer.isThreadAlive() && ++finished > MAX_FINISHED_THREADS) {
+                sBuffers.remove(buffer);
+            }
+        }
+    }
+
+    /**
+     * Writes the count, mean, median, 90th percentile and max duration of each section to AppLog
+     */
+    public static void logSummary() {
+        for (int i = 0; i < MAX_NAMES; i++) {
+            Histogram histogram = sHistograms.get(i);
+            if (histogram == null) {
+                break;
+            }
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            AppLog.d(T.PROFILING, sNames.get(i) + ": " + count + "x"
+                    + ", mean " + formatMs(histogram.getTotal() / count)
+                    + ", p50 " + formatMs(histogram.getPercentile(0.5))
+                    + ", p90 " + formatMs(histogram.getPercentile(0.9))
+                    + ", max " + formatMs(histogram.getMax()));
+        }
+    }
+
+    private static String formatMs(long nanos) {
+        long micros = nanos / 1000;
+        long fraction = (micros % 1000) / 10;
+        return (micros / 1000) + "." + (fraction < 10 ? "0" : "") + fraction + "ms";
+    }
+
+    /**
+     * Writes the recorded sections as a Chrome trace
+     * https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU
+     */
+    public static void writeChromeTrace(Writer writer) throws IOException {
+        int pid = Process.myPid();
+        boolean first = true;
+        writer.write("{\"traceEvents\":[");
+        for (ThreadBuffer buffer : sBuffers) {
+            long tid = buffer.mThreadId;
+            List<String> events = buffer.toChromeEvents(pid);
+            if (events.isEmpty()) {
+                continue;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + pid + ",\"tid\":" + tid
+                    + ",\"args\":{\"name\":" + JSONObject.quote(buffer.mThreadName) + "}}");
+            for (String event : events) {
+                writer.write(",\n");
+                writer.write(event);
+            }
+        }
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}");
+        writer.flush();
+    }
+
+    /*
+     * sections recorded by a single thread - only the owning thread writes to it, the lock is only
+     * contended while exporting
+     */
+    private static class ThreadBuffer {
+        private final WeakReference<Thread> mThread;
+        private final long mThreadId;
+        private final String mThreadName;
+
+        // completed events, oldest overwritten first
+        private final int[] mEventNames = new int[EVENTS_PER_THREAD];
+        private final int[] mEventDepths = new int[EVENTS_PER_THREAD];
+        private final long[] mEventStarts = new long[EVENTS_PER_THREAD];
+        private final long[] mEventDurations = new long[EVENTS_PER_THREAD];
+        private int mEventCount;
+
+        // open sections, the depth may exceed MAX_DEPTH in which case the deepest ones aren't recorded
+        private final int[] mOpenNames = new int[MAX_DEPTH];
+        private final long[] mOpenStarts = new long[MAX_DEPTH];
+        private int mDepth;
+
+        ThreadBuffer(Thread thread) {
+            mThread = new WeakReference<>(thread);
+            mThreadId = thread.getId();
+            mThreadName = thread.getName();
+        }
+
+        boolean isThreadAlive() {
+            Thread thread = mThread.get();
+            return thread != null && thread.isAlive();
+        }
+
+        void begin(int nameId, long now) {
+            if (mDepth < MAX_DEPTH) {
+                mOpenNames[mDepth] = nameId;
+                mOpenStarts[mDepth] = now;
+            }
+            mDepth++;
+        }
+
+        long end(long now) {
+            if (mDepth == 0) {
+                return -1;
+            }
+            mDepth--;
+            if (mDepth >= MAX_DEPTH) {
+                return -1;
+            }
+            int nameId = mOpenNames[mDepth];
+            long duration = now - mOpenStarts[mDepth];
+            record(nameId, mDepth, mOpenStarts[mDepth], duration);
+            sHistograms.get(nameId).add(duration);
+            return duration;
+        }
+
+        long endAsync(int nameId, long start, long now) {
+            long duration = now - start;
+            record(nameId, mDepth, start, duration);
+            sHistograms.get(nameId).add(duration);
+            return duration;
+        }
+
+        void mark(int nameId, long now) {
+            record(nameId, mDepth, now, INSTANT);
+        }
+
+        private synchronized void record(int nameId, int depth, long start, long duration) {
+            int index = mEventCount % EVENTS_PER_THREAD;
+            mEventNames[index] = nameId;
+            mEventDepths[index] = depth;
+            mEventStarts[index] = start;
+            mEventDurations[index] = duration;
+            mEventCount++;
+            if (mEventCount == 2 * EVENTS_PER_THREAD) {
+                // keep the index in range while preserving which slot is oldest
+                mEventCount = EVENTS_PER_THREAD;
+            }
+        }
+
+        synchronized void clear() {
+            mEventCount = 0;
+        }
+
+        synchronized List<String> toChromeEvents(int pid) {
+            int count = Math.min(mEventCount, EVENTS_PER_THREAD);
+            List<String> events = new ArrayList<>(count);
+            for (int i = mEventCount - count; i < mEventCount; i++) {
+                int index = i % EVENTS_PER_THREAD;
+                StringBuilder sb = new StringBuilder(128);
+                sb.append("{\"name\":").append(JSONObject.quote(sNames.get(mEventNames[index])));
+                sb.append(",\"cat\":\"depth").append(mEventDepths[index]).append('"');
+                sb.append(",\"pid\":").append(pid).append(",\"tid\":").append(mThreadId);
+                sb.append(",\"ts\":").append(toMicros(mEventStarts[index] - sStartNanos));
+                if (mEventDurations[index] == INSTANT) {
+                    sb.append(",\"ph\":\"i\",\"s\":\"t\"}");
+                } else {
+                    sb.append(",\"ph\":\"X\",\"dur\":").append(toMicros(mEventDurations[index])).append('}');
+                }
+                events.add(sb.toString());
+            }
+            return events;
+        }
+
+        private static String toMicros(long nanos) {
+            long fraction = nanos % 1000;
+            return (nanos / 1000) + "." + (fraction < 100 ? (fraction < 10 ? "00" : "0") : "") + fraction;
+        }
+    }
+
+    /*
+     * durations bucketed by powers of two of microseconds, which is enough to tell 1ms from 10ms from 100ms
+     * while letting any thread add to it without a lock
+     */
+    private static class Histogram {
+        private static final int BUCKETS = 40;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotal = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void add(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mTotal.addAndGet(nanos);
+            long max = mMax.get();
+            while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+                max = mMax.get();
+            }
+        }
+
+        long getCount() {
+            return mCount.get();
+        }
+
+        long getTotal() {
+            return mTotal.get();
+        }
+
+        long getMax() {
+            return mMax.get();
+        }
+
+        /*
+         * returns the upper bound of the bucket containing the given percentile, capped at the max
+         */
+        long getPercentile(double percentile) {
+            long target = (long) Math.ceil(mCount.get() * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min(getMax(), (1L << i) * 1000);
+                }
+            }
+            return getMax();
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mTotal.set(0);
+            mMax.set(0);
+        }
+    }
+}